@@ -0,0 +1,39 @@
+package com.project.cloudfilestorage.benchmark;
+
+import com.project.cloudfilestorage.service.impl.*;
+import com.project.cloudfilestorage.support.InMemoryS3Client;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+
+/*
+Builds the service the way Spring wires it, on top of the in-process S3 fake and with the default settings.
+ */
+final class BenchmarkServices {
+    static final String BUCKET = "benchmark-bucket";
+    static final long MULTIPART_THRESHOLD = 8L * 1024 * 1024;
+    static final long PART_SIZE = 5L * 1024 * 1024;
+
+    private BenchmarkServices() {
+    }
+
+    static FileServiceImpl fileService(InMemoryS3Client s3Client, boolean indexEnabled) {
+        IntegrityChecker integrityChecker = new IntegrityChecker("crc32c", true);
+        S3StorageBackend storageBackend = new S3StorageBackend(s3Client,
+                new MultipartUploader(s3Client, integrityChecker, MULTIPART_THRESHOLD, PART_SIZE, 4, 3, 16, false),
+                integrityChecker, BUCKET);
+        return new FileServiceImpl(
+                storageBackend,
+                new FileNameIndex(indexEnabled, 10_000, 5_000_000, Duration.ofMinutes(5), Duration.ofMinutes(30)),
+                new DownloadCache(false, Path.of("unused"), 0, 0, Duration.ZERO, Duration.ZERO),
+                new ZipArchiveWriter(4, 1024 * 1024, 1, 16, false),
+                new BatchRunner(4, 16, false),
+                new MetadataCache(false, 100_000, Duration.ofSeconds(10), Duration.ofSeconds(5)),
+                new ContentCompressor(false, List.of(), List.of(), 0, 6),
+                new Deduplicator(storageBackend, false, ".blobs/", Path.of("unused")),
+                new UrlPresigner(false, Duration.ofMinutes(15), 0, 0, 5 * 1024 * 1024, null, null, BUCKET),
+                new ParallelDownloader(false, 0, 1024 * 1024, 2, 1, 2, false),
+                integrityChecker);
+    }
+}
@@ -0,0 +1,95 @@
+package com.project.cloudfilestorage.benchmark;
+
+import com.project.cloudfilestorage.dto.FileDownload;
+import com.project.cloudfilestorage.service.impl.FileServiceImpl;
+import com.project.cloudfilestorage.support.InMemoryS3Client;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/*
+Copy of a downloaded object to the response stream for various object sizes and copy strategies:
+- service: downloadFile through the service and FileDownload.transferTo with its fixed 64 KB buffer
+- jdk: downloadFile through the service and InputStream.transferTo with the JDK 16 KB buffer
+- channel: a cached file served with FileChannel.transferTo, as the disk cache does
+The bytes copied are reported as the `bytes` counter, divide it by the time unit for the throughput in bytes/s.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DownloadCopyBenchmark {
+    private static final String USER = "bench-user";
+    private static final String FILE = "object.bin";
+
+    @Param({"4096", "1048576", "67108864"})
+    public int size;
+
+    @Param({"service", "jdk", "channel"})
+    public String strategy;
+
+    private FileServiceImpl fileService;
+    private Path cachedFile;
+    private final OutputStream sink = OutputStream.nullOutputStream();
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Bytes {
+        public long bytes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            bytes = 0;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        byte[] content = new byte[size];
+        ThreadLocalRandom.current().nextBytes(content);
+        InMemoryS3Client s3Client = new InMemoryS3Client();
+        s3Client.put(USER + "/" + FILE, "application/octet-stream", content);
+        fileService = BenchmarkServices.fileService(s3Client, false);
+        cachedFile = Files.createTempFile("download-benchmark", ".bin");
+        Files.write(cachedFile, content);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(cachedFile);
+    }
+
+    @Benchmark
+    public long copy(Bytes counter) throws IOException {
+        long copied;
+        switch (strategy) {
+            case "service" -> {
+                try (FileDownload download = fileService.downloadFile(USER, FILE)) {
+                    copied = download.transferTo(sink);
+                }
+            }
+            case "jdk" -> {
+                try (FileDownload download = fileService.downloadFile(USER, FILE)) {
+                    copied = download.getContent().transferTo(sink);
+                }
+            }
+            default -> {
+                FileChannel channel = FileChannel.open(cachedFile, StandardOpenOption.READ);
+                try (FileDownload download = new FileDownload(FILE, "application/octet-stream", null, null, channel)) {
+                    copied = download.transferTo(sink);
+                }
+            }
+        }
+        counter.bytes += copied;
+        return copied;
+    }
+}
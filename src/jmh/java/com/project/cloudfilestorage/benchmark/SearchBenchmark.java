@@ -0,0 +1,59 @@
+package com.project.cloudfilestorage.benchmark;
+
+import com.project.cloudfilestorage.dto.SearchPage;
+import com.project.cloudfilestorage.exception.FilesNotFoundException;
+import com.project.cloudfilestorage.service.impl.FileServiceImpl;
+import com.project.cloudfilestorage.support.InMemoryS3Client;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/*
+searchFiles over a synthetic listing of one user. With the index disabled every call lists the user prefix page by
+page and filters the names, with the index enabled the first call loads it and the next ones are answered from memory.
+The query matches about one name in a thousand, spread over the whole listing. A query without any match ends in
+FilesNotFoundException, which noMatch catches so it measures the full scan instead of a failing benchmark.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SearchBenchmark {
+    private static final String USER = "bench-user";
+
+    @Param({"1000", "100000", "1000000"})
+    public int keys;
+
+    @Param({"false", "true"})
+    public boolean indexEnabled;
+
+    private FileServiceImpl fileService;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        InMemoryS3Client s3Client = new InMemoryS3Client();
+        byte[] empty = new byte[0];
+        for (int i = 0; i < keys; i++) {
+            String name = (i % 1000 == 0 ? "report-" : "file-") + String.format("%07d", i) + ".txt";
+            s3Client.put(USER + "/" + name, "text/plain", empty);
+        }
+        fileService = BenchmarkServices.fileService(s3Client, indexEnabled);
+    }
+
+    @Benchmark
+    public SearchPage firstPage() {
+        return fileService.searchFiles(USER, "report", 100, null);
+    }
+
+    @Benchmark
+    public void noMatch(Blackhole blackhole) {
+        try {
+            blackhole.consume(fileService.searchFiles(USER, "missing", 100, null));
+        } catch (FilesNotFoundException e) {
+            blackhole.consume(e);
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.project.cloudfilestorage.benchmark;
+
+import com.project.cloudfilestorage.service.impl.FileServiceImpl;
+import com.project.cloudfilestorage.support.InMemoryS3Client;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.mock.web.MockMultipartFile;
+
+import java.io.ByteArrayInputStream;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/*
+Upload preparation: validation, request construction and body handling of uploadFile down to the S3 client, for a
+multipart form file and for a raw stream. Sizes below the multipart threshold go through a single PutObject, the
+largest one through the multipart uploader. The fake stores the body, so the copy into S3 is part of the measure.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UploadBenchmark {
+    private static final String USER = "bench-user";
+
+    @Param({"1024", "1048576", "20971520"})
+    public int size;
+
+    private FileServiceImpl fileService;
+    private byte[] content;
+    private MockMultipartFile multipartFile;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        content = new byte[size];
+        ThreadLocalRandom.current().nextBytes(content);
+        multipartFile = new MockMultipartFile("file", "upload.bin", "application/octet-stream", content);
+        fileService = BenchmarkServices.fileService(new InMemoryS3Client(), false);
+    }
+
+    @Benchmark
+    public void multipartForm() {
+        fileService.uploadFile(USER, multipartFile);
+    }
+
+    @Benchmark
+    public void rawStream() {
+        fileService.uploadFile(USER, "upload.bin", "application/octet-stream", new ByteArrayInputStream(content), content.length);
+    }
+}
@@ -0,0 +1,19 @@
+package com.project.cloudfilestorage.loadtest;
+
+import com.project.cloudfilestorage.support.InMemoryS3Client;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+/*
+Replaces the S3 client of the application with the in-process fake, so the load test exercises the whole HTTP and
+service stack without a bucket or network.
+ */
+@Configuration
+public class InMemoryS3Configuration {
+    @Bean
+    @Primary
+    public InMemoryS3Client inMemoryS3Client() {
+        return new InMemoryS3Client();
+    }
+}
@@ -0,0 +1,272 @@
+package com.project.cloudfilestorage.loadtest;
+
+import com.project.cloudfilestorage.CloudFileStorageApplication;
+import com.project.cloudfilestorage.support.InMemoryS3Client;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+Load test of one application instance. Boots CloudFileStorageApplication on a random port with the S3 client replaced
+by the in-process fake, seeds files of every size, then drives a mixed search/upload/download workload over HTTP for
+each concurrency level in turn and prints the latency percentiles, throughput and heap usage of every stage. The
+concurrency at which p99 latency climbs while throughput stops growing is the saturation point of the instance.
+
+Options, given as key=value arguments:
+  concurrency  comma separated concurrent clients per stage      (default 8,32,128)
+  duration     measured time per stage, after a 5 s warm up      (default 20s)
+  mix          weights of the operations                         (default search=20,upload=30,download=50)
+  sizes        object sizes in bytes and their weights           (default 1024=50,1048576=40,16777216=10)
+  files        files seeded per object size                      (default 20)
+Any other key=value argument is passed to the application, e.g. spring.threads.virtual.enabled=true.
+ */
+public class LoadTestRunner {
+    private static final String USER = "loadtest-user";
+    private static final Duration WARM_UP = Duration.ofSeconds(5);
+
+    private final Map<String, Integer> mix;
+    private final Map<Integer, Integer> sizes;
+    private final int filesPerSize;
+    private final String baseUrl;
+    private final HttpClient httpClient;
+    private final Map<Integer, byte[]> payloads = new HashMap<>();
+
+    LoadTestRunner(Map<String, Integer> mix, Map<Integer, Integer> sizes, int filesPerSize, String baseUrl) {
+        this.mix = mix;
+        this.sizes = sizes;
+        this.filesPerSize = filesPerSize;
+        this.baseUrl = baseUrl;
+        this.httpClient = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        Random random = new Random(42);
+        sizes.keySet().forEach(size -> {
+            byte[] payload = new byte[size];
+            random.nextBytes(payload);
+            payloads.put(size, payload);
+        });
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new LinkedHashMap<>();
+        List<String> applicationArgs = new ArrayList<>(List.of(
+                "--server.port=0", "--aws.region=us-east-1", "--s3.bucket.name=loadtest", "--logging.level.root=WARN"));
+        for (String arg : args) {
+            String[] pair = arg.split("=", 2);
+            if (pair.length != 2) {
+                throw new IllegalArgumentException("Expected key=value but got " + arg);
+            }
+            switch (pair[0]) {
+                case "concurrency", "duration", "mix", "sizes", "files" -> options.put(pair[0], pair[1]);
+                default -> applicationArgs.add("--" + arg);
+            }
+        }
+        List<Integer> concurrencyLevels = Arrays.stream(options.getOrDefault("concurrency", "8,32,128").split(","))
+                .map(String::trim).map(Integer::parseInt).toList();
+        Duration duration = parseDuration(options.getOrDefault("duration", "20s"));
+        Map<String, Integer> mix = parseWeights(options.getOrDefault("mix", "search=20,upload=30,download=50"));
+        Map<Integer, Integer> sizes = new LinkedHashMap<>();
+        parseWeights(options.getOrDefault("sizes", "1024=50,1048576=40,16777216=10"))
+                .forEach((size, weight) -> sizes.put(Integer.parseInt(size), weight));
+        int files = Integer.parseInt(options.getOrDefault("files", "20"));
+
+        SpringApplication application = new SpringApplication(CloudFileStorageApplication.class, InMemoryS3Configuration.class);
+        try (ConfigurableApplicationContext context = application.run(applicationArgs.toArray(String[]::new))) {
+            int port = ((ServletWebServerApplicationContext) context).getWebServer().getPort();
+            LoadTestRunner runner = new LoadTestRunner(mix, sizes, files, "http://localhost:" + port + "/file-controller");
+            runner.seed(context.getBean(InMemoryS3Client.class));
+
+            System.out.printf("%nmix=%s sizes=%s duration=%s%n", mix, sizes, duration);
+            System.out.printf("%-11s %-9s %9s %10s %10s %10s %8s %12s %12s%n",
+                    "concurrency", "operation", "requests", "p50 ms", "p99 ms", "max ms", "errors", "req/s", "peak heap MB");
+            for (int concurrency : concurrencyLevels) {
+                runner.runStage(concurrency, WARM_UP, false);
+                runner.runStage(concurrency, duration, true);
+            }
+        }
+    }
+
+    /*
+    Helper method to store the files read by the download and search operations.
+     */
+    private void seed(InMemoryS3Client s3Client) {
+        for (int size : sizes.keySet()) {
+            for (int i = 0; i < filesPerSize; i++) {
+                s3Client.put(USER + "/" + fileName("file", size, i), "application/octet-stream", payloads.get(size));
+            }
+        }
+    }
+
+    /*
+    Run the workload with the given number of clients for the given time and print the results when measured.
+     */
+    private void runStage(int concurrency, Duration duration, boolean report) throws InterruptedException {
+        Map<String, LatencyRecorder> recorders = new TreeMap<>();
+        mix.keySet().forEach(operation -> recorders.put(operation, new LatencyRecorder()));
+        HeapSampler heapSampler = new HeapSampler();
+        long deadline = System.nanoTime() + duration.toNanos();
+
+        heapSampler.start();
+        ExecutorService clients = Executors.newFixedThreadPool(concurrency);
+        for (int i = 0; i < concurrency; i++) {
+            clients.submit(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                while (System.nanoTime() < deadline) {
+                    String operation = pick(mix, random);
+                    long start = System.nanoTime();
+                    boolean success = execute(operation, random);
+                    recorders.get(operation).record(System.nanoTime() - start, success);
+                }
+            });
+        }
+        clients.shutdown();
+        clients.awaitTermination(duration.toMillis() + 60_000, TimeUnit.MILLISECONDS);
+        heapSampler.stop();
+
+        if (report) {
+            double seconds = duration.toNanos() / 1e9;
+            recorders.forEach((operation, recorder) -> System.out.printf("%-11d %-9s %9d %10.2f %10.2f %10.2f %8d %12.1f %12d%n",
+                    concurrency, operation, recorder.count(), recorder.percentile(50), recorder.percentile(99),
+                    recorder.percentile(100), recorder.errors.get(), recorder.count() / seconds, heapSampler.peakMegabytes()));
+        }
+    }
+
+    /*
+    Helper method to send one request and drain its response, returning whether it succeeded.
+     */
+    private boolean execute(String operation, ThreadLocalRandom random) {
+        int size = pick(sizes, random);
+        try {
+            HttpRequest request = switch (operation) {
+                case "search" -> HttpRequest.newBuilder(URI.create(baseUrl + "/search?userName=" + USER
+                        + "&fileName=" + size + "-" + random.nextInt(filesPerSize))).GET().build();
+                case "upload" -> HttpRequest.newBuilder(URI.create(baseUrl + "/upload-stream?userName=" + USER
+                                + "&fileName=" + fileName("upload", size, random.nextInt(filesPerSize))))
+                        .header("Content-Type", "application/octet-stream")
+                        .PUT(HttpRequest.BodyPublishers.ofByteArray(payloads.get(size)))
+                        .build();
+                case "download" -> HttpRequest.newBuilder(URI.create(baseUrl + "/download?userName=" + USER
+                        + "&fileName=" + fileName("file", size, random.nextInt(filesPerSize)))).GET().build();
+                default -> throw new IllegalArgumentException("Unknown operation " + operation);
+            };
+            HttpResponse<InputStream> response = httpClient.send(request, HttpResponse.BodyHandlers.ofInputStream());
+            try (InputStream body = response.body()) {
+                body.transferTo(OutputStream.nullOutputStream());
+            }
+            return response.statusCode() < 400;
+        } catch (IOException e) {
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private static String fileName(String kind, int size, int index) {
+        return kind + "-" + size + "-" + index + ".bin";
+    }
+
+    private static <T> T pick(Map<T, Integer> weights, ThreadLocalRandom random) {
+        int total = weights.values().stream().mapToInt(Integer::intValue).sum();
+        int choice = random.nextInt(total);
+        for (Map.Entry<T, Integer> entry : weights.entrySet()) {
+            choice -= entry.getValue();
+            if (choice < 0) {
+                return entry.getKey();
+            }
+        }
+        throw new IllegalStateException("Weights must be positive");
+    }
+
+    private static Map<String, Integer> parseWeights(String value) {
+        Map<String, Integer> weights = new LinkedHashMap<>();
+        for (String pair : value.split(",")) {
+            String[] parts = pair.trim().split("=", 2);
+            weights.put(parts[0], Integer.parseInt(parts[1]));
+        }
+        return weights;
+    }
+
+    private static Duration parseDuration(String value) {
+        if (value.endsWith("ms")) {
+            return Duration.ofMillis(Long.parseLong(value.substring(0, value.length() - 2)));
+        }
+        if (value.endsWith("s")) {
+            return Duration.ofSeconds(Long.parseLong(value.substring(0, value.length() - 1)));
+        }
+        if (value.endsWith("m")) {
+            return Duration.ofMinutes(Long.parseLong(value.substring(0, value.length() - 1)));
+        }
+        return Duration.ofSeconds(Long.parseLong(value));
+    }
+
+    /*
+    Latencies of one operation. Samples are kept in full and sorted once at the end of the stage, which is exact and
+    cheap enough for the request counts of a single instance.
+     */
+    private static final class LatencyRecorder {
+        private final ConcurrentLinkedQueue<Long> samples = new ConcurrentLinkedQueue<>();
+        private final AtomicLong errors = new AtomicLong();
+        private long[] sorted;
+
+        void record(long nanos, boolean success) {
+            samples.add(nanos);
+            if (!success) {
+                errors.incrementAndGet();
+            }
+        }
+
+        long count() {
+            return samples.size();
+        }
+
+        double percentile(double percentile) {
+            if (sorted == null) {
+                sorted = samples.stream().mapToLong(Long::longValue).sorted().toArray();
+            }
+            if (sorted.length == 0) {
+                return 0;
+            }
+            int index = (int) Math.ceil(percentile / 100 * sorted.length) - 1;
+            return sorted[Math.max(0, Math.min(index, sorted.length - 1))] / 1e6;
+        }
+    }
+
+    /*
+    Samples the used heap every 100 ms and keeps the peak of the stage.
+     */
+    private static final class HeapSampler {
+        private final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "heap-sampler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        private final AtomicLong peak = new AtomicLong();
+
+        void start() {
+            scheduler.scheduleAtFixedRate(() -> peak.accumulateAndGet(memory.getHeapMemoryUsage().getUsed(), Math::max),
+                    0, 100, TimeUnit.MILLISECONDS);
+        }
+
+        void stop() {
+            scheduler.shutdownNow();
+        }
+
+        long peakMegabytes() {
+            return peak.get() / (1024 * 1024);
+        }
+    }
+}
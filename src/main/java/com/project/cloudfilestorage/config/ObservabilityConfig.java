@@ -0,0 +1,18 @@
+package com.project.cloudfilestorage.config;
+
+import io.micrometer.observation.ObservationRegistry;
+import io.micrometer.observation.aop.ObservedAspect;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/*
+Turns the @Observed service methods into observations, which Actuator records as file.service timers (exposed on
+/actuator/prometheus) and as spans when a tracer is on the classpath.
+ */
+@Configuration
+public class ObservabilityConfig {
+    @Bean
+    public ObservedAspect observedAspect(ObservationRegistry observationRegistry) {
+        return new ObservedAspect(observationRegistry);
+    }
+}
@@ -1,21 +1,178 @@
 package com.project.cloudfilestorage.config;
 
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import software.amazon.awssdk.auth.credentials.EnvironmentVariableCredentialsProvider;
+import software.amazon.awssdk.core.client.config.ClientOverrideConfiguration;
+import software.amazon.awssdk.core.retry.RetryMode;
+import software.amazon.awssdk.core.retry.RetryPolicy;
+import software.amazon.awssdk.http.SdkHttpClient;
+import software.amazon.awssdk.http.apache.ApacheHttpClient;
+import software.amazon.awssdk.http.crt.AwsCrtHttpClient;
+import software.amazon.awssdk.http.nio.netty.NettyNioAsyncHttpClient;
+import software.amazon.awssdk.http.urlconnection.UrlConnectionHttpClient;
 import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
 import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.multipart.MultipartConfiguration;
+import software.amazon.awssdk.services.s3.presigner.S3Presigner;
 
+import java.time.Duration;
+import java.util.Locale;
+
+/*
+S3 clients used by the service. Connection pool size, timeouts, keep-alive and retry behaviour are externalized and
+applied to every client, so all S3 calls share the same limits whatever the engine. The adaptive retry mode adds a
+client-side token bucket that slows the request rate down when S3 answers with throttling errors.
+No client is created when the local storage backend is selected.
+ */
 @Configuration
+@ConditionalOnProperty(name = "storage.backend", havingValue = "s3", matchIfMissing = true)
 public class S3Config {
     @Value("${aws.region}")
     private String awsRegion;
+    @Value("${s3.upload.multipart.threshold:67108864}")
+    private long multipartThreshold;
+    @Value("${s3.upload.multipart.part-size:16777216}")
+    private long multipartPartSize;
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+
+    @Value("${s3.http.client:}")
+    private String httpClient;
+    @Value("${s3.http.max-connections:200}")
+    private int maxConnections;
+    @Value("${s3.http.connection-acquisition-timeout:10s}")
+    private Duration connectionAcquisitionTimeout;
+    @Value("${s3.http.connection-timeout:2s}")
+    private Duration connectionTimeout;
+    @Value("${s3.http.socket-timeout:30s}")
+    private Duration socketTimeout;
+    @Value("${s3.http.connection-max-idle-time:60s}")
+    private Duration connectionMaxIdleTime;
+    @Value("${s3.http.tcp-keepalive:true}")
+    private boolean tcpKeepAlive;
+    @Value("${s3.retry.mode:adaptive}")
+    private String retryMode;
+    @Value("${s3.retry.max-attempts:3}")
+    private int retryMaxAttempts;
+
+    @Bean
+    public S3MetricsInterceptor s3MetricsInterceptor(MeterRegistry meterRegistry) {
+        return new S3MetricsInterceptor(meterRegistry);
+    }
+
     @Bean
-    public S3Client s3Client() {
+    public S3Client s3Client(S3MetricsInterceptor s3MetricsInterceptor) {
         return S3Client.builder()
                 .region(Region.of(awsRegion))
                 .credentialsProvider(EnvironmentVariableCredentialsProvider.create())
+                .httpClientBuilder(httpClientBuilder())
+                .overrideConfiguration(overrideConfiguration(s3MetricsInterceptor))
+                .build();
+    }
+
+    /*
+    Signs the presigned URLs handed to clients, only created when they are enabled. Signing is local, no request is
+    sent to S3.
+     */
+    @Bean
+    @ConditionalOnProperty(name = "presign.enabled", havingValue = "true")
+    public S3Presigner s3Presigner() {
+        return S3Presigner.builder()
+                .region(Region.of(awsRegion))
+                .credentialsProvider(EnvironmentVariableCredentialsProvider.create())
+                .build();
+    }
+
+    /*
+    Asynchronous client used by the async storage engine. "crt" builds the CRT based client, which splits transfers
+    into parts and runs them in parallel by itself; "async" builds the Netty based client with the SDK multipart
+    support enabled for large uploads. The CRT client takes no execution interceptors, so its calls are not recorded
+    in the s3.* metrics.
+     */
+    @Bean
+    @ConditionalOnExpression("'${s3.engine:sync}' == 'async' or '${s3.engine:sync}' == 'crt'")
+    public S3AsyncClient s3AsyncClient(@Value("${s3.engine}") String engine,
+                                       @Value("${s3.async.max-concurrency:200}") int maxConcurrency,
+                                       @Value("${s3.crt.target-throughput-gbps:10.0}") double targetThroughputGbps,
+                                       S3MetricsInterceptor s3MetricsInterceptor) {
+        if ("crt".equals(engine)) {
+            return S3AsyncClient.crtBuilder()
+                    .region(Region.of(awsRegion))
+                    .credentialsProvider(EnvironmentVariableCredentialsProvider.create())
+                    .targetThroughputInGbps(targetThroughputGbps)
+                    .maxConcurrency(maxConcurrency)
+                    .thresholdInBytes(multipartThreshold)
+                    .minimumPartSizeInBytes(multipartPartSize)
+                    .httpConfiguration(http -> http.connectionTimeout(connectionTimeout))
+                    .retryConfiguration(retry -> retry.numRetries(Math.max(0, retryMaxAttempts - 1)))
+                    .build();
+        }
+        return S3AsyncClient.builder()
+                .region(Region.of(awsRegion))
+                .credentialsProvider(EnvironmentVariableCredentialsProvider.create())
+                .httpClientBuilder(NettyNioAsyncHttpClient.builder()
+                        .maxConcurrency(maxConcurrency)
+                        .connectionAcquisitionTimeout(connectionAcquisitionTimeout)
+                        .connectionTimeout(connectionTimeout)
+                        .readTimeout(socketTimeout)
+                        .writeTimeout(socketTimeout)
+                        .connectionMaxIdleTime(connectionMaxIdleTime)
+                        .tcpKeepAlive(tcpKeepAlive))
+                .overrideConfiguration(overrideConfiguration(s3MetricsInterceptor))
+                .multipartEnabled(true)
+                .multipartConfiguration(MultipartConfiguration.builder()
+                        .thresholdInBytes(multipartThreshold)
+                        .minimumPartSizeInBytes(multipartPartSize)
+                        .build())
+                .build();
+    }
+
+    /*
+    Helper method to build the synchronous HTTP client selected with s3.http.client. Without an explicit choice the
+    JDK URL connection client is used on virtual threads, since it does not pin the carrier thread on Java 21, and the
+    Apache client otherwise. The URL connection client has no pool size or acquisition timeout to tune.
+     */
+    private SdkHttpClient.Builder<?> httpClientBuilder() {
+        String client = httpClient.isBlank() ? (virtualThreads ? "url" : "apache") : httpClient.toLowerCase(Locale.ROOT);
+        return switch (client) {
+            case "apache" -> ApacheHttpClient.builder()
+                    .maxConnections(maxConnections)
+                    .connectionAcquisitionTimeout(connectionAcquisitionTimeout)
+                    .connectionTimeout(connectionTimeout)
+                    .socketTimeout(socketTimeout)
+                    .connectionMaxIdleTime(connectionMaxIdleTime)
+                    .tcpKeepAlive(tcpKeepAlive);
+            case "url" -> UrlConnectionHttpClient.builder()
+                    .connectionTimeout(connectionTimeout)
+                    .socketTimeout(socketTimeout);
+            case "crt" -> AwsCrtHttpClient.builder()
+                    .maxConcurrency(maxConnections)
+                    .connectionTimeout(connectionTimeout)
+                    .connectionMaxIdleTime(connectionMaxIdleTime)
+                    .tcpKeepAliveConfiguration(keepAlive -> keepAlive
+                            .keepAliveInterval(tcpKeepAlive ? Duration.ofSeconds(30) : Duration.ZERO)
+                            .keepAliveTimeout(tcpKeepAlive ? Duration.ofSeconds(10) : Duration.ZERO));
+            default -> throw new IllegalArgumentException("Unknown s3.http.client: " + httpClient);
+        };
+    }
+
+    /*
+    Helper method to build the retry and metrics configuration shared by the Apache, URL connection and Netty based
+    clients.
+     */
+    private ClientOverrideConfiguration overrideConfiguration(S3MetricsInterceptor s3MetricsInterceptor) {
+        RetryMode mode = RetryMode.valueOf(retryMode.toUpperCase(Locale.ROOT));
+        return ClientOverrideConfiguration.builder()
+                .retryPolicy(RetryPolicy.builder(mode)
+                        .numRetries(Math.max(0, retryMaxAttempts - 1))
+                        .build())
+                .addExecutionInterceptor(s3MetricsInterceptor)
                 .build();
     }
 }
@@ -0,0 +1,130 @@
+package com.project.cloudfilestorage.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import software.amazon.awssdk.core.exception.SdkServiceException;
+import software.amazon.awssdk.core.interceptor.Context;
+import software.amazon.awssdk.core.interceptor.ExecutionAttribute;
+import software.amazon.awssdk.core.interceptor.ExecutionAttributes;
+import software.amazon.awssdk.core.interceptor.ExecutionInterceptor;
+import software.amazon.awssdk.core.interceptor.SdkExecutionAttribute;
+import software.amazon.awssdk.http.SdkHttpResponse;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+SDK interceptor recording every S3 API call in Micrometer, so the time spent in S3 can be told apart from the time
+spent in the service. Per call it records the total latency including retries (s3.requests), the latency of each
+HTTP attempt (s3.attempts), the retries (s3.retries) and the request and response body sizes (s3.bytes). The number
+of calls in progress is published as s3.requests.active. For streaming reads the call ends when the response headers
+are received, the body is read by the caller afterwards.
+ */
+public class S3MetricsInterceptor implements ExecutionInterceptor {
+    private static final ExecutionAttribute<Long> EXECUTION_START = new ExecutionAttribute<>("MetricsExecutionStart");
+    private static final ExecutionAttribute<Long> ATTEMPT_START = new ExecutionAttribute<>("MetricsAttemptStart");
+    private static final ExecutionAttribute<Integer> ATTEMPTS = new ExecutionAttribute<>("MetricsAttempts");
+
+    private final MeterRegistry registry;
+    private final AtomicInteger active;
+
+    public S3MetricsInterceptor(MeterRegistry registry) {
+        this.registry = registry;
+        this.active = registry.gauge("s3.requests.active", new AtomicInteger());
+    }
+
+    @Override
+    public void beforeExecution(Context.BeforeExecution context, ExecutionAttributes executionAttributes) {
+        executionAttributes.putAttribute(EXECUTION_START, System.nanoTime());
+        executionAttributes.putAttribute(ATTEMPTS, 0);
+        active.incrementAndGet();
+    }
+
+    @Override
+    public void beforeTransmission(Context.BeforeTransmission context, ExecutionAttributes executionAttributes) {
+        executionAttributes.putAttribute(ATTEMPT_START, System.nanoTime());
+        executionAttributes.putAttribute(ATTEMPTS, executionAttributes.getAttribute(ATTEMPTS) + 1);
+        recordBytes(executionAttributes, "sent", context.httpRequest().firstMatchingHeader("Content-Length").orElse(null));
+    }
+
+    @Override
+    public void afterTransmission(Context.AfterTransmission context, ExecutionAttributes executionAttributes) {
+        SdkHttpResponse response = context.httpResponse();
+        Long attemptStart = executionAttributes.getAttribute(ATTEMPT_START);
+        if (attemptStart != null) {
+            Timer.builder("s3.attempts")
+                    .description("Latency of each HTTP attempt of an S3 call")
+                    .tag("operation", operation(executionAttributes))
+                    .tag("status", String.valueOf(response.statusCode()))
+                    .publishPercentileHistogram()
+                    .register(registry)
+                    .record(System.nanoTime() - attemptStart, TimeUnit.NANOSECONDS);
+        }
+        recordBytes(executionAttributes, "received", response.firstMatchingHeader("Content-Length").orElse(null));
+    }
+
+    @Override
+    public void afterExecution(Context.AfterExecution context, ExecutionAttributes executionAttributes) {
+        finish(executionAttributes, "success", String.valueOf(context.httpResponse().statusCode()));
+    }
+
+    @Override
+    public void onExecutionFailure(Context.FailedExecution context, ExecutionAttributes executionAttributes) {
+        String status = context.exception() instanceof SdkServiceException serviceException
+                ? String.valueOf(serviceException.statusCode())
+                : "none";
+        finish(executionAttributes, "failure", status);
+    }
+
+    /*
+    Helper method to record the end of a call, whatever its outcome.
+     */
+    private void finish(ExecutionAttributes executionAttributes, String outcome, String status) {
+        Long start = executionAttributes.getAttribute(EXECUTION_START);
+        if (start == null) {
+            return;
+        }
+        active.decrementAndGet();
+        String operation = operation(executionAttributes);
+        Timer.builder("s3.requests")
+                .description("Latency of S3 calls, retries included")
+                .tag("operation", operation)
+                .tag("outcome", outcome)
+                .tag("status", status)
+                .publishPercentileHistogram()
+                .register(registry)
+                .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        Integer attempts = executionAttributes.getAttribute(ATTEMPTS);
+        if (attempts != null && attempts > 1) {
+            Counter.builder("s3.retries")
+                    .description("Retried HTTP attempts of S3 calls")
+                    .tag("operation", operation)
+                    .register(registry)
+                    .increment(attempts - 1);
+        }
+    }
+
+    private void recordBytes(ExecutionAttributes executionAttributes, String direction, String contentLength) {
+        if (contentLength == null) {
+            return;
+        }
+        try {
+            DistributionSummary.builder("s3.bytes")
+                    .description("Body sizes of S3 requests and responses")
+                    .baseUnit("bytes")
+                    .tag("operation", operation(executionAttributes))
+                    .tag("direction", direction)
+                    .register(registry)
+                    .record(Long.parseLong(contentLength));
+        } catch (NumberFormatException ignored) {
+            // A malformed header is not worth failing the call for.
+        }
+    }
+
+    private String operation(ExecutionAttributes executionAttributes) {
+        String operation = executionAttributes.getAttribute(SdkExecutionAttribute.OPERATION_NAME);
+        return operation != null ? operation : "unknown";
+    }
+}
@@ -1,47 +1,649 @@
 package com.project.cloudfilestorage.controller;
 
 import com.project.cloudfilestorage.dto.ApiResponse;
+import com.project.cloudfilestorage.dto.FileDownload;
+import com.project.cloudfilestorage.dto.FileMetadata;
+import com.project.cloudfilestorage.dto.PresignedTransfer;
+import com.project.cloudfilestorage.dto.SearchPage;
+import com.project.cloudfilestorage.dto.BatchResult;
+import com.project.cloudfilestorage.exception.BadRequestException;
+import com.project.cloudfilestorage.exception.FileOperationException;
 import com.project.cloudfilestorage.service.FileService;
-import org.springframework.http.HttpStatus;
-import org.springframework.http.ResponseEntity;
+import com.project.cloudfilestorage.service.impl.TransferScheduler;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.http.*;
+import org.springframework.util.MimeTypeUtils;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.context.request.async.CallableProcessingInterceptor;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.context.request.async.DeferredResultProcessingInterceptor;
+import org.springframework.web.context.request.async.WebAsyncManager;
+import org.springframework.web.context.request.async.WebAsyncUtils;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
 
 @RestController
 @RequestMapping("/file-controller")
 public class FileController {
+    static final String CHECKSUM_HEADER_PREFIX = "X-Checksum-";
+
     private final FileService fileService;
+    private final TransferScheduler transferScheduler;
 
-    public FileController(FileService fileService) {
+    public FileController(FileService fileService, TransferScheduler transferScheduler) {
         this.fileService = fileService;
+        this.transferScheduler = transferScheduler;
     }
 
     /*
-    Method to search the files in the S3 bucket.
+    Method to search the files in the S3 bucket. Results are paginated, pass the returned cursor to get the next page.
      */
     @GetMapping("/search")
-    public ResponseEntity<ApiResponse<List<String>>> searchFiles(@RequestParam String userName, @RequestParam String fileName) {
-        List<String> matchedFiles = fileService.searchFiles(userName, fileName);
+    public ResponseEntity<ApiResponse<SearchPage>> searchFiles(@RequestParam String userName, @RequestParam String fileName,
+                                                               @RequestParam(defaultValue = "100") int limit,
+                                                               @RequestParam(required = false) String cursor) {
+        SearchPage matchedFiles = fileService.searchFiles(userName, fileName, limit, cursor);
         return ResponseEntity.status(HttpStatus.OK).body(ApiResponse.success("Files found", matchedFiles));
     }
 
     /*
-    Method to download the file from the S3 bucket.
+    Method to download the file from the S3 bucket. The object is streamed to the response with a fixed size buffer.
+    Supports conditional requests (If-None-Match, If-Modified-Since) answered from the object metadata, and Range
+    requests answered with ranged S3 reads, so neither case transfers bytes that the client does not need.
+    A compressed file is sent as stored with Content-Encoding when the client accepts its encoding and decoded on the
+    fly otherwise; Range requests on it are answered with the whole file.
+    With presigned URLs enabled, large files are answered with a temporary redirect to S3, which then serves the
+    conditional and Range requests itself.
+    A file sent as stored carries its stored checksum in an X-Checksum-<algorithm> header, base64 encoded, so the
+    client can check what it received.
+    Responses with a body go through the transfer scheduler: they wait for a slot of the user and are paced while
+    they stream. Redirects, 304 and 416 answers are not transfers and are never queued.
+    A whole-file response is completed when the storage answered, the request thread does not wait for it.
      */
     @GetMapping("/download")
-    public ResponseEntity<byte[]> downloadFile(@RequestParam String userName, @RequestParam String fileName) {
-        byte[] fileContent = fileService.downloadFile(userName, fileName);
-        return ResponseEntity.status(HttpStatus.OK).body(fileContent);
+    public CompletableFuture<ResponseEntity<StreamingResponseBody>> downloadFile(@RequestParam String userName, @RequestParam String fileName,
+                                                                                 @RequestHeader HttpHeaders requestHeaders) {
+        String rangeHeader = requestHeaders.getFirst(HttpHeaders.RANGE);
+        Set<String> acceptedEncodings = acceptedEncodings(requestHeaders);
+        Optional<String> redirect = fileService.downloadRedirect(userName, fileName, acceptedEncodings);
+        if (redirect.isPresent()) {
+            return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.TEMPORARY_REDIRECT)
+                    .location(URI.create(redirect.get()))
+                    .cacheControl(CacheControl.noStore())
+                    .build());
+        }
+        boolean conditional = requestHeaders.containsKey(HttpHeaders.IF_NONE_MATCH)
+                || requestHeaders.containsKey(HttpHeaders.IF_MODIFIED_SINCE);
+        if (!conditional && rangeHeader == null) {
+            return admittedDownload(userName, fileName, acceptedEncodings);
+        }
+
+        FileMetadata metadata = fileService.getFileMetadata(userName, fileName);
+        if (isNotModified(requestHeaders, metadata)) {
+            return CompletableFuture.completedFuture(
+                    ResponseEntity.status(HttpStatus.NOT_MODIFIED).headers(validatorHeaders(metadata)).build());
+        }
+        if (rangeHeader == null || metadata.getContentEncoding() != null || !isIfRangeSatisfied(requestHeaders, metadata)) {
+            return admittedDownload(userName, fileName, acceptedEncodings);
+        }
+
+        long length = metadata.getContentLength();
+        List<long[]> ranges = satisfiableRanges(rangeHeader, length);
+        if (ranges.isEmpty()) {
+            return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE)
+                    .header(HttpHeaders.CONTENT_RANGE, "bytes */" + length)
+                    .build());
+        }
+        if (ranges.size() == 1) {
+            long[] range = ranges.get(0);
+            return CompletableFuture.completedFuture(admitted(userName, permit -> {
+                FileDownload download = fileService.downloadFile(userName, fileName, range[0], range[1]);
+                HttpHeaders headers = validatorHeaders(metadata);
+                headers.setContentType(resolveContentType(metadata.getContentType()));
+                headers.setContentLength(range[1] - range[0] + 1);
+                headers.set(HttpHeaders.CONTENT_RANGE, "bytes " + range[0] + "-" + range[1] + "/" + length);
+                return ResponseEntity.status(HttpStatus.PARTIAL_CONTENT).headers(headers).body(streamOf(download, permit));
+            }));
+        }
+
+        String boundary = MimeTypeUtils.generateMultipartBoundaryString();
+        HttpHeaders headers = validatorHeaders(metadata);
+        headers.setContentType(new MediaType("multipart", "byteranges", Map.of("boundary", boundary)));
+        return CompletableFuture.completedFuture(admitted(userName, permit -> {
+            StreamingResponseBody body = response -> {
+                try (permit) {
+                    OutputStream outputStream = permit.throttle(response);
+                    writeRanges(userName, fileName, metadata, ranges, boundary, outputStream);
+                    outputStream.flush();
+                }
+            };
+            return ResponseEntity.status(HttpStatus.PARTIAL_CONTENT).headers(headers).body(body);
+        }));
+    }
+
+    /*
+    Helper method to answer with the whole file once the storage opened it. The permit is taken now and handed over to
+    the body; the download is closed as well when the async request ends before the body ran, including when it
+    only arrives after that.
+     */
+    private CompletableFuture<ResponseEntity<StreamingResponseBody>> admittedDownload(String userName, String fileName,
+                                                                                      Set<String> acceptedEncodings) {
+        TransferScheduler.Permit permit = transferScheduler.admit(userName);
+        CompletableFuture<FileDownload> download;
+        try {
+            releaseOnCompletion(permit);
+            download = fileService.downloadFileAsync(userName, fileName, acceptedEncodings);
+        } catch (RuntimeException e) {
+            permit.close();
+            throw e;
+        }
+        releaseOnCompletion(() -> download.thenAccept(this::closeQuietly));
+        return download.whenComplete((opened, e) -> {
+            if (e != null) {
+                permit.close();
+            }
+        }).thenApply(opened -> fullDownload(opened, permit));
+    }
+
+    /*
+    Helper method to write the parts of a multipart/byteranges response.
+     */
+    private void writeRanges(String userName, String fileName, FileMetadata metadata, List<long[]> ranges,
+                             String boundary, OutputStream outputStream) throws IOException {
+        long length = metadata.getContentLength();
+        for (long[] range : ranges) {
+            String partHeader = "\r\n--" + boundary + "\r\n"
+                    + HttpHeaders.CONTENT_TYPE + ": " + resolveContentType(metadata.getContentType()) + "\r\n"
+                    + HttpHeaders.CONTENT_RANGE + ": bytes " + range[0] + "-" + range[1] + "/" + length + "\r\n\r\n";
+            outputStream.write(partHeader.getBytes(StandardCharsets.US_ASCII));
+            try (FileDownload part = fileService.downloadFile(userName, fileName, range[0], range[1])) {
+                part.transferTo(outputStream);
+            }
+        }
+        outputStream.write(("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.US_ASCII));
+    }
+
+    /*
+    Method to answer HEAD requests on a file with its headers only. Served from the metadata cache, so checking that a
+    file exists or reading its size does not open the object stream.
+     */
+    @RequestMapping(value = "/download", method = RequestMethod.HEAD)
+    public ResponseEntity<Void> headFile(@RequestParam String userName, @RequestParam String fileName,
+                                         @RequestHeader HttpHeaders requestHeaders) {
+        FileMetadata metadata = fileService.getFileMetadata(userName, fileName);
+        HttpHeaders headers = validatorHeaders(metadata);
+        headers.setContentType(resolveContentType(metadata.getContentType()));
+        long contentLength = metadata.getDecodedLength();
+        if (metadata.getContentEncoding() != null && acceptedEncodings(requestHeaders).contains(metadata.getContentEncoding())) {
+            headers.set(HttpHeaders.CONTENT_ENCODING, metadata.getContentEncoding());
+            contentLength = metadata.getContentLength();
+        }
+        if (contentLength >= 0) {
+            headers.setContentLength(contentLength);
+        }
+        if (metadata.getContentEncoding() == null || headers.containsKey(HttpHeaders.CONTENT_ENCODING)) {
+            setChecksum(headers, metadata.getChecksumAlgorithm(), metadata.getChecksum());
+        }
+        return ResponseEntity.status(HttpStatus.OK).headers(headers).build();
     }
 
     /*
-    Method to upload the file to the S3 bucket.
+    Method to get the metadata of a file (size, content type, ETag, last modified) without downloading it.
+     */
+    @GetMapping("/metadata")
+    public ResponseEntity<ApiResponse<FileMetadata>> getFileMetadata(@RequestParam String userName, @RequestParam String fileName) {
+        FileMetadata metadata = fileService.getFileMetadata(userName, fileName);
+        return ResponseEntity.status(HttpStatus.OK).body(ApiResponse.success("File found", metadata));
+    }
+
+    /*
+    Method to download several files as one ZIP archive. The files are either listed with `fileNames` or selected with
+    the same substring match as the search endpoint. The archive is streamed while it is built; an error on a file
+    after the response has started truncates the archive.
+     */
+    @GetMapping("/download-zip")
+    public ResponseEntity<StreamingResponseBody> downloadFiles(@RequestParam String userName,
+                                                               @RequestParam(required = false) List<String> fileNames,
+                                                               @RequestParam(required = false) String fileName) {
+        List<String> files;
+        if (fileNames != null && !fileNames.isEmpty()) {
+            files = fileNames;
+        } else if (fileName != null) {
+            files = searchAllFiles(userName, fileName);
+        } else {
+            throw new BadRequestException("Either fileNames or fileName must be given");
+        }
+        if (files.size() > FileService.MAX_ARCHIVE_FILES) {
+            throw new BadRequestException("At most " + FileService.MAX_ARCHIVE_FILES + " files can be downloaded at once");
+        }
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.parseMediaType("application/zip"));
+        headers.setContentDisposition(ContentDisposition.attachment().filename(userName + ".zip").build());
+        return admitted(userName, permit -> {
+            StreamingResponseBody body = outputStream -> {
+                try (permit) {
+                    fileService.downloadFiles(userName, files, permit.throttle(outputStream));
+                }
+            };
+            return ResponseEntity.status(HttpStatus.OK).headers(headers).body(body);
+        });
+    }
+
+    /*
+    Method to upload the file to the S3 bucket. Multipart bodies are spooled by the multipart resolver before the
+    method runs, so admission and pacing apply to the upload to S3, not to how fast the client sends the file; use
+    /upload-stream to pace the client itself.
      */
     @PostMapping("/upload")
     public ResponseEntity<ApiResponse<String>> uploadFile(@RequestParam String userName, @RequestParam("file") MultipartFile file) {
-        fileService.uploadFile(userName, file);
+        try (TransferScheduler.Permit permit = transferScheduler.admit(userName)) {
+            fileService.uploadFile(userName, permit.throttle(file));
+        }
         return ResponseEntity.status(HttpStatus.CREATED).body(ApiResponse.success("File uploaded successfully"));
     }
+
+    /*
+    Method to upload many files in one request. Files are uploaded concurrently and reported one by one, the response
+    is 201 when every file was stored and 207 with the failure reasons otherwise. The request counts as one transfer
+    of the user; its files share the pacing of the user. As for /upload, the files are spooled before the request is
+    admitted, so the pacing does not limit the client.
+     */
+    @PostMapping("/upload-bulk")
+    public ResponseEntity<ApiResponse<List<BatchResult>>> uploadFiles(@RequestParam String userName,
+                                                                      @RequestParam("files") List<MultipartFile> files) {
+        List<BatchResult> results;
+        try (TransferScheduler.Permit permit = transferScheduler.admit(userName)) {
+            results = fileService.uploadFiles(userName, files.stream().map(permit::throttle).toList());
+        }
+        if (results.stream().allMatch(BatchResult::isSuccess)) {
+            return ResponseEntity.status(HttpStatus.CREATED).body(ApiResponse.success("Files uploaded successfully", results));
+        }
+        return ResponseEntity.status(HttpStatus.MULTI_STATUS).body(new ApiResponse<>("Some files failed to upload", "Error", results));
+    }
+
+    /*
+    Helper method to build the 200 response streaming the whole file.
+     */
+    private ResponseEntity<StreamingResponseBody> fullDownload(FileDownload download, TransferScheduler.Permit permit) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(resolveContentType(download.getContentType()));
+        if (download.getContentLength() >= 0) {
+            headers.setContentLength(download.getContentLength());
+        }
+        if (download.getETag() != null) {
+            headers.setETag(download.getETag());
+        }
+        if (download.getLastModified() != null) {
+            headers.setLastModified(download.getLastModified());
+        }
+        if (download.getContentEncoding() != null) {
+            headers.set(HttpHeaders.CONTENT_ENCODING, download.getContentEncoding());
+        }
+        headers.set(HttpHeaders.ACCEPT_RANGES, download.getContentEncoding() == null ? "bytes" : "none");
+        headers.setVary(List.of(HttpHeaders.ACCEPT_ENCODING));
+        setChecksum(headers, download.getChecksumAlgorithm(), download.getChecksum());
+        headers.setContentDisposition(ContentDisposition.attachment().filename(download.getFileName()).build());
+        return ResponseEntity.status(HttpStatus.OK).headers(headers).body(streamOf(download, permit));
+    }
+
+    /*
+    Helper method to collect every search match by following the cursor, stopping one file past the archive limit.
+     */
+    private List<String> searchAllFiles(String userName, String fileName) {
+        List<String> files = new ArrayList<>();
+        String cursor = null;
+        do {
+            SearchPage page = fileService.searchFiles(userName, fileName, FileService.MAX_SEARCH_LIMIT, cursor);
+            files.addAll(page.getFiles());
+            cursor = page.getNextCursor();
+        } while (cursor != null && files.size() <= FileService.MAX_ARCHIVE_FILES);
+        return files;
+    }
+
+    /*
+    Helper method to send the checksum of the stored bytes. A file decoded on the fly has none, the decoder drops it.
+     */
+    private void setChecksum(HttpHeaders headers, String algorithm, String checksum) {
+        if (checksum != null) {
+            headers.set(CHECKSUM_HEADER_PREFIX + algorithm, checksum);
+        }
+    }
+
+    /*
+    Helper method to pipe a download to the response, paced by its permit, and release the S3 stream and the permit
+    afterwards.
+     */
+    private StreamingResponseBody streamOf(FileDownload download, TransferScheduler.Permit permit) {
+        releaseOnCompletion(download);
+        return outputStream -> {
+            try (permit; download) {
+                download.transferTo(permit.throttle(outputStream));
+            }
+        };
+    }
+
+    /*
+    Helper method to build a response once the transfer of the user is admitted. The permit is handed over to the
+    body of the response, which releases it when the bytes are sent; it is released here if the response cannot be
+    built, and when the async request ends in case the body never runs (timeout, client gone, rejected task).
+     */
+    private <T> ResponseEntity<T> admitted(String userName, Function<TransferScheduler.Permit, ResponseEntity<T>> response) {
+        TransferScheduler.Permit permit = transferScheduler.admit(userName);
+        try {
+            releaseOnCompletion(permit);
+            return response.apply(permit);
+        } catch (RuntimeException e) {
+            permit.close();
+            throw e;
+        }
+    }
+
+    /*
+    Helper method to close a resource of a streamed response once its async request has completed, whether the body
+    ran, timed out or failed. A response completed from a future goes through two async phases, waiting for the
+    future and then streaming the body, so the resource is registered with both. Closing again after the body closed
+    it is harmless. Outside of a servlet request the body alone releases it.
+     */
+    private void releaseOnCompletion(AutoCloseable resource) {
+        if (!(RequestContextHolder.getRequestAttributes() instanceof ServletRequestAttributes attributes)) {
+            return;
+        }
+        WebAsyncManager asyncManager = WebAsyncUtils.getAsyncManager(attributes.getRequest());
+        asyncManager.registerCallableInterceptor(resource, new CallableProcessingInterceptor() {
+            @Override
+            public <V> void afterCompletion(NativeWebRequest request, Callable<V> task) throws Exception {
+                resource.close();
+            }
+        });
+        asyncManager.registerDeferredResultInterceptor(resource, new DeferredResultProcessingInterceptor() {
+            @Override
+            public <V> void afterCompletion(NativeWebRequest request, DeferredResult<V> deferredResult) throws Exception {
+                resource.close();
+            }
+        });
+    }
+
+    private void closeQuietly(FileDownload download) {
+        try {
+            download.close();
+        } catch (IOException ignored) {
+            // Nothing left to release.
+        }
+    }
+
+    /*
+    Method to upload the raw request body to the S3 bucket. The body is pushed to S3 as it arrives instead of being
+    spooled to a temporary file first, so it is meant for large files.
+    When the storage takes asynchronous uploads and the file is stored as sent, the body is read with the non-blocking
+    servlet API and handed to the storage as the client sends it: no thread waits for the client or for S3, and the
+    response is completed when the file is stored. Such uploads are admitted but not paced, pacing holds the reading
+    thread. Other uploads are read on the request thread.
+     */
+    @PutMapping("/upload-stream")
+    public CompletableFuture<ResponseEntity<ApiResponse<String>>> uploadFileStream(@RequestParam String userName, @RequestParam String fileName,
+                                                                                   HttpServletRequest request) {
+        String contentType = request.getContentType();
+        long contentLength = request.getContentLengthLong();
+        if (request.isAsyncSupported() && fileService.supportsAsyncUpload(fileName, contentType, contentLength)) {
+            return uploadAsync(userName, fileName, contentType, contentLength, request);
+        }
+        try (TransferScheduler.Permit permit = transferScheduler.admit(userName);
+             InputStream inputStream = permit.throttle(request.getInputStream())) {
+            fileService.uploadFile(userName, fileName, contentType, inputStream, contentLength);
+        } catch (IOException e) {
+            throw new FileOperationException("Failed to read upload stream");
+        }
+        return CompletableFuture.completedFuture(
+                ResponseEntity.status(HttpStatus.CREATED).body(ApiResponse.success("File uploaded successfully")));
+    }
+
+    /*
+    Helper method to upload the request body without blocking. The container only takes a read listener once the
+    request is in async mode, which Spring starts after this method returned the future: reading begins from the
+    interceptor running right after that, and demand of the storage arriving earlier waits for it.
+     */
+    private CompletableFuture<ResponseEntity<ApiResponse<String>>> uploadAsync(String userName, String fileName, String contentType,
+                                                                               long contentLength, HttpServletRequest request) {
+        TransferScheduler.Permit permit = transferScheduler.admit(userName);
+        try {
+            releaseOnCompletion(permit);
+            RequestBodyPublisher body = new RequestBodyPublisher(request.getInputStream());
+            WebAsyncUtils.getAsyncManager(request).registerDeferredResultInterceptor(body, new DeferredResultProcessingInterceptor() {
+                @Override
+                public <T> void preProcess(NativeWebRequest webRequest, DeferredResult<T> deferredResult) {
+                    body.start();
+                }
+            });
+            return fileService.uploadFileAsync(userName, fileName, contentType, body, contentLength)
+                    .whenComplete((eTag, e) -> permit.close())
+                    .thenApply(eTag -> ResponseEntity.status(HttpStatus.CREATED).body(ApiResponse.success("File uploaded successfully")));
+        } catch (IOException e) {
+            permit.close();
+            throw new FileOperationException("Failed to read upload stream");
+        } catch (RuntimeException e) {
+            permit.close();
+            throw e;
+        }
+    }
+
+    /*
+    Method to copy a file of the user to another name. The copy is made inside the storage, the bytes do not go
+    through the service. Returns the ETag of the copy.
+     */
+    @PostMapping("/copy")
+    public ResponseEntity<ApiResponse<String>> copyFile(@RequestParam String userName, @RequestParam String fileName,
+                                                        @RequestParam String targetFileName) {
+        String eTag = fileService.copyFile(userName, fileName, targetFileName);
+        return ResponseEntity.status(HttpStatus.CREATED).body(ApiResponse.success("File copied successfully", eTag));
+    }
+
+    /*
+    Method to move or rename a file of the user inside the storage. Returns the ETag of the moved file.
+     */
+    @PostMapping({"/move", "/rename"})
+    public ResponseEntity<ApiResponse<String>> moveFile(@RequestParam String userName, @RequestParam String fileName,
+                                                        @RequestParam String targetFileName) {
+        String eTag = fileService.moveFile(userName, fileName, targetFileName);
+        return ResponseEntity.status(HttpStatus.OK).body(ApiResponse.success("File moved successfully", eTag));
+    }
+
+    /*
+    Method to move many files in one request, each `fileNames` entry to the `targetFileNames` entry at the same
+    position. Files are moved concurrently and reported one by one, the response is 200 when every file was moved and
+    207 with the failure reasons otherwise.
+     */
+    @PostMapping("/move-bulk")
+    public ResponseEntity<ApiResponse<List<BatchResult>>> moveFiles(@RequestParam String userName,
+                                                                    @RequestParam List<String> fileNames,
+                                                                    @RequestParam List<String> targetFileNames) {
+        List<BatchResult> results = fileService.moveFiles(userName, fileNames, targetFileNames);
+        if (results.stream().allMatch(BatchResult::isSuccess)) {
+            return ResponseEntity.status(HttpStatus.OK).body(ApiResponse.success("Files moved successfully", results));
+        }
+        return ResponseEntity.status(HttpStatus.MULTI_STATUS).body(new ApiResponse<>("Some files failed to move", "Error", results));
+    }
+
+    /*
+    Method to get a presigned S3 URL downloading the file, valid until the returned expiry.
+     */
+    @GetMapping("/presign/download")
+    public ResponseEntity<ApiResponse<PresignedTransfer>> presignDownload(@RequestParam String userName, @RequestParam String fileName) {
+        PresignedTransfer transfer = fileService.presignDownload(userName, fileName);
+        return ResponseEntity.status(HttpStatus.OK).body(ApiResponse.success("Presigned URL created", transfer));
+    }
+
+    /*
+    Method to get presigned S3 URLs uploading a file of the given length: one PUT URL, or one URL per part for large
+    files, which are then completed with /presign/upload/complete.
+     */
+    @PostMapping("/presign/upload")
+    public ResponseEntity<ApiResponse<PresignedTransfer>> presignUpload(@RequestParam String userName, @RequestParam String fileName,
+                                                                        @RequestParam long contentLength,
+                                                                        @RequestParam(required = false) String contentType) {
+        PresignedTransfer transfer = fileService.presignUpload(userName, fileName, contentType, contentLength);
+        return ResponseEntity.status(HttpStatus.OK).body(ApiResponse.success("Presigned URLs created", transfer));
+    }
+
+    /*
+    Method to complete a presigned multipart upload once every part has been sent. Returns the ETag of the file.
+     */
+    @PostMapping("/presign/upload/complete")
+    public ResponseEntity<ApiResponse<String>> completePresignedUpload(@RequestParam String userName, @RequestParam String fileName,
+                                                                       @RequestParam String uploadId) {
+        String eTag = fileService.completePresignedUpload(userName, fileName, uploadId);
+        return ResponseEntity.status(HttpStatus.CREATED).body(ApiResponse.success("File uploaded successfully", eTag));
+    }
+
+    /*
+    Method to abort a presigned multipart upload and drop the parts already sent.
+     */
+    @DeleteMapping("/presign/upload")
+    public ResponseEntity<ApiResponse<String>> abortPresignedUpload(@RequestParam String userName, @RequestParam String fileName,
+                                                                    @RequestParam String uploadId) {
+        fileService.abortPresignedUpload(userName, fileName, uploadId);
+        return ResponseEntity.status(HttpStatus.OK).body(ApiResponse.success("Upload aborted"));
+    }
+
+    /*
+    Method to move the files stored before the sharded key layout was enabled to their shard, for one user or for all
+    of them when no user is given.
+     */
+    @PostMapping("/layout/migrate")
+    public ResponseEntity<ApiResponse<Long>> migrateLayout(@RequestParam(required = false) String userName) {
+        long migrated = fileService.migrateLayout(userName);
+        return ResponseEntity.status(HttpStatus.OK).body(ApiResponse.success("Files migrated", migrated));
+    }
+
+    /*
+    Helper method to parse a Range header into inclusive [start, end] pairs, dropping the ranges that fall outside
+    the file. An empty result means the request is not satisfiable.
+     */
+    private List<long[]> satisfiableRanges(String rangeHeader, long length) {
+        try {
+            return HttpRange.parseRanges(rangeHeader).stream()
+                    .map(range -> new long[]{range.getRangeStart(length), range.getRangeEnd(length)})
+                    .filter(range -> range[0] < length && range[0] <= range[1])
+                    .toList();
+        } catch (IllegalArgumentException e) {
+            return List.of();
+        }
+    }
+
+    /*
+    Helper method to build the validator headers (ETag, Last-Modified) of a file.
+     */
+    private HttpHeaders validatorHeaders(FileMetadata metadata) {
+        HttpHeaders headers = new HttpHeaders();
+        if (metadata.getETag() != null) {
+            headers.setETag(metadata.getETag());
+        }
+        if (metadata.getLastModified() != null) {
+            headers.setLastModified(metadata.getLastModified());
+        }
+        headers.set(HttpHeaders.ACCEPT_RANGES, metadata.getContentEncoding() == null ? "bytes" : "none");
+        headers.setVary(List.of(HttpHeaders.ACCEPT_ENCODING));
+        return headers;
+    }
+
+    /*
+    Helper method to read the content codings accepted by the client from Accept-Encoding, leaving out the ones with a
+    zero quality. A wildcard accepts gzip.
+     */
+    private Set<String> acceptedEncodings(HttpHeaders requestHeaders) {
+        Set<String> encodings = new HashSet<>();
+        for (String value : requestHeaders.getOrEmpty(HttpHeaders.ACCEPT_ENCODING)) {
+            for (String coding : value.split(",")) {
+                String[] parts = coding.split(";");
+                String name = parts[0].trim().toLowerCase(Locale.ROOT);
+                boolean refused = false;
+                for (int i = 1; i < parts.length; i++) {
+                    String parameter = parts[i].trim();
+                    if (parameter.startsWith("q=")) {
+                        try {
+                            refused = Double.parseDouble(parameter.substring(2)) <= 0;
+                        } catch (NumberFormatException e) {
+                            refused = true;
+                        }
+                    }
+                }
+                if (!name.isEmpty() && !refused) {
+                    encodings.add(name.equals("*") ? "gzip" : name);
+                }
+            }
+        }
+        return encodings;
+    }
+
+    /*
+    Helper method to evaluate If-None-Match and If-Modified-Since. If-None-Match takes precedence when both are sent.
+     */
+    private boolean isNotModified(HttpHeaders requestHeaders, FileMetadata metadata) {
+        List<String> ifNoneMatch = requestHeaders.getIfNoneMatch();
+        if (!ifNoneMatch.isEmpty()) {
+            return metadata.getETag() != null && ifNoneMatch.stream()
+                    .anyMatch(tag -> tag.equals("*") || weakETag(tag).equals(weakETag(metadata.getETag())));
+        }
+        long ifModifiedSince = requestHeaders.getIfModifiedSince();
+        if (ifModifiedSince >= 0 && metadata.getLastModified() != null) {
+            return metadata.getLastModified().getEpochSecond() <= ifModifiedSince / 1000;
+        }
+        return false;
+    }
+
+    /*
+    Helper method to evaluate If-Range. A Range request is only honoured when the validator still matches the file.
+     */
+    private boolean isIfRangeSatisfied(HttpHeaders requestHeaders, FileMetadata metadata) {
+        String ifRange = requestHeaders.getFirst(HttpHeaders.IF_RANGE);
+        if (ifRange == null) {
+            return true;
+        }
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+            return !ifRange.startsWith("W/") && ifRange.equals(metadata.getETag());
+        }
+        try {
+            long date = requestHeaders.getFirstDate(HttpHeaders.IF_RANGE);
+            return metadata.getLastModified() != null && metadata.getLastModified().getEpochSecond() == date / 1000;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    /*
+    Helper method to compare entity tags ignoring the weak prefix, as required for If-None-Match.
+     */
+    private String weakETag(String eTag) {
+        return eTag.startsWith("W/") ? eTag.substring(2) : eTag;
+    }
+
+    /*
+    Helper method to resolve the stored content type, falling back to binary content.
+     */
+    private MediaType resolveContentType(String contentType) {
+        try {
+            return contentType != null ? MediaType.parseMediaType(contentType) : MediaType.APPLICATION_OCTET_STREAM;
+        } catch (InvalidMediaTypeException e) {
+            return MediaType.APPLICATION_OCTET_STREAM;
+        }
+    }
 }
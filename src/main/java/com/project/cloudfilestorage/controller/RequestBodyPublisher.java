@@ -0,0 +1,197 @@
+package com.project.cloudfilestorage.controller;
+
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletInputStream;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/*
+Publisher of a request body read with the non-blocking servlet API. A chunk is only read when the subscriber asked
+for one and the container has data, so no thread waits for the client and a slow storage slows the client down
+instead of buffering its bytes. Reading starts with start(), which has to be called once the request is in async
+mode; demand arriving before is kept. The body can be subscribed to once.
+Reads are triggered from the container (data available) and from the subscriber (demand), one thread at a time:
+a thread arriving while another one drains only flags it to look again.
+ */
+final class RequestBodyPublisher implements Publisher<ByteBuffer>, ReadListener {
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    private final ServletInputStream input;
+    private Subscriber<? super ByteBuffer> subscriber;
+    private long demand;
+    private boolean started;
+    private boolean finished;
+    private boolean draining;
+    private boolean missed;
+
+    RequestBodyPublisher(ServletInputStream input) {
+        this.input = input;
+    }
+
+    void start() {
+        synchronized (this) {
+            if (started) {
+                return;
+            }
+            started = true;
+        }
+        input.setReadListener(this);
+    }
+
+    @Override
+    public void subscribe(Subscriber<? super ByteBuffer> target) {
+        boolean accepted;
+        synchronized (this) {
+            accepted = subscriber == null && !finished;
+            if (accepted) {
+                subscriber = target;
+            }
+        }
+        if (accepted) {
+            target.onSubscribe(new BodySubscription());
+            return;
+        }
+        target.onSubscribe(new Subscription() {
+            @Override
+            public void request(long n) {
+                // Nothing to deliver.
+            }
+
+            @Override
+            public void cancel() {
+                // Nothing to stop.
+            }
+        });
+        target.onError(new IllegalStateException("The request body can only be read once"));
+    }
+
+    @Override
+    public void onDataAvailable() {
+        drain();
+    }
+
+    @Override
+    public void onAllDataRead() {
+        drain();
+    }
+
+    @Override
+    public void onError(Throwable error) {
+        fail(error);
+    }
+
+    /*
+    Helper method to hand chunks to the subscriber until it has no demand left or the container has no data, in which
+    case it calls onDataAvailable once there is.
+     */
+    private void drain() {
+        synchronized (this) {
+            if (draining) {
+                missed = true;
+                return;
+            }
+            draining = true;
+        }
+        while (true) {
+            boolean progressed;
+            try {
+                progressed = readChunk();
+            } catch (IOException e) {
+                fail(e);
+                progressed = false;
+            }
+            synchronized (this) {
+                if (!progressed && !missed) {
+                    draining = false;
+                    return;
+                }
+                missed = false;
+            }
+        }
+    }
+
+    private boolean readChunk() throws IOException {
+        Subscriber<? super ByteBuffer> target;
+        synchronized (this) {
+            if (!started || finished || subscriber == null) {
+                return false;
+            }
+            target = subscriber;
+        }
+        if (input.isFinished()) {
+            complete(target);
+            return false;
+        }
+        synchronized (this) {
+            if (demand == 0) {
+                return false;
+            }
+        }
+        if (!input.isReady()) {
+            return false;
+        }
+        byte[] chunk = new byte[CHUNK_SIZE];
+        int read = input.read(chunk);
+        if (read == -1) {
+            complete(target);
+            return false;
+        }
+        synchronized (this) {
+            if (read == 0 || finished) {
+                return false;
+            }
+            demand--;
+        }
+        target.onNext(ByteBuffer.wrap(chunk, 0, read));
+        return true;
+    }
+
+    private void complete(Subscriber<? super ByteBuffer> target) {
+        synchronized (this) {
+            if (finished) {
+                return;
+            }
+            finished = true;
+        }
+        target.onComplete();
+    }
+
+    private void fail(Throwable error) {
+        Subscriber<? super ByteBuffer> target;
+        synchronized (this) {
+            if (finished) {
+                return;
+            }
+            finished = true;
+            target = subscriber;
+        }
+        if (target != null) {
+            target.onError(error);
+        }
+    }
+
+    private final class BodySubscription implements Subscription {
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                fail(new IllegalArgumentException("Demand must be positive"));
+                return;
+            }
+            synchronized (RequestBodyPublisher.this) {
+                demand = demand + n < 0 ? Long.MAX_VALUE : demand + n;
+            }
+            drain();
+        }
+
+        @Override
+        public void cancel() {
+            synchronized (RequestBodyPublisher.this) {
+                finished = true;
+            }
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.project.cloudfilestorage.dto;
+
+/*
+Outcome of one file of a batch operation, a bulk upload or a bulk move. A success carries the ETag of the written
+object, a failure the reason it failed.
+ */
+public class BatchResult {
+    private final String fileName;
+    private final boolean success;
+    private final String eTag;
+    private final String error;
+
+    public BatchResult(String fileName, boolean success, String eTag, String error) {
+        this.fileName = fileName;
+        this.success = success;
+        this.eTag = eTag;
+        this.error = error;
+    }
+
+    public static BatchResult success(String fileName, String eTag) {
+        return new BatchResult(fileName, true, eTag, null);
+    }
+
+    public static BatchResult failure(String fileName, String error) {
+        return new BatchResult(fileName, false, null, error);
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    public boolean isSuccess() {
+        return success;
+    }
+
+    public String getETag() {
+        return eTag;
+    }
+
+    public String getError() {
+        return error;
+    }
+}
@@ -0,0 +1,170 @@
+package com.project.cloudfilestorage.dto;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.time.Instant;
+import java.util.Map;
+
+/*
+Open handle on a stored file. Holds the object metadata and the live content stream so the bytes can be piped
+to the caller without loading the whole object in memory. Must be closed once the content has been consumed.
+A handle backed by a local file is copied with FileChannel.transferTo. The response is a plain OutputStream, so the
+bytes still pass through a buffer on the way: it saves the read calls of the stream, it is not a zero-copy transfer.
+The content is returned as stored: for a compressed file it is the encoded bytes, see getContentEncoding.
+ */
+public class FileDownload implements Closeable {
+    public static final int BUFFER_SIZE = 64 * 1024;
+
+    private final String fileName;
+    private final String contentType;
+    private final long contentLength;
+    private final String eTag;
+    private final Instant lastModified;
+    private final String contentEncoding;
+    private final Map<String, String> userMetadata;
+    private final String checksumAlgorithm;
+    private final String checksum;
+    private final InputStream content;
+    private final FileChannel channel;
+
+    public FileDownload(String fileName, String contentType, long contentLength, String eTag, Instant lastModified, InputStream content) {
+        this(new FileMetadata(fileName, contentType, contentLength, eTag, lastModified), content);
+    }
+
+    public FileDownload(String fileName, String contentType, String eTag, Instant lastModified, FileChannel channel) throws IOException {
+        this(new FileMetadata(fileName, contentType, channel.size(), eTag, lastModified), channel);
+    }
+
+    public FileDownload(FileMetadata metadata, InputStream content) {
+        this.fileName = metadata.getFileName();
+        this.contentType = metadata.getContentType();
+        this.contentLength = metadata.getContentLength();
+        this.eTag = metadata.getETag();
+        this.lastModified = metadata.getLastModified();
+        this.contentEncoding = metadata.getContentEncoding();
+        this.userMetadata = metadata.getUserMetadata();
+        this.checksumAlgorithm = metadata.getChecksumAlgorithm();
+        this.checksum = metadata.getChecksum();
+        this.content = content;
+        this.channel = null;
+    }
+
+    /*
+    The content length is taken from the channel, the one of the metadata is ignored.
+     */
+    public FileDownload(FileMetadata metadata, FileChannel channel) throws IOException {
+        this.fileName = metadata.getFileName();
+        this.contentType = metadata.getContentType();
+        this.contentLength = channel.size();
+        this.eTag = metadata.getETag();
+        this.lastModified = metadata.getLastModified();
+        this.contentEncoding = metadata.getContentEncoding();
+        this.userMetadata = metadata.getUserMetadata();
+        this.checksumAlgorithm = metadata.getChecksumAlgorithm();
+        this.checksum = metadata.getChecksum();
+        this.content = Channels.newInputStream(channel);
+        this.channel = channel;
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    /*
+    Length of the content in bytes, or -1 when unknown.
+     */
+    public long getContentLength() {
+        return contentLength;
+    }
+
+    public String getETag() {
+        return eTag;
+    }
+
+    public Instant getLastModified() {
+        return lastModified;
+    }
+
+    public String getContentEncoding() {
+        return contentEncoding;
+    }
+
+    public Map<String, String> getUserMetadata() {
+        return userMetadata;
+    }
+
+    public String getChecksumAlgorithm() {
+        return checksumAlgorithm;
+    }
+
+    public String getChecksum() {
+        return checksum;
+    }
+
+    /*
+    Whether the content is read from a local file rather than fetched from the storage.
+     */
+    public boolean isFileBacked() {
+        return channel != null;
+    }
+
+    /*
+    Length of the content once decoded, or -1 when unknown.
+     */
+    public long getDecodedLength() {
+        return FileMetadata.decodedLength(contentEncoding, contentLength, userMetadata);
+    }
+
+    /*
+    Metadata of the downloaded file, as a HEAD lookup would return it.
+     */
+    public FileMetadata toMetadata() {
+        return new FileMetadata(fileName, contentType, contentLength, eTag, lastModified, contentEncoding, userMetadata,
+                checksumAlgorithm, checksum);
+    }
+
+    public InputStream getContent() {
+        return content;
+    }
+
+    /*
+    Copy the content to the given stream through a fixed size buffer, so memory use does not depend on the object size.
+     */
+    public long transferTo(OutputStream out) throws IOException {
+        if (channel != null) {
+            WritableByteChannel target = Channels.newChannel(out);
+            long position = channel.position();
+            long start = position;
+            long size = channel.size();
+            while (position < size) {
+                position += channel.transferTo(position, size - position, target);
+            }
+            channel.position(position);
+            out.flush();
+            return position - start;
+        }
+        byte[] buffer = new byte[BUFFER_SIZE];
+        long transferred = 0;
+        int read;
+        while ((read = content.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+            transferred += read;
+        }
+        out.flush();
+        return transferred;
+    }
+
+    @Override
+    public void close() throws IOException {
+        content.close();
+    }
+}
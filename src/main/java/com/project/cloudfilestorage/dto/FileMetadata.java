@@ -0,0 +1,110 @@
+package com.project.cloudfilestorage.dto;
+
+import java.time.Instant;
+import java.util.Map;
+
+/*
+Metadata of a stored file, as returned by a HEAD lookup. No content is transferred to build it.
+The content length is the number of stored bytes. A compressed file has a content encoding, and its length before
+compression is kept in the user metadata when it was known at upload time.
+The checksum is the one stored with the object, of the stored bytes, in the base64 form S3 uses. For an object
+uploaded in parts it is the checksum of the part checksums followed by "-<parts>", and the part size is kept in the
+user metadata when the service wrote the parts.
+ */
+public class FileMetadata {
+    public static final String DECODED_LENGTH = "decoded-length";
+    public static final String CHECKSUM_PART_SIZE = "checksum-part-size";
+
+    private final String fileName;
+    private final String contentType;
+    private final long contentLength;
+    private final String eTag;
+    private final Instant lastModified;
+    private final String contentEncoding;
+    private final Map<String, String> userMetadata;
+    private final String checksumAlgorithm;
+    private final String checksum;
+
+    public FileMetadata(String fileName, String contentType, long contentLength, String eTag, Instant lastModified) {
+        this(fileName, contentType, contentLength, eTag, lastModified, null, Map.of());
+    }
+
+    public FileMetadata(String fileName, String contentType, long contentLength, String eTag, Instant lastModified,
+                        String contentEncoding, Map<String, String> userMetadata) {
+        this(fileName, contentType, contentLength, eTag, lastModified, contentEncoding, userMetadata, null, null);
+    }
+
+    public FileMetadata(String fileName, String contentType, long contentLength, String eTag, Instant lastModified,
+                        String contentEncoding, Map<String, String> userMetadata, String checksumAlgorithm,
+                        String checksum) {
+        this.fileName = fileName;
+        this.contentType = contentType;
+        this.contentLength = contentLength;
+        this.eTag = eTag;
+        this.lastModified = lastModified;
+        this.contentEncoding = contentEncoding;
+        this.userMetadata = userMetadata != null ? Map.copyOf(userMetadata) : Map.of();
+        this.checksumAlgorithm = checksum != null ? checksumAlgorithm : null;
+        this.checksum = checksum;
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public long getContentLength() {
+        return contentLength;
+    }
+
+    public String getETag() {
+        return eTag;
+    }
+
+    public Instant getLastModified() {
+        return lastModified;
+    }
+
+    /*
+    Encoding of the stored bytes (for example "gzip"), or null when they are stored as uploaded.
+     */
+    public String getContentEncoding() {
+        return contentEncoding;
+    }
+
+    public Map<String, String> getUserMetadata() {
+        return userMetadata;
+    }
+
+    /*
+    Algorithm of the stored checksum ("CRC32C" or "SHA256"), or null when the object has none.
+     */
+    public String getChecksumAlgorithm() {
+        return checksumAlgorithm;
+    }
+
+    public String getChecksum() {
+        return checksum;
+    }
+
+    /*
+    Length of the content once decoded, or -1 when unknown. Equal to the content length for files stored as uploaded.
+     */
+    public long getDecodedLength() {
+        return decodedLength(contentEncoding, contentLength, userMetadata);
+    }
+
+    static long decodedLength(String contentEncoding, long contentLength, Map<String, String> userMetadata) {
+        if (contentEncoding == null) {
+            return contentLength;
+        }
+        try {
+            return Long.parseLong(userMetadata.getOrDefault(DECODED_LENGTH, "-1"));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.project.cloudfilestorage.dto;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+/*
+Presigned S3 requests the client sends itself, so the bytes do not go through the service. A download or a single
+PUT upload has one URL. A multipart upload has one URL per part, in part order, every part but the last being
+partSize bytes, and is finished by completing its upload id. The headers must be sent as given, they are signed.
+ */
+public class PresignedTransfer {
+    private final String method;
+    private final List<String> urls;
+    private final Map<String, String> headers;
+    private final String uploadId;
+    private final long partSize;
+    private final Instant expiresAt;
+
+    public PresignedTransfer(String method, List<String> urls, Map<String, String> headers, String uploadId,
+                             long partSize, Instant expiresAt) {
+        this.method = method;
+        this.urls = urls;
+        this.headers = headers;
+        this.uploadId = uploadId;
+        this.partSize = partSize;
+        this.expiresAt = expiresAt;
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    public List<String> getUrls() {
+        return urls;
+    }
+
+    public Map<String, String> getHeaders() {
+        return headers;
+    }
+
+    /*
+    Id of the multipart upload, or null when the file is sent with a single request.
+     */
+    public String getUploadId() {
+        return uploadId;
+    }
+
+    public long getPartSize() {
+        return partSize;
+    }
+
+    public Instant getExpiresAt() {
+        return expiresAt;
+    }
+}
@@ -0,0 +1,24 @@
+package com.project.cloudfilestorage.dto;
+
+import java.util.List;
+
+/*
+One page of search results. The next cursor is null when there are no more matching files.
+ */
+public class SearchPage {
+    private final List<String> files;
+    private final String nextCursor;
+
+    public SearchPage(List<String> files, String nextCursor) {
+        this.files = files;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<String> getFiles() {
+        return files;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+}
@@ -1,6 +1,7 @@
 package com.project.cloudfilestorage.exception;
 
 import com.project.cloudfilestorage.dto.ApiResponse;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.MissingServletRequestParameterException;
@@ -24,6 +25,18 @@ public class GlobalExceptionHandler {
         return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(ApiResponse.error("Bad Request. "+e.getMessage()));
     }
 
+    /*
+    A rejected transfer is answered with 429 when the user is over its own limit and 503 when the service is busy,
+    with the seconds to wait in Retry-After.
+     */
+    @ExceptionHandler(TransferRejectedException.class)
+    public ResponseEntity<ApiResponse<String>> handleTransferRejectedException(TransferRejectedException e) {
+        long retryAfter = Math.max(1, (e.getRetryAfter().toMillis() + 999) / 1000);
+        return ResponseEntity.status(e.isUserLimit() ? HttpStatus.TOO_MANY_REQUESTS : HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, Long.toString(retryAfter))
+                .body(ApiResponse.error(e.getMessage()));
+    }
+
     @ExceptionHandler(GenericException.class)
     public ResponseEntity<ApiResponse<String>> handleGenericException(GenericException e) {
         return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(ApiResponse.error("Exception occurred."+e.getMessage()));
@@ -0,0 +1,26 @@
+package com.project.cloudfilestorage.exception;
+
+import java.time.Duration;
+
+/*
+A transfer was not admitted in time. userLimit tells whether the user was over its own limit (429) or the service
+as a whole was busy (503); retryAfter is the time the client is told to wait.
+ */
+public class TransferRejectedException extends RuntimeException {
+    private final boolean userLimit;
+    private final Duration retryAfter;
+
+    public TransferRejectedException(String message, boolean userLimit, Duration retryAfter) {
+        super(message);
+        this.userLimit = userLimit;
+        this.retryAfter = retryAfter;
+    }
+
+    public boolean isUserLimit() {
+        return userLimit;
+    }
+
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+}
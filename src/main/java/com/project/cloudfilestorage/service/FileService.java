@@ -1,13 +1,68 @@
 package com.project.cloudfilestorage.service;
 
+import com.project.cloudfilestorage.dto.FileDownload;
+import com.project.cloudfilestorage.dto.FileMetadata;
+import com.project.cloudfilestorage.dto.PresignedTransfer;
+import com.project.cloudfilestorage.dto.SearchPage;
+import com.project.cloudfilestorage.dto.BatchResult;
+import org.reactivestreams.Publisher;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
 import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
 public interface FileService {
-    List<String> searchFiles(String userName, String fileName);
+    int MAX_SEARCH_LIMIT = 1000;
+    int MAX_ARCHIVE_FILES = 10_000;
+    int MAX_BULK_UPLOAD_FILES = 1000;
+    int MAX_BULK_MOVE_FILES = 1000;
+
+    SearchPage searchFiles(String userName, String fileName, int limit, String cursor);
 
     void uploadFile(String userName, MultipartFile file);
 
-    byte[] downloadFile(String userName, String fileName) ;
+    void uploadFile(String userName, String fileName, String contentType, InputStream content, long contentLength);
+
+    boolean supportsAsyncUpload(String fileName, String contentType, long contentLength);
+
+    CompletableFuture<String> uploadFileAsync(String userName, String fileName, String contentType,
+                                              Publisher<ByteBuffer> content, long contentLength);
+
+    List<BatchResult> uploadFiles(String userName, List<MultipartFile> files);
+
+    FileDownload downloadFile(String userName, String fileName);
+
+    FileDownload downloadFile(String userName, String fileName, Set<String> acceptedEncodings);
+
+    FileDownload downloadFile(String userName, String fileName, long start, long end);
+
+    CompletableFuture<FileDownload> downloadFileAsync(String userName, String fileName, Set<String> acceptedEncodings);
+
+    FileMetadata getFileMetadata(String userName, String fileName);
+
+    void downloadFiles(String userName, List<String> fileNames, OutputStream outputStream) throws IOException;
+
+    PresignedTransfer presignDownload(String userName, String fileName);
+
+    Optional<String> downloadRedirect(String userName, String fileName, Set<String> acceptedEncodings);
+
+    PresignedTransfer presignUpload(String userName, String fileName, String contentType, long contentLength);
+
+    String completePresignedUpload(String userName, String fileName, String uploadId);
+
+    void abortPresignedUpload(String userName, String fileName, String uploadId);
+
+    String copyFile(String userName, String sourceFileName, String targetFileName);
+
+    String moveFile(String userName, String sourceFileName, String targetFileName);
+
+    List<BatchResult> moveFiles(String userName, List<String> sourceFileNames, List<String> targetFileNames);
+
+    long migrateLayout(String userName);
 }
@@ -0,0 +1,112 @@
+package com.project.cloudfilestorage.service;
+
+import com.project.cloudfilestorage.dto.FileDownload;
+import com.project.cloudfilestorage.dto.FileMetadata;
+
+import org.reactivestreams.Publisher;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
+
+/*
+Object store beneath the file service. Objects are addressed by key ("userName/fileName"), the service keeps the
+validation, the caches and the search index on top of it. The backend is selected with storage.backend: "s3" (the
+default, see s3.engine for the client used) or "local" for a directory on the local file system.
+Missing objects are reported with FilesNotFoundException.
+Backends on a non-blocking client also offer getAsync and putAsync, whose futures complete on the threads of the
+client; the others answer getAsync on the calling thread and take no asynchronous uploads.
+ */
+public interface StorageBackend {
+    /*
+    Lazily list the keys starting with the prefix in key order, beginning after startAfter when it is not null.
+     */
+    Stream<String> list(String prefix, String startAfter);
+
+    /*
+    Open the whole object. When an ETag is given the read is conditional, and null is returned if the object still
+    has that ETag.
+     */
+    FileDownload get(String key, String fileName, String ifNoneMatch);
+
+    /*
+    Open the inclusive byte range [start, end] of the object. The end is clamped to the object size.
+     */
+    FileDownload get(String key, String fileName, long start, long end);
+
+    /*
+    Open the whole object without waiting for the store: the future completes with the download once the response
+    headers arrived, and fails with the exceptions get would throw. Backends without a non-blocking client open the
+    object on the calling thread.
+     */
+    default CompletableFuture<FileDownload> getAsync(String key, String fileName) {
+        try {
+            return CompletableFuture.completedFuture(get(key, fileName, null));
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /*
+    Read the metadata of the object without its content.
+     */
+    FileMetadata head(String key, String fileName);
+
+    /*
+    Write the object and return its ETag. The content encoding (null when the bytes are stored as uploaded) and the
+    user metadata are stored with the object and returned by get and head. A length of -1 means the length of the
+    stream is unknown.
+     */
+    String put(String key, String contentType, String contentEncoding, Map<String, String> userMetadata,
+               InputStream content, long contentLength);
+
+    /*
+    Whether putAsync takes an object of the given length (-1 when unknown).
+     */
+    default boolean supportsAsyncPut(long contentLength) {
+        return false;
+    }
+
+    /*
+    Write the object from a publisher of its bytes and complete with its ETag, without a thread waiting for the
+    transfer. The publisher is subscribed to once, so a failed request is not retried. Only called when
+    supportsAsyncPut accepts the length.
+     */
+    default CompletableFuture<String> putAsync(String key, String contentType, Map<String, String> userMetadata,
+                                               Publisher<ByteBuffer> content, long contentLength) {
+        throw new UnsupportedOperationException("Asynchronous uploads are not supported by this storage backend");
+    }
+
+    /*
+    Copy the object to the target key inside the store, with its content type, encoding and user metadata, and return
+    the ETag of the copy. The bytes do not go through the service.
+     */
+    String copy(String sourceKey, String targetKey);
+
+    /*
+    Move the object to the target key and return its ETag. The source is gone once the target is written.
+     */
+    String move(String sourceKey, String targetKey);
+
+    /*
+    Delete the object. Deleting a missing object is not an error.
+     */
+    void delete(String key);
+
+    /*
+    Key the object is read from by a client holding a presigned URL. Backends storing objects under another key than
+    the one they are addressed by override this.
+     */
+    default String locate(String key) {
+        return key;
+    }
+
+    /*
+    Key a client holding a presigned URL writes the object to.
+     */
+    default String writeKey(String key) {
+        return key;
+    }
+}
@@ -0,0 +1,154 @@
+package com.project.cloudfilestorage.service.impl;
+
+import com.project.cloudfilestorage.dto.FileDownload;
+import com.project.cloudfilestorage.exception.FileOperationException;
+import com.project.cloudfilestorage.exception.FilesNotFoundException;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.core.async.AsyncRequestBody;
+import software.amazon.awssdk.core.async.AsyncResponseTransformer;
+import software.amazon.awssdk.core.async.BlockingInputStreamAsyncRequestBody;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.*;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/*
+Storage backend running the transfers on S3AsyncClient, selected with s3.engine=async or s3.engine=crt.
+The network I/O runs on the client event loops. getAsync returns the future of the client, completed once the response
+headers arrive, so whole-file downloads do not hold a request thread while S3 answers; putAsync sends a publisher of
+the request body, which the client splits into parts on its own, and completes when S3 stored it.
+The blocking get and put of the StorageBackend contract, used for ranges, conditional reads and uploads that are
+compressed or deduplicated first, wait on those futures. Listing and metadata calls stay on the synchronous client.
+ */
+@Component
+@ConditionalOnExpression("'${storage.backend:s3}' == 's3' and ('${s3.engine:sync}' == 'async' or '${s3.engine:sync}' == 'crt')")
+public class AsyncS3StorageBackend extends S3StorageBackend {
+    private final S3AsyncClient s3AsyncClient;
+    private final boolean unknownLengthSupported;
+
+    public AsyncS3StorageBackend(S3Client s3Client, MultipartUploader multipartUploader,
+                                 IntegrityChecker integrityChecker, @Value("${s3.bucket.name}") String bucketName,
+                                 S3AsyncClient s3AsyncClient, @Value("${s3.engine}") String engine) {
+        super(s3Client, multipartUploader, integrityChecker, bucketName);
+        this.s3AsyncClient = s3AsyncClient;
+        this.unknownLengthSupported = "crt".equals(engine);
+    }
+
+    @Override
+    protected FileDownload getObject(String key, String fileName, String range, String ifNoneMatch) {
+        try {
+            return fetch(key, fileName, range, ifNoneMatch).join();
+        } catch (CompletionException e) {
+            throw unwrap(e, "Failed to download file");
+        }
+    }
+
+    @Override
+    public CompletableFuture<FileDownload> getAsync(String key, String fileName) {
+        return fetch(key, fileName, null, null);
+    }
+
+    /*
+    Helper method to start a GetObject whose content is read as a stream once the headers arrived. A missing key fails
+    the future with FilesNotFoundException, a 304 completes it with null.
+     */
+    private CompletableFuture<FileDownload> fetch(String key, String fileName, String range, String ifNoneMatch) {
+        GetObjectRequest request = GetObjectRequest.builder()
+                .bucket(getBucketName())
+                .key(key)
+                .range(range)
+                .ifNoneMatch(ifNoneMatch)
+                .checksumMode(range == null ? ChecksumMode.ENABLED : null)
+                .build();
+        return s3AsyncClient.getObject(request, AsyncResponseTransformer.toBlockingInputStream())
+                .thenApply(response -> toFileDownload(fileName, response.response(), response))
+                .exceptionallyCompose(e -> {
+                    Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                    if (cause instanceof NoSuchKeyException) {
+                        return CompletableFuture.failedFuture(new FilesNotFoundException("Files not found"));
+                    }
+                    if (cause instanceof S3Exception s3Exception && s3Exception.statusCode() == 304 && ifNoneMatch != null) {
+                        return CompletableFuture.completedFuture(null);
+                    }
+                    return CompletableFuture.failedFuture(cause);
+                });
+    }
+
+    /*
+    Streams of unknown length are only supported by the CRT client, the Netty client needs the length up front so
+    those go through the synchronous multipart uploader instead. The client records no part size with the objects
+    it splits, so their checksum is stored but not checked on download.
+     */
+    @Override
+    public String put(String key, String contentType, String contentEncoding, Map<String, String> userMetadata,
+                      InputStream content, long contentLength) {
+        if (contentLength < 0 && !unknownLengthSupported) {
+            return super.put(key, contentType, contentEncoding, userMetadata, content, contentLength);
+        }
+        PutObjectRequest request = PutObjectRequest.builder()
+                .bucket(getBucketName())
+                .key(key)
+                .contentType(contentType)
+                .contentEncoding(contentEncoding)
+                .metadata(userMetadata)
+                .checksumAlgorithm(getIntegrityChecker().s3Algorithm())
+                .build();
+        BlockingInputStreamAsyncRequestBody body = AsyncRequestBody.forBlockingInputStream(contentLength >= 0 ? contentLength : null);
+        CompletableFuture<PutObjectResponse> response = s3AsyncClient.putObject(request, body);
+        try {
+            body.writeInputStream(content);
+            return response.join().eTag();
+        } catch (CompletionException e) {
+            throw unwrap(e, "Failed to upload file");
+        } catch (RuntimeException e) {
+            response.cancel(true);
+            throw new FileOperationException("Failed to upload file");
+        }
+    }
+
+    @Override
+    public boolean supportsAsyncPut(long contentLength) {
+        return contentLength >= 0 || unknownLengthSupported;
+    }
+
+    @Override
+    public CompletableFuture<String> putAsync(String key, String contentType, Map<String, String> userMetadata,
+                                              Publisher<ByteBuffer> content, long contentLength) {
+        PutObjectRequest request = PutObjectRequest.builder()
+                .bucket(getBucketName())
+                .key(key)
+                .contentType(contentType)
+                .metadata(userMetadata)
+                .checksumAlgorithm(getIntegrityChecker().s3Algorithm())
+                .build();
+        AsyncRequestBody body = new AsyncRequestBody() {
+            @Override
+            public Optional<Long> contentLength() {
+                return contentLength >= 0 ? Optional.of(contentLength) : Optional.empty();
+            }
+
+            @Override
+            public void subscribe(Subscriber<? super ByteBuffer> subscriber) {
+                content.subscribe(subscriber);
+            }
+        };
+        return s3AsyncClient.putObject(request, body).thenApply(PutObjectResponse::eTag);
+    }
+
+    private RuntimeException unwrap(CompletionException e, String message) {
+        if (e.getCause() instanceof RuntimeException cause) {
+            return cause;
+        }
+        return new FileOperationException(message);
+    }
+}
@@ -0,0 +1,91 @@
+package com.project.cloudfilestorage.service.impl;
+
+import com.project.cloudfilestorage.dto.BatchResult;
+import com.project.cloudfilestorage.exception.BadRequestException;
+import com.project.cloudfilestorage.exception.FileOperationException;
+import com.project.cloudfilestorage.exception.FilesNotFoundException;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.function.Function;
+
+/*
+Runs the items of a batch operation, such as a bulk upload or a bulk move, concurrently. At most `concurrency` items
+of one request are in flight at a time, on a pool shared by all requests. Each item is reported on its own: an error
+is turned into a failed result instead of stopping the batch.
+ */
+@Component
+public class BatchRunner implements DisposableBean {
+    private final int concurrency;
+    private final ExecutorService executor;
+
+    public BatchRunner(@Value("${batch.concurrency:${s3.upload.bulk.concurrency:4}}") int concurrency,
+                       @Value("${batch.threads:${s3.upload.bulk.threads:16}}") int threads,
+                       @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        if (concurrency < 1 || threads < 1) {
+            throw new IllegalArgumentException("Invalid batch configuration");
+        }
+        this.concurrency = concurrency;
+        this.executor = TransferExecutors.create("batch", threads, virtualThreads);
+    }
+
+    /*
+    Apply the action to every item and return one result per item in the order of the items. The action returns the
+    ETag of the written object, and each result is named after its item. Unexpected errors are reported with the given
+    message.
+     */
+    public <T> List<BatchResult> run(List<T> items, Function<T, String> name, Function<T, String> action, String failure) {
+        Semaphore inFlight = new Semaphore(concurrency);
+        List<Future<BatchResult>> futures = new ArrayList<>(items.size());
+        try {
+            for (T item : items) {
+                inFlight.acquire();
+                try {
+                    futures.add(executor.submit(() -> {
+                        try {
+                            return BatchResult.success(name.apply(item), action.apply(item));
+                        } catch (RuntimeException e) {
+                            return BatchResult.failure(name.apply(item), reason(e, failure));
+                        } finally {
+                            inFlight.release();
+                        }
+                    }));
+                } catch (RejectedExecutionException e) {
+                    inFlight.release();
+                    throw new FileOperationException(failure);
+                }
+            }
+            List<BatchResult> results = new ArrayList<>(futures.size());
+            for (Future<BatchResult> future : futures) {
+                results.add(future.get());
+            }
+            return results;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            futures.forEach(future -> future.cancel(true));
+            throw new FileOperationException(failure);
+        } catch (ExecutionException e) {
+            futures.forEach(future -> future.cancel(true));
+            throw new FileOperationException(failure);
+        }
+    }
+
+    /*
+    Helper method to report the errors raised by the service as they are, and hide the details of the others.
+     */
+    private String reason(RuntimeException e, String failure) {
+        if (e instanceof BadRequestException || e instanceof FileOperationException || e instanceof FilesNotFoundException) {
+            return e.getMessage();
+        }
+        return failure;
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+    }
+}
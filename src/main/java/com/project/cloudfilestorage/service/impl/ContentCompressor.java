@@ -0,0 +1,218 @@
+package com.project.cloudfilestorage.service.impl;
+
+import com.project.cloudfilestorage.dto.FileDownload;
+import com.project.cloudfilestorage.dto.FileMetadata;
+import com.project.cloudfilestorage.exception.FileOperationException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Locale;
+import java.util.NoSuchElementException;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterInputStream;
+import java.util.zip.GZIPInputStream;
+
+/*
+Opt-in gzip compression of uploads. Files whose content type or extension is in the configured lists, and that are
+not known to be smaller than the minimum size, are compressed while they are read, so the upload is never buffered
+as a whole. The stored object records the encoding, and downloads are decoded on the fly for clients that do not
+accept it. Formats that are already compressed (images, archives, video) are left alone by the default lists.
+ */
+@Component
+public class ContentCompressor {
+    public static final String GZIP = "gzip";
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int GZIP_MAGIC = 0x8b1f;
+
+    private final boolean enabled;
+    private final List<String> contentTypes;
+    private final List<String> extensions;
+    private final long minSize;
+    private final int level;
+
+    public ContentCompressor(@Value("${compression.enabled:false}") boolean enabled,
+                             @Value("${compression.content-types:text/*,application/json,application/xml,application/x-ndjson,application/csv,application/javascript}") List<String> contentTypes,
+                             @Value("${compression.extensions:txt,csv,tsv,json,ndjson,log,xml,html,yaml,yml,md}") List<String> extensions,
+                             @Value("${compression.min-size:1024}") long minSize,
+                             @Value("${compression.level:6}") int level) {
+        if (level < Deflater.BEST_SPEED || level > Deflater.BEST_COMPRESSION) {
+            throw new IllegalArgumentException("Compression level must be between 1 and 9");
+        }
+        this.enabled = enabled;
+        this.contentTypes = contentTypes.stream().map(type -> type.trim().toLowerCase(Locale.ROOT)).toList();
+        this.extensions = extensions.stream().map(extension -> extension.trim().toLowerCase(Locale.ROOT)).toList();
+        this.minSize = minSize;
+        this.level = level;
+    }
+
+    /*
+    Whether a file should be stored compressed. A length of -1 means it is unknown.
+     */
+    public boolean shouldCompress(String fileName, String contentType, long contentLength) {
+        if (!enabled || (contentLength >= 0 && contentLength < minSize)) {
+            return false;
+        }
+        return matchesContentType(contentType) || matchesExtension(fileName);
+    }
+
+    /*
+    Wrap a stream so that reading it returns the gzip encoding of its content. The header is written up front, the
+    deflated body as the source is read, and the trailer (CRC-32 and length) once the source is exhausted.
+     */
+    public InputStream compress(InputStream content) {
+        Deflater deflater = new Deflater(level, true);
+        CRC32 crc = new CRC32();
+        InputStream body = new DeflaterInputStream(new CheckedInputStream(content, crc), deflater, BUFFER_SIZE);
+        Enumeration<InputStream> parts = new Enumeration<>() {
+            private int next;
+
+            @Override
+            public boolean hasMoreElements() {
+                return next < 3;
+            }
+
+            @Override
+            public InputStream nextElement() {
+                return switch (next++) {
+                    case 0 -> new ByteArrayInputStream(header());
+                    case 1 -> body;
+                    case 2 -> new ByteArrayInputStream(trailer(crc.getValue(), deflater.getBytesRead()));
+                    default -> throw new NoSuchElementException();
+                };
+            }
+        };
+        return new SequenceInputStream(parts) {
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    deflater.end();
+                }
+            }
+        };
+    }
+
+    /*
+    Return a download with its content decoded, or the download itself when it is stored as uploaded. The decoded
+    length is only known when it was recorded at upload time.
+     */
+    public static FileDownload decode(FileDownload download) {
+        if (download == null || download.getContentEncoding() == null) {
+            return download;
+        }
+        if (!GZIP.equalsIgnoreCase(download.getContentEncoding())) {
+            closeQuietly(download);
+            throw new FileOperationException("Unsupported content encoding " + download.getContentEncoding());
+        }
+        try {
+            InputStream decoded = new GZIPInputStream(download.getContent(), BUFFER_SIZE);
+            return new FileDownload(new FileMetadata(download.getFileName(), download.getContentType(),
+                    download.getDecodedLength(), download.getETag(), download.getLastModified(), null,
+                    download.getUserMetadata()), decoded);
+        } catch (IOException e) {
+            closeQuietly(download);
+            throw new FileOperationException("Failed to download file");
+        }
+    }
+
+    /*
+    Same as decode, except that the gzip header is only read with the first byte of the content, so a caller that got
+    the download as soon as the response headers arrived does not wait for the body here. A content that is not gzip
+    then fails while it is read.
+     */
+    public static FileDownload decodeOnRead(FileDownload download) {
+        if (download == null || download.getContentEncoding() == null) {
+            return download;
+        }
+        if (!GZIP.equalsIgnoreCase(download.getContentEncoding())) {
+            closeQuietly(download);
+            throw new FileOperationException("Unsupported content encoding " + download.getContentEncoding());
+        }
+        InputStream decoded = new FilterInputStream(download.getContent()) {
+            private boolean opened;
+
+            private InputStream decoder() throws IOException {
+                if (!opened) {
+                    in = new GZIPInputStream(in, BUFFER_SIZE);
+                    opened = true;
+                }
+                return in;
+            }
+
+            @Override
+            public int read() throws IOException {
+                return decoder().read();
+            }
+
+            @Override
+            public int read(byte[] buffer, int offset, int length) throws IOException {
+                return decoder().read(buffer, offset, length);
+            }
+
+            @Override
+            public long skip(long n) throws IOException {
+                return decoder().skip(n);
+            }
+
+            @Override
+            public int available() throws IOException {
+                return opened ? in.available() : 0;
+            }
+
+            @Override
+            public boolean markSupported() {
+                return false;
+            }
+        };
+        return new FileDownload(new FileMetadata(download.getFileName(), download.getContentType(),
+                download.getDecodedLength(), download.getETag(), download.getLastModified(), null,
+                download.getUserMetadata()), decoded);
+    }
+
+    private boolean matchesContentType(String contentType) {
+        if (contentType == null) {
+            return false;
+        }
+        String type = contentType.split(";", 2)[0].trim().toLowerCase(Locale.ROOT);
+        return contentTypes.stream().anyMatch(pattern -> pattern.endsWith("/*")
+                ? type.startsWith(pattern.substring(0, pattern.length() - 1))
+                : type.equals(pattern));
+    }
+
+    private boolean matchesExtension(String fileName) {
+        int dot = fileName.lastIndexOf('.');
+        return dot >= 0 && extensions.contains(fileName.substring(dot + 1).toLowerCase(Locale.ROOT));
+    }
+
+    private static byte[] header() {
+        return new byte[]{(byte) GZIP_MAGIC, (byte) (GZIP_MAGIC >> 8), Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+    }
+
+    private static byte[] trailer(long crc, long length) {
+        byte[] trailer = new byte[8];
+        for (int i = 0; i < 4; i++) {
+            trailer[i] = (byte) (crc >> (8 * i));
+            trailer[i + 4] = (byte) (length >> (8 * i));
+        }
+        return trailer;
+    }
+
+    private static void closeQuietly(FileDownload download) {
+        try {
+            download.close();
+        } catch (IOException ignored) {
+            // Nothing left to release.
+        }
+    }
+}
@@ -0,0 +1,252 @@
+package com.project.cloudfilestorage.service.impl;
+
+import com.project.cloudfilestorage.dto.FileDownload;
+import com.project.cloudfilestorage.dto.FileMetadata;
+import com.project.cloudfilestorage.exception.FileOperationException;
+import com.project.cloudfilestorage.exception.FilesNotFoundException;
+import com.project.cloudfilestorage.service.StorageBackend;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+Content-addressed storage of uploads, enabled with dedup.enabled. The content is spooled to a local file while its
+SHA-256 is computed, then stored once as a blob under the blob prefix ("<prefix><sha256>"); an upload whose blob
+already exists skips the transfer. The user key holds a small pointer object naming the blob in its user metadata,
+so listing and search keep working on user-visible names. Pointers are resolved on every read whatever the setting,
+so files written while deduplication was enabled stay readable after it is turned off. Blobs are never deleted.
+Uploads are published as dedup.uploads by result (stored, deduplicated).
+ */
+@Component
+public class Deduplicator implements MeterBinder {
+    public static final String BLOB = "blob-sha256";
+    static final String BLOB_LENGTH = "blob-length";
+    static final String BLOB_ENCODING = "blob-encoding";
+
+    private static final long TRANSFER_CHUNK = 8L * 1024 * 1024;
+
+    private final StorageBackend storageBackend;
+    private final boolean enabled;
+    private final String blobPrefix;
+    private final Path spoolDirectory;
+    private final AtomicLong stored = new AtomicLong();
+    private final AtomicLong deduplicated = new AtomicLong();
+
+    public Deduplicator(StorageBackend storageBackend,
+                        @Value("${dedup.enabled:false}") boolean enabled,
+                        @Value("${dedup.blob-prefix:.blobs/}") String blobPrefix,
+                        @Value("${dedup.spool-directory:${java.io.tmpdir}/cloud-file-storage-spool}") Path spoolDirectory) {
+        if (!blobPrefix.endsWith("/") || blobPrefix.indexOf('/') != blobPrefix.length() - 1) {
+            throw new IllegalArgumentException("Blob prefix must be a single directory ending with /");
+        }
+        this.storageBackend = storageBackend;
+        this.enabled = enabled;
+        this.blobPrefix = blobPrefix;
+        this.spoolDirectory = spoolDirectory;
+        if (enabled) {
+            try {
+                Files.createDirectories(spoolDirectory);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to prepare spool directory " + spoolDirectory, e);
+            }
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /*
+    Whether the user name is, or is inside, the directory holding the blobs, which no user may read or write.
+     */
+    public boolean isReserved(String userName) {
+        return (userName + "/").startsWith(blobPrefix);
+    }
+
+    /*
+    Store the content under its hash unless that blob exists, then write the pointer of the key and return its ETag.
+    The pointer body is the blob name, so its ETag changes with the content and not with each upload.
+     */
+    public String put(String key, String contentType, String contentEncoding, Map<String, String> userMetadata,
+                      InputStream content) {
+        Path spool = null;
+        try {
+            spool = Files.createTempFile(spoolDirectory, "spool-", ".tmp");
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            long length;
+            try (FileChannel out = FileChannel.open(spool, StandardOpenOption.WRITE)) {
+                ReadableByteChannel in = Channels.newChannel(new DigestInputStream(content, digest));
+                long position = 0;
+                long transferred;
+                while ((transferred = out.transferFrom(in, position, TRANSFER_CHUNK)) > 0) {
+                    position += transferred;
+                }
+                length = position;
+            }
+            String hash = HexFormat.of().formatHex(digest.digest());
+            String blobKey = blobPrefix + hash;
+
+            if (exists(blobKey)) {
+                deduplicated.incrementAndGet();
+            } else {
+                try (InputStream blob = Files.newInputStream(spool)) {
+                    storageBackend.put(blobKey, "application/octet-stream", null, Map.of(), blob, length);
+                }
+                stored.incrementAndGet();
+            }
+
+            Map<String, String> pointerMetadata = new HashMap<>(userMetadata);
+            pointerMetadata.put(BLOB, hash);
+            pointerMetadata.put(BLOB_LENGTH, Long.toString(length));
+            if (contentEncoding != null) {
+                pointerMetadata.put(BLOB_ENCODING, contentEncoding);
+            }
+            byte[] pointer = ("sha256:" + hash).getBytes(StandardCharsets.US_ASCII);
+            return storageBackend.put(key, contentType, null, pointerMetadata, new ByteArrayInputStream(pointer), pointer.length);
+        } catch (IOException e) {
+            throw new FileOperationException("Failed to upload file");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        } finally {
+            if (spool != null) {
+                delete(spool);
+            }
+        }
+    }
+
+    /*
+    Replace a pointer by the blob it names, keeping the name, type, ETag and dates of the pointer. Anything else,
+    including a file already resolved, is returned unchanged. The blob name stays in the resolved user metadata.
+    The checksum, and the part size it was computed with, are the ones of the blob.
+     */
+    public FileDownload resolve(FileDownload download) {
+        if (download == null || !isPointer(download.getUserMetadata())) {
+            return download;
+        }
+        FileMetadata pointer = download.toMetadata();
+        closeQuietly(download);
+        return resolved(pointer, storageBackend.get(blobKey(pointer), pointer.getFileName(), null));
+    }
+
+    /*
+    Same as resolve, with the blob opened through getAsync of the backend so no thread waits for it.
+     */
+    public CompletableFuture<FileDownload> resolveAsync(FileDownload download) {
+        if (download == null || !isPointer(download.getUserMetadata())) {
+            return CompletableFuture.completedFuture(download);
+        }
+        FileMetadata pointer = download.toMetadata();
+        closeQuietly(download);
+        return storageBackend.getAsync(blobKey(pointer), pointer.getFileName()).thenApply(blob -> resolved(pointer, blob));
+    }
+
+    private FileDownload resolved(FileMetadata pointer, FileDownload blob) {
+        FileMetadata resolved = resolve(pointer);
+        Map<String, String> userMetadata = new HashMap<>(resolved.getUserMetadata());
+        userMetadata.remove(FileMetadata.CHECKSUM_PART_SIZE);
+        String partSize = blob.getUserMetadata().get(FileMetadata.CHECKSUM_PART_SIZE);
+        if (partSize != null) {
+            userMetadata.put(FileMetadata.CHECKSUM_PART_SIZE, partSize);
+        }
+        return new FileDownload(new FileMetadata(resolved.getFileName(), resolved.getContentType(),
+                resolved.getContentLength(), resolved.getETag(), resolved.getLastModified(),
+                resolved.getContentEncoding(), userMetadata, blob.getChecksumAlgorithm(), blob.getChecksum()),
+                blob.getContent());
+    }
+
+    public FileMetadata resolve(FileMetadata metadata) {
+        if (!isPointer(metadata.getUserMetadata())) {
+            return metadata;
+        }
+        Map<String, String> userMetadata = new HashMap<>(metadata.getUserMetadata());
+        long length = Long.parseLong(userMetadata.remove(BLOB_LENGTH));
+        String contentEncoding = userMetadata.remove(BLOB_ENCODING);
+        return new FileMetadata(metadata.getFileName(), metadata.getContentType(), length, metadata.getETag(),
+                metadata.getLastModified(), contentEncoding, userMetadata);
+    }
+
+    /*
+    Open a byte range of a file whose resolved metadata is known, reading the blob directly for a pointer.
+     */
+    public FileDownload get(String key, FileMetadata metadata, long start, long end) {
+        if (!metadata.getUserMetadata().containsKey(BLOB)) {
+            return storageBackend.get(key, metadata.getFileName(), start, end);
+        }
+        FileDownload range = storageBackend.get(storedKey(key, metadata), metadata.getFileName(), start, end);
+        return new FileDownload(new FileMetadata(metadata.getFileName(), metadata.getContentType(), range.getContentLength(),
+                metadata.getETag(), metadata.getLastModified(), metadata.getContentEncoding(), metadata.getUserMetadata()),
+                range.getContent());
+    }
+
+    /*
+    Key holding the bytes of a file whose resolved metadata is known: the blob for a pointer, the key itself otherwise.
+     */
+    public String storedKey(String key, FileMetadata metadata) {
+        String hash = metadata.getUserMetadata().get(BLOB);
+        return hash != null ? blobPrefix + hash : key;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("dedup.uploads", stored, AtomicLong::get).tag("result", "stored").register(registry);
+        FunctionCounter.builder("dedup.uploads", deduplicated, AtomicLong::get).tag("result", "deduplicated").register(registry);
+    }
+
+    /*
+    A pointer carries the blob length, which is removed once it is resolved.
+     */
+    private boolean isPointer(Map<String, String> userMetadata) {
+        return userMetadata.containsKey(BLOB) && userMetadata.containsKey(BLOB_LENGTH);
+    }
+
+    private String blobKey(FileMetadata pointer) {
+        return blobPrefix + pointer.getUserMetadata().get(BLOB);
+    }
+
+    private boolean exists(String key) {
+        try {
+            storageBackend.head(key, key);
+            return true;
+        } catch (FilesNotFoundException e) {
+            return false;
+        }
+    }
+
+    private void delete(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException ignored) {
+            // A leftover spool file only takes disk space until the temporary directory is cleaned.
+        }
+    }
+
+    private void closeQuietly(FileDownload download) {
+        try {
+            download.close();
+        } catch (IOException ignored) {
+            // Nothing left to release.
+        }
+    }
+}
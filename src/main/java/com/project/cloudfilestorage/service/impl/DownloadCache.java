@@ -0,0 +1,406 @@
+package com.project.cloudfilestorage.service.impl;
+
+import com.project.cloudfilestorage.dto.FileDownload;
+import com.project.cloudfilestorage.dto.FileMetadata;
+import com.project.cloudfilestorage.exception.FileOperationException;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/*
+Local disk cache in front of the object storage for whole-file downloads. Entries are evicted in least recently used
+order once the configured size is exceeded. A cached entry is revalidated with a conditional GET on its ETag once its
+revalidation interval has passed, so an unchanged file costs one request without body. Concurrent misses on the same
+key share a single fetch, and cached files are served straight from the file channel.
+A miss is streamed to the caller while it is written to disk, and is only cached once the caller read it to the end.
+Since that depends on how fast the first caller reads, a concurrent miss only waits for it up to cache.disk.fill-wait
+and then fetches the file itself, so a slow client does not hold the threads of the others.
+The cache keeps its files in an "entries" directory it marks as its own and empties on start, so pointing
+cache.disk.directory at a shared directory does not delete anything else.
+Hits, revalidations and misses are published as cache.disk.requests, the cached bytes as cache.disk.size.
+ */
+@Component
+public class DownloadCache implements MeterBinder {
+    private static final String ENTRIES = "entries";
+    private static final String MARKER = ".download-cache";
+
+    private final boolean enabled;
+    private final Path directory;
+    private final long maxSize;
+    private final long maxObjectSize;
+    private final long revalidateAfterMillis;
+    private final long fillWaitMillis;
+
+    private final LinkedHashMap<String, CacheEntry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final ConcurrentHashMap<String, CompletableFuture<CacheEntry>> fills = new ConcurrentHashMap<>();
+    private long currentSize;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong revalidations = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public DownloadCache(@Value("${cache.disk.enabled:false}") boolean enabled,
+                         @Value("${cache.disk.directory:${java.io.tmpdir}/cloud-file-storage-cache}") Path directory,
+                         @Value("${cache.disk.max-size:10737418240}") long maxSize,
+                         @Value("${cache.disk.max-object-size:1073741824}") long maxObjectSize,
+                         @Value("${cache.disk.revalidate-after:10s}") Duration revalidateAfter,
+                         @Value("${cache.disk.fill-wait:2s}") Duration fillWait) {
+        this.enabled = enabled;
+        this.directory = directory.resolve(ENTRIES);
+        this.maxSize = maxSize;
+        this.maxObjectSize = Math.min(maxObjectSize, maxSize);
+        this.revalidateAfterMillis = revalidateAfter.toMillis();
+        this.fillWaitMillis = fillWait.toMillis();
+        if (enabled) {
+            resetDirectory();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /*
+    Serve a file from the cache, fetching it through the origin on a miss or when it changed. The origin is called
+    with the cached ETag (null on a miss) and returns null when the file is not modified. Files too large to be cached,
+    or of unknown length, are returned straight from the origin.
+     */
+    public FileDownload get(String key, Function<String, FileDownload> origin) {
+        CacheEntry entry = lookup(key);
+        if (entry != null && System.currentTimeMillis() - entry.validatedAt < revalidateAfterMillis) {
+            FileDownload cached = open(entry);
+            if (cached != null) {
+                hits.incrementAndGet();
+                return cached;
+            }
+        }
+        String cachedETag = entry != null ? entry.metadata.getETag() : null;
+
+        CompletableFuture<CacheEntry> fill = new CompletableFuture<>();
+        CompletableFuture<CacheEntry> running = fills.putIfAbsent(key, fill);
+        if (running != null) {
+            CacheEntry filled;
+            try {
+                filled = await(running);
+            } catch (TimeoutException e) {
+                misses.incrementAndGet();
+                return origin.apply(null);
+            }
+            FileDownload cached = filled != null ? open(filled) : null;
+            return cached != null ? cached : origin.apply(null);
+        }
+
+        FileDownload fetched;
+        try {
+            fetched = origin.apply(cachedETag);
+        } catch (RuntimeException e) {
+            fills.remove(key, fill);
+            fill.completeExceptionally(e);
+            throw e;
+        }
+        if (fetched == null) {
+            revalidations.incrementAndGet();
+            entry.validatedAt = System.currentTimeMillis();
+            finish(key, fill, entry);
+            FileDownload cached = open(entry);
+            return cached != null ? cached : origin.apply(null);
+        }
+        misses.incrementAndGet();
+        if (fetched.getContentLength() < 0 || fetched.getContentLength() > maxObjectSize) {
+            finish(key, fill, null);
+            return fetched;
+        }
+        return tee(key, fetched, fill);
+    }
+
+    /*
+    Drop a cached file, used when the file is written so the next download fetches the new content.
+     */
+    public void invalidate(String key) {
+        CacheEntry removed;
+        synchronized (entries) {
+            removed = entries.remove(key);
+            if (removed != null) {
+                currentSize -= removed.size;
+            }
+        }
+        if (removed != null) {
+            delete(removed.path);
+        }
+    }
+
+    public long getCurrentSize() {
+        synchronized (entries) {
+            return currentSize;
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("cache.disk.requests", hits, AtomicLong::get).tag("result", "hit").register(registry);
+        FunctionCounter.builder("cache.disk.requests", revalidations, AtomicLong::get).tag("result", "revalidated").register(registry);
+        FunctionCounter.builder("cache.disk.requests", misses, AtomicLong::get).tag("result", "miss").register(registry);
+        Gauge.builder("cache.disk.size", this, DownloadCache::getCurrentSize).baseUnit("bytes").register(registry);
+    }
+
+    private CacheEntry lookup(String key) {
+        synchronized (entries) {
+            return entries.get(key);
+        }
+    }
+
+    /*
+    Helper method to hand a fetched file to the caller while it is copied to a temporary file. The copy is published
+    when the caller closes the download after reading all of it; a partial read, a failed write or a length that does
+    not match leaves the file uncached. Misses waiting on the same key are released either way.
+     */
+    private FileDownload tee(String key, FileDownload fetched, CompletableFuture<CacheEntry> fill) {
+        Path temporary = directory.resolve(UUID.randomUUID() + ".part");
+        OutputStream out;
+        try {
+            out = Files.newOutputStream(temporary);
+        } catch (IOException e) {
+            finish(key, fill, null);
+            return fetched;
+        }
+        FileMetadata metadata = fetched.toMetadata();
+        return new FileDownload(metadata, new TeeInputStream(fetched.getContent(), out) {
+            @Override
+            protected void completed(boolean copied, long length) {
+                CacheEntry entry = null;
+                if (copied && length == metadata.getContentLength()) {
+                    entry = publish(key, temporary, metadata);
+                } else {
+                    delete(temporary);
+                }
+                finish(key, fill, entry);
+            }
+        });
+    }
+
+    private void finish(String key, CompletableFuture<CacheEntry> fill, CacheEntry entry) {
+        fills.remove(key, fill);
+        fill.complete(entry);
+    }
+
+    /*
+    Helper method to move a completely written file into place, then record it and evict the oldest entries.
+     */
+    private CacheEntry publish(String key, Path temporary, FileMetadata metadata) {
+        Path path = directory.resolve(UUID.randomUUID().toString());
+        try {
+            Files.move(temporary, path, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            delete(temporary);
+            return null;
+        }
+
+        CacheEntry entry = new CacheEntry(path, metadata, metadata.getContentLength());
+        List<Path> evicted = new ArrayList<>();
+        synchronized (entries) {
+            CacheEntry previous = entries.put(key, entry);
+            if (previous != null) {
+                currentSize -= previous.size;
+                evicted.add(previous.path);
+            }
+            currentSize += entry.size;
+            Iterator<CacheEntry> eldest = entries.values().iterator();
+            while (currentSize > maxSize && eldest.hasNext()) {
+                CacheEntry candidate = eldest.next();
+                if (candidate == entry) {
+                    continue;
+                }
+                eldest.remove();
+                currentSize -= candidate.size;
+                evicted.add(candidate.path);
+            }
+        }
+        // Open handles keep reading an evicted file, the space is released once they are closed.
+        evicted.forEach(this::delete);
+        return entry;
+    }
+
+    /*
+    Helper method to open a cached file, or return null if it was evicted in the meantime.
+     */
+    private FileDownload open(CacheEntry entry) {
+        try {
+            FileChannel channel = FileChannel.open(entry.path, StandardOpenOption.READ);
+            return new FileDownload(entry.metadata, channel);
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            throw new FileOperationException("Failed to download file");
+        }
+    }
+
+    /*
+    Helper method to wait for the fill of another caller, at most cache.disk.fill-wait.
+     */
+    private CacheEntry await(CompletableFuture<CacheEntry> fill) throws TimeoutException {
+        try {
+            return fill.get(fillWaitMillis, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new FileOperationException("Failed to download file");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new FileOperationException("Failed to download file");
+        }
+    }
+
+    /*
+    Helper method to empty the entries directory left by a previous run. A directory without the marker of the cache
+    is only taken over when it is empty, so a misconfigured path is refused instead of wiped.
+     */
+    private void resetDirectory() {
+        try {
+            Files.createDirectories(directory);
+            Path marker = directory.resolve(MARKER);
+            if (!Files.exists(marker)) {
+                try (Stream<Path> files = Files.list(directory)) {
+                    if (files.findAny().isPresent()) {
+                        throw new IllegalStateException("Download cache directory " + directory
+                                + " is not empty and does not belong to the cache");
+                    }
+                }
+                Files.createFile(marker);
+            }
+            try (Stream<Path> files = Files.list(directory)) {
+                files.filter(file -> !file.equals(marker)).forEach(this::delete);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to prepare download cache directory " + directory, e);
+        }
+    }
+
+    private void delete(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException ignored) {
+            // A file that cannot be deleted now is removed with the directory on the next start.
+        }
+    }
+
+    /*
+    Stream copying what is read from the origin to the cache file. A failed write only stops the copy, the caller
+    keeps reading. Skipped bytes are not copied, so a skip also stops it.
+     */
+    private abstract static class TeeInputStream extends FilterInputStream {
+        private OutputStream copy;
+        private long length;
+        private boolean ended;
+        private boolean closed;
+
+        private TeeInputStream(InputStream content, OutputStream copy) {
+            super(content);
+            this.copy = copy;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            int read = read(single, 0, 1);
+            return read == -1 ? -1 : single[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int read = in.read(buffer, offset, length);
+            if (read == -1) {
+                ended = true;
+            } else if (read > 0 && copy != null) {
+                try {
+                    copy.write(buffer, offset, read);
+                    this.length += read;
+                } catch (IOException e) {
+                    stopCopy();
+                }
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            stopCopy();
+            return in.skip(n);
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            boolean copied = copy != null && ended;
+            if (copy != null) {
+                try {
+                    copy.close();
+                } catch (IOException e) {
+                    copied = false;
+                }
+            }
+            try {
+                in.close();
+            } finally {
+                completed(copied, length);
+            }
+        }
+
+        private void stopCopy() {
+            if (copy != null) {
+                try {
+                    copy.close();
+                } catch (IOException ignored) {
+                    // The copy is dropped anyway.
+                }
+                copy = null;
+            }
+        }
+
+        /*
+        Called once on close, with whether every byte up to the end of the stream was copied.
+         */
+        protected abstract void completed(boolean copied, long length);
+    }
+
+    private static final class CacheEntry {
+        private final Path path;
+        private final FileMetadata metadata;
+        private final long size;
+        private volatile long validatedAt = System.currentTimeMillis();
+
+        private CacheEntry(Path path, FileMetadata metadata, long size) {
+            this.path = path;
+            this.metadata = metadata;
+            this.size = size;
+        }
+    }
+}
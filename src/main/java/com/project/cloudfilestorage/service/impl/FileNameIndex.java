@@ -0,0 +1,348 @@
+package com.project.cloudfilestorage.service.impl;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/*
+In-memory index of the file names of each user, used to answer substring searches without listing S3.
+Names are kept sorted with a trigram posting list, so a search only verifies the names that contain the rarest
+trigram of the query. A user is loaded on first search, files uploaded afterwards are added on write, and the whole
+entry is dropped after the refresh interval so the next search reloads it. Cold users are evicted first when the
+number of users or of indexed names goes over its limit.
+The index is off by default: an indexed name of 50 chars costs roughly 300 bytes of heap with its postings, so the
+default bound of 200000 names is about 60 MB, and files written outside this service are only found after the
+refresh interval.
+Names are ordered like S3 lists them, by their UTF-8 bytes, so a cursor taken from one source can be passed to the
+other. This only differs from String order for names with characters outside the Basic Multilingual Plane.
+Searches are published as search.index.requests by result (hit, load, fallback), the indexed users as search.index.users.
+ */
+@Component
+public class FileNameIndex implements MeterBinder {
+    static final Comparator<String> UTF8_ORDER = FileNameIndex::compareUtf8;
+
+    private final boolean enabled;
+    private final int maxUsers;
+    private final long maxNames;
+    private final long refreshIntervalMillis;
+    private final long idleTimeoutMillis;
+    private final ConcurrentHashMap<String, CompletableFuture<UserIndex>> users = new ConcurrentHashMap<>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong loads = new AtomicLong();
+    private final AtomicLong fallbacks = new AtomicLong();
+
+    public FileNameIndex(@Value("${search.index.enabled:false}") boolean enabled,
+                         @Value("${search.index.max-users:10000}") int maxUsers,
+                         @Value("${search.index.max-names:200000}") long maxNames,
+                         @Value("${search.index.refresh-interval:5m}") Duration refreshInterval,
+                         @Value("${search.index.idle-timeout:30m}") Duration idleTimeout) {
+        this.enabled = enabled;
+        this.maxUsers = maxUsers;
+        this.maxNames = maxNames;
+        this.refreshIntervalMillis = refreshInterval.toMillis();
+        this.idleTimeoutMillis = idleTimeout.toMillis();
+    }
+
+    /*
+    Search the names of the user containing the query, in name order and strictly after `startAfter` when given.
+    The loader lists every file name of the user and is only called when the user is not indexed yet. Returns empty
+    when the index is disabled or the user has too many files to be indexed, in which case the caller lists S3.
+     */
+    public Optional<Stream<String>> search(String userName, String query, String startAfter, Supplier<Stream<String>> loader) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+        UserIndex index = load(userName, loader);
+        if (!index.complete) {
+            fallbacks.incrementAndGet();
+            return Optional.empty();
+        }
+        hits.incrementAndGet();
+        return Optional.of(index.search(query, startAfter));
+    }
+
+    /*
+    Record a file written by the service, so it is found before the next refresh. Users that are not loaded are
+    skipped, their next load lists the file anyway.
+     */
+    public void add(String userName, String fileName) {
+        CompletableFuture<UserIndex> future = users.get(userName);
+        if (future != null && future.isDone() && !future.isCompletedExceptionally()) {
+            future.join().add(fileName);
+        }
+    }
+
+    /*
+    Drop the entry of a user, so the next search reloads it from the storage.
+     */
+    public void invalidate(String userName) {
+        users.remove(userName);
+    }
+
+    public int size() {
+        return users.size();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("search.index.requests", hits, AtomicLong::get).tag("result", "hit").register(registry);
+        FunctionCounter.builder("search.index.requests", loads, AtomicLong::get).tag("result", "load").register(registry);
+        FunctionCounter.builder("search.index.requests", fallbacks, AtomicLong::get).tag("result", "fallback").register(registry);
+        Gauge.builder("search.index.users", this, FileNameIndex::size).register(registry);
+    }
+
+    /*
+    Drop the entries that are due for refresh or have not been searched for a while.
+     */
+    @Scheduled(fixedDelayString = "${search.index.sweep-interval:60000}")
+    public void sweep() {
+        long now = System.currentTimeMillis();
+        users.forEach((userName, future) -> {
+            if (future.isDone()) {
+                UserIndex index = future.isCompletedExceptionally() ? null : future.join();
+                if (index == null || now - index.loadedAt > refreshIntervalMillis || now - index.lastAccess > idleTimeoutMillis) {
+                    users.remove(userName, future);
+                }
+            }
+        });
+    }
+
+    /*
+    Helper method to get the entry of a user, loading it once when several searches miss at the same time.
+    A user with too many files gets an incomplete entry, so S3 is not listed in full again until the next refresh.
+     */
+    private UserIndex load(String userName, Supplier<Stream<String>> loader) {
+        while (true) {
+            CompletableFuture<UserIndex> future = users.get(userName);
+            if (future != null && future.isDone() && !future.isCompletedExceptionally()) {
+                UserIndex index = future.join();
+                if (System.currentTimeMillis() - index.loadedAt <= refreshIntervalMillis) {
+                    index.lastAccess = System.currentTimeMillis();
+                    return index;
+                }
+                users.remove(userName, future);
+                continue;
+            }
+            if (future == null) {
+                CompletableFuture<UserIndex> created = new CompletableFuture<>();
+                future = users.putIfAbsent(userName, created);
+                if (future == null) {
+                    loads.incrementAndGet();
+                    try (Stream<String> names = loader.get()) {
+                        List<String> list = names.limit(maxNames + 1).toList();
+                        created.complete(list.size() > maxNames ? new UserIndex(List.of(), false) : new UserIndex(list, true));
+                    } catch (RuntimeException e) {
+                        users.remove(userName, created);
+                        created.completeExceptionally(e);
+                        throw e;
+                    }
+                    evictColdUsers(userName);
+                    return created.join();
+                }
+            }
+            try {
+                return future.join();
+            } catch (CompletionException e) {
+                // The loading search failed, retry the load from this caller.
+                users.remove(userName, future);
+            }
+        }
+    }
+
+    /*
+    Helper method to compare names by their UTF-8 bytes, which is code point order. UTF-16 order only differs from it
+    when one of the first differing chars is a surrogate: surrogates are moved above the rest of the BMP.
+     */
+    static int compareUtf8(String first, String second) {
+        int length = Math.min(first.length(), second.length());
+        for (int i = 0; i < length; i++) {
+            char a = first.charAt(i);
+            char b = second.charAt(i);
+            if (a != b) {
+                return Integer.compare(codePointOrder(a), codePointOrder(b));
+            }
+        }
+        return first.length() - second.length();
+    }
+
+    private static int codePointOrder(char c) {
+        if (c < Character.MIN_SURROGATE) {
+            return c;
+        }
+        return Character.isSurrogate(c) ? c + 0x2000 : c - 0x800;
+    }
+
+    /*
+    Helper method to evict the least recently searched users while the limits are exceeded.
+     */
+    private void evictColdUsers(String keep) {
+        while (true) {
+            long indexedNames = 0;
+            String coldest = null;
+            long coldestAccess = Long.MAX_VALUE;
+            for (Map.Entry<String, CompletableFuture<UserIndex>> entry : users.entrySet()) {
+                CompletableFuture<UserIndex> future = entry.getValue();
+                if (!future.isDone() || future.isCompletedExceptionally()) {
+                    continue;
+                }
+                UserIndex index = future.join();
+                indexedNames += index.size();
+                if (!entry.getKey().equals(keep) && index.lastAccess < coldestAccess) {
+                    coldest = entry.getKey();
+                    coldestAccess = index.lastAccess;
+                }
+            }
+            if (coldest == null || (users.size() <= maxUsers && indexedNames <= maxNames)) {
+                return;
+            }
+            users.remove(coldest);
+        }
+    }
+
+    /*
+    Index of one user: an immutable sorted snapshot of the names with their trigram postings, plus the names added
+    since the snapshot was taken.
+     */
+    static final class UserIndex {
+        private final boolean complete;
+        private final String[] names;
+        private final Map<Long, int[]> postings;
+        private final NavigableSet<String> additions = new ConcurrentSkipListSet<>(UTF8_ORDER);
+        private final long loadedAt = System.currentTimeMillis();
+        private volatile long lastAccess = loadedAt;
+
+        UserIndex(Collection<String> fileNames, boolean complete) {
+            this.complete = complete;
+            this.names = fileNames.stream().distinct().sorted(UTF8_ORDER).toArray(String[]::new);
+            Map<Long, int[]> building = new HashMap<>();
+            Map<Long, Integer> counts = new HashMap<>();
+            for (int i = 0; i < names.length; i++) {
+                for (long trigram : trigrams(names[i])) {
+                    int[] posting = building.get(trigram);
+                    int count = counts.getOrDefault(trigram, 0);
+                    if (posting == null) {
+                        posting = new int[4];
+                    } else if (count == posting.length) {
+                        posting = Arrays.copyOf(posting, count * 2);
+                    }
+                    posting[count] = i;
+                    building.put(trigram, posting);
+                    counts.put(trigram, count + 1);
+                }
+            }
+            building.replaceAll((trigram, posting) -> Arrays.copyOf(posting, counts.get(trigram)));
+            this.postings = building;
+        }
+
+        void add(String fileName) {
+            if (complete && Arrays.binarySearch(names, fileName, UTF8_ORDER) < 0) {
+                additions.add(fileName);
+            }
+        }
+
+        int size() {
+            return names.length + additions.size();
+        }
+
+        Stream<String> search(String query, String startAfter) {
+            int from = startAfter == null ? 0 : upperBound(startAfter);
+            Iterator<String> snapshot = snapshotMatches(query, from);
+            NavigableSet<String> added = startAfter == null ? additions : additions.tailSet(startAfter, false);
+            Iterator<String> recent = added.stream().filter(name -> name.contains(query)).iterator();
+            Iterator<String> merged = new MergingIterator(snapshot, recent);
+            return StreamSupport.stream(Spliterators.spliteratorUnknownSize(merged, Spliterator.ORDERED | Spliterator.SORTED), false);
+        }
+
+        private Iterator<String> snapshotMatches(String query, int from) {
+            Set<Long> queryTrigrams = trigrams(query);
+            if (queryTrigrams.isEmpty()) {
+                return Arrays.stream(names, from, names.length).filter(name -> name.contains(query)).iterator();
+            }
+            int[] candidates = null;
+            for (long trigram : queryTrigrams) {
+                int[] posting = postings.get(trigram);
+                if (posting == null) {
+                    return Collections.emptyIterator();
+                }
+                if (candidates == null || posting.length < candidates.length) {
+                    candidates = posting;
+                }
+            }
+            int start = Arrays.binarySearch(candidates, from);
+            start = start >= 0 ? start : -start - 1;
+            return Arrays.stream(candidates, start, candidates.length)
+                    .mapToObj(i -> names[i])
+                    .filter(name -> name.contains(query))
+                    .iterator();
+        }
+
+        private int upperBound(String name) {
+            int position = Arrays.binarySearch(names, name, UTF8_ORDER);
+            return position >= 0 ? position + 1 : -position - 1;
+        }
+
+        private static Set<Long> trigrams(String value) {
+            Set<Long> trigrams = new HashSet<>();
+            for (int i = 0; i + 3 <= value.length(); i++) {
+                trigrams.add(((long) value.charAt(i) << 32) | ((long) value.charAt(i + 1) << 16) | value.charAt(i + 2));
+            }
+            return trigrams;
+        }
+    }
+
+    /*
+    Merge two sorted iterators into one sorted iterator without duplicates.
+     */
+    private static final class MergingIterator implements Iterator<String> {
+        private final Iterator<String> first;
+        private final Iterator<String> second;
+        private String nextFirst;
+        private String nextSecond;
+
+        MergingIterator(Iterator<String> first, Iterator<String> second) {
+            this.first = first;
+            this.second = second;
+            this.nextFirst = first.hasNext() ? first.next() : null;
+            this.nextSecond = second.hasNext() ? second.next() : null;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return nextFirst != null || nextSecond != null;
+        }
+
+        @Override
+        public String next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            String result;
+            int comparison = nextFirst == null ? 1 : nextSecond == null ? -1 : compareUtf8(nextFirst, nextSecond);
+            if (comparison <= 0) {
+                result = nextFirst;
+                nextFirst = first.hasNext() ? first.next() : null;
+            } else {
+                result = nextSecond;
+            }
+            if (comparison >= 0) {
+                nextSecond = second.hasNext() ? second.next() : null;
+            }
+            return result;
+        }
+    }
+}
@@ -1,109 +1,616 @@
 package com.project.cloudfilestorage.service.impl;
 
+import com.project.cloudfilestorage.dto.FileDownload;
+import com.project.cloudfilestorage.dto.FileMetadata;
+import com.project.cloudfilestorage.dto.PresignedTransfer;
+import com.project.cloudfilestorage.dto.SearchPage;
+import com.project.cloudfilestorage.dto.BatchResult;
 import com.project.cloudfilestorage.exception.BadRequestException;
 import com.project.cloudfilestorage.exception.FileOperationException;
 import com.project.cloudfilestorage.exception.FilesNotFoundException;
 import com.project.cloudfilestorage.service.FileService;
-import org.springframework.beans.factory.annotation.Value;
+import com.project.cloudfilestorage.service.StorageBackend;
+import io.micrometer.observation.annotation.Observed;
+import org.reactivestreams.Publisher;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
-import software.amazon.awssdk.core.ResponseInputStream;
-import software.amazon.awssdk.core.sync.RequestBody;
-import software.amazon.awssdk.services.s3.S3Client;
-import software.amazon.awssdk.services.s3.model.*;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 @Service
 public class FileServiceImpl implements FileService {
-    @Value("${s3.bucket.name}")
-    private String bucketName;
-
-    private final S3Client s3Client;
-    public FileServiceImpl(S3Client s3Client) {
-        this.s3Client = s3Client;
+    private final StorageBackend storageBackend;
+    private final FileNameIndex fileNameIndex;
+    private final DownloadCache downloadCache;
+    private final ZipArchiveWriter zipArchiveWriter;
+    private final BatchRunner batchRunner;
+    private final MetadataCache metadataCache;
+    private final ContentCompressor contentCompressor;
+    private final Deduplicator deduplicator;
+    private final UrlPresigner urlPresigner;
+    private final ParallelDownloader parallelDownloader;
+    private final IntegrityChecker integrityChecker;
+    public FileServiceImpl(StorageBackend storageBackend, FileNameIndex fileNameIndex, DownloadCache downloadCache,
+                           ZipArchiveWriter zipArchiveWriter, BatchRunner batchRunner, MetadataCache metadataCache,
+                           ContentCompressor contentCompressor, Deduplicator deduplicator, UrlPresigner urlPresigner,
+                           ParallelDownloader parallelDownloader, IntegrityChecker integrityChecker) {
+        this.storageBackend = storageBackend;
+        this.fileNameIndex = fileNameIndex;
+        this.downloadCache = downloadCache;
+        this.zipArchiveWriter = zipArchiveWriter;
+        this.batchRunner = batchRunner;
+        this.metadataCache = metadataCache;
+        this.contentCompressor = contentCompressor;
+        this.deduplicator = deduplicator;
+        this.urlPresigner = urlPresigner;
+        this.parallelDownloader = parallelDownloader;
+        this.integrityChecker = integrityChecker;
     }
 
     /*
     Search file in S3 bucket. Validate username and file name. If Found then give success response. If not then throw exception.
+    Searches are answered from the in-memory file name index when the user is indexed. Otherwise the listing walks the
+    user prefix page by page and stops as soon as one match past the requested page is found.
      */
     @Override
-    public List<String> searchFiles(String userName, String fileName) {
-        if (isInValid(userName) || isInValid(fileName)) {
+    @Observed(name = "file.service", lowCardinalityKeyValues = {"operation", "search"})
+    public SearchPage searchFiles(String userName, String fileName, int limit, String cursor) {
+        if (isInValidUser(userName) || isInValid(fileName)) {
             throw new BadRequestException("Invalid userName or fileName");
         }
-        ListObjectsV2Request request = ListObjectsV2Request.builder()
-                .bucket(bucketName)
-                .prefix(userName + "/")
-                .build();
+        if (limit < 1 || limit > MAX_SEARCH_LIMIT) {
+            throw new BadRequestException("Limit must be between 1 and " + MAX_SEARCH_LIMIT);
+        }
+        String startAfter = cursor != null ? decodeCursor(cursor) : null;
 
-        ListObjectsV2Response response= s3Client.listObjectsV2(request);
-        List<String> files = response.contents().stream()
-                .map(S3Object::key)
-                .filter(key -> key.contains(fileName))
-                .map(key-> key.replace(userName + "/", ""))
-                .collect(Collectors.toList());
+        Stream<String> matches = fileNameIndex.search(userName, fileName, startAfter, () -> listFileNames(userName, null))
+                .orElseGet(() -> listFileNames(userName, startAfter).filter(name -> name.contains(fileName)));
+        List<String> files;
+        try (matches) {
+            files = matches.limit(limit + 1L).collect(Collectors.toList());
+        }
 
-        if (files.isEmpty()){
+        if (files.isEmpty() && cursor == null){
             throw new FilesNotFoundException("Files not found");
         }
-        return files;
+        if (files.size() <= limit) {
+            return new SearchPage(files, null);
+        }
+        files.remove(limit);
+        return new SearchPage(files, encodeCursor(files.get(limit - 1)));
+    }
+
+    /*
+    Helper method to lazily list the names of the user files, in key order. The backend is only read while the stream
+    is being consumed.
+     */
+    private Stream<String> listFileNames(String userName, String startAfter) {
+        String prefix = userName + "/";
+        return storageBackend.list(prefix, startAfter != null ? prefix + startAfter : null)
+                .map(key -> key.substring(prefix.length()));
+    }
+
+    /*
+    Helper methods to turn the last returned file name into an opaque cursor and back.
+     */
+    private String encodeCursor(String lastFileName) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(lastFileName.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private String decodeCursor(String cursor) {
+        try {
+            return new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException("Invalid cursor");
+        }
     }
 
     /*
-    Helper method to validate username and file name.
+    Helper method to validate username and file name. "." and ".." segments are rejected, they would let a name reach
+    outside the directory of its user on a file system backed store.
      */
     private boolean isInValid(String data) {
-        return data == null || data.trim().isEmpty();
+        return data == null || data.trim().isEmpty()
+                || Arrays.stream(data.split("/", -1)).anyMatch(segment -> segment.equals(".") || segment.equals(".."));
+    }
+
+    /*
+    Helper method to validate username. The directories holding the deduplicated blobs and the key shards are not users.
+     */
+    private boolean isInValidUser(String userName) {
+        return isInValid(userName) || deduplicator.isReserved(userName) || ShardedStorageBackend.isReserved(userName);
     }
 
     /*
     Upload file in S3 bucket. Validate username and file before upload. If upload done then give success response. If not throw exception.
      */
     @Override
+    @Observed(name = "file.service", lowCardinalityKeyValues = {"operation", "upload"})
     public void uploadFile(String userName, MultipartFile file) {
-        if (isInValid(userName) || file == null || file.isEmpty()) {
+        if (isInValidUser(userName) || file == null || file.isEmpty()) {
             throw new BadRequestException("Invalid user name or file");
         }
-        try{
-            String key = userName + "/" + file.getOriginalFilename();
+        String fileName = file.getOriginalFilename();
+        String contentType = file.getContentType();
+        try (InputStream inputStream = file.getInputStream()) {
+            uploadFile(userName, fileName, contentType, inputStream, file.getSize());
+        } catch (IOException e) {
+            throw new FileOperationException("Failed to upload file");
+        }
+    }
 
-            PutObjectRequest putObjectRequest = PutObjectRequest.builder()
-                    .bucket(bucketName)
-                    .key(key)
-                    .contentType(file.getContentType())
-                    .build();
+    /*
+    Upload a stream to the storage backend as it is read, without spooling it locally first.
+     */
+    @Override
+    @Observed(name = "file.service", lowCardinalityKeyValues = {"operation", "upload-stream"})
+    public void uploadFile(String userName, String fileName, String contentType, InputStream content, long contentLength) {
+        if (isInValidUser(userName) || isInValid(fileName) || content == null) {
+            throw new BadRequestException("Invalid user name or file");
+        }
+        storeFile(userName, fileName, contentType, content, contentLength);
+    }
 
-            s3Client.putObject(putObjectRequest, RequestBody.fromInputStream(file.getInputStream(), file.getSize()));
+    /*
+    Whether a file can be uploaded with uploadFileAsync: the backend has to take the length without blocking, and the
+    bytes have to be stored as sent, since compression and deduplication read them as a stream.
+     */
+    @Override
+    public boolean supportsAsyncUpload(String fileName, String contentType, long contentLength) {
+        return storageBackend.supportsAsyncPut(contentLength) && !deduplicator.isEnabled()
+                && !contentCompressor.shouldCompress(fileName, contentType, contentLength);
+    }
 
-        } catch (IOException e) {
-            throw new FileOperationException("Failed to upload file");
+    /*
+    Upload a publisher of the file bytes without a thread waiting for the transfer. The returned future completes
+    with the ETag once the file is stored, after the search index and the caches were updated.
+     */
+    @Override
+    @Observed(name = "file.service", lowCardinalityKeyValues = {"operation", "upload-async"})
+    public CompletableFuture<String> uploadFileAsync(String userName, String fileName, String contentType,
+                                                     Publisher<ByteBuffer> content, long contentLength) {
+        if (isInValidUser(userName) || isInValid(fileName) || content == null) {
+            throw new BadRequestException("Invalid user name or file");
+        }
+        if (!supportsAsyncUpload(fileName, contentType, contentLength)) {
+            throw new BadRequestException("The file cannot be uploaded asynchronously");
+        }
+        String key = userName + "/" + fileName;
+        return storageBackend.putAsync(key, contentType, Map.of(), content, contentLength).thenApply(eTag -> {
+            fileNameIndex.add(userName, fileName);
+            downloadCache.invalidate(key);
+            metadataCache.invalidate(key);
+            return eTag;
+        });
+    }
+
+    /*
+    Upload many files of one request concurrently. Every file gets its own result, so a failed file does not fail the
+    others. Results are returned in the order of the files.
+     */
+    @Override
+    @Observed(name = "file.service", lowCardinalityKeyValues = {"operation", "upload-bulk"})
+    public List<BatchResult> uploadFiles(String userName, List<MultipartFile> files) {
+        if (isInValidUser(userName) || files == null || files.isEmpty()) {
+            throw new BadRequestException("Invalid user name or files");
         }
+        if (files.size() > MAX_BULK_UPLOAD_FILES) {
+            throw new BadRequestException("At most " + MAX_BULK_UPLOAD_FILES + " files can be uploaded at once");
+        }
+        return batchRunner.run(files, MultipartFile::getOriginalFilename, file -> {
+            if (file.isEmpty() || isInValid(file.getOriginalFilename())) {
+                throw new BadRequestException("Invalid file");
+            }
+            try (InputStream inputStream = file.getInputStream()) {
+                return storeFile(userName, file.getOriginalFilename(), file.getContentType(), inputStream, file.getSize());
+            } catch (IOException e) {
+                throw new FileOperationException("Failed to upload file");
+            }
+        }, "Failed to upload file");
+    }
+
+    /*
+    Helper method to write a validated file and keep the search index and the download cache in line with it.
+    Compressible files are gzip encoded while they are sent; their length is unknown until the end, and the original
+    length is recorded with the object when the client gave it. With deduplication the stored bytes are written once
+    per content and the key only points to them.
+     */
+    private String storeFile(String userName, String fileName, String contentType, InputStream content, long contentLength) {
+        String key = userName + "/" + fileName;
+
+        String eTag;
+        if (contentCompressor.shouldCompress(fileName, contentType, contentLength)) {
+            Map<String, String> userMetadata = contentLength >= 0
+                    ? Map.of(FileMetadata.DECODED_LENGTH, Long.toString(contentLength))
+                    : Map.of();
+            try (InputStream compressed = contentCompressor.compress(content)) {
+                eTag = putObject(key, contentType, ContentCompressor.GZIP, userMetadata, compressed, -1);
+            } catch (IOException e) {
+                throw new FileOperationException("Failed to upload file");
+            }
+        } else {
+            eTag = putObject(key, contentType, null, Map.of(), content, contentLength);
+        }
+        fileNameIndex.add(userName, fileName);
+        downloadCache.invalidate(key);
+        metadataCache.invalidate(key);
+        return eTag;
+    }
+
+    /*
+    Helper method to write an object, through the deduplicator when it is enabled.
+     */
+    private String putObject(String key, String contentType, String contentEncoding, Map<String, String> userMetadata,
+                             InputStream content, long contentLength) {
+        if (deduplicator.isEnabled()) {
+            return deduplicator.put(key, contentType, contentEncoding, userMetadata, content);
+        }
+        return storageBackend.put(key, contentType, contentEncoding, userMetadata, content, contentLength);
+    }
+
+    /*
+    Download file from S3 bucket, decoded when it is stored compressed.
+     */
+    @Override
+    @Observed(name = "file.service", lowCardinalityKeyValues = {"operation", "download"})
+    public FileDownload downloadFile(String userName, String fileName) {
+        return downloadFile(userName, fileName, Set.of());
     }
 
     /*
-    Download file from S3 bucket. Validate username and file name before download. If download done then give success response. If not throw exception.
+    Download file from S3 bucket. Validate username and file name before download. The object is not read here, the
+    returned handle streams it so the caller can pipe the bytes out without holding the whole file in memory.
+    When the disk cache is enabled the file is served from it, the backend is only asked whether the cached copy changed.
+    A compressed file is returned as stored when its encoding is accepted by the caller, and decoded on the fly otherwise.
+    Large files are read as concurrent byte ranges when the parallel downloader is enabled.
      */
     @Override
-    public byte[] downloadFile(String userName, String fileName) {
-        if (isInValid(userName) || isInValid(fileName)) {
+    @Observed(name = "file.service", lowCardinalityKeyValues = {"operation", "download"})
+    public FileDownload downloadFile(String userName, String fileName, Set<String> acceptedEncodings) {
+        if (isInValidUser(userName) || isInValid(fileName)) {
             throw new BadRequestException("Invalid userName or fileName");
         }
         String key = userName + "/" + fileName;
+        FileDownload download;
+        if (downloadCache.isEnabled()) {
+            download = downloadCache.get(key, eTag -> fetchObject(key, () -> openObject(key, fileName, eTag), true));
+        } else {
+            download = fetchObject(key, () -> openObject(key, fileName, null), true);
+        }
+        if (download.getContentEncoding() != null && !acceptedEncodings.contains(download.getContentEncoding())) {
+            return ContentCompressor.decode(download);
+        }
+        return download;
+    }
 
-        GetObjectRequest request = GetObjectRequest.builder()
-                .bucket(bucketName)
-                .key(key)
-                .build();
-        try{
-            ResponseInputStream<GetObjectResponse> response = s3Client.getObject(request);
-            return response.readAllBytes();
-        }catch (NoSuchKeyException e) {
+    /*
+    Download a whole file without a thread waiting for the backend: the future completes once the response headers
+    of the object, and of its blob when it is deduplicated, arrived. Served as downloadFile does when the disk cache
+    or parallel downloads are enabled, since both read the object through blocking calls.
+     */
+    @Override
+    @Observed(name = "file.service", lowCardinalityKeyValues = {"operation", "download-async"})
+    public CompletableFuture<FileDownload> downloadFileAsync(String userName, String fileName, Set<String> acceptedEncodings) {
+        if (isInValidUser(userName) || isInValid(fileName)) {
+            throw new BadRequestException("Invalid userName or fileName");
+        }
+        if (downloadCache.isEnabled() || parallelDownloader.isEnabled()) {
+            return CompletableFuture.completedFuture(downloadFile(userName, fileName, acceptedEncodings));
+        }
+        String key = userName + "/" + fileName;
+        if (metadataCache.isKnownMissing(key)) {
             throw new FilesNotFoundException("Files not found");
-        }catch (IOException e) {
-            throw new FileOperationException("Failed to download file");
         }
+        return storageBackend.getAsync(key, fileName)
+                .thenCompose(deduplicator::resolveAsync)
+                .whenComplete((download, e) -> {
+                    Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                    if (cause instanceof FilesNotFoundException) {
+                        metadataCache.putMissing(key);
+                    } else if (download != null) {
+                        metadataCache.put(key, download.toMetadata());
+                    }
+                })
+                .thenApply(download -> {
+                    FileDownload verified = integrityChecker.verify(download);
+                    if (verified.getContentEncoding() != null && !acceptedEncodings.contains(verified.getContentEncoding())) {
+                        return ContentCompressor.decodeOnRead(verified);
+                    }
+                    return verified;
+                });
+    }
+
+    /*
+    Helper method to open a whole file, resolved to its blob when it is deduplicated. A conditional read (revalidation
+    of the disk cache) is a single request; otherwise a file large enough is split into parallel ranges, which needs
+    its size up front and so a metadata lookup when parallel downloads are enabled. Either way the stored bytes are
+    checked against the stored checksum while they are read, before they reach the disk cache or the decoder.
+     */
+    private FileDownload openObject(String key, String fileName, String ifNoneMatch) {
+        if (ifNoneMatch == null && parallelDownloader.isEnabled()) {
+            FileMetadata metadata = lookupMetadata(key, fileName);
+            if (parallelDownloader.isParallel(metadata.getContentLength())) {
+                return integrityChecker.verify(parallelDownloader.open(metadata, (start, end) -> {
+                    FileDownload range = deduplicator.get(key, metadata, start, end);
+                    // The cached metadata is stale, the download fails and the next one reads the new version.
+                    if (!Objects.equals(range.getETag(), metadata.getETag())) {
+                        metadataCache.invalidate(key);
+                    }
+                    return range;
+                }));
+            }
+        }
+        return integrityChecker.verify(deduplicator.resolve(storageBackend.get(key, fileName, ifNoneMatch)));
+    }
+
+    /*
+    Download the inclusive byte range [start, end] of a file from S3 bucket. Only the requested bytes are fetched.
+    The range addresses the stored bytes, so for a compressed file it is a range of the encoded content. The metadata,
+    usually cached by the lookup that preceded the range request, tells whether the file points to a deduplicated blob.
+     */
+    @Override
+    @Observed(name = "file.service", lowCardinalityKeyValues = {"operation", "download-range"})
+    public FileDownload downloadFile(String userName, String fileName, long start, long end) {
+        if (isInValidUser(userName) || isInValid(fileName)) {
+            throw new BadRequestException("Invalid userName or fileName");
+        }
+        if (start < 0 || end < start) {
+            throw new BadRequestException("Invalid byte range");
+        }
+        String key = userName + "/" + fileName;
+        return fetchObject(key, () -> deduplicator.get(key, lookupMetadata(key, fileName), start, end), false);
+    }
+
+    /*
+    Fetch the metadata of a file without transferring its content. Answered from the metadata cache when possible,
+    with a HEAD request otherwise.
+     */
+    @Override
+    @Observed(name = "file.service", lowCardinalityKeyValues = {"operation", "metadata"})
+    public FileMetadata getFileMetadata(String userName, String fileName) {
+        if (isInValidUser(userName) || isInValid(fileName)) {
+            throw new BadRequestException("Invalid userName or fileName");
+        }
+        return lookupMetadata(userName + "/" + fileName, fileName);
+    }
+
+    /*
+    Helper method to read the metadata of a file through the metadata cache, resolved to the blob it points to.
+     */
+    private FileMetadata lookupMetadata(String key, String fileName) {
+        return metadataCache.get(key, () -> deduplicator.resolve(storageBackend.head(key, fileName)));
+    }
+
+    /*
+    Download several files of a user as one ZIP archive written to the given stream. Files are fetched in parallel
+    ahead of the entry being written, and each entry is streamed, so the archive is never held in memory or on disk.
+    Duplicate names are written once.
+     */
+    @Override
+    @Observed(name = "file.service", lowCardinalityKeyValues = {"operation", "download-zip"})
+    public void downloadFiles(String userName, List<String> fileNames, OutputStream outputStream) throws IOException {
+        if (isInValidUser(userName) || fileNames == null || fileNames.isEmpty() || fileNames.stream().anyMatch(this::isInValid)) {
+            throw new BadRequestException("Invalid userName or fileNames");
+        }
+        List<String> distinctNames = fileNames.stream().distinct().toList();
+        if (distinctNames.size() > MAX_ARCHIVE_FILES) {
+            throw new BadRequestException("At most " + MAX_ARCHIVE_FILES + " files can be downloaded at once");
+        }
+        zipArchiveWriter.write(distinctNames, fileName -> downloadFile(userName, fileName), outputStream);
+    }
+
+    /*
+    Presign a GET of a file so the client downloads it from S3 directly. A deduplicated file is read from its blob.
+     */
+    @Override
+    @Observed(name = "file.service", lowCardinalityKeyValues = {"operation", "presign-download"})
+    public PresignedTransfer presignDownload(String userName, String fileName) {
+        if (isInValidUser(userName) || isInValid(fileName)) {
+            throw new BadRequestException("Invalid userName or fileName");
+        }
+        String key = userName + "/" + fileName;
+        FileMetadata metadata = lookupMetadata(key, fileName);
+        return urlPresigner.presignGet(storageBackend.locate(deduplicator.storedKey(key, metadata)), metadata);
+    }
+
+    /*
+    URL to redirect a whole-file download to instead of proxying it, for files above the redirect threshold. Empty
+    when presigning is disabled, so the download path does not pay for a metadata lookup, and for a compressed file
+    the caller does not accept, which has to be decoded here.
+     */
+    @Override
+    @Observed(name = "file.service", lowCardinalityKeyValues = {"operation", "download-redirect"})
+    public Optional<String> downloadRedirect(String userName, String fileName, Set<String> acceptedEncodings) {
+        if (isInValidUser(userName) || isInValid(fileName)) {
+            throw new BadRequestException("Invalid userName or fileName");
+        }
+        if (!urlPresigner.isEnabled()) {
+            return Optional.empty();
+        }
+        String key = userName + "/" + fileName;
+        FileMetadata metadata = lookupMetadata(key, fileName);
+        if (!urlPresigner.shouldRedirect(metadata.getContentLength())
+                || metadata.getContentEncoding() != null && !acceptedEncodings.contains(metadata.getContentEncoding())) {
+            return Optional.empty();
+        }
+        return Optional.of(urlPresigner.presignGet(storageBackend.locate(deduplicator.storedKey(key, metadata)), metadata).getUrls().get(0));
+    }
+
+    /*
+    Presign the upload of a file so the client sends it to S3 directly. The bytes are stored as sent: they are not
+    compressed, and deduplication, which has to hash them, rules presigned uploads out. The caches are cleared now;
+    a single PUT is not reported back, so it shows up in search once the index entry of the user is refreshed.
+     */
+    @Override
+    @Observed(name = "file.service", lowCardinalityKeyValues = {"operation", "presign-upload"})
+    public PresignedTransfer presignUpload(String userName, String fileName, String contentType, long contentLength) {
+        if (isInValidUser(userName) || isInValid(fileName)) {
+            throw new BadRequestException("Invalid user name or file");
+        }
+        if (deduplicator.isEnabled()) {
+            throw new BadRequestException("Presigned uploads are not available with deduplication");
+        }
+        String key = userName + "/" + fileName;
+        PresignedTransfer transfer = urlPresigner.presignPut(storageBackend.writeKey(key), contentType, contentLength);
+        downloadCache.invalidate(key);
+        metadataCache.invalidate(key);
+        return transfer;
+    }
+
+    /*
+    Complete a presigned multipart upload once the client sent every part, and return the ETag of the file.
+     */
+    @Override
+    @Observed(name = "file.service", lowCardinalityKeyValues = {"operation", "presign-complete"})
+    public String completePresignedUpload(String userName, String fileName, String uploadId) {
+        if (isInValidUser(userName) || isInValid(fileName) || isInValid(uploadId)) {
+            throw new BadRequestException("Invalid user name, file or upload id");
+        }
+        String key = userName + "/" + fileName;
+        String eTag = urlPresigner.complete(storageBackend.writeKey(key), uploadId);
+        fileNameIndex.add(userName, fileName);
+        downloadCache.invalidate(key);
+        metadataCache.invalidate(key);
+        return eTag;
+    }
+
+    @Override
+    @Observed(name = "file.service", lowCardinalityKeyValues = {"operation", "presign-abort"})
+    public void abortPresignedUpload(String userName, String fileName, String uploadId) {
+        if (isInValidUser(userName) || isInValid(fileName) || isInValid(uploadId)) {
+            throw new BadRequestException("Invalid user name, file or upload id");
+        }
+        urlPresigner.abort(storageBackend.writeKey(userName + "/" + fileName), uploadId);
+    }
+
+    /*
+    Move the files of the user, or of every user when no user is given, stored before the sharded key layout was
+    enabled to their shard, and return how many were moved. Files stay readable meanwhile.
+     */
+    @Override
+    @Observed(name = "file.service", lowCardinalityKeyValues = {"operation", "migrate-layout"})
+    public long migrateLayout(String userName) {
+        if (userName != null && isInValidUser(userName)) {
+            throw new BadRequestException("Invalid userName");
+        }
+        if (!(storageBackend instanceof ShardedStorageBackend shardedBackend)) {
+            throw new BadRequestException("Sharded key layout is not enabled");
+        }
+        return shardedBackend.migrate(userName == null ? "" : userName + "/", key -> {
+            downloadCache.invalidate(key);
+            metadataCache.invalidate(key);
+        });
+    }
+
+    /*
+    Copy a file of the user to another name inside the storage, without the bytes going through the service.
+     */
+    @Override
+    @Observed(name = "file.service", lowCardinalityKeyValues = {"operation", "copy"})
+    public String copyFile(String userName, String sourceFileName, String targetFileName) {
+        validateTransfer(userName, sourceFileName, targetFileName);
+        String targetKey = userName + "/" + targetFileName;
+        String eTag = storageBackend.copy(userName + "/" + sourceFileName, targetKey);
+        fileNameIndex.add(userName, targetFileName);
+        downloadCache.invalidate(targetKey);
+        metadataCache.invalidate(targetKey);
+        return eTag;
+    }
+
+    /*
+    Move (or rename) a file of the user inside the storage. The search index entry of the user is dropped, since a
+    name cannot be removed from it, and is reloaded on the next search.
+     */
+    @Override
+    @Observed(name = "file.service", lowCardinalityKeyValues = {"operation", "move"})
+    public String moveFile(String userName, String sourceFileName, String targetFileName) {
+        validateTransfer(userName, sourceFileName, targetFileName);
+        return move(userName, sourceFileName, targetFileName);
+    }
+
+    /*
+    Move many files of the user concurrently, with one result per file named after its target. A failed move does not
+    stop the others.
+     */
+    @Override
+    @Observed(name = "file.service", lowCardinalityKeyValues = {"operation", "move-bulk"})
+    public List<BatchResult> moveFiles(String userName, List<String> sourceFileNames, List<String> targetFileNames) {
+        if (isInValidUser(userName) || sourceFileNames == null || sourceFileNames.isEmpty() || targetFileNames == null
+                || sourceFileNames.size() != targetFileNames.size()) {
+            throw new BadRequestException("Invalid userName or fileNames");
+        }
+        if (sourceFileNames.size() > MAX_BULK_MOVE_FILES) {
+            throw new BadRequestException("At most " + MAX_BULK_MOVE_FILES + " files can be moved at once");
+        }
+        if (targetFileNames.stream().distinct().count() != targetFileNames.size()) {
+            throw new BadRequestException("Target file names must be distinct");
+        }
+        List<Integer> indexes = IntStream.range(0, sourceFileNames.size()).boxed().toList();
+        return batchRunner.run(indexes, targetFileNames::get, index -> {
+            validateTransfer(userName, sourceFileNames.get(index), targetFileNames.get(index));
+            return move(userName, sourceFileNames.get(index), targetFileNames.get(index));
+        }, "Failed to move file");
+    }
+
+    /*
+    Helper method to validate the user and the two file names of a copy or a move.
+     */
+    private void validateTransfer(String userName, String sourceFileName, String targetFileName) {
+        if (isInValidUser(userName) || isInValid(sourceFileName) || isInValid(targetFileName)) {
+            throw new BadRequestException("Invalid userName or fileName");
+        }
+        if (sourceFileName.equals(targetFileName)) {
+            throw new BadRequestException("Source and target file names must differ");
+        }
+    }
+
+    private String move(String userName, String sourceFileName, String targetFileName) {
+        String sourceKey = userName + "/" + sourceFileName;
+        String targetKey = userName + "/" + targetFileName;
+        String eTag = storageBackend.move(sourceKey, targetKey);
+        fileNameIndex.invalidate(userName);
+        downloadCache.invalidate(sourceKey);
+        downloadCache.invalidate(targetKey);
+        metadataCache.invalidate(sourceKey);
+        metadataCache.invalidate(targetKey);
+        return eTag;
+    }
+
+    /*
+    Helper method to open an object through the metadata cache: a file known to be missing fails without calling the
+    backend, a missing file is remembered, and the metadata returned with a whole object is cached for later HEAD lookups.
+     */
+    private FileDownload fetchObject(String key, Supplier<FileDownload> reader, boolean wholeObject) {
+        if (metadataCache.isKnownMissing(key)) {
+            throw new FilesNotFoundException("Files not found");
+        }
+        FileDownload download;
+        try {
+            download = reader.get();
+        } catch (FilesNotFoundException e) {
+            metadataCache.putMissing(key);
+            throw e;
+        }
+        if (download != null && wholeObject) {
+            metadataCache.put(key, download.toMetadata());
+        }
+        return download;
     }
 }
@@ -0,0 +1,328 @@
+package com.project.cloudfilestorage.service.impl;
+
+import com.project.cloudfilestorage.dto.FileDownload;
+import com.project.cloudfilestorage.dto.FileMetadata;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.services.s3.model.ChecksumAlgorithm;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32C;
+
+/*
+End-to-end integrity of the stored bytes. Uploads to S3 carry an additional checksum computed while the bytes are
+sent, CRC32C by default (hardware accelerated by the JDK) or SHA-256 with integrity.algorithm=sha256, and S3 rejects
+a write that does not match it. Multipart uploads carry one checksum per part, and S3 keeps the checksum of the part
+checksums for the object. A whole-file download is checked in the same pass that streams it to the caller. The last
+chunk read from the storage is held back until the checksum of the whole file matched, so on a mismatch the caller
+gets an error before the end of the content and the response stays short of its Content-Length instead of
+completing. Files stored without a checksum, files uploaded in parts of an unrecorded size and local files served
+with transferTo are not checked.
+Checked downloads are published as integrity.downloads by result (verified, mismatch).
+ */
+@Component
+public class IntegrityChecker implements MeterBinder {
+    public static final String CRC32C = "CRC32C";
+    public static final String SHA256 = "SHA256";
+
+    private final String algorithm;
+    private final boolean verifyDownloads;
+    private final AtomicLong verified = new AtomicLong();
+    private final AtomicLong mismatches = new AtomicLong();
+
+    public IntegrityChecker(@Value("${integrity.algorithm:crc32c}") String algorithm,
+                            @Value("${integrity.verify-downloads:true}") boolean verifyDownloads) {
+        this.algorithm = switch (algorithm.toLowerCase(Locale.ROOT)) {
+            case "crc32c" -> CRC32C;
+            case "sha256" -> SHA256;
+            case "none" -> null;
+            default -> throw new IllegalArgumentException("Unknown integrity.algorithm: " + algorithm);
+        };
+        this.verifyDownloads = verifyDownloads;
+    }
+
+    /*
+    Whether uploads carry a checksum.
+     */
+    public boolean isEnabled() {
+        return algorithm != null;
+    }
+
+    /*
+    Checksum algorithm to request on S3 writes, or null when uploads carry no checksum.
+     */
+    public ChecksumAlgorithm s3Algorithm() {
+        return algorithm != null ? ChecksumAlgorithm.fromValue(algorithm) : null;
+    }
+
+    /*
+    Checksum of the given bytes with the configured algorithm, base64 encoded as S3 expects it, or null when uploads
+    carry no checksum.
+     */
+    public String checksum(byte[] data) {
+        if (algorithm == null) {
+            return null;
+        }
+        Digest digest = newDigest(algorithm);
+        digest.update(data, 0, data.length);
+        return Base64.getEncoder().encodeToString(digest.digest());
+    }
+
+    /*
+    Wrap a whole-file download so its content is checked against the stored checksum while it is read. The reader
+    gets an IOException before the last chunk on a mismatch. Downloads that cannot be checked are returned as is.
+     */
+    public FileDownload verify(FileDownload download) {
+        if (download == null || !verifyDownloads || download.getChecksum() == null || download.isFileBacked()
+                || !(CRC32C.equals(download.getChecksumAlgorithm()) || SHA256.equals(download.getChecksumAlgorithm()))) {
+            return download;
+        }
+        String checksum = download.getChecksum();
+        int dash = checksum.indexOf('-');
+        long partSize = -1;
+        if (dash >= 0) {
+            try {
+                partSize = Long.parseLong(download.getUserMetadata().getOrDefault(FileMetadata.CHECKSUM_PART_SIZE, "-1"));
+            } catch (NumberFormatException e) {
+                return download;
+            }
+            if (partSize <= 0) {
+                return download;
+            }
+        }
+        return new FileDownload(download.toMetadata(), new VerifyingInputStream(download.getContent(),
+                download.getChecksumAlgorithm(), checksum, partSize, download.getFileName()));
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("integrity.downloads", verified, AtomicLong::get).tag("result", "verified").register(registry);
+        FunctionCounter.builder("integrity.downloads", mismatches, AtomicLong::get).tag("result", "mismatch").register(registry);
+    }
+
+    private static Digest newDigest(String algorithm) {
+        if (SHA256.equals(algorithm)) {
+            try {
+                MessageDigest digest = MessageDigest.getInstance("SHA-256");
+                return new Digest() {
+                    @Override
+                    public void update(byte[] data, int offset, int length) {
+                        digest.update(data, offset, length);
+                    }
+
+                    @Override
+                    public byte[] digest() {
+                        return digest.digest();
+                    }
+                };
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException("SHA-256 is not available", e);
+            }
+        }
+        CRC32C crc = new CRC32C();
+        return new Digest() {
+            @Override
+            public void update(byte[] data, int offset, int length) {
+                crc.update(data, offset, length);
+            }
+
+            @Override
+            public byte[] digest() {
+                int value = (int) crc.getValue();
+                crc.reset();
+                return new byte[]{(byte) (value >>> 24), (byte) (value >>> 16), (byte) (value >>> 8), (byte) value};
+            }
+        };
+    }
+
+    /*
+    Running checksum, reset once its value has been taken.
+     */
+    private interface Digest {
+        void update(byte[] data, int offset, int length);
+
+        byte[] digest();
+    }
+
+    /*
+    Stream computing the checksum of the bytes read through it and comparing it with the expected one at the end.
+    A chunk read from the content is only handed out once the next one was read, and the last one once the checksum
+    matched. For an object uploaded in parts each part is hashed on its own and the part checksums are hashed in turn,
+    the way S3 computes the checksum it stores.
+     */
+    private final class VerifyingInputStream extends FilterInputStream {
+        private final String expected;
+        private final long partSize;
+        private final String fileName;
+        private final Digest digest;
+        private final Digest composite;
+        private long partRemaining;
+        private int parts;
+        private boolean finished;
+        private byte[] current = new byte[FileDownload.BUFFER_SIZE];
+        private int position;
+        private int limit;
+        private byte[] ahead = new byte[FileDownload.BUFFER_SIZE];
+        private int aheadLength;
+
+        private VerifyingInputStream(InputStream content, String algorithm, String expected, long partSize, String fileName) {
+            super(content);
+            this.expected = expected;
+            this.partSize = partSize;
+            this.fileName = fileName;
+            this.digest = newDigest(algorithm);
+            this.composite = partSize > 0 ? newDigest(algorithm) : null;
+            this.partRemaining = partSize;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            int read = read(single, 0, 1);
+            return read == -1 ? -1 : single[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (length == 0) {
+                return 0;
+            }
+            if (position == limit && !advance()) {
+                return -1;
+            }
+            int count = Math.min(length, limit - position);
+            System.arraycopy(current, position, buffer, offset, count);
+            position += count;
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return limit - position;
+        }
+
+        /*
+        Helper method to make the held back chunk readable once the chunk after it was read, or once the end of the
+        content was reached and the checksum matched. Returns false when everything was handed out.
+         */
+        private boolean advance() throws IOException {
+            while (true) {
+                if (aheadLength == 0) {
+                    if (finished) {
+                        return false;
+                    }
+                    int read = in.read(ahead, 0, ahead.length);
+                    if (read == -1) {
+                        finish();
+                        return false;
+                    }
+                    update(ahead, 0, read);
+                    aheadLength = read;
+                    continue;
+                }
+                int read = finished ? -1 : in.read(current, 0, current.length);
+                if (read == 0) {
+                    continue;
+                }
+                if (read == -1) {
+                    finish();
+                } else {
+                    update(current, 0, read);
+                }
+                byte[] released = ahead;
+                ahead = current;
+                current = released;
+                position = 0;
+                limit = aheadLength;
+                aheadLength = Math.max(read, 0);
+                return true;
+            }
+        }
+
+        /*
+        Skipped bytes are read, they have to be part of the checksum.
+         */
+        @Override
+        public long skip(long n) throws IOException {
+            byte[] buffer = new byte[(int) Math.min(n, FileDownload.BUFFER_SIZE)];
+            long skipped = 0;
+            while (skipped < n) {
+                int read = read(buffer, 0, (int) Math.min(buffer.length, n - skipped));
+                if (read == -1) {
+                    break;
+                }
+                skipped += read;
+            }
+            return skipped;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        @Override
+        public void mark(int readLimit) {
+        }
+
+        @Override
+        public void reset() throws IOException {
+            throw new IOException("mark/reset not supported");
+        }
+
+        private void update(byte[] buffer, int offset, int length) {
+            if (composite == null) {
+                digest.update(buffer, offset, length);
+                return;
+            }
+            while (length > 0) {
+                int count = (int) Math.min(length, partRemaining);
+                digest.update(buffer, offset, count);
+                offset += count;
+                length -= count;
+                partRemaining -= count;
+                if (partRemaining == 0) {
+                    endPart();
+                }
+            }
+        }
+
+        private void endPart() {
+            byte[] part = digest.digest();
+            composite.update(part, 0, part.length);
+            parts++;
+            partRemaining = partSize;
+        }
+
+        private void finish() throws IOException {
+            if (finished) {
+                return;
+            }
+            finished = true;
+            String actual;
+            if (composite == null) {
+                actual = Base64.getEncoder().encodeToString(digest.digest());
+            } else {
+                if (partRemaining < partSize) {
+                    endPart();
+                }
+                actual = Base64.getEncoder().encodeToString(composite.digest()) + "-" + parts;
+            }
+            if (!actual.equals(expected)) {
+                mismatches.incrementAndGet();
+                throw new IOException("Checksum mismatch on " + fileName);
+            }
+            verified.incrementAndGet();
+        }
+    }
+}
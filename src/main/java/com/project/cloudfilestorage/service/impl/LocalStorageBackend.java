@@ -0,0 +1,416 @@
+package com.project.cloudfilestorage.service.impl;
+
+import com.project.cloudfilestorage.dto.FileDownload;
+import com.project.cloudfilestorage.dto.FileMetadata;
+import com.project.cloudfilestorage.exception.BadRequestException;
+import com.project.cloudfilestorage.exception.FileOperationException;
+import com.project.cloudfilestorage.exception.FilesNotFoundException;
+import com.project.cloudfilestorage.service.StorageBackend;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.UserDefinedFileAttributeView;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/*
+Storage backend keeping the objects as files under a local directory, selected with storage.backend=local. A key maps
+to the path of the same name below the root, so a prefix is listed by walking one directory instead of scanning every
+key. Uploads are written to a staging file and renamed over the target in one atomic step, readers never see a
+partial file. Whole files are sent with FileChannel.transferTo, byte ranges are read through memory-mapped windows.
+The ETag is derived from the size and modification time. The content type, content encoding and user metadata are
+kept in user-defined file attributes; without them only files stored as uploaded and without metadata can be written,
+and the content type is guessed from the name.
+ */
+@Component
+@ConditionalOnProperty(name = "storage.backend", havingValue = "local")
+public class LocalStorageBackend implements StorageBackend {
+    private static final String STAGING_DIRECTORY = ".staging";
+    private static final String CONTENT_TYPE_ATTRIBUTE = "content-type";
+    private static final String CONTENT_ENCODING_ATTRIBUTE = "content-encoding";
+    private static final String USER_METADATA_PREFIX = "meta.";
+    private static final String DEFAULT_CONTENT_TYPE = "application/octet-stream";
+    private static final long TRANSFER_CHUNK = 8L * 1024 * 1024;
+    private static final long MAP_WINDOW = 64L * 1024 * 1024;
+
+    private final Path root;
+    private final Path staging;
+    private final boolean fsync;
+
+    public LocalStorageBackend(@Value("${storage.local.directory:${java.io.tmpdir}/cloud-file-storage}") Path root,
+                               @Value("${storage.local.fsync:false}") boolean fsync) {
+        this.root = root.toAbsolutePath().normalize();
+        this.staging = this.root.resolve(STAGING_DIRECTORY);
+        this.fsync = fsync;
+        try {
+            Files.createDirectories(staging);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to prepare storage directory " + root, e);
+        }
+    }
+
+    /*
+    Only the directory holding the prefix is walked. Keys are sorted to match the order of an S3 listing.
+     */
+    @Override
+    public Stream<String> list(String prefix, String startAfter) {
+        int slash = prefix.lastIndexOf('/');
+        Path directory = slash < 0 ? root : resolve(prefix.substring(0, slash));
+        if (!Files.isDirectory(directory)) {
+            return Stream.empty();
+        }
+        List<String> keys;
+        try (Stream<Path> files = Files.walk(directory)) {
+            keys = files
+                    .filter(path -> !path.startsWith(staging) && Files.isRegularFile(path))
+                    .map(this::toKey)
+                    .filter(key -> key.startsWith(prefix) && (startAfter == null || key.compareTo(startAfter) > 0))
+                    .sorted()
+                    .toList();
+        } catch (IOException | UncheckedIOException e) {
+            throw new FileOperationException("Failed to list files");
+        }
+        return keys.stream();
+    }
+
+    @Override
+    public FileDownload get(String key, String fileName, String ifNoneMatch) {
+        Path path = resolve(key);
+        try {
+            BasicFileAttributes attributes = readAttributes(path);
+            if (eTag(attributes).equals(ifNoneMatch)) {
+                return null;
+            }
+            FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+            return new FileDownload(metadata(path, fileName, attributes), channel);
+        } catch (NoSuchFileException e) {
+            throw new FilesNotFoundException("Files not found");
+        } catch (IOException e) {
+            throw new FileOperationException("Failed to download file");
+        }
+    }
+
+    @Override
+    public FileDownload get(String key, String fileName, long start, long end) {
+        Path path = resolve(key);
+        try {
+            BasicFileAttributes attributes = readAttributes(path);
+            long last = Math.min(end, attributes.size() - 1);
+            if (start > last) {
+                throw new BadRequestException("Invalid byte range");
+            }
+            FileMetadata metadata = metadata(path, fileName, attributes);
+            FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+            return new FileDownload(new FileMetadata(fileName, metadata.getContentType(), last - start + 1,
+                    metadata.getETag(), metadata.getLastModified(), metadata.getContentEncoding(), metadata.getUserMetadata()),
+                    new MappedRangeInputStream(channel, start, last + 1));
+        } catch (NoSuchFileException e) {
+            throw new FilesNotFoundException("Files not found");
+        } catch (IOException e) {
+            throw new FileOperationException("Failed to download file");
+        }
+    }
+
+    @Override
+    public FileMetadata head(String key, String fileName) {
+        Path path = resolve(key);
+        try {
+            return metadata(path, fileName, readAttributes(path));
+        } catch (NoSuchFileException e) {
+            throw new FilesNotFoundException("Files not found");
+        } catch (IOException e) {
+            throw new FileOperationException("Failed to read file metadata");
+        }
+    }
+
+    /*
+    The content is copied into a staging file with FileChannel.transferFrom, then moved over the target with an
+    atomic rename, which also replaces an existing file in one step.
+     */
+    @Override
+    public String put(String key, String contentType, String contentEncoding, Map<String, String> userMetadata,
+                      InputStream content, long contentLength) {
+        Path path = resolve(key);
+        Path temporary = null;
+        try {
+            temporary = Files.createTempFile(staging, "upload-", ".tmp");
+            try (FileChannel out = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+                ReadableByteChannel in = Channels.newChannel(content);
+                long position = 0;
+                long transferred;
+                while ((transferred = out.transferFrom(in, position, TRANSFER_CHUNK)) > 0) {
+                    position += transferred;
+                }
+                if (contentLength >= 0 && position != contentLength) {
+                    throw new FileOperationException("Failed to upload file");
+                }
+                if (fsync) {
+                    out.force(true);
+                }
+            }
+            writeAttributes(temporary, contentType, contentEncoding, userMetadata);
+            Files.createDirectories(path.getParent());
+            Files.move(temporary, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            return eTag(Files.readAttributes(path, BasicFileAttributes.class));
+        } catch (IOException e) {
+            throw new FileOperationException("Failed to upload file");
+        } finally {
+            if (temporary != null) {
+                delete(temporary);
+            }
+        }
+    }
+
+    /*
+    The file is copied into a staging file with its attributes, then renamed over the target like an upload.
+     */
+    @Override
+    public String copy(String sourceKey, String targetKey) {
+        Path source = resolve(sourceKey);
+        Path target = resolve(targetKey);
+        Path temporary = null;
+        try {
+            FileMetadata metadata = metadata(source, sourceKey, readAttributes(source));
+            temporary = Files.createTempFile(staging, "copy-", ".tmp");
+            Files.copy(source, temporary, StandardCopyOption.REPLACE_EXISTING);
+            if (fsync) {
+                try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+                    channel.force(true);
+                }
+            }
+            writeAttributes(temporary, metadata.getContentType(), metadata.getContentEncoding(), metadata.getUserMetadata());
+            Files.createDirectories(target.getParent());
+            Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            return eTag(Files.readAttributes(target, BasicFileAttributes.class));
+        } catch (NoSuchFileException e) {
+            throw new FilesNotFoundException("Files not found");
+        } catch (IOException e) {
+            throw new FileOperationException("Failed to copy file");
+        } finally {
+            if (temporary != null) {
+                delete(temporary);
+            }
+        }
+    }
+
+    /*
+    A move is an atomic rename, the content and attributes are not copied.
+     */
+    @Override
+    public String move(String sourceKey, String targetKey) {
+        Path source = resolve(sourceKey);
+        Path target = resolve(targetKey);
+        try {
+            readAttributes(source);
+            Files.createDirectories(target.getParent());
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            return eTag(Files.readAttributes(target, BasicFileAttributes.class));
+        } catch (NoSuchFileException e) {
+            throw new FilesNotFoundException("Files not found");
+        } catch (IOException e) {
+            throw new FileOperationException("Failed to move file");
+        }
+    }
+
+    @Override
+    public void delete(String key) {
+        try {
+            Files.deleteIfExists(resolve(key));
+        } catch (IOException e) {
+            throw new FileOperationException("Failed to delete file");
+        }
+    }
+
+    /*
+    Helper method to map a key to its path, rejecting keys that would leave the root or reach the staging directory.
+    A key has to stay under the directory named by its first segment, so "alice/../bob/file" cannot reach the files of
+    another user or the blob and shard directories.
+     */
+    private Path resolve(String key) {
+        int slash = key.indexOf('/');
+        Path owner = root.resolve(slash >= 0 ? key.substring(0, slash) : key).normalize();
+        Path path = root.resolve(key).normalize();
+        if (!owner.startsWith(root) || owner.equals(root) || !path.startsWith(owner) || path.startsWith(staging)) {
+            throw new BadRequestException("Invalid file name");
+        }
+        return path;
+    }
+
+    private String toKey(Path path) {
+        return root.relativize(path).toString().replace(File.separatorChar, '/');
+    }
+
+    /*
+    Helper method to read the attributes of a stored file. A directory is reported as a missing file.
+     */
+    private BasicFileAttributes readAttributes(Path path) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        if (!attributes.isRegularFile()) {
+            throw new NoSuchFileException(path.toString());
+        }
+        return attributes;
+    }
+
+    private static String eTag(BasicFileAttributes attributes) {
+        return "\"" + Long.toHexString(attributes.size()) + "-"
+                + Long.toHexString(attributes.lastModifiedTime().to(TimeUnit.MICROSECONDS)) + "\"";
+    }
+
+    /*
+    Helper method to store the content type, encoding and user metadata of a file as user-defined attributes. The
+    content type alone is optional, the encoding and metadata cannot be dropped without corrupting the file.
+     */
+    private void writeAttributes(Path path, String contentType, String contentEncoding, Map<String, String> userMetadata)
+            throws IOException {
+        boolean required = contentEncoding != null || !userMetadata.isEmpty();
+        UserDefinedFileAttributeView view = Files.getFileAttributeView(path, UserDefinedFileAttributeView.class);
+        if (view == null) {
+            if (required) {
+                throw new FileOperationException("Storage directory does not support file attributes");
+            }
+            return;
+        }
+        try {
+            if (contentType != null) {
+                view.write(CONTENT_TYPE_ATTRIBUTE, StandardCharsets.UTF_8.encode(contentType));
+            }
+            if (contentEncoding != null) {
+                view.write(CONTENT_ENCODING_ATTRIBUTE, StandardCharsets.UTF_8.encode(contentEncoding));
+            }
+            for (Map.Entry<String, String> entry : userMetadata.entrySet()) {
+                view.write(USER_METADATA_PREFIX + entry.getKey(), StandardCharsets.UTF_8.encode(entry.getValue()));
+            }
+        } catch (IOException | UnsupportedOperationException e) {
+            if (required) {
+                throw new FileOperationException("Storage directory does not support file attributes");
+            }
+        }
+    }
+
+    /*
+    Helper method to build the metadata of a stored file from its attributes. Without a stored content type it is
+    guessed from the file name.
+     */
+    private FileMetadata metadata(Path path, String fileName, BasicFileAttributes attributes) {
+        String contentType = null;
+        String contentEncoding = null;
+        Map<String, String> userMetadata = new HashMap<>();
+        UserDefinedFileAttributeView view = Files.getFileAttributeView(path, UserDefinedFileAttributeView.class);
+        if (view != null) {
+            try {
+                for (String name : view.list()) {
+                    if (name.equals(CONTENT_TYPE_ATTRIBUTE)) {
+                        contentType = readAttribute(view, name);
+                    } else if (name.equals(CONTENT_ENCODING_ATTRIBUTE)) {
+                        contentEncoding = readAttribute(view, name);
+                    } else if (name.startsWith(USER_METADATA_PREFIX)) {
+                        userMetadata.put(name.substring(USER_METADATA_PREFIX.length()), readAttribute(view, name));
+                    }
+                }
+            } catch (IOException | UnsupportedOperationException ignored) {
+                // Read as a file stored without attributes.
+            }
+        }
+        return new FileMetadata(fileName, contentType != null ? contentType : probeContentType(path), attributes.size(),
+                eTag(attributes), attributes.lastModifiedTime().toInstant(), contentEncoding, userMetadata);
+    }
+
+    private static String readAttribute(UserDefinedFileAttributeView view, String name) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(view.size(name));
+        view.read(name, buffer);
+        return StandardCharsets.UTF_8.decode(buffer.flip()).toString();
+    }
+
+    private static String probeContentType(Path path) {
+        try {
+            String probed = Files.probeContentType(path);
+            return probed != null ? probed : DEFAULT_CONTENT_TYPE;
+        } catch (IOException e) {
+            return DEFAULT_CONTENT_TYPE;
+        }
+    }
+
+    private void delete(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException ignored) {
+            // A leftover staging file is harmless, it is never listed.
+        }
+    }
+
+    /*
+    Stream over the byte range [position, end) of a file, read through memory-mapped windows of at most MAP_WINDOW
+    bytes mapped one after the other, so ranges of any size are read without copying through the kernel buffers and
+    without mapping the whole range at once.
+     */
+    private static final class MappedRangeInputStream extends InputStream {
+        private final FileChannel channel;
+        private final long end;
+        private long position;
+        private MappedByteBuffer window;
+
+        MappedRangeInputStream(FileChannel channel, long start, long end) {
+            this.channel = channel;
+            this.position = start;
+            this.end = end;
+        }
+
+        @Override
+        public int read() throws IOException {
+            return nextWindow() ? window.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (length == 0) {
+                return 0;
+            }
+            if (!nextWindow()) {
+                return -1;
+            }
+            int count = Math.min(length, window.remaining());
+            window.get(buffer, offset, count);
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return window != null ? window.remaining() : 0;
+        }
+
+        @Override
+        public void close() throws IOException {
+            window = null;
+            channel.close();
+        }
+
+        private boolean nextWindow() throws IOException {
+            if (window != null && window.hasRemaining()) {
+                return true;
+            }
+            if (position >= end) {
+                return false;
+            }
+            long size = Math.min(MAP_WINDOW, end - position);
+            window = channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+            position += size;
+            return true;
+        }
+    }
+}
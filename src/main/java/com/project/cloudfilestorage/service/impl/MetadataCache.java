@@ -0,0 +1,147 @@
+package com.project.cloudfilestorage.service.impl;
+
+import com.project.cloudfilestorage.dto.FileMetadata;
+import com.project.cloudfilestorage.exception.FilesNotFoundException;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/*
+Bounded in-memory cache of file metadata keyed by object key. Missing files are cached as well, with their own
+shorter time to live, so repeated requests for a file that does not exist are answered without calling S3. Entries
+expire after their time to live and the least recently used entries are dropped once the cache is full. Files written
+by the service are invalidated on write; changes made by other writers are seen once the entry expires.
+Lookups are published as cache.metadata.requests by result (hit, missing, miss).
+ */
+@Component
+public class MetadataCache implements MeterBinder {
+    private final boolean enabled;
+    private final int maxEntries;
+    private final long ttlMillis;
+    private final long negativeTtlMillis;
+
+    private final LinkedHashMap<String, Entry> entries;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong negativeHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public MetadataCache(@Value("${metadata.cache.enabled:true}") boolean enabled,
+                         @Value("${metadata.cache.max-entries:100000}") int maxEntries,
+                         @Value("${metadata.cache.ttl:10s}") Duration ttl,
+                         @Value("${metadata.cache.negative-ttl:5s}") Duration negativeTtl) {
+        this.enabled = enabled;
+        this.maxEntries = maxEntries;
+        this.ttlMillis = ttl.toMillis();
+        this.negativeTtlMillis = negativeTtl.toMillis();
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > MetadataCache.this.maxEntries;
+            }
+        };
+    }
+
+    /*
+    Return the metadata of a key, loading it on a miss. The loader throws FilesNotFoundException for a missing file,
+    which is remembered and thrown again until the negative entry expires.
+     */
+    public FileMetadata get(String key, Supplier<FileMetadata> loader) {
+        Entry entry = lookup(key);
+        if (entry != null) {
+            if (entry.metadata == null) {
+                negativeHits.incrementAndGet();
+                throw new FilesNotFoundException("Files not found");
+            }
+            hits.incrementAndGet();
+            return entry.metadata;
+        }
+        misses.incrementAndGet();
+        FileMetadata metadata;
+        try {
+            metadata = loader.get();
+        } catch (FilesNotFoundException e) {
+            putMissing(key);
+            throw e;
+        }
+        put(key, metadata);
+        return metadata;
+    }
+
+    /*
+    Whether the key is known not to exist, so a read can fail without calling S3.
+     */
+    public boolean isKnownMissing(String key) {
+        Entry entry = lookup(key);
+        if (entry != null && entry.metadata == null) {
+            negativeHits.incrementAndGet();
+            return true;
+        }
+        return false;
+    }
+
+    public void put(String key, FileMetadata metadata) {
+        store(key, new Entry(metadata, System.currentTimeMillis() + ttlMillis));
+    }
+
+    public void putMissing(String key) {
+        store(key, new Entry(null, System.currentTimeMillis() + negativeTtlMillis));
+    }
+
+    public void invalidate(String key) {
+        synchronized (entries) {
+            entries.remove(key);
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("cache.metadata.requests", hits, AtomicLong::get).tag("result", "hit").register(registry);
+        FunctionCounter.builder("cache.metadata.requests", negativeHits, AtomicLong::get).tag("result", "missing").register(registry);
+        FunctionCounter.builder("cache.metadata.requests", misses, AtomicLong::get).tag("result", "miss").register(registry);
+        Gauge.builder("cache.metadata.size", this, MetadataCache::size).register(registry);
+    }
+
+    private Entry lookup(String key) {
+        if (!enabled) {
+            return null;
+        }
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (entry != null && entry.expiresAt <= System.currentTimeMillis()) {
+                entries.remove(key);
+                return null;
+            }
+            return entry;
+        }
+    }
+
+    private void store(String key, Entry entry) {
+        if (!enabled) {
+            return;
+        }
+        synchronized (entries) {
+            entries.put(key, entry);
+        }
+    }
+
+    /*
+    Cached metadata of a key, or a negative entry when the metadata is null.
+     */
+    private record Entry(FileMetadata metadata, long expiresAt) {
+    }
+}
@@ -0,0 +1,415 @@
+package com.project.cloudfilestorage.service.impl;
+
+import com.project.cloudfilestorage.dto.FileMetadata;
+import com.project.cloudfilestorage.exception.FileOperationException;
+import com.project.cloudfilestorage.exception.FilesNotFoundException;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.core.exception.SdkException;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/*
+Upload engine for large files. The input is split into parts that are uploaded concurrently with S3 multipart
+upload. Each part is retried on its own, and the upload is completed when every part succeeded or aborted otherwise
+so no orphan parts are left in the bucket. At most `concurrency` parts of one upload are held in memory at a time.
+Objects too large for CopyObject are copied the same way, with UploadPartCopy requests run by S3.
+With integrity checks enabled every part carries its checksum, computed on the buffered part, and the part size is
+recorded with the object so the checksum of the part checksums can be checked on download.
+Uploads in progress are published as s3.multipart.uploads.active and part retries as s3.multipart.part.retries.
+ */
+@Component
+@ConditionalOnProperty(name = "storage.backend", havingValue = "s3", matchIfMissing = true)
+public class MultipartUploader implements DisposableBean, MeterBinder {
+    static final long MIN_PART_SIZE = 5L * 1024 * 1024;
+    static final int MAX_PARTS = 10_000;
+    static final long MAX_COPY_OBJECT_SIZE = 5L * 1024 * 1024 * 1024;
+    static final long COPY_PART_SIZE = 512L * 1024 * 1024;
+
+    private final S3Client s3Client;
+    private final IntegrityChecker integrityChecker;
+    private final long threshold;
+    private final long partSize;
+    private final int concurrency;
+    private final int maxPartRetries;
+    private final ExecutorService executor;
+    private final AtomicInteger activeUploads = new AtomicInteger();
+    private final AtomicLong partRetries = new AtomicLong();
+
+    public MultipartUploader(S3Client s3Client, IntegrityChecker integrityChecker,
+                             @Value("${s3.upload.multipart.threshold:67108864}") long threshold,
+                             @Value("${s3.upload.multipart.part-size:16777216}") long partSize,
+                             @Value("${s3.upload.multipart.concurrency:4}") int concurrency,
+                             @Value("${s3.upload.multipart.max-part-retries:3}") int maxPartRetries,
+                             @Value("${s3.upload.multipart.threads:16}") int threads,
+                             @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        if (partSize < MIN_PART_SIZE) {
+            throw new IllegalArgumentException("Multipart part size must be at least " + MIN_PART_SIZE + " bytes");
+        }
+        if (concurrency < 1 || threads < 1 || maxPartRetries < 0) {
+            throw new IllegalArgumentException("Invalid multipart upload configuration");
+        }
+        this.s3Client = s3Client;
+        this.integrityChecker = integrityChecker;
+        this.threshold = Math.max(threshold, partSize);
+        this.partSize = partSize;
+        this.concurrency = concurrency;
+        this.maxPartRetries = maxPartRetries;
+        this.executor = TransferExecutors.create("s3-multipart", threads, virtualThreads);
+    }
+
+    /*
+    Whether a file of the given size should go through multipart upload instead of a single PutObject.
+     */
+    public boolean isMultipart(long size) {
+        return size >= threshold;
+    }
+
+    /*
+    Upload the stream to the given key with multipart upload and return the ETag of the completed object.
+    The stream is consumed as it arrives, so it can come straight from the request body. The expected size is only
+    used to grow the part size when the file would not fit in 10 000 parts; pass -1 if it is unknown.
+     */
+    public String upload(String bucket, String key, String contentType, InputStream input, long expectedSize) {
+        return upload(bucket, key, contentType, null, Map.of(), input, expectedSize);
+    }
+
+    /*
+    Same as above, storing the content encoding and the user metadata with the object.
+     */
+    public String upload(String bucket, String key, String contentType, String contentEncoding,
+                         Map<String, String> userMetadata, InputStream input, long expectedSize) {
+        long effectivePartSize = expectedSize > 0
+                ? Math.max(partSize, (expectedSize + MAX_PARTS - 1) / MAX_PARTS)
+                : partSize;
+        if (effectivePartSize > Integer.MAX_VALUE - 8) {
+            throw new FileOperationException("File too large for multipart upload");
+        }
+
+        // A stream shorter than one part (only possible when its size is unknown) is stored with a single PutObject.
+        byte[] firstPart;
+        try {
+            firstPart = input.readNBytes((int) effectivePartSize);
+        } catch (IOException e) {
+            throw new FileOperationException("Failed to upload file");
+        }
+        if (firstPart.length < effectivePartSize) {
+            String checksum = integrityChecker.checksum(firstPart);
+            boolean sha256 = integrityChecker.s3Algorithm() == ChecksumAlgorithm.SHA256;
+            return s3Client.putObject(PutObjectRequest.builder()
+                    .bucket(bucket)
+                    .key(key)
+                    .contentType(contentType)
+                    .contentEncoding(contentEncoding)
+                    .metadata(userMetadata)
+                    .checksumAlgorithm(integrityChecker.s3Algorithm())
+                    .checksumCRC32C(sha256 ? null : checksum)
+                    .checksumSHA256(sha256 ? checksum : null)
+                    .build(), RequestBody.fromBytes(firstPart)).eTag();
+        }
+
+        activeUploads.incrementAndGet();
+        try {
+            return uploadParts(bucket, key, contentType, contentEncoding, userMetadata, input, effectivePartSize, firstPart);
+        } finally {
+            activeUploads.decrementAndGet();
+        }
+    }
+
+    /*
+    Helper method to run the multipart upload once the first part has been read.
+     */
+    private String uploadParts(String bucket, String key, String contentType, String contentEncoding,
+                               Map<String, String> userMetadata, InputStream input, long effectivePartSize,
+                               byte[] firstPart) {
+        String uploadId = s3Client.createMultipartUpload(CreateMultipartUploadRequest.builder()
+                .bucket(bucket)
+                .key(key)
+                .contentType(contentType)
+                .contentEncoding(contentEncoding)
+                .metadata(withPartSize(userMetadata, effectivePartSize))
+                .checksumAlgorithm(integrityChecker.s3Algorithm())
+                .build()).uploadId();
+
+        List<Future<CompletedPart>> futures = new ArrayList<>();
+        Semaphore inFlight = new Semaphore(concurrency);
+        AtomicReference<Exception> failure = new AtomicReference<>();
+        try {
+            int partNumber = 1;
+            byte[] pending = firstPart;
+            while (failure.get() == null) {
+                inFlight.acquire();
+                byte[] part;
+                try {
+                    part = pending != null ? pending : input.readNBytes((int) effectivePartSize);
+                    pending = null;
+                } catch (IOException e) {
+                    inFlight.release();
+                    throw e;
+                }
+                if (part.length == 0) {
+                    inFlight.release();
+                    break;
+                }
+                if (partNumber > MAX_PARTS) {
+                    inFlight.release();
+                    throw new FileOperationException("File too large for multipart upload");
+                }
+                int currentPart = partNumber++;
+                futures.add(executor.submit(() -> {
+                    try {
+                        return uploadPart(bucket, key, uploadId, currentPart, part);
+                    } catch (RuntimeException e) {
+                        failure.compareAndSet(null, e);
+                        throw e;
+                    } finally {
+                        inFlight.release();
+                    }
+                }));
+                if (part.length < effectivePartSize) {
+                    break;
+                }
+            }
+
+            List<CompletedPart> completedParts = new ArrayList<>(futures.size());
+            for (Future<CompletedPart> future : futures) {
+                completedParts.add(future.get());
+            }
+            completedParts.sort(Comparator.comparing(CompletedPart::partNumber));
+
+            return s3Client.completeMultipartUpload(CompleteMultipartUploadRequest.builder()
+                    .bucket(bucket)
+                    .key(key)
+                    .uploadId(uploadId)
+                    .multipartUpload(CompletedMultipartUpload.builder().parts(completedParts).build())
+                    .build()).eTag();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            abort(bucket, key, uploadId, futures);
+            throw new FileOperationException("Failed to upload file");
+        } catch (IOException | ExecutionException | RuntimeException e) {
+            abort(bucket, key, uploadId, futures);
+            if (e instanceof FileOperationException fileOperationException) {
+                throw fileOperationException;
+            }
+            throw new FileOperationException("Failed to upload file");
+        }
+    }
+
+    /*
+    Copy an object of the given size inside the bucket with UploadPartCopy, for objects above the CopyObject limit.
+    The parts are copied by S3 itself, `concurrency` at a time, so no byte goes through the service. The content type,
+    encoding and user metadata of the source are set on the target, multipart copies do not carry them over.
+     */
+    public String copy(String bucket, String sourceKey, String targetKey, long size, String contentType,
+                       String contentEncoding, Map<String, String> userMetadata) {
+        long copyPartSize = Math.max(COPY_PART_SIZE, (size + MAX_PARTS - 1) / MAX_PARTS);
+        String uploadId = s3Client.createMultipartUpload(CreateMultipartUploadRequest.builder()
+                .bucket(bucket)
+                .key(targetKey)
+                .contentType(contentType)
+                .contentEncoding(contentEncoding)
+                .metadata(withPartSize(userMetadata, copyPartSize))
+                .checksumAlgorithm(integrityChecker.s3Algorithm())
+                .build()).uploadId();
+
+        activeUploads.incrementAndGet();
+        List<Future<CompletedPart>> futures = new ArrayList<>();
+        Semaphore inFlight = new Semaphore(concurrency);
+        AtomicReference<Exception> failure = new AtomicReference<>();
+        try {
+            int partNumber = 1;
+            for (long start = 0; start < size && failure.get() == null; start += copyPartSize) {
+                String range = "bytes=" + start + "-" + (Math.min(start + copyPartSize, size) - 1);
+                int currentPart = partNumber++;
+                inFlight.acquire();
+                futures.add(executor.submit(() -> {
+                    try {
+                        return copyPart(bucket, sourceKey, targetKey, uploadId, currentPart, range);
+                    } catch (RuntimeException e) {
+                        failure.compareAndSet(null, e);
+                        throw e;
+                    } finally {
+                        inFlight.release();
+                    }
+                }));
+            }
+
+            List<CompletedPart> completedParts = new ArrayList<>(futures.size());
+            for (Future<CompletedPart> future : futures) {
+                completedParts.add(future.get());
+            }
+            return s3Client.completeMultipartUpload(CompleteMultipartUploadRequest.builder()
+                    .bucket(bucket)
+                    .key(targetKey)
+                    .uploadId(uploadId)
+                    .multipartUpload(CompletedMultipartUpload.builder().parts(completedParts).build())
+                    .build()).eTag();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            abort(bucket, targetKey, uploadId, futures);
+            throw new FileOperationException("Failed to copy file");
+        } catch (ExecutionException | RuntimeException e) {
+            abort(bucket, targetKey, uploadId, futures);
+            Throwable cause = e instanceof ExecutionException ? e.getCause() : e;
+            if (cause instanceof NoSuchKeyException) {
+                throw new FilesNotFoundException("Files not found");
+            }
+            throw new FileOperationException("Failed to copy file");
+        } finally {
+            activeUploads.decrementAndGet();
+        }
+    }
+
+    /*
+    Upload a single part, retrying it with exponential backoff without touching the other parts. The checksum is
+    computed once, before the first attempt.
+     */
+    private CompletedPart uploadPart(String bucket, String key, String uploadId, int partNumber, byte[] data) {
+        String checksum = integrityChecker.checksum(data);
+        boolean sha256 = integrityChecker.s3Algorithm() == ChecksumAlgorithm.SHA256;
+        return withRetries(() -> {
+            UploadPartResponse response = s3Client.uploadPart(UploadPartRequest.builder()
+                    .bucket(bucket)
+                    .key(key)
+                    .uploadId(uploadId)
+                    .partNumber(partNumber)
+                    .contentLength((long) data.length)
+                    .checksumAlgorithm(integrityChecker.s3Algorithm())
+                    .checksumCRC32C(sha256 ? null : checksum)
+                    .checksumSHA256(sha256 ? checksum : null)
+                    .build(), RequestBody.fromBytes(data));
+            return CompletedPart.builder()
+                    .partNumber(partNumber)
+                    .eTag(response.eTag())
+                    .checksumCRC32C(sha256 ? null : checksum)
+                    .checksumSHA256(sha256 ? checksum : null)
+                    .build();
+        });
+    }
+
+    private CompletedPart copyPart(String bucket, String sourceKey, String targetKey, String uploadId, int partNumber,
+                                   String range) {
+        return withRetries(() -> {
+            UploadPartCopyResponse response = s3Client.uploadPartCopy(UploadPartCopyRequest.builder()
+                    .sourceBucket(bucket)
+                    .sourceKey(sourceKey)
+                    .destinationBucket(bucket)
+                    .destinationKey(targetKey)
+                    .uploadId(uploadId)
+                    .partNumber(partNumber)
+                    .copySourceRange(range)
+                    .build());
+            CopyPartResult result = response.copyPartResult();
+            return CompletedPart.builder()
+                    .partNumber(partNumber)
+                    .eTag(result.eTag())
+                    .checksumCRC32C(result.checksumCRC32C())
+                    .checksumSHA256(result.checksumSHA256())
+                    .build();
+        });
+    }
+
+    /*
+    Helper method to record the part size with the object when its parts carry checksums, replacing the one of a
+    copied source.
+     */
+    private Map<String, String> withPartSize(Map<String, String> userMetadata, long partSize) {
+        Map<String, String> metadata = new HashMap<>(userMetadata);
+        if (integrityChecker.isEnabled()) {
+            metadata.put(FileMetadata.CHECKSUM_PART_SIZE, Long.toString(partSize));
+        } else {
+            metadata.remove(FileMetadata.CHECKSUM_PART_SIZE);
+        }
+        return metadata;
+    }
+
+    /*
+    Helper method to run a part request, retrying retryable errors with exponential backoff.
+     */
+    private CompletedPart withRetries(Supplier<CompletedPart> request) {
+        SdkException lastError = null;
+        for (int attempt = 0; attempt <= maxPartRetries; attempt++) {
+            if (attempt > 0) {
+                partRetries.incrementAndGet();
+                backoff(attempt);
+            }
+            try {
+                return request.get();
+            } catch (SdkException e) {
+                if (!isRetryable(e)) {
+                    throw e;
+                }
+                lastError = e;
+            }
+        }
+        throw lastError;
+    }
+
+    /*
+    Helper method to cancel the pending parts and abort the upload so S3 releases the stored parts.
+     */
+    private void abort(String bucket, String key, String uploadId, List<Future<CompletedPart>> futures) {
+        futures.forEach(future -> future.cancel(true));
+        try {
+            s3Client.abortMultipartUpload(AbortMultipartUploadRequest.builder()
+                    .bucket(bucket)
+                    .key(key)
+                    .uploadId(uploadId)
+                    .build());
+        } catch (SdkException ignored) {
+            // The bucket lifecycle rule for incomplete uploads cleans up what could not be aborted here.
+        }
+    }
+
+    /*
+    Client errors other than throttling and timeouts will fail again, so only those are not retried.
+     */
+    private boolean isRetryable(SdkException e) {
+        if (e instanceof S3Exception s3Exception) {
+            int status = s3Exception.statusCode();
+            return status >= 500 || status == 408 || status == 429;
+        }
+        return true;
+    }
+
+    private void backoff(int attempt) {
+        try {
+            Thread.sleep(Math.min(100L << attempt, 5_000L));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new FileOperationException("Failed to upload file");
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("s3.multipart.uploads.active", activeUploads, AtomicInteger::get).register(registry);
+        FunctionCounter.builder("s3.multipart.part.retries", partRetries, AtomicLong::get).register(registry);
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+    }
+}
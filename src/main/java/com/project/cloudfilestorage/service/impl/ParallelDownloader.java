@@ -0,0 +1,225 @@
+package com.project.cloudfilestorage.service.impl;
+
+import com.project.cloudfilestorage.dto.FileDownload;
+import com.project.cloudfilestorage.dto.FileMetadata;
+import com.project.cloudfilestorage.exception.BadRequestException;
+import com.project.cloudfilestorage.exception.FileOperationException;
+import com.project.cloudfilestorage.exception.FilesNotFoundException;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+Download accelerator for single large files, enabled with download.parallel.enabled. A file of at least the threshold
+is read as consecutive byte ranges fetched concurrently, each over its own connection, and handed to the reader in
+order. At most `concurrency` ranges of one download are fetched or waiting to be read at a time, so with the range
+being read a download holds at most (concurrency + 1) * part-size bytes in memory. A failed range is retried on its
+own with backoff, and a range answered with another ETag than the file fails the download instead of mixing two
+versions.
+Range retries are published as download.parallel.range.retries.
+ */
+@Component
+public class ParallelDownloader implements DisposableBean, MeterBinder {
+    private final boolean enabled;
+    private final long threshold;
+    private final int partSize;
+    private final int concurrency;
+    private final int maxRangeRetries;
+    private final ExecutorService executor;
+    private final AtomicLong rangeRetries = new AtomicLong();
+
+    public ParallelDownloader(@Value("${download.parallel.enabled:false}") boolean enabled,
+                              @Value("${download.parallel.threshold:67108864}") long threshold,
+                              @Value("${download.parallel.part-size:8388608}") int partSize,
+                              @Value("${download.parallel.concurrency:4}") int concurrency,
+                              @Value("${download.parallel.max-range-retries:3}") int maxRangeRetries,
+                              @Value("${download.parallel.threads:16}") int threads,
+                              @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        if (partSize < 1 || concurrency < 1 || maxRangeRetries < 0 || threads < 1) {
+            throw new IllegalArgumentException("Invalid parallel download configuration");
+        }
+        this.enabled = enabled;
+        this.threshold = Math.max(threshold, partSize);
+        this.partSize = partSize;
+        this.concurrency = concurrency;
+        this.maxRangeRetries = maxRangeRetries;
+        this.executor = TransferExecutors.create("parallel-download", threads, virtualThreads);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /*
+    Whether a file of the given stored size should be downloaded in parallel ranges.
+     */
+    public boolean isParallel(long contentLength) {
+        return enabled && contentLength >= threshold;
+    }
+
+    /*
+    Open a file of known metadata as a stream of ranges read with the given opener. Nothing is fetched before the first
+    read, and closing the handle stops scheduling ranges.
+     */
+    public FileDownload open(FileMetadata metadata, RangeOpener opener) {
+        return new FileDownload(metadata, new RangeInputStream(metadata.getETag(), metadata.getContentLength(), opener));
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("download.parallel.range.retries", rangeRetries, AtomicLong::get).register(registry);
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+    }
+
+    /*
+    Opens the inclusive byte range [start, end] of the file being downloaded.
+     */
+    @FunctionalInterface
+    public interface RangeOpener {
+        FileDownload open(long start, long end);
+    }
+
+    /*
+    Read one range in full, retrying it with exponential backoff. Missing files, rejected ranges and changed files
+    fail at once.
+     */
+    private byte[] fetchRange(String eTag, RangeOpener opener, long start, int length) {
+        for (int attempt = 0; ; attempt++) {
+            if (attempt > 0) {
+                rangeRetries.incrementAndGet();
+                backoff(attempt);
+            }
+            try (FileDownload range = opener.open(start, start + length - 1)) {
+                if (eTag != null && range.getETag() != null && !eTag.equals(range.getETag())) {
+                    throw new FileOperationException("File changed during download");
+                }
+                byte[] bytes = range.getContent().readNBytes(length);
+                if (bytes.length != length) {
+                    throw new IOException("Range ended early");
+                }
+                return bytes;
+            } catch (FilesNotFoundException | BadRequestException | FileOperationException e) {
+                throw e;
+            } catch (IOException | RuntimeException e) {
+                if (attempt >= maxRangeRetries) {
+                    throw new FileOperationException("Failed to download file");
+                }
+            }
+        }
+    }
+
+    private void backoff(int attempt) {
+        try {
+            Thread.sleep(Math.min(100L << attempt, 5_000L));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new FileOperationException("Failed to download file");
+        }
+    }
+
+    /*
+    Stream over the ranges of one file. The window holds the ranges in file order, so it is also the reorder buffer:
+    a range fetched early waits there until the ranges before it have been read.
+     */
+    private final class RangeInputStream extends InputStream {
+        private final String eTag;
+        private final long length;
+        private final RangeOpener opener;
+        private final Deque<CompletableFuture<byte[]>> window = new ArrayDeque<>();
+        private long scheduled;
+        private byte[] current = new byte[0];
+        private int position;
+        private boolean closed;
+
+        RangeInputStream(String eTag, long length, RangeOpener opener) {
+            this.eTag = eTag;
+            this.length = length;
+            this.opener = opener;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (!advance()) {
+                return -1;
+            }
+            return current[position++] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int count) throws IOException {
+            if (count == 0) {
+                return 0;
+            }
+            if (!advance()) {
+                return -1;
+            }
+            int read = Math.min(count, current.length - position);
+            System.arraycopy(current, position, buffer, offset, read);
+            position += read;
+            return read;
+        }
+
+        @Override
+        public int available() {
+            return current.length - position;
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+            // Ranges being fetched complete in the background and are dropped.
+            window.forEach(range -> range.cancel(false));
+            window.clear();
+        }
+
+        /*
+        Make sure unread bytes are available, waiting for the next range when the current one is consumed.
+         */
+        private boolean advance() throws IOException {
+            if (closed) {
+                throw new IOException("Stream closed");
+            }
+            if (position < current.length) {
+                return true;
+            }
+            schedule();
+            if (window.isEmpty()) {
+                return false;
+            }
+            try {
+                current = window.removeFirst().join();
+            } catch (CompletionException e) {
+                close();
+                throw new IOException("Failed to download range", e.getCause());
+            }
+            position = 0;
+            schedule();
+            return true;
+        }
+
+        private void schedule() {
+            while (scheduled < length && window.size() < concurrency) {
+                long start = scheduled;
+                int rangeLength = (int) Math.min(partSize, length - start);
+                window.addLast(CompletableFuture.supplyAsync(() -> fetchRange(eTag, opener, start, rangeLength), executor));
+                scheduled += rangeLength;
+            }
+        }
+    }
+}
@@ -0,0 +1,222 @@
+package com.project.cloudfilestorage.service.impl;
+
+import com.project.cloudfilestorage.dto.FileDownload;
+import com.project.cloudfilestorage.dto.FileMetadata;
+import com.project.cloudfilestorage.exception.FilesNotFoundException;
+import com.project.cloudfilestorage.service.StorageBackend;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.*;
+import software.amazon.awssdk.services.s3.paginators.ListObjectsV2Iterable;
+
+import java.io.InputStream;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/*
+Storage backend on the synchronous S3 client, selected with s3.engine=sync (the default). Objects above the
+multipart threshold or of unknown length are written by the multipart uploader.
+Writes request the checksum algorithm of the integrity checker, which the SDK computes while it sends the body, and
+whole-object reads and HEAD requests ask for the stored checksum.
+ */
+@Component
+@ConditionalOnExpression("'${storage.backend:s3}' == 's3' and '${s3.engine:sync}' == 'sync'")
+public class S3StorageBackend implements StorageBackend {
+    private final S3Client s3Client;
+    private final MultipartUploader multipartUploader;
+    private final IntegrityChecker integrityChecker;
+    private final String bucketName;
+
+    public S3StorageBackend(S3Client s3Client, MultipartUploader multipartUploader, IntegrityChecker integrityChecker,
+                            @Value("${s3.bucket.name}") String bucketName) {
+        this.s3Client = s3Client;
+        this.multipartUploader = multipartUploader;
+        this.integrityChecker = integrityChecker;
+        this.bucketName = bucketName;
+    }
+
+    /*
+    Pages are only requested from S3 while the stream is being consumed.
+     */
+    @Override
+    public Stream<String> list(String prefix, String startAfter) {
+        ListObjectsV2Request request = ListObjectsV2Request.builder()
+                .bucket(bucketName)
+                .prefix(prefix)
+                .startAfter(startAfter)
+                .build();
+
+        return new ListObjectsV2Iterable(s3Client, request).contents().stream().map(S3Object::key);
+    }
+
+    @Override
+    public FileDownload get(String key, String fileName, String ifNoneMatch) {
+        return getObject(key, fileName, null, ifNoneMatch);
+    }
+
+    @Override
+    public FileDownload get(String key, String fileName, long start, long end) {
+        return getObject(key, fileName, "bytes=" + start + "-" + end, null);
+    }
+
+    @Override
+    public FileMetadata head(String key, String fileName) {
+        HeadObjectRequest request = HeadObjectRequest.builder()
+                .bucket(bucketName)
+                .key(key)
+                .checksumMode(ChecksumMode.ENABLED)
+                .build();
+        try {
+            HeadObjectResponse response = s3Client.headObject(request);
+            return new FileMetadata(
+                    fileName,
+                    response.contentType(),
+                    response.contentLength() != null ? response.contentLength() : -1,
+                    response.eTag(),
+                    response.lastModified(),
+                    response.contentEncoding(),
+                    response.metadata(),
+                    checksumAlgorithm(response.checksumCRC32C(), response.checksumSHA256()),
+                    checksum(response.checksumCRC32C(), response.checksumSHA256())
+            );
+        } catch (NoSuchKeyException e) {
+            throw new FilesNotFoundException("Files not found");
+        } catch (S3Exception e) {
+            if (e.statusCode() == 404) {
+                throw new FilesNotFoundException("Files not found");
+            }
+            throw e;
+        }
+    }
+
+    /*
+    Streams of known size below the multipart threshold are sent with a single PutObject, larger or unknown size
+    streams are split into parts.
+     */
+    @Override
+    public String put(String key, String contentType, String contentEncoding, Map<String, String> userMetadata,
+                      InputStream content, long contentLength) {
+        if (contentLength < 0 || multipartUploader.isMultipart(contentLength)) {
+            return multipartUploader.upload(bucketName, key, contentType, contentEncoding, userMetadata, content, contentLength);
+        }
+        PutObjectRequest putObjectRequest = PutObjectRequest.builder()
+                .bucket(bucketName)
+                .key(key)
+                .contentType(contentType)
+                .contentEncoding(contentEncoding)
+                .metadata(userMetadata)
+                .checksumAlgorithm(integrityChecker.s3Algorithm())
+                .build();
+
+        return s3Client.putObject(putObjectRequest, RequestBody.fromInputStream(content, contentLength)).eTag();
+    }
+
+    /*
+    Objects up to the CopyObject limit of 5 GB are copied with a single request, larger ones with parallel
+    UploadPartCopy requests. The source metadata is read first to choose, and is given to the multipart copy, which
+    does not carry it over by itself. The target gets a checksum computed by S3 during the copy.
+     */
+    @Override
+    public String copy(String sourceKey, String targetKey) {
+        FileMetadata source = head(sourceKey, sourceKey);
+        if (source.getContentLength() > MultipartUploader.MAX_COPY_OBJECT_SIZE) {
+            return multipartUploader.copy(bucketName, sourceKey, targetKey, source.getContentLength(),
+                    source.getContentType(), source.getContentEncoding(), source.getUserMetadata());
+        }
+        CopyObjectRequest request = CopyObjectRequest.builder()
+                .sourceBucket(bucketName)
+                .sourceKey(sourceKey)
+                .destinationBucket(bucketName)
+                .destinationKey(targetKey)
+                .checksumAlgorithm(integrityChecker.s3Algorithm())
+                .build();
+        try {
+            return s3Client.copyObject(request).copyObjectResult().eTag();
+        } catch (NoSuchKeyException e) {
+            throw new FilesNotFoundException("Files not found");
+        }
+    }
+
+    /*
+    S3 has no rename, the object is copied then the source deleted.
+     */
+    @Override
+    public String move(String sourceKey, String targetKey) {
+        String eTag = copy(sourceKey, targetKey);
+        delete(sourceKey);
+        return eTag;
+    }
+
+    @Override
+    public void delete(String key) {
+        s3Client.deleteObject(DeleteObjectRequest.builder()
+                .bucket(bucketName)
+                .key(key)
+                .build());
+    }
+
+    /*
+    Open the object stream with the synchronous client, optionally restricted to a byte range. The stored checksum
+    is only asked for the whole object.
+     */
+    protected FileDownload getObject(String key, String fileName, String range, String ifNoneMatch) {
+        GetObjectRequest request = GetObjectRequest.builder()
+                .bucket(bucketName)
+                .key(key)
+                .range(range)
+                .ifNoneMatch(ifNoneMatch)
+                .checksumMode(range == null ? ChecksumMode.ENABLED : null)
+                .build();
+        try{
+            ResponseInputStream<GetObjectResponse> response = s3Client.getObject(request);
+            return toFileDownload(fileName, response.response(), response);
+        }catch (NoSuchKeyException e) {
+            throw new FilesNotFoundException("Files not found");
+        }catch (S3Exception e) {
+            if (e.statusCode() == 304 && ifNoneMatch != null) {
+                return null;
+            }
+            throw e;
+        }
+    }
+
+    protected String getBucketName() {
+        return bucketName;
+    }
+
+    protected IntegrityChecker getIntegrityChecker() {
+        return integrityChecker;
+    }
+
+    /*
+    Helper method to wrap a GetObject response and its content stream.
+     */
+    protected static FileDownload toFileDownload(String fileName, GetObjectResponse object, InputStream content) {
+        return new FileDownload(new FileMetadata(
+                fileName,
+                object.contentType(),
+                object.contentLength() != null ? object.contentLength() : -1,
+                object.eTag(),
+                object.lastModified(),
+                object.contentEncoding(),
+                object.metadata(),
+                checksumAlgorithm(object.checksumCRC32C(), object.checksumSHA256()),
+                checksum(object.checksumCRC32C(), object.checksumSHA256())
+        ), content);
+    }
+
+    /*
+    Helper methods to pick the checksum returned by S3 among the algorithms the service writes.
+     */
+    private static String checksumAlgorithm(String crc32c, String sha256) {
+        return crc32c != null ? IntegrityChecker.CRC32C : IntegrityChecker.SHA256;
+    }
+
+    private static String checksum(String crc32c, String sha256) {
+        return crc32c != null ? crc32c : sha256;
+    }
+}
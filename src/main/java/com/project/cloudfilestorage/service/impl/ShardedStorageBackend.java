@@ -0,0 +1,564 @@
+package com.project.cloudfilestorage.service.impl;
+
+import com.project.cloudfilestorage.dto.FileDownload;
+import com.project.cloudfilestorage.dto.FileMetadata;
+import com.project.cloudfilestorage.exception.FileOperationException;
+import com.project.cloudfilestorage.exception.FilesNotFoundException;
+import com.project.cloudfilestorage.service.StorageBackend;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.reactivestreams.Publisher;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Component;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import java.util.zip.CRC32C;
+
+/*
+Hash-sharded key layout, selected with storage.layout=sharded. It wraps the configured backend and stores every key
+under one of `shards` prefixes picked from the CRC32C of the key (".shards/<shard>/<key>"), so the files of a heavy
+user are spread over many S3 prefixes and their request rate limits instead of one. The service keeps using plain
+"userName/fileName" keys. A prefix listing reads every shard concurrently, a chunk of keys ahead per shard, and merges
+them back in key order. The number of shards cannot change once files are stored.
+While storage.layout.legacy-reads is on (the default), keys written before the switch are still read, listed, moved
+and deleted under their flat key, and migrate moves them to their shard online. Turn it off once the migration is
+done to save the second lookup of missing keys.
+Reads answered from a flat key are published as layout.legacy.reads, migrated objects as layout.migrated.
+ */
+@Component
+@Primary
+@ConditionalOnProperty(name = "storage.layout", havingValue = "sharded")
+public class ShardedStorageBackend implements StorageBackend, DisposableBean, MeterBinder {
+    static final String SHARD_ROOT = ".shards/";
+    private static final int MAX_SHARDS = 256;
+    private static final int LOCK_STRIPES = 64;
+
+    private final StorageBackend delegate;
+    private final int shards;
+    private final boolean legacyReads;
+    private final int listingChunk;
+    private final int migrationConcurrency;
+    private final ExecutorService executor;
+    private final AtomicLong legacyReadCount = new AtomicLong();
+    private final AtomicLong migrated = new AtomicLong();
+    private final StampedLock[] migrationLocks = new StampedLock[LOCK_STRIPES];
+
+    /*
+    The delegate is the backend selected with storage.backend: being the primary backend, this bean is not a
+    candidate for its own injection.
+     */
+    public ShardedStorageBackend(StorageBackend delegate,
+                                 @Value("${storage.layout.shards:16}") int shards,
+                                 @Value("${storage.layout.legacy-reads:true}") boolean legacyReads,
+                                 @Value("${storage.layout.listing-chunk:1000}") int listingChunk,
+                                 @Value("${storage.layout.migration-concurrency:8}") int migrationConcurrency,
+                                 @Value("${storage.layout.threads:16}") int threads,
+                                 @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        if (shards < 1 || shards > MAX_SHARDS) {
+            throw new IllegalArgumentException("Number of shards must be between 1 and " + MAX_SHARDS);
+        }
+        if (listingChunk < 1 || migrationConcurrency < 1 || threads < 1) {
+            throw new IllegalArgumentException("Invalid key layout configuration");
+        }
+        this.delegate = delegate;
+        this.shards = shards;
+        this.legacyReads = legacyReads;
+        this.listingChunk = listingChunk;
+        this.migrationConcurrency = migrationConcurrency;
+        this.executor = TransferExecutors.create("key-layout", threads, virtualThreads);
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            migrationLocks[i] = new StampedLock();
+        }
+    }
+
+    /*
+    Whether the user name is, or is inside, the directory holding the shards. Reserved whatever the layout, so
+    switching to the sharded layout cannot hide the files of a user.
+     */
+    public static boolean isReserved(String userName) {
+        return (userName + "/").startsWith(SHARD_ROOT);
+    }
+
+    /*
+    Key the given key is stored under in the sharded layout.
+     */
+    public String shardedKey(String key) {
+        CRC32C crc = new CRC32C();
+        crc.update(key.getBytes(StandardCharsets.UTF_8));
+        return shardRoot((int) (crc.getValue() % shards)) + key;
+    }
+
+    /*
+    The shards, and the flat keys while they are read, are listed concurrently and merged. A key present both in its
+    shard and under its flat key, which happens while it is being migrated, is returned once.
+     */
+    @Override
+    public Stream<String> list(String prefix, String startAfter) {
+        List<ShardListing> listings = new ArrayList<>(shards + 1);
+        for (int shard = 0; shard < shards; shard++) {
+            listings.add(new ShardListing(shardRoot(shard), prefix, startAfter));
+        }
+        if (legacyReads) {
+            listings.add(new ShardListing("", prefix, startAfter));
+        }
+        MergingIterator iterator = new MergingIterator(listings);
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator,
+                        Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.NONNULL), false)
+                .onClose(() -> listings.forEach(ShardListing::close));
+    }
+
+    @Override
+    public FileDownload get(String key, String fileName, String ifNoneMatch) {
+        return read(key, storedKey -> delegate.get(storedKey, fileName, ifNoneMatch));
+    }
+
+    @Override
+    public FileDownload get(String key, String fileName, long start, long end) {
+        return read(key, storedKey -> delegate.get(storedKey, fileName, start, end));
+    }
+
+    /*
+    Same lookup order as get, each read chained on the miss of the previous one.
+     */
+    @Override
+    public CompletableFuture<FileDownload> getAsync(String key, String fileName) {
+        String sharded = shardedKey(key);
+        return delegate.getAsync(sharded, fileName).exceptionallyCompose(e -> {
+            if (!legacyReads || !(cause(e) instanceof FilesNotFoundException)) {
+                return CompletableFuture.failedFuture(cause(e));
+            }
+            return delegate.getAsync(key, fileName)
+                    .thenApply(download -> {
+                        legacyReadCount.incrementAndGet();
+                        return download;
+                    })
+                    .exceptionallyCompose(flat -> cause(flat) instanceof FilesNotFoundException
+                            ? delegate.getAsync(sharded, fileName)
+                            : CompletableFuture.failedFuture(cause(flat)));
+        });
+    }
+
+    @Override
+    public FileMetadata head(String key, String fileName) {
+        return read(key, storedKey -> delegate.head(storedKey, fileName));
+    }
+
+    /*
+    Writes always go to the shard. A flat copy left from before the switch is hidden by it and removed by the
+    migration.
+     */
+    @Override
+    public String put(String key, String contentType, String contentEncoding, Map<String, String> userMetadata,
+                      InputStream content, long contentLength) {
+        return writing(() -> delegate.put(shardedKey(key), contentType, contentEncoding, userMetadata, content, contentLength), key);
+    }
+
+    @Override
+    public boolean supportsAsyncPut(long contentLength) {
+        return delegate.supportsAsyncPut(contentLength);
+    }
+
+    /*
+    The migration lock of the key is held until the write completes.
+     */
+    @Override
+    public CompletableFuture<String> putAsync(String key, String contentType, Map<String, String> userMetadata,
+                                              Publisher<ByteBuffer> content, long contentLength) {
+        Lock lock = migrationLocks[stripe(key)].asReadLock();
+        lock.lock();
+        try {
+            return delegate.putAsync(shardedKey(key), contentType, userMetadata, content, contentLength)
+                    .whenComplete((eTag, e) -> lock.unlock());
+        } catch (RuntimeException e) {
+            lock.unlock();
+            throw e;
+        }
+    }
+
+    @Override
+    public String copy(String sourceKey, String targetKey) {
+        String target = shardedKey(targetKey);
+        return writing(() -> read(sourceKey, source -> delegate.copy(source, target)), targetKey);
+    }
+
+    /*
+    A stale flat copy of the source is deleted as well, it would otherwise show up again under the old name.
+     */
+    @Override
+    public String move(String sourceKey, String targetKey) {
+        String target = shardedKey(targetKey);
+        return writing(() -> {
+            String eTag = read(sourceKey, source -> delegate.move(source, target));
+            if (legacyReads) {
+                delegate.delete(sourceKey);
+            }
+            return eTag;
+        }, sourceKey, targetKey);
+    }
+
+    @Override
+    public void delete(String key) {
+        writing(() -> {
+            delegate.delete(shardedKey(key));
+            if (legacyReads) {
+                delegate.delete(key);
+            }
+            return null;
+        }, key);
+    }
+
+    /*
+    The shard when the object is there, its flat key when it has not been migrated yet.
+     */
+    @Override
+    public String locate(String key) {
+        return read(key, storedKey -> {
+            delegate.head(storedKey, key);
+            return storedKey;
+        }, shardedKey(key));
+    }
+
+    @Override
+    public String writeKey(String key) {
+        return shardedKey(key);
+    }
+
+    /*
+    Move the objects stored under a flat key starting with the prefix to their shard, `migrationConcurrency` at a
+    time, and return how many were moved. Reads keep working meanwhile: a key is copied to its shard before its flat
+    copy is deleted, and a read that misses both looks at the shard again. An object already written to its shard
+    since the switch is newer, its flat copy is only deleted. The callback gets each migrated key.
+    Writes through this instance wait while their key is migrated, so the old copy cannot overwrite a write made
+    between the check of the shard and the move. Writes from other instances are not covered, the backends offer no
+    conditional copy: migrate while a single instance takes writes.
+     */
+    public long migrate(String prefix, Consumer<String> onMigrated) {
+        Semaphore permits = new Semaphore(migrationConcurrency);
+        AtomicLong count = new AtomicLong();
+        AtomicReference<RuntimeException> failure = new AtomicReference<>();
+        try (Stream<String> keys = delegate.list(prefix, null)) {
+            Iterator<String> iterator = keys.filter(key -> !key.startsWith(SHARD_ROOT)).iterator();
+            while (iterator.hasNext() && failure.get() == null) {
+                String key = iterator.next();
+                permits.acquire();
+                try {
+                    executor.execute(() -> {
+                        try {
+                            if (migrateKey(key)) {
+                                count.incrementAndGet();
+                                migrated.incrementAndGet();
+                                onMigrated.accept(key);
+                            }
+                        } catch (RuntimeException e) {
+                            failure.compareAndSet(null, e);
+                        } finally {
+                            permits.release();
+                        }
+                    });
+                } catch (RejectedExecutionException e) {
+                    // The pool is shut down, the task will not give its permit back.
+                    permits.release();
+                    failure.compareAndSet(null, e);
+                }
+            }
+            permits.acquire(migrationConcurrency);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new FileOperationException("Failed to migrate files");
+        }
+        if (failure.get() != null) {
+            throw new FileOperationException("Failed to migrate files");
+        }
+        return count.get();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("layout.legacy.reads", legacyReadCount, AtomicLong::get).register(registry);
+        FunctionCounter.builder("layout.migrated", migrated, AtomicLong::get).register(registry);
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+    }
+
+    /*
+    Helper method to move one flat key to its shard. Returns false when the key disappeared in the meantime.
+     */
+    private boolean migrateKey(String key) {
+        String target = shardedKey(key);
+        Lock lock = migrationLocks[stripe(key)].asWriteLock();
+        lock.lock();
+        try {
+            try {
+                delegate.head(target, key);
+                delegate.delete(key);
+                return true;
+            } catch (FilesNotFoundException e) {
+                // Not written since the switch, the flat copy is the current one.
+            }
+            try {
+                delegate.move(key, target);
+                return true;
+            } catch (FilesNotFoundException e) {
+                return false;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /*
+    Helper method to run a write while none of its keys is being migrated. Writes share the locks, so they never wait
+    for each other, only for the migration of a key of the same stripe. The stripes are taken in order, a write on two
+    keys cannot deadlock with another one. The locks have no owner, an asynchronous write releases its lock from the
+    thread completing it.
+     */
+    private <T> T writing(Supplier<T> write, String... keys) {
+        int[] stripes = Arrays.stream(keys).mapToInt(this::stripe).distinct().sorted().toArray();
+        for (int i = 0; i < stripes.length; i++) {
+            migrationLocks[stripes[i]].asReadLock().lock();
+        }
+        try {
+            return write.get();
+        } finally {
+            for (int i = stripes.length - 1; i >= 0; i--) {
+                migrationLocks[stripes[i]].asReadLock().unlock();
+            }
+        }
+    }
+
+    private int stripe(String key) {
+        return Math.floorMod(key.hashCode(), LOCK_STRIPES);
+    }
+
+    private <T> T read(String key, Function<String, T> reader) {
+        return read(key, reader, null);
+    }
+
+    /*
+    Helper method to read a key from its shard, then from its flat key while those are read, then from its shard
+    again in case the migration moved it between the two reads. The fallback value is returned instead of the last
+    miss when one is given.
+     */
+    private <T> T read(String key, Function<String, T> reader, T fallback) {
+        String sharded = shardedKey(key);
+        try {
+            return reader.apply(sharded);
+        } catch (FilesNotFoundException e) {
+            if (!legacyReads) {
+                return orThrow(fallback, e);
+            }
+        }
+        try {
+            T result = reader.apply(key);
+            legacyReadCount.incrementAndGet();
+            return result;
+        } catch (FilesNotFoundException e) {
+            // Moved by the migration between the two reads.
+        }
+        try {
+            return reader.apply(sharded);
+        } catch (FilesNotFoundException e) {
+            return orThrow(fallback, e);
+        }
+    }
+
+    private static Throwable cause(Throwable e) {
+        return e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+    }
+
+    private static <T> T orThrow(T fallback, FilesNotFoundException e) {
+        if (fallback == null) {
+            throw e;
+        }
+        return fallback;
+    }
+
+    private String shardRoot(int shard) {
+        return SHARD_ROOT + String.format("%02x", shard) + "/";
+    }
+
+    /*
+    Listing of one shard, fetched in chunks on the executor. The next chunk is requested as soon as the current one is
+    handed to the merge, so every shard is read ahead while the others are merged. Fetching never waits for the
+    reader, a slow reader only delays the next request.
+    The listing stream is only used by the fetches, one at a time, and closed after the last one has finished, so
+    closing never races a fetch still walking it.
+     */
+    private final class ShardListing {
+        private final String root;
+        private final String prefix;
+        private final String startAfter;
+        private volatile Stream<String> keys;
+        private Iterator<String> iterator;
+        private volatile boolean exhausted;
+        private volatile boolean closed;
+        private CompletableFuture<List<String>> pending;
+        private List<String> chunk = List.of();
+        private int position;
+
+        private ShardListing(String root, String prefix, String startAfter) {
+            this.root = root;
+            this.prefix = prefix;
+            this.startAfter = startAfter;
+            this.pending = CompletableFuture.supplyAsync(this::fetch, executor);
+        }
+
+        /*
+        Next key of the shard without the shard directory, or null once the shard is exhausted.
+         */
+        private String next() {
+            while (position == chunk.size()) {
+                if (pending == null) {
+                    return null;
+                }
+                chunk = await(pending);
+                position = 0;
+                pending = exhausted ? null : CompletableFuture.supplyAsync(this::fetch, executor);
+            }
+            return chunk.get(position++);
+        }
+
+        private List<String> fetch() {
+            if (closed) {
+                return List.of();
+            }
+            if (keys == null) {
+                keys = delegate.list(root + prefix, startAfter != null ? root + startAfter : null);
+                iterator = keys.iterator();
+            }
+            List<String> fetched = new ArrayList<>(listingChunk);
+            while (fetched.size() < listingChunk && !closed && iterator.hasNext()) {
+                String key = iterator.next();
+                // The flat listing of a short prefix also walks the shards.
+                if (root.isEmpty() && key.startsWith(SHARD_ROOT)) {
+                    continue;
+                }
+                fetched.add(key.substring(root.length()));
+            }
+            exhausted = !iterator.hasNext();
+            return fetched;
+        }
+
+        private List<String> await(CompletableFuture<List<String>> future) {
+            try {
+                return future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new FileOperationException("Failed to list files");
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof RuntimeException cause) {
+                    throw cause;
+                }
+                throw new FileOperationException("Failed to list files");
+            }
+        }
+
+        /*
+        Stops the fetch in progress at its next key and closes the stream once it has returned, without waiting.
+         */
+        private void close() {
+            closed = true;
+            if (pending != null) {
+                pending.whenComplete((chunk, e) -> closeKeys());
+            } else {
+                closeKeys();
+            }
+        }
+
+        private void closeKeys() {
+            if (keys != null) {
+                keys.close();
+            }
+        }
+    }
+
+    /*
+    K-way merge of the shard listings, in key order and without duplicates.
+     */
+    private static final class MergingIterator implements Iterator<String> {
+        private final List<ShardListing> listings;
+        private final PriorityQueue<Head> heads = new PriorityQueue<>(Comparator.comparing(Head::key));
+        private boolean started;
+        private String next;
+        private String last;
+
+        private MergingIterator(List<ShardListing> listings) {
+            this.listings = listings;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next != null) {
+                return true;
+            }
+            if (!started) {
+                started = true;
+                listings.forEach(this::advance);
+            }
+            while (!heads.isEmpty()) {
+                Head head = heads.poll();
+                advance(head.listing());
+                if (!head.key().equals(last)) {
+                    next = head.key();
+                    last = next;
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public String next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            String key = next;
+            next = null;
+            return key;
+        }
+
+        private void advance(ShardListing listing) {
+            String key = listing.next();
+            if (key != null) {
+                heads.add(new Head(key, listing));
+            }
+        }
+
+        private record Head(String key, ShardListing listing) {
+        }
+    }
+}
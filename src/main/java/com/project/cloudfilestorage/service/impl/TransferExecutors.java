@@ -0,0 +1,30 @@
+package com.project.cloudfilestorage.service.impl;
+
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+Factory of the executors running S3 transfers in the background. With virtual threads every task gets its own virtual
+thread, so blocking on S3 does not tie up a carrier thread and the concurrency is bounded by the callers (per-transfer
+semaphores and the S3 connection pool) instead of the pool size. Otherwise a fixed pool of daemon platform threads is
+used. Virtual threads need a Java 21 runtime.
+ */
+final class TransferExecutors {
+    private TransferExecutors() {
+    }
+
+    static ExecutorService create(String name, int platformThreads, boolean virtualThreads) {
+        if (virtualThreads) {
+            ThreadFactory factory = new VirtualThreadTaskExecutor(name + "-").getVirtualThreadFactory();
+            return new ThreadPoolExecutor(0, Integer.MAX_VALUE, 0, TimeUnit.SECONDS, new SynchronousQueue<>(), factory);
+        }
+        AtomicInteger threadCount = new AtomicInteger();
+        return Executors.newFixedThreadPool(platformThreads, runnable -> {
+            Thread thread = new Thread(runnable, name + "-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+}
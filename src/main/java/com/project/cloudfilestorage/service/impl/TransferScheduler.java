@@ -0,0 +1,404 @@
+package com.project.cloudfilestorage.service.impl;
+
+import com.project.cloudfilestorage.exception.TransferRejectedException;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+Admission control of the transfers going through the service, enabled with transfer.admission.enabled. A transfer
+takes one of the `perUserConcurrency` slots of its user, then one of the `maxInFlight` slots shared by everyone, so
+the requests of a busy user queue on its own slots instead of holding the shared ones. A transfer that gets no slot
+within the queue timeout, or finds every shared slot taken and `maxQueued` transfers already waiting, is rejected:
+with 429 when its user is at its limit, with 503 when the service is, and a Retry-After in both cases.
+The bytes of an admitted transfer are paced by token buckets, one per user and one for the service, each refilled at
+its configured rate in bytes per second and holding at most one second of it. A rate of 0 leaves the bytes unpaced.
+Published metrics: transfer.active, transfer.queued by scope (global, user), transfer.queue.wait by result (admitted,
+rejected), transfer.rejected by reason (user, global) and transfer.throttled, the time spent pacing bytes.
+ */
+@Component
+public class TransferScheduler implements MeterBinder {
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    private final boolean enabled;
+    private final int maxInFlight;
+    private final int perUserConcurrency;
+    private final int maxQueued;
+    private final long queueTimeoutNanos;
+    private final Duration retryAfter;
+    private final long perUserBandwidth;
+    private final Semaphore slots;
+    private final TokenBucket bandwidth;
+    private final Map<String, UserState> users = new ConcurrentHashMap<>();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicInteger userQueued = new AtomicInteger();
+    private final AtomicLong admitted = new AtomicLong();
+    private final AtomicLong admittedWaitNanos = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong rejectedWaitNanos = new AtomicLong();
+    private final AtomicLong userRejections = new AtomicLong();
+    private final AtomicLong globalRejections = new AtomicLong();
+    private final AtomicLong throttledNanos = new AtomicLong();
+
+    public TransferScheduler(@Value("${transfer.admission.enabled:false}") boolean enabled,
+                             @Value("${transfer.admission.max-in-flight:200}") int maxInFlight,
+                             @Value("${transfer.admission.per-user-concurrency:8}") int perUserConcurrency,
+                             @Value("${transfer.admission.max-queued:500}") int maxQueued,
+                             @Value("${transfer.admission.queue-timeout:2s}") Duration queueTimeout,
+                             @Value("${transfer.admission.retry-after:1s}") Duration retryAfter,
+                             @Value("${transfer.bandwidth.global:0}") long globalBandwidth,
+                             @Value("${transfer.bandwidth.per-user:0}") long perUserBandwidth) {
+        if (maxInFlight < 1 || perUserConcurrency < 1 || maxQueued < 0 || queueTimeout.isNegative()
+                || retryAfter.isNegative() || globalBandwidth < 0 || perUserBandwidth < 0) {
+            throw new IllegalArgumentException("Invalid transfer admission configuration");
+        }
+        this.enabled = enabled;
+        this.maxInFlight = maxInFlight;
+        this.perUserConcurrency = perUserConcurrency;
+        this.maxQueued = maxQueued;
+        this.queueTimeoutNanos = queueTimeout.toNanos();
+        this.retryAfter = retryAfter;
+        this.perUserBandwidth = perUserBandwidth;
+        this.slots = new Semaphore(maxInFlight, true);
+        this.bandwidth = globalBandwidth > 0 ? new TokenBucket(globalBandwidth) : null;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /*
+    Wait for a slot of the user and a shared slot, and return the permit holding them. The permit has to be closed
+    once the transfer is over. Throws TransferRejectedException when the slots are not granted in time. With
+    admission control disabled the permit holds nothing and does not pace.
+     */
+    public Permit admit(String userName) {
+        if (!enabled) {
+            return new Permit(null, null);
+        }
+        long start = System.nanoTime();
+        if (queued.get() + userQueued.get() >= maxQueued && slots.availablePermits() == 0) {
+            throw reject(false, start);
+        }
+        UserState user = users.compute(userName, (name, state) -> {
+            UserState current = state != null ? state : new UserState(perUserConcurrency, perUserBandwidth);
+            current.refs++;
+            return current;
+        });
+        boolean userSlot = false;
+        try {
+            userSlot = acquire(user.slots, userQueued, start + queueTimeoutNanos);
+            if (!userSlot) {
+                throw reject(true, start);
+            }
+            if (!acquire(slots, queued, start + queueTimeoutNanos)) {
+                throw reject(false, start);
+            }
+        } catch (RuntimeException e) {
+            if (userSlot) {
+                user.slots.release();
+            }
+            release(userName);
+            throw e;
+        }
+        admitted.incrementAndGet();
+        admittedWaitNanos.addAndGet(System.nanoTime() - start);
+        return new Permit(userName, user);
+    }
+
+    /*
+    Drop the users whose last transfer ended while their bucket was still refilling, once it is full again. Users
+    with a full bucket are dropped by their last transfer already, so admit never walks the map.
+     */
+    @Scheduled(fixedDelayString = "${transfer.admission.sweep-interval:60000}")
+    public void sweep() {
+        users.forEach((userName, user) -> users.computeIfPresent(userName, (name, state) -> state.isIdle() ? null : state));
+    }
+
+    public int trackedUsers() {
+        return users.size();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("transfer.active", slots, semaphore -> maxInFlight - semaphore.availablePermits()).register(registry);
+        Gauge.builder("transfer.queued", queued, AtomicInteger::get).tag("scope", "global").register(registry);
+        Gauge.builder("transfer.queued", userQueued, AtomicInteger::get).tag("scope", "user").register(registry);
+        FunctionTimer.builder("transfer.queue.wait", admitted, AtomicLong::get, count -> admittedWaitNanos.get(), TimeUnit.NANOSECONDS)
+                .tag("result", "admitted").register(registry);
+        FunctionTimer.builder("transfer.queue.wait", rejected, AtomicLong::get, count -> rejectedWaitNanos.get(), TimeUnit.NANOSECONDS)
+                .tag("result", "rejected").register(registry);
+        FunctionCounter.builder("transfer.rejected", userRejections, AtomicLong::get).tag("reason", "user").register(registry);
+        FunctionCounter.builder("transfer.rejected", globalRejections, AtomicLong::get).tag("reason", "global").register(registry);
+        FunctionCounter.builder("transfer.throttled", throttledNanos, nanos -> nanos.get() / 1e9).baseUnit("seconds").register(registry);
+    }
+
+    /*
+    Helper method to take a slot, counting the caller as queued while it waits for one.
+     */
+    private static boolean acquire(Semaphore semaphore, AtomicInteger waiting, long deadline) {
+        if (semaphore.tryAcquire()) {
+            return true;
+        }
+        waiting.incrementAndGet();
+        try {
+            return semaphore.tryAcquire(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            waiting.decrementAndGet();
+        }
+    }
+
+    private TransferRejectedException reject(boolean userLimit, long start) {
+        rejected.incrementAndGet();
+        rejectedWaitNanos.addAndGet(System.nanoTime() - start);
+        (userLimit ? userRejections : globalRejections).incrementAndGet();
+        return new TransferRejectedException(userLimit ? "Too many transfers in progress for the user"
+                : "Too many transfers in progress", userLimit, retryAfter);
+    }
+
+    /*
+    Helper method to drop the state of a user once it has no transfer left and its bucket is full again, so that
+    idle users do not accumulate and a user cannot skip its pacing by starting transfers one after the other.
+     */
+    private void release(String userName) {
+        users.computeIfPresent(userName, (name, user) -> --user.refs == 0 && user.isIdle() ? null : user);
+    }
+
+    /*
+    Slots held by an admitted transfer, and the pacing of its bytes. Closing it more than once has no effect.
+     */
+    public final class Permit implements AutoCloseable {
+        private final String userName;
+        private final UserState user;
+        private final AtomicInteger open = new AtomicInteger(1);
+
+        private Permit(String userName, UserState user) {
+            this.userName = userName;
+            this.user = user;
+        }
+
+        public InputStream throttle(InputStream content) {
+            if (!isPaced()) {
+                return content;
+            }
+            return new FilterInputStream(content) {
+                @Override
+                public int read() throws IOException {
+                    int read = in.read();
+                    if (read != -1) {
+                        pace(1);
+                    }
+                    return read;
+                }
+
+                @Override
+                public int read(byte[] buffer, int offset, int length) throws IOException {
+                    int read = in.read(buffer, offset, Math.min(length, CHUNK_SIZE));
+                    if (read > 0) {
+                        pace(read);
+                    }
+                    return read;
+                }
+            };
+        }
+
+        public OutputStream throttle(OutputStream target) {
+            if (!isPaced()) {
+                return target;
+            }
+            return new FilterOutputStream(target) {
+                @Override
+                public void write(int b) throws IOException {
+                    pace(1);
+                    out.write(b);
+                }
+
+                @Override
+                public void write(byte[] buffer, int offset, int length) throws IOException {
+                    while (length > 0) {
+                        int chunk = Math.min(length, CHUNK_SIZE);
+                        pace(chunk);
+                        out.write(buffer, offset, chunk);
+                        offset += chunk;
+                        length -= chunk;
+                    }
+                }
+            };
+        }
+
+        /*
+        An uploaded file whose content is paced as it is read.
+         */
+        public MultipartFile throttle(MultipartFile file) {
+            if (!isPaced()) {
+                return file;
+            }
+            return new PacedMultipartFile(file, this);
+        }
+
+        @Override
+        public void close() {
+            if (user != null && open.getAndSet(0) == 1) {
+                slots.release();
+                user.slots.release();
+                release(userName);
+            }
+        }
+
+        private boolean isPaced() {
+            return user != null && (user.bandwidth != null || bandwidth != null);
+        }
+
+        /*
+        Helper method to take the bytes from the buckets and wait until both are out of debt.
+         */
+        private void pace(long bytes) throws InterruptedIOException {
+            long wait = Math.max(user.bandwidth != null ? user.bandwidth.take(bytes) : 0,
+                    bandwidth != null ? bandwidth.take(bytes) : 0);
+            if (wait <= 0) {
+                return;
+            }
+            throttledNanos.addAndGet(wait);
+            try {
+                TimeUnit.NANOSECONDS.sleep(wait);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Transfer interrupted");
+            }
+        }
+    }
+
+    /*
+    Slots and bucket of one user. refs counts the transfers of the user that are waiting or admitted, it is only
+    changed inside the compute calls of the user map.
+     */
+    private static final class UserState {
+        private final Semaphore slots;
+        private final TokenBucket bandwidth;
+        private int refs;
+
+        private UserState(int concurrency, long rate) {
+            this.slots = new Semaphore(concurrency, true);
+            this.bandwidth = rate > 0 ? new TokenBucket(rate) : null;
+        }
+
+        private boolean isIdle() {
+            return refs == 0 && (bandwidth == null || bandwidth.isFull());
+        }
+    }
+
+    /*
+    Token bucket holding at most one second of its rate. Bytes are always taken, a bucket may go into debt, and the
+    caller waits for the time it takes to pay it back; concurrent callers so wait in turn.
+     */
+    private static final class TokenBucket {
+        private final long rate;
+        private double tokens;
+        private long updated;
+
+        private TokenBucket(long rate) {
+            this.rate = rate;
+            this.tokens = rate;
+            this.updated = System.nanoTime();
+        }
+
+        /*
+        Take the bytes and return the nanoseconds to wait before sending them.
+         */
+        private synchronized long take(long bytes) {
+            refill();
+            tokens -= bytes;
+            return tokens >= 0 ? 0 : (long) (-tokens * 1_000_000_000L / rate);
+        }
+
+        private synchronized boolean isFull() {
+            refill();
+            return tokens >= rate;
+        }
+
+        private void refill() {
+            long now = System.nanoTime();
+            tokens = Math.min(rate, tokens + (now - updated) * (double) rate / 1_000_000_000L);
+            updated = now;
+        }
+    }
+
+    /*
+    Uploaded file handing out paced streams of its content. The other methods are answered by the file itself.
+     */
+    private static final class PacedMultipartFile implements MultipartFile {
+        private final MultipartFile file;
+        private final Permit permit;
+
+        private PacedMultipartFile(MultipartFile file, Permit permit) {
+            this.file = file;
+            this.permit = permit;
+        }
+
+        @Override
+        public String getName() {
+            return file.getName();
+        }
+
+        @Override
+        public String getOriginalFilename() {
+            return file.getOriginalFilename();
+        }
+
+        @Override
+        public String getContentType() {
+            return file.getContentType();
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return file.isEmpty();
+        }
+
+        @Override
+        public long getSize() {
+            return file.getSize();
+        }
+
+        @Override
+        public byte[] getBytes() throws IOException {
+            try (InputStream content = getInputStream()) {
+                return content.readAllBytes();
+            }
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            return permit.throttle(file.getInputStream());
+        }
+
+        @Override
+        public void transferTo(File dest) throws IOException {
+            file.transferTo(dest);
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package com.project.cloudfilestorage.service.impl;
+
+import com.project.cloudfilestorage.dto.FileMetadata;
+import com.project.cloudfilestorage.dto.PresignedTransfer;
+import com.project.cloudfilestorage.exception.BadRequestException;
+import com.project.cloudfilestorage.exception.FilesNotFoundException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ContentDisposition;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.awscore.presigner.PresignedRequest;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.*;
+import software.amazon.awssdk.services.s3.presigner.S3Presigner;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/*
+Presigned S3 URLs, enabled with presign.enabled, so large transfers go between the client and S3 directly while the
+service only validates the request. Uploads of at least the multipart threshold are split into presigned parts, and
+the upload is completed or aborted by the service from the parts S3 received. Downloads of at least
+presign.redirect-threshold are redirected to a presigned GET instead of being proxied.
+Needs the s3 storage backend.
+ */
+@Component
+public class UrlPresigner {
+    private static final long MAX_OBJECT_SIZE = 5L * 1024 * 1024 * 1024 * 1024;
+
+    private final boolean enabled;
+    private final Duration expiry;
+    private final long redirectThreshold;
+    private final long multipartThreshold;
+    private final long partSize;
+    private final S3Presigner presigner;
+    private final S3Client s3Client;
+    private final String bucketName;
+
+    /*
+    The clients are only defined with the s3 storage backend, they are null otherwise.
+     */
+    public UrlPresigner(@Value("${presign.enabled:false}") boolean enabled,
+                        @Value("${presign.expiry:15m}") Duration expiry,
+                        @Value("${presign.redirect-threshold:67108864}") long redirectThreshold,
+                        @Value("${s3.upload.multipart.threshold:67108864}") long multipartThreshold,
+                        @Value("${s3.upload.multipart.part-size:16777216}") long partSize,
+                        @Nullable S3Presigner presigner, @Nullable S3Client s3Client,
+                        @Value("${s3.bucket.name:}") String bucketName) {
+        if (enabled && (presigner == null || s3Client == null)) {
+            throw new IllegalStateException("Presigned URLs need the s3 storage backend");
+        }
+        if (expiry.isNegative() || expiry.isZero() || expiry.compareTo(Duration.ofDays(7)) > 0) {
+            throw new IllegalArgumentException("Presigned URL expiry must be between 1 second and 7 days");
+        }
+        if (partSize < MultipartUploader.MIN_PART_SIZE) {
+            throw new IllegalArgumentException("Multipart part size must be at least " + MultipartUploader.MIN_PART_SIZE + " bytes");
+        }
+        this.enabled = enabled;
+        this.expiry = expiry;
+        this.redirectThreshold = redirectThreshold;
+        this.multipartThreshold = Math.max(multipartThreshold, partSize);
+        this.partSize = partSize;
+        this.presigner = presigner;
+        this.s3Client = s3Client;
+        this.bucketName = bucketName;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /*
+    Whether a download of the given stored size should be redirected to S3 rather than proxied.
+     */
+    public boolean shouldRedirect(long contentLength) {
+        return enabled && contentLength >= redirectThreshold;
+    }
+
+    /*
+    Presign a GET of the stored key. The response headers are overridden with the ones of the file, so a blob or an
+    encoded object is received with the name, type and encoding the proxied download would have.
+     */
+    public PresignedTransfer presignGet(String key, FileMetadata metadata) {
+        checkEnabled();
+        GetObjectRequest request = GetObjectRequest.builder()
+                .bucket(bucketName)
+                .key(key)
+                .responseContentType(metadata.getContentType())
+                .responseContentEncoding(metadata.getContentEncoding())
+                .responseContentDisposition(ContentDisposition.attachment().filename(metadata.getFileName()).build().toString())
+                .build();
+        PresignedRequest presigned = presigner.presignGetObject(get -> get.signatureDuration(expiry).getObjectRequest(request));
+        return new PresignedTransfer("GET", List.of(presigned.url().toString()), signedHeaders(presigned), null,
+                metadata.getContentLength(), presigned.expiration());
+    }
+
+    /*
+    Presign the upload of a file of the given length: one PUT below the multipart threshold, otherwise a new multipart
+    upload with one URL per part. The part size grows when the file would not fit in 10 000 parts.
+     */
+    public PresignedTransfer presignPut(String key, String contentType, long contentLength) {
+        checkEnabled();
+        if (contentLength < 0 || contentLength > MAX_OBJECT_SIZE) {
+            throw new BadRequestException("Content length must be between 0 and " + MAX_OBJECT_SIZE);
+        }
+        if (contentLength < multipartThreshold) {
+            PutObjectRequest request = PutObjectRequest.builder()
+                    .bucket(bucketName)
+                    .key(key)
+                    .contentType(contentType)
+                    .contentLength(contentLength)
+                    .build();
+            PresignedRequest presigned = presigner.presignPutObject(put -> put.signatureDuration(expiry).putObjectRequest(request));
+            return new PresignedTransfer("PUT", List.of(presigned.url().toString()), signedHeaders(presigned), null,
+                    contentLength, presigned.expiration());
+        }
+
+        long size = Math.max(partSize, (contentLength + MultipartUploader.MAX_PARTS - 1) / MultipartUploader.MAX_PARTS);
+        int parts = (int) ((contentLength + size - 1) / size);
+        String uploadId = s3Client.createMultipartUpload(CreateMultipartUploadRequest.builder()
+                .bucket(bucketName)
+                .key(key)
+                .contentType(contentType)
+                .build()).uploadId();
+        List<String> urls = new ArrayList<>(parts);
+        PresignedRequest presigned = null;
+        for (int partNumber = 1; partNumber <= parts; partNumber++) {
+            UploadPartRequest request = UploadPartRequest.builder()
+                    .bucket(bucketName)
+                    .key(key)
+                    .uploadId(uploadId)
+                    .partNumber(partNumber)
+                    .build();
+            presigned = presigner.presignUploadPart(part -> part.signatureDuration(expiry).uploadPartRequest(request));
+            urls.add(presigned.url().toString());
+        }
+        return new PresignedTransfer("PUT", urls, signedHeaders(presigned), uploadId, size, presigned.expiration());
+    }
+
+    /*
+    Complete a presigned multipart upload with the parts S3 received, so the client does not have to report the part
+    ETags, and return the ETag of the object.
+     */
+    public String complete(String key, String uploadId) {
+        checkEnabled();
+        try {
+            List<CompletedPart> parts = s3Client.listPartsPaginator(ListPartsRequest.builder()
+                            .bucket(bucketName)
+                            .key(key)
+                            .uploadId(uploadId)
+                            .build())
+                    .parts().stream()
+                    .map(part -> CompletedPart.builder().partNumber(part.partNumber()).eTag(part.eTag()).build())
+                    .toList();
+            if (parts.isEmpty()) {
+                throw new BadRequestException("No part has been uploaded");
+            }
+            return s3Client.completeMultipartUpload(CompleteMultipartUploadRequest.builder()
+                    .bucket(bucketName)
+                    .key(key)
+                    .uploadId(uploadId)
+                    .multipartUpload(CompletedMultipartUpload.builder().parts(parts).build())
+                    .build()).eTag();
+        } catch (NoSuchUploadException e) {
+            throw new FilesNotFoundException("Upload not found");
+        }
+    }
+
+    public void abort(String key, String uploadId) {
+        checkEnabled();
+        try {
+            s3Client.abortMultipartUpload(AbortMultipartUploadRequest.builder()
+                    .bucket(bucketName)
+                    .key(key)
+                    .uploadId(uploadId)
+                    .build());
+        } catch (NoSuchUploadException e) {
+            throw new FilesNotFoundException("Upload not found");
+        }
+    }
+
+    private void checkEnabled() {
+        if (!enabled) {
+            throw new BadRequestException("Presigned URLs are disabled");
+        }
+    }
+
+    /*
+    Helper method to collect the headers the client has to send with the presigned request. The host is part of the URL.
+     */
+    private static Map<String, String> signedHeaders(PresignedRequest presigned) {
+        return presigned.signedHeaders().entrySet().stream()
+                .filter(header -> !header.getKey().equalsIgnoreCase("host"))
+                .collect(Collectors.toMap(Map.Entry::getKey, header -> String.join(",", header.getValue())));
+    }
+}
@@ -0,0 +1,135 @@
+package com.project.cloudfilestorage.service.impl;
+
+import com.project.cloudfilestorage.dto.FileDownload;
+import com.project.cloudfilestorage.exception.FileOperationException;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.function.Function;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/*
+Writes many stored files as one ZIP stream. Entries are written one after the other, while the next files of the
+window are already opened and their first bytes read in the background, so the S3 round trip of each file overlaps
+with the transfer of the previous ones. At most `prefetch` files are open ahead of the writer and each of them holds at
+most `prefetchBuffer` bytes in memory; the rest of a file is streamed when its entry is written, so neither the archive
+nor a whole file is ever buffered.
+ */
+@Component
+public class ZipArchiveWriter implements DisposableBean {
+    private final int prefetch;
+    private final int prefetchBuffer;
+    private final int compressionLevel;
+    private final ExecutorService executor;
+
+    public ZipArchiveWriter(@Value("${download.zip.prefetch:4}") int prefetch,
+                            @Value("${download.zip.prefetch-buffer:1048576}") int prefetchBuffer,
+                            @Value("${download.zip.compression-level:1}") int compressionLevel,
+                            @Value("${download.zip.threads:16}") int threads,
+                            @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        if (prefetch < 1 || prefetchBuffer < 0 || threads < 1 || compressionLevel < 0 || compressionLevel > 9) {
+            throw new IllegalArgumentException("Invalid ZIP download configuration");
+        }
+        this.prefetch = prefetch;
+        this.prefetchBuffer = prefetchBuffer;
+        this.compressionLevel = compressionLevel;
+        this.executor = TransferExecutors.create("zip-prefetch", threads, virtualThreads);
+    }
+
+    /*
+    Write the files to the stream as a ZIP archive, in the given order. The opener returns the download handle of a
+    file name. If a file fails, the files already opened are closed and the error is thrown; the archive is then
+    truncated, which the client sees as a broken download.
+     */
+    public void write(List<String> fileNames, Function<String, FileDownload> opener, OutputStream outputStream) throws IOException {
+        Deque<CompletableFuture<Prefetched>> window = new ArrayDeque<>();
+        int next = 0;
+        try {
+            ZipOutputStream zip = new ZipOutputStream(outputStream);
+            zip.setLevel(compressionLevel);
+            while (next < fileNames.size() || !window.isEmpty()) {
+                while (next < fileNames.size() && window.size() < prefetch) {
+                    String fileName = fileNames.get(next++);
+                    window.addLast(CompletableFuture.supplyAsync(() -> open(fileName, opener), executor));
+                }
+                try (Prefetched file = await(window.removeFirst())) {
+                    ZipEntry entry = new ZipEntry(file.download.getFileName());
+                    if (file.download.getLastModified() != null) {
+                        entry.setTime(file.download.getLastModified().toEpochMilli());
+                    }
+                    zip.putNextEntry(entry);
+                    zip.write(file.head);
+                    if (!file.exhausted) {
+                        file.download.transferTo(zip);
+                    }
+                    zip.closeEntry();
+                }
+            }
+            zip.finish();
+            outputStream.flush();
+        } finally {
+            // Files still being prefetched are released as soon as they are opened.
+            window.forEach(future -> future.thenAccept(Prefetched::closeQuietly));
+        }
+    }
+
+    /*
+    Helper method to open a file and read its first bytes, running on the prefetch executor.
+     */
+    private Prefetched open(String fileName, Function<String, FileDownload> opener) {
+        FileDownload download = opener.apply(fileName);
+        Prefetched prefetched = new Prefetched(download, null, false);
+        try {
+            byte[] head = download.getContent().readNBytes(prefetchBuffer);
+            return new Prefetched(download, head, head.length < prefetchBuffer);
+        } catch (IOException e) {
+            prefetched.closeQuietly();
+            throw new FileOperationException("Failed to download file");
+        } catch (RuntimeException e) {
+            prefetched.closeQuietly();
+            throw e;
+        }
+    }
+
+    private Prefetched await(CompletableFuture<Prefetched> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+    }
+
+    /*
+    An opened file with the bytes already read from it.
+     */
+    private record Prefetched(FileDownload download, byte[] head, boolean exhausted) implements AutoCloseable {
+        @Override
+        public void close() throws IOException {
+            download.close();
+        }
+
+        void closeQuietly() {
+            try {
+                download.close();
+            } catch (IOException ignored) {
+                // Nothing left to release.
+            }
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.project.cloudfilestorage.config;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.core.interceptor.Context;
+import software.amazon.awssdk.core.interceptor.ExecutionAttributes;
+import software.amazon.awssdk.core.interceptor.SdkExecutionAttribute;
+import software.amazon.awssdk.http.SdkHttpMethod;
+import software.amazon.awssdk.http.SdkHttpRequest;
+import software.amazon.awssdk.http.SdkHttpResponse;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+
+import java.net.URI;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@DisplayName("S3 Metrics Interceptor Unit Test")
+class S3MetricsInterceptorUnitTest {
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final S3MetricsInterceptor interceptor = new S3MetricsInterceptor(registry);
+
+    /*
+    Helper method to run one HTTP attempt of a call through the interceptor.
+     */
+    private void attempt(ExecutionAttributes attributes, int status, long requestBytes, long responseBytes) {
+        Context.BeforeTransmission beforeTransmission = mock(Context.BeforeTransmission.class);
+        when(beforeTransmission.httpRequest()).thenReturn(SdkHttpRequest.builder()
+                .method(SdkHttpMethod.PUT)
+                .uri(URI.create("https://test-bucket.s3.amazonaws.com/key"))
+                .putHeader("Content-Length", String.valueOf(requestBytes))
+                .build());
+        interceptor.beforeTransmission(beforeTransmission, attributes);
+
+        Context.AfterTransmission afterTransmission = mock(Context.AfterTransmission.class);
+        when(afterTransmission.httpResponse()).thenReturn(SdkHttpResponse.builder()
+                .statusCode(status)
+                .putHeader("Content-Length", String.valueOf(responseBytes))
+                .build());
+        interceptor.afterTransmission(afterTransmission, attributes);
+    }
+
+    private ExecutionAttributes start(String operation) {
+        ExecutionAttributes attributes = new ExecutionAttributes();
+        attributes.putAttribute(SdkExecutionAttribute.OPERATION_NAME, operation);
+        interceptor.beforeExecution(mock(Context.BeforeExecution.class), attributes);
+        return attributes;
+    }
+
+    @Test
+    @DisplayName("Metrics: Successful Call With Retry Test")
+    void successfulCallWithRetry_Test() {
+        ExecutionAttributes attributes = start("PutObject");
+        assertEquals(1, registry.get("s3.requests.active").gauge().value());
+        attempt(attributes, 503, 100, 0);
+        attempt(attributes, 200, 100, 0);
+        Context.AfterExecution afterExecution = mock(Context.AfterExecution.class);
+        when(afterExecution.httpResponse()).thenReturn(SdkHttpResponse.builder().statusCode(200).build());
+        interceptor.afterExecution(afterExecution, attributes);
+
+        assertEquals(0, registry.get("s3.requests.active").gauge().value());
+        assertEquals(1, registry.get("s3.requests").tags("operation", "PutObject", "outcome", "success").timer().count());
+        assertEquals(2, registry.get("s3.attempts").tag("operation", "PutObject").timers().stream().mapToLong(t -> t.count()).sum());
+        assertEquals(1, registry.get("s3.retries").tag("operation", "PutObject").counter().count());
+        assertEquals(200, registry.get("s3.bytes").tags("operation", "PutObject", "direction", "sent").summary().totalAmount());
+    }
+
+    @Test
+    @DisplayName("Metrics: Failed Call Test")
+    void failedCall_Test() {
+        ExecutionAttributes attributes = start("GetObject");
+        Context.FailedExecution failedExecution = mock(Context.FailedExecution.class);
+        when(failedExecution.exception()).thenReturn(S3Exception.builder().statusCode(404).build());
+        interceptor.onExecutionFailure(failedExecution, attributes);
+
+        assertEquals(0, registry.get("s3.requests.active").gauge().value());
+        assertEquals(1, registry.get("s3.requests").tags("operation", "GetObject", "outcome", "failure", "status", "404").timer().count());
+        assertNull(registry.find("s3.retries").counter());
+    }
+}
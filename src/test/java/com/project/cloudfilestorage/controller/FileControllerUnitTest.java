@@ -1,23 +1,57 @@
 package com.project.cloudfilestorage.controller;
 
 import com.project.cloudfilestorage.dto.ApiResponse;
+import com.project.cloudfilestorage.dto.FileDownload;
+import com.project.cloudfilestorage.dto.FileMetadata;
+import com.project.cloudfilestorage.dto.SearchPage;
+import com.project.cloudfilestorage.dto.BatchResult;
+import com.project.cloudfilestorage.exception.BadRequestException;
+import com.project.cloudfilestorage.exception.GlobalExceptionHandler;
+import com.project.cloudfilestorage.exception.TransferRejectedException;
 import com.project.cloudfilestorage.service.FileService;
+import com.project.cloudfilestorage.service.impl.IntegrityChecker;
+import com.project.cloudfilestorage.service.impl.TransferScheduler;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockAsyncContext;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
 import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.context.request.async.StandardServletAsyncWebRequest;
+import org.springframework.web.context.request.async.WebAsyncManager;
+import org.springframework.web.context.request.async.WebAsyncUtils;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
 import static org.junit.jupiter.api.Assertions.*;
-import static org.mockito.Mockito.doNothing;
-import static org.mockito.Mockito.when;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anySet;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
 
 /*
 Unit Test for controller class.
@@ -27,18 +61,23 @@ Unit Test for controller class.
 class FileControllerUnitTest {
     @Mock
     private FileService fileService;
-    @InjectMocks
     private FileController fileController;
 
+    @BeforeEach
+    void setUp() {
+        fileController = new FileController(fileService, new TransferScheduler(false, 200, 8, 500,
+                Duration.ofSeconds(2), Duration.ofSeconds(1), 0, 0));
+    }
+
     @Test
     @DisplayName("Search Files Test")
     void searchFiles_Test() {
         // Arrange
-        List<String> mockFiles = List.of("file1", "file2");
-        when(fileService.searchFiles("username", "file")).thenReturn(mockFiles);
+        SearchPage mockFiles = new SearchPage(List.of("file1", "file2"), "cursor");
+        when(fileService.searchFiles("username", "file", 100, null)).thenReturn(mockFiles);
 
         // Act
-        ResponseEntity<ApiResponse<List<String>>> response = fileController.searchFiles("username", "file");
+        ResponseEntity<ApiResponse<SearchPage>> response = fileController.searchFiles("username", "file", 100, null);
 
         // Assert
         assertEquals(HttpStatus.OK, response.getStatusCode());
@@ -49,15 +88,271 @@ class FileControllerUnitTest {
 
     @Test
     @DisplayName("Download File Test")
-    void downloadFile_Test() {
+    void downloadFile_Test() throws IOException {
         // Arrange
         byte[] fileContent = "file content".getBytes();
-        when(fileService.downloadFile("username", "file")).thenReturn(fileContent);
+        FileDownload download = new FileDownload("file", "text/plain", fileContent.length, "\"etag\"", Instant.now(), new ByteArrayInputStream(fileContent));
+        when(fileService.downloadFileAsync("username", "file", Set.of())).thenReturn(CompletableFuture.completedFuture(download));
+        // Act
+        ResponseEntity<StreamingResponseBody> response = fileController.downloadFile("username", "file", new HttpHeaders()).join();
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        assertNotNull(response.getBody());
+        response.getBody().writeTo(outputStream);
+        // Assert
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(fileContent.length, response.getHeaders().getContentLength());
+        assertEquals(MediaType.TEXT_PLAIN, response.getHeaders().getContentType());
+        assertArrayEquals(fileContent, outputStream.toByteArray());
+    }
+
+    @Test
+    @DisplayName("Download File: Redirected To Presigned URL Test")
+    void downloadFile_RedirectTest() {
+        // Arrange
+        when(fileService.downloadRedirect("username", "file", Set.of()))
+                .thenReturn(Optional.of("https://bucket.s3.amazonaws.com/username/file?X-Amz-Signature=abc"));
+        // Act
+        ResponseEntity<StreamingResponseBody> response = fileController.downloadFile("username", "file", new HttpHeaders()).join();
+        // Assert
+        assertEquals(HttpStatus.TEMPORARY_REDIRECT, response.getStatusCode());
+        assertEquals("https://bucket.s3.amazonaws.com/username/file?X-Amz-Signature=abc",
+                String.valueOf(response.getHeaders().getLocation()));
+        verify(fileService, never()).downloadFileAsync(eq("username"), eq("file"), anySet());
+    }
+
+    @Test
+    @DisplayName("Download File: Checksum Header Test")
+    void downloadFile_ChecksumHeaderTest() {
+        // Arrange
+        FileMetadata metadata = new FileMetadata("file", "text/plain", 12, "\"etag\"", Instant.now(), null, Map.of(),
+                "CRC32C", "yZRlqg==");
+        when(fileService.downloadRedirect("username", "file", Set.of())).thenReturn(Optional.empty());
+        when(fileService.downloadFileAsync("username", "file", Set.of())).thenReturn(CompletableFuture.completedFuture(
+                new FileDownload(metadata, new ByteArrayInputStream("file content".getBytes()))));
+        // Act
+        ResponseEntity<StreamingResponseBody> response = fileController.downloadFile("username", "file", new HttpHeaders()).join();
+        // Assert
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals("yZRlqg==", response.getHeaders().getFirst("X-Checksum-CRC32C"));
+    }
+
+    @Test
+    @DisplayName("Download File: Corrupted Content Truncates The Response Test")
+    void downloadFile_ChecksumMismatchTest() {
+        // Arrange
+        IntegrityChecker integrityChecker = new IntegrityChecker("crc32c", true);
+        byte[] stored = new byte[200_000];
+        new Random(7).nextBytes(stored);
+        String checksum = integrityChecker.checksum(stored);
+        stored[150_000] ^= 0x01;
+        FileMetadata metadata = new FileMetadata("file", "application/octet-stream", stored.length, "\"etag\"", Instant.now(),
+                null, Map.of(), IntegrityChecker.CRC32C, checksum);
+        when(fileService.downloadRedirect("username", "file", Set.of())).thenReturn(Optional.empty());
+        when(fileService.downloadFileAsync("username", "file", Set.of())).thenReturn(CompletableFuture.completedFuture(
+                integrityChecker.verify(new FileDownload(metadata, new ByteArrayInputStream(stored)))));
+        // Act
+        ResponseEntity<StreamingResponseBody> response = fileController.downloadFile("username", "file", new HttpHeaders()).join();
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        assertNotNull(response.getBody());
+        // Assert
+        assertEquals(stored.length, response.getHeaders().getContentLength());
+        assertThrows(IOException.class, () -> response.getBody().writeTo(outputStream));
+        assertTrue(outputStream.size() < stored.length);
+    }
+
+    @Test
+    @DisplayName("Download File: Not Modified Test")
+    void downloadFile_NotModifiedTest() {
+        // Arrange
+        FileMetadata metadata = new FileMetadata("file", "text/plain", 12, "\"etag\"", Instant.now());
+        when(fileService.getFileMetadata("username", "file")).thenReturn(metadata);
+        HttpHeaders requestHeaders = new HttpHeaders();
+        requestHeaders.setIfNoneMatch("\"etag\"");
+        // Act
+        ResponseEntity<StreamingResponseBody> response = fileController.downloadFile("username", "file", requestHeaders).join();
+        // Assert
+        assertEquals(HttpStatus.NOT_MODIFIED, response.getStatusCode());
+        assertEquals("\"etag\"", response.getHeaders().getETag());
+        verify(fileService, never()).downloadFileAsync(eq("username"), eq("file"), anySet());
+    }
+
+    @Test
+    @DisplayName("Download File: Single Range Test")
+    void downloadFile_SingleRangeTest() throws IOException {
+        // Arrange
+        FileMetadata metadata = new FileMetadata("file", "text/plain", 12, "\"etag\"", Instant.now());
+        when(fileService.getFileMetadata("username", "file")).thenReturn(metadata);
+        when(fileService.downloadFile("username", "file", 2, 5)).thenReturn(
+                new FileDownload("file", "text/plain", 4, "\"etag\"", Instant.now(), new ByteArrayInputStream("le c".getBytes())));
+        HttpHeaders requestHeaders = new HttpHeaders();
+        requestHeaders.set(HttpHeaders.RANGE, "bytes=2-5");
+        // Act
+        ResponseEntity<StreamingResponseBody> response = fileController.downloadFile("username", "file", requestHeaders).join();
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        assertNotNull(response.getBody());
+        response.getBody().writeTo(outputStream);
+        // Assert
+        assertEquals(HttpStatus.PARTIAL_CONTENT, response.getStatusCode());
+        assertEquals("bytes 2-5/12", response.getHeaders().getFirst(HttpHeaders.CONTENT_RANGE));
+        assertEquals(4, response.getHeaders().getContentLength());
+        assertEquals("le c", outputStream.toString());
+    }
+
+    @Test
+    @DisplayName("Download File: Multiple Ranges Test")
+    void downloadFile_MultipleRangesTest() throws IOException {
+        // Arrange
+        FileMetadata metadata = new FileMetadata("file", "text/plain", 12, "\"etag\"", Instant.now());
+        when(fileService.getFileMetadata("username", "file")).thenReturn(metadata);
+        when(fileService.downloadFile("username", "file", 0, 3)).thenReturn(
+                new FileDownload("file", "text/plain", 4, "\"etag\"", Instant.now(), new ByteArrayInputStream("file".getBytes())));
+        when(fileService.downloadFile("username", "file", 8, 11)).thenReturn(
+                new FileDownload("file", "text/plain", 4, "\"etag\"", Instant.now(), new ByteArrayInputStream("tent".getBytes())));
+        HttpHeaders requestHeaders = new HttpHeaders();
+        requestHeaders.set(HttpHeaders.RANGE, "bytes=0-3,-4");
+        // Act
+        ResponseEntity<StreamingResponseBody> response = fileController.downloadFile("username", "file", requestHeaders).join();
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        assertNotNull(response.getBody());
+        response.getBody().writeTo(outputStream);
+        // Assert
+        assertEquals(HttpStatus.PARTIAL_CONTENT, response.getStatusCode());
+        assertNotNull(response.getHeaders().getContentType());
+        assertEquals("multipart/byteranges", response.getHeaders().getContentType().toString().split(";")[0]);
+        String body = outputStream.toString();
+        assertTrue(body.contains("Content-Range: bytes 0-3/12\r\n\r\nfile"));
+        assertTrue(body.contains("Content-Range: bytes 8-11/12\r\n\r\ntent"));
+    }
+
+    @Test
+    @DisplayName("Download File: Range Not Satisfiable Test")
+    void downloadFile_RangeNotSatisfiableTest() {
+        // Arrange
+        FileMetadata metadata = new FileMetadata("file", "text/plain", 12, "\"etag\"", Instant.now());
+        when(fileService.getFileMetadata("username", "file")).thenReturn(metadata);
+        HttpHeaders requestHeaders = new HttpHeaders();
+        requestHeaders.set(HttpHeaders.RANGE, "bytes=20-30");
+        // Act
+        ResponseEntity<StreamingResponseBody> response = fileController.downloadFile("username", "file", requestHeaders).join();
+        // Assert
+        assertEquals(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE, response.getStatusCode());
+        assertEquals("bytes */12", response.getHeaders().getFirst(HttpHeaders.CONTENT_RANGE));
+    }
+
+    @Test
+    @DisplayName("Head File Test")
+    void headFile_Test() {
+        // Arrange
+        FileMetadata metadata = new FileMetadata("file", "text/plain", 12, "\"etag\"", Instant.parse("2024-01-01T00:00:00Z"));
+        when(fileService.getFileMetadata("username", "file")).thenReturn(metadata);
+        // Act
+        ResponseEntity<Void> response = fileController.headFile("username", "file", new HttpHeaders());
+        // Assert
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(12, response.getHeaders().getContentLength());
+        assertEquals("\"etag\"", response.getHeaders().getETag());
+        assertEquals(MediaType.TEXT_PLAIN, response.getHeaders().getContentType());
+        verify(fileService, never()).downloadFile(any(), any());
+    }
+
+    @Test
+    @DisplayName("Download File: Compressed File Sent Encoded Test")
+    void downloadFile_CompressedEncodedTest() throws IOException {
+        // Arrange
+        byte[] encoded = {0x1f, (byte) 0x8b, 8, 0};
+        FileDownload download = new FileDownload(new FileMetadata("file.log", "text/plain", encoded.length, "\"etag\"",
+                Instant.now(), "gzip", Map.of(FileMetadata.DECODED_LENGTH, "100")), new ByteArrayInputStream(encoded));
+        when(fileService.downloadFileAsync("username", "file.log", Set.of("gzip", "br"))).thenReturn(CompletableFuture.completedFuture(download));
+        HttpHeaders requestHeaders = new HttpHeaders();
+        requestHeaders.set(HttpHeaders.ACCEPT_ENCODING, "gzip, deflate;q=0, br");
+        // Act
+        ResponseEntity<StreamingResponseBody> response = fileController.downloadFile("username", "file.log", requestHeaders).join();
+        // Assert
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals("gzip", response.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+        assertEquals(encoded.length, response.getHeaders().getContentLength());
+        assertEquals("none", response.getHeaders().getFirst(HttpHeaders.ACCEPT_RANGES));
+        assertEquals(List.of(HttpHeaders.ACCEPT_ENCODING), response.getHeaders().getVary());
+    }
+
+    @Test
+    @DisplayName("Download File: Range On Compressed File Ignored Test")
+    void downloadFile_RangeOnCompressedTest() {
+        // Arrange
+        FileMetadata metadata = new FileMetadata("file.log", "text/plain", 4, "\"etag\"", Instant.now(), "gzip", Map.of());
+        when(fileService.getFileMetadata("username", "file.log")).thenReturn(metadata);
+        when(fileService.downloadFileAsync("username", "file.log", Set.of())).thenReturn(CompletableFuture.completedFuture(
+                new FileDownload("file.log", "text/plain", -1, "\"etag\"", Instant.now(), new ByteArrayInputStream(new byte[10]))));
+        HttpHeaders requestHeaders = new HttpHeaders();
+        requestHeaders.set(HttpHeaders.RANGE, "bytes=0-1");
+        // Act
+        ResponseEntity<StreamingResponseBody> response = fileController.downloadFile("username", "file.log", requestHeaders).join();
+        // Assert
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        verify(fileService, never()).downloadFile(eq("username"), eq("file.log"), anyLong(), anyLong());
+    }
+
+    @Test
+    @DisplayName("Head File: Compressed File Decoded Length Test")
+    void headFile_CompressedTest() {
+        // Arrange
+        FileMetadata metadata = new FileMetadata("file.log", "text/plain", 4, "\"etag\"", Instant.now(), "gzip",
+                Map.of(FileMetadata.DECODED_LENGTH, "100"));
+        when(fileService.getFileMetadata("username", "file.log")).thenReturn(metadata);
+        HttpHeaders gzipHeaders = new HttpHeaders();
+        gzipHeaders.set(HttpHeaders.ACCEPT_ENCODING, "gzip");
         // Act
-        ResponseEntity<byte[]> response = fileController.downloadFile("username", "file");
+        ResponseEntity<Void> identity = fileController.headFile("username", "file.log", new HttpHeaders());
+        ResponseEntity<Void> encoded = fileController.headFile("username", "file.log", gzipHeaders);
+        // Assert
+        assertEquals(100, identity.getHeaders().getContentLength());
+        assertNull(identity.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+        assertEquals(4, encoded.getHeaders().getContentLength());
+        assertEquals("gzip", encoded.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+    }
+
+    @Test
+    @DisplayName("Download Files By Search Test")
+    void downloadFiles_BySearchTest() throws IOException {
+        // Arrange
+        when(fileService.searchFiles("username", "report", FileService.MAX_SEARCH_LIMIT, null))
+                .thenReturn(new SearchPage(List.of("report-1.csv"), "next"));
+        when(fileService.searchFiles("username", "report", FileService.MAX_SEARCH_LIMIT, "next"))
+                .thenReturn(new SearchPage(List.of("report-2.csv"), null));
+        // Act
+        ResponseEntity<StreamingResponseBody> response = fileController.downloadFiles("username", null, "report");
+        assertNotNull(response.getBody());
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        response.getBody().writeTo(outputStream);
         // Assert
         assertEquals(HttpStatus.OK, response.getStatusCode());
-        assertArrayEquals(fileContent, response.getBody());
+        assertEquals(MediaType.parseMediaType("application/zip"), response.getHeaders().getContentType());
+        verify(fileService).downloadFiles("username", List.of("report-1.csv", "report-2.csv"), outputStream);
+    }
+
+    @Test
+    @DisplayName("Download Files Without Selection Test")
+    void downloadFiles_WithoutSelectionTest() {
+        // Act & Assert
+        assertThrows(BadRequestException.class, () -> fileController.downloadFiles("username", null, null));
+        verifyNoInteractions(fileService);
+    }
+
+    @Test
+    @DisplayName("Upload Files Partial Failure Test")
+    void uploadFiles_PartialFailureTest() {
+        // Arrange
+        List<MultipartFile> files = List.of(
+                new MockMultipartFile("files", "a.txt", "text/plain", "a".getBytes()),
+                new MockMultipartFile("files", "b.txt", "text/plain", "b".getBytes()));
+        List<BatchResult> results = List.of(BatchResult.success("a.txt", "\"a\""), BatchResult.failure("b.txt", "Failed to upload file"));
+        when(fileService.uploadFiles("username", files)).thenReturn(results);
+        // Act
+        ResponseEntity<ApiResponse<List<BatchResult>>> response = fileController.uploadFiles("username", files);
+        // Assert
+        assertEquals(HttpStatus.MULTI_STATUS, response.getStatusCode());
+        assertNotNull(response.getBody());
+        assertEquals(results, response.getBody().getData());
     }
 
     @Test
@@ -73,4 +368,92 @@ class FileControllerUnitTest {
         assertNotNull(response.getBody());
         assertEquals("File uploaded successfully", response.getBody().getMessage());
     }
+
+    @Test
+    @DisplayName("Upload File Stream Test")
+    void uploadFileStream_Test() {
+        // Arrange
+        MockHttpServletRequest request = new MockHttpServletRequest("PUT", "/file-controller/upload-stream");
+        request.setContentType("text/plain");
+        request.setContent("file content".getBytes());
+        // Act
+        ResponseEntity<ApiResponse<String>> response = fileController.uploadFileStream("username", "file.txt", request).join();
+        // Assert
+        assertEquals(HttpStatus.CREATED, response.getStatusCode());
+        verify(fileService).uploadFile(eq("username"), eq("file.txt"), eq("text/plain"), any(InputStream.class), eq(12L));
+    }
+
+    @Test
+    @DisplayName("Upload File Stream Without Blocking Test")
+    void uploadFileStream_AsyncTest() {
+        // Arrange
+        MockHttpServletRequest request = new MockHttpServletRequest("PUT", "/file-controller/upload-stream");
+        request.setAsyncSupported(true);
+        request.setContentType("text/plain");
+        request.setContent("file content".getBytes());
+        when(fileService.supportsAsyncUpload("file.txt", "text/plain", 12)).thenReturn(true);
+        CompletableFuture<String> stored = new CompletableFuture<>();
+        when(fileService.uploadFileAsync(eq("username"), eq("file.txt"), eq("text/plain"), any(RequestBodyPublisher.class), eq(12L)))
+                .thenReturn(stored);
+        // Act
+        CompletableFuture<ResponseEntity<ApiResponse<String>>> response = fileController.uploadFileStream("username", "file.txt", request);
+        boolean doneBeforeStored = response.isDone();
+        stored.complete("\"etag\"");
+        // Assert
+        assertFalse(doneBeforeStored);
+        assertEquals(HttpStatus.CREATED, response.join().getStatusCode());
+        verify(fileService, never()).uploadFile(any(), any(), any(), any(InputStream.class), anyLong());
+    }
+
+    @Test
+    @DisplayName("Upload Rejected Over User Limit Test")
+    void uploadFile_RejectedTest() {
+        // Arrange
+        TransferScheduler transferScheduler = new TransferScheduler(true, 10, 1, 10, Duration.ZERO, Duration.ofSeconds(3), 0, 0);
+        FileController limitedController = new FileController(fileService, transferScheduler);
+        MultipartFile file = new MockMultipartFile("file", "file.txt", "text/plain", "file content".getBytes());
+        // Act
+        TransferRejectedException exception;
+        try (TransferScheduler.Permit ignored = transferScheduler.admit("username")) {
+            exception = assertThrows(TransferRejectedException.class, () -> limitedController.uploadFile("username", file));
+        }
+        ResponseEntity<ApiResponse<String>> response = new GlobalExceptionHandler().handleTransferRejectedException(exception);
+        // Assert
+        assertEquals(HttpStatus.TOO_MANY_REQUESTS, response.getStatusCode());
+        assertEquals("3", response.getHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+        verifyNoInteractions(fileService);
+        assertEquals(HttpStatus.CREATED, limitedController.uploadFile("username", file).getStatusCode());
+    }
+
+    @Test
+    @DisplayName("Download Permit Released When Async Request Ends Without Body Test")
+    void downloadFile_PermitReleasedOnCompletionTest() throws Exception {
+        // Arrange
+        TransferScheduler transferScheduler = new TransferScheduler(true, 10, 1, 10, Duration.ZERO, Duration.ofSeconds(3), 0, 0);
+        FileController limitedController = new FileController(fileService, transferScheduler);
+        InputStream content = spy(new ByteArrayInputStream("file content".getBytes()));
+        when(fileService.downloadFileAsync("username", "file", Set.of())).thenReturn(CompletableFuture.completedFuture(
+                new FileDownload("file", "text/plain", 12, "\"etag\"", Instant.now(), content)));
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/file-controller/download");
+        request.setAsyncSupported(true);
+        MockHttpServletResponse servletResponse = new MockHttpServletResponse();
+        WebAsyncManager asyncManager = WebAsyncUtils.getAsyncManager(request);
+        asyncManager.setAsyncWebRequest(new StandardServletAsyncWebRequest(request, servletResponse));
+        // The body never runs, as when the client is gone before the task starts.
+        asyncManager.setTaskExecutor(task -> { });
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request, servletResponse));
+        try {
+            // Act
+            ResponseEntity<StreamingResponseBody> response = limitedController.downloadFile("username", "file", new HttpHeaders()).join();
+            asyncManager.startCallableProcessing(() -> null);
+            assertThrows(TransferRejectedException.class, () -> transferScheduler.admit("username"));
+            ((MockAsyncContext) request.getAsyncContext()).complete();
+            // Assert
+            assertEquals(HttpStatus.OK, response.getStatusCode());
+            transferScheduler.admit("username").close();
+            verify(content, atLeastOnce()).close();
+        } finally {
+            RequestContextHolder.resetRequestAttributes();
+        }
+    }
 }
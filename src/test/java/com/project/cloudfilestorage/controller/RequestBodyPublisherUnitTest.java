@@ -0,0 +1,168 @@
+package com.project.cloudfilestorage.controller;
+
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletInputStream;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("Request Body Publisher Unit Test")
+class RequestBodyPublisherUnitTest {
+
+    @Test
+    @DisplayName("Chunks Are Only Read On Demand Test")
+    void subscribe_ReadsOnDemandTest() throws IOException {
+        // Arrange
+        FakeInputStream input = new FakeInputStream(new byte[100 * 1024], true);
+        RequestBodyPublisher publisher = new RequestBodyPublisher(input);
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        publisher.subscribe(subscriber);
+        publisher.start();
+        // Act
+        subscriber.subscription.request(1);
+        int afterFirstRequest = subscriber.body.size();
+        subscriber.subscription.request(Long.MAX_VALUE);
+        // Assert
+        assertEquals(64 * 1024, afterFirstRequest);
+        assertEquals(100 * 1024, subscriber.body.size());
+        assertTrue(subscriber.completed);
+        assertNull(subscriber.error);
+    }
+
+    @Test
+    @DisplayName("Nothing Is Read Before Start Or While The Client Sends Nothing Test")
+    void subscribe_WaitsForContainerTest() throws IOException {
+        // Arrange
+        FakeInputStream input = new FakeInputStream("file content".getBytes(), false);
+        RequestBodyPublisher publisher = new RequestBodyPublisher(input);
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        publisher.subscribe(subscriber);
+        subscriber.subscription.request(Long.MAX_VALUE);
+        // Act
+        int beforeStart = subscriber.body.size();
+        publisher.start();
+        int whileNotReady = subscriber.body.size();
+        input.ready = true;
+        input.listener.onDataAvailable();
+        // Assert
+        assertEquals(0, beforeStart);
+        assertEquals(0, whileNotReady);
+        assertEquals("file content", subscriber.body.toString());
+        assertTrue(subscriber.completed);
+    }
+
+    @Test
+    @DisplayName("Read Error Is Passed To The Subscriber Test")
+    void subscribe_ReadErrorTest() {
+        // Arrange
+        FakeInputStream input = new FakeInputStream("file content".getBytes(), false);
+        RequestBodyPublisher publisher = new RequestBodyPublisher(input);
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        publisher.subscribe(subscriber);
+        publisher.start();
+        subscriber.subscription.request(1);
+        // Act
+        input.listener.onError(new IOException("Client went away"));
+        // Assert
+        assertInstanceOf(IOException.class, subscriber.error);
+        assertFalse(subscriber.completed);
+    }
+
+    @Test
+    @DisplayName("Second Subscriber Is Rejected Test")
+    void subscribe_OnlyOnceTest() {
+        // Arrange
+        RequestBodyPublisher publisher = new RequestBodyPublisher(new FakeInputStream(new byte[0], true));
+        publisher.subscribe(new RecordingSubscriber());
+        RecordingSubscriber second = new RecordingSubscriber();
+        // Act
+        publisher.subscribe(second);
+        // Assert
+        assertNotNull(second.subscription);
+        assertInstanceOf(IllegalStateException.class, second.error);
+    }
+
+    private static final class FakeInputStream extends ServletInputStream {
+        private final byte[] content;
+        private int position;
+        private boolean ready;
+        private ReadListener listener;
+
+        private FakeInputStream(byte[] content, boolean ready) {
+            this.content = content;
+            this.ready = ready;
+        }
+
+        @Override
+        public boolean isFinished() {
+            return position == content.length;
+        }
+
+        @Override
+        public boolean isReady() {
+            return ready;
+        }
+
+        @Override
+        public void setReadListener(ReadListener readListener) {
+            listener = readListener;
+            if (ready) {
+                try {
+                    readListener.onDataAvailable();
+                } catch (IOException e) {
+                    readListener.onError(e);
+                }
+            }
+        }
+
+        @Override
+        public int read() {
+            return isFinished() ? -1 : content[position++] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) {
+            if (isFinished()) {
+                return -1;
+            }
+            int read = Math.min(length, content.length - position);
+            System.arraycopy(content, position, buffer, offset, read);
+            position += read;
+            return read;
+        }
+    }
+
+    private static final class RecordingSubscriber implements Subscriber<ByteBuffer> {
+        private final ByteArrayOutputStream body = new ByteArrayOutputStream();
+        private Subscription subscription;
+        private Throwable error;
+        private boolean completed;
+
+        @Override
+        public void onSubscribe(Subscription subscription) {
+            this.subscription = subscription;
+        }
+
+        @Override
+        public void onNext(ByteBuffer chunk) {
+            body.write(chunk.array(), chunk.arrayOffset() + chunk.position(), chunk.remaining());
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            error = throwable;
+        }
+
+        @Override
+        public void onComplete() {
+            completed = true;
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package com.project.cloudfilestorage.service;
+
+import com.project.cloudfilestorage.dto.FileDownload;
+import com.project.cloudfilestorage.exception.FilesNotFoundException;
+import com.project.cloudfilestorage.service.impl.AsyncS3StorageBackend;
+import com.project.cloudfilestorage.service.impl.BatchRunner;
+import com.project.cloudfilestorage.service.impl.ContentCompressor;
+import com.project.cloudfilestorage.service.impl.Deduplicator;
+import com.project.cloudfilestorage.service.impl.DownloadCache;
+import com.project.cloudfilestorage.service.impl.FileNameIndex;
+import com.project.cloudfilestorage.service.impl.FileServiceImpl;
+import com.project.cloudfilestorage.service.impl.IntegrityChecker;
+import com.project.cloudfilestorage.service.impl.MetadataCache;
+import com.project.cloudfilestorage.service.impl.MultipartUploader;
+import com.project.cloudfilestorage.service.impl.ParallelDownloader;
+import com.project.cloudfilestorage.service.impl.UrlPresigner;
+import com.project.cloudfilestorage.service.impl.ZipArchiveWriter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.core.async.AsyncRequestBody;
+import software.amazon.awssdk.core.async.AsyncResponseTransformer;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("Async S3 Storage Backend Unit Test")
+class AsyncS3StorageBackendUnitTest {
+    @Mock
+    private S3Client s3Client;
+    @Mock
+    private S3AsyncClient s3AsyncClient;
+
+    private FileServiceImpl fileService;
+
+    private final IntegrityChecker integrityChecker = new IntegrityChecker("crc32c", true);
+
+    @BeforeEach
+    void setUp() {
+        MultipartUploader multipartUploader = new MultipartUploader(s3Client, integrityChecker, 8 * 1024 * 1024, 5 * 1024 * 1024, 2, 1, 2, false);
+        FileNameIndex fileNameIndex = new FileNameIndex(false, 10, 1000, Duration.ofMinutes(5), Duration.ofMinutes(30));
+        DownloadCache downloadCache = new DownloadCache(false, Path.of("unused"), 0, 0, Duration.ZERO, Duration.ZERO);
+        ZipArchiveWriter zipArchiveWriter = new ZipArchiveWriter(2, 4, 1, 2, false);
+        AsyncS3StorageBackend storageBackend = new AsyncS3StorageBackend(s3Client, multipartUploader, integrityChecker,
+                "test-bucket", s3AsyncClient, "async");
+        fileService = new FileServiceImpl(storageBackend, fileNameIndex, downloadCache, zipArchiveWriter,
+                new BatchRunner(2, 2, false), new MetadataCache(false, 10, Duration.ofSeconds(10), Duration.ofSeconds(5)),
+                new ContentCompressor(false, List.of(), List.of(), 0, 6),
+                new Deduplicator(storageBackend, false, ".blobs/", Path.of("unused")),
+                new UrlPresigner(false, Duration.ofMinutes(15), 0, 0, 5 * 1024 * 1024, null, null, "test-bucket"),
+                new ParallelDownloader(false, 0, 1024 * 1024, 2, 1, 2, false), integrityChecker);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    @DisplayName("Async Download: Success Test")
+    void downloadFile_SuccessTest() throws IOException {
+        // Arrange
+        byte[] fileContent = "file content".getBytes();
+        ResponseInputStream<GetObjectResponse> response = new ResponseInputStream<>(
+                GetObjectResponse.builder().contentLength((long) fileContent.length).build(),
+                new ByteArrayInputStream(fileContent));
+        when(s3AsyncClient.getObject(any(GetObjectRequest.class), any(AsyncResponseTransformer.class)))
+                .thenReturn(CompletableFuture.completedFuture(response));
+        // Act
+        FileDownload download = fileService.downloadFile("test-user", "test-file");
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        download.transferTo(outputStream);
+        // Assert
+        assertArrayEquals(fileContent, outputStream.toByteArray());
+        verify(s3Client, never()).getObject(any(GetObjectRequest.class));
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    @DisplayName("Async Download: File Not Found Test")
+    void downloadFile_FileNotFoundTest() {
+        // Arrange
+        when(s3AsyncClient.getObject(any(GetObjectRequest.class), any(AsyncResponseTransformer.class)))
+                .thenReturn(CompletableFuture.failedFuture(NoSuchKeyException.builder().build()));
+        // Assert
+        assertThrows(FilesNotFoundException.class, () -> fileService.downloadFile("test-user", "test-file"));
+    }
+
+    @Test
+    @DisplayName("Async Upload: Unknown Length Falls Back To Multipart Uploader Test")
+    void uploadFile_UnknownLengthTest() {
+        // Arrange
+        when(s3Client.putObject(any(PutObjectRequest.class), any(RequestBody.class))).thenReturn(PutObjectResponse.builder().build());
+        // Act
+        fileService.uploadFile("test-user", "file.txt", "text/plain", new ByteArrayInputStream("content".getBytes()), -1);
+        // Assert
+        verify(s3AsyncClient, never()).putObject(any(PutObjectRequest.class), any(AsyncRequestBody.class));
+        verify(s3Client).putObject(any(PutObjectRequest.class), any(RequestBody.class));
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    @DisplayName("Async Download: Future Completes When S3 Answers Test")
+    void downloadFileAsync_Test() throws IOException {
+        // Arrange
+        byte[] fileContent = "file content".getBytes();
+        CompletableFuture<ResponseInputStream<GetObjectResponse>> answer = new CompletableFuture<>();
+        when(s3AsyncClient.getObject(any(GetObjectRequest.class), any(AsyncResponseTransformer.class))).thenReturn(answer);
+        // Act
+        CompletableFuture<FileDownload> download = fileService.downloadFileAsync("test-user", "test-file", Set.of());
+        boolean doneBeforeAnswer = download.isDone();
+        answer.complete(new ResponseInputStream<>(GetObjectResponse.builder().contentLength((long) fileContent.length).build(),
+                new ByteArrayInputStream(fileContent)));
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        download.join().transferTo(outputStream);
+        // Assert
+        assertFalse(doneBeforeAnswer);
+        assertArrayEquals(fileContent, outputStream.toByteArray());
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    @DisplayName("Async Download: File Not Found Fails The Future Test")
+    void downloadFileAsync_FileNotFoundTest() {
+        // Arrange
+        when(s3AsyncClient.getObject(any(GetObjectRequest.class), any(AsyncResponseTransformer.class)))
+                .thenReturn(CompletableFuture.failedFuture(NoSuchKeyException.builder().build()));
+        // Act
+        CompletableFuture<FileDownload> download = fileService.downloadFileAsync("test-user", "test-file", Set.of());
+        // Assert
+        CompletionException exception = assertThrows(CompletionException.class, download::join);
+        assertInstanceOf(FilesNotFoundException.class, exception.getCause());
+    }
+
+    @Test
+    @DisplayName("Async Upload: Publisher Is Sent As The Request Body Test")
+    void uploadFileAsync_Test() {
+        // Arrange
+        when(s3AsyncClient.putObject(any(PutObjectRequest.class), any(AsyncRequestBody.class)))
+                .thenReturn(CompletableFuture.completedFuture(PutObjectResponse.builder().eTag("\"etag\"").build()));
+        // Act
+        boolean supported = fileService.supportsAsyncUpload("file.txt", "text/plain", 7);
+        String eTag = fileService.uploadFileAsync("test-user", "file.txt", "text/plain", AsyncRequestBody.fromString("content"), 7).join();
+        // Assert
+        assertTrue(supported);
+        assertEquals("\"etag\"", eTag);
+        verify(s3AsyncClient).putObject(any(PutObjectRequest.class),
+                argThat((AsyncRequestBody body) -> body.contentLength().equals(Optional.of(7L))));
+        verify(s3Client, never()).putObject(any(PutObjectRequest.class), any(RequestBody.class));
+    }
+}
@@ -0,0 +1,63 @@
+package com.project.cloudfilestorage.service;
+
+import com.project.cloudfilestorage.service.impl.ContentCompressor;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("Content Compressor Unit Test")
+class ContentCompressorUnitTest {
+    private final ContentCompressor compressor = new ContentCompressor(true, List.of("text/*", "application/json"),
+            List.of("csv", "log"), 1024, 6);
+
+    @Test
+    @DisplayName("Content Compressor: Selection Test")
+    void shouldCompress_Test() {
+        assertTrue(compressor.shouldCompress("notes", "text/plain; charset=UTF-8", 4096));
+        assertTrue(compressor.shouldCompress("data", "application/json", -1));
+        assertTrue(compressor.shouldCompress("export.CSV", "application/octet-stream", 4096));
+        assertFalse(compressor.shouldCompress("photo.jpg", "image/jpeg", 4096));
+        assertFalse(compressor.shouldCompress("small.log", "text/plain", 100));
+        assertFalse(new ContentCompressor(false, List.of("text/*"), List.of(), 0, 6).shouldCompress("a.txt", "text/plain", 4096));
+    }
+
+    @Test
+    @DisplayName("Content Compressor: Gzip Round Trip Test")
+    void compress_RoundTripTest() throws IOException {
+        // Arrange
+        byte[] content = new byte[3 * 1024 * 1024];
+        new Random(42).nextBytes(content);
+        for (int i = 0; i < content.length; i += 2) {
+            content[i] = 'a';
+        }
+        // Act
+        byte[] compressed;
+        try (InputStream in = compressor.compress(new ByteArrayInputStream(content))) {
+            compressed = in.readAllBytes();
+        }
+        // Assert
+        try (GZIPInputStream decoded = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+            assertArrayEquals(content, decoded.readAllBytes());
+        }
+    }
+
+    @Test
+    @DisplayName("Content Compressor: Empty Input Test")
+    void compress_EmptyTest() throws IOException {
+        byte[] compressed;
+        try (InputStream in = compressor.compress(new ByteArrayInputStream(new byte[0]))) {
+            compressed = in.readAllBytes();
+        }
+        try (GZIPInputStream decoded = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+            assertEquals(0, decoded.readAllBytes().length);
+        }
+    }
+}
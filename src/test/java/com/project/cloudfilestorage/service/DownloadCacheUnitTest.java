@@ -0,0 +1,240 @@
+package com.project.cloudfilestorage.service;
+
+import com.project.cloudfilestorage.dto.FileDownload;
+import com.project.cloudfilestorage.exception.FilesNotFoundException;
+import com.project.cloudfilestorage.service.impl.DownloadCache;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("Download Cache Unit Test")
+class DownloadCacheUnitTest {
+    @TempDir
+    Path directory;
+
+    /*
+    Helper methods to build an origin response and read a download fully.
+     */
+    private FileDownload origin(String content, String eTag) {
+        byte[] bytes = content.getBytes();
+        return new FileDownload("file.txt", "text/plain", bytes.length, eTag, Instant.now(), new ByteArrayInputStream(bytes));
+    }
+
+    private String read(FileDownload download) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (download) {
+            download.transferTo(out);
+        }
+        return out.toString();
+    }
+
+    @Test
+    @DisplayName("Download Cache: Hit Test")
+    void get_HitTest() throws IOException {
+        DownloadCache cache = new DownloadCache(true, directory, 1024, 1024, Duration.ofMinutes(1), Duration.ofSeconds(5));
+        AtomicInteger fetches = new AtomicInteger();
+
+        String first = read(cache.get("user/file.txt", eTag -> {
+            fetches.incrementAndGet();
+            return origin("content", "\"v1\"");
+        }));
+        String second = read(cache.get("user/file.txt", eTag -> {
+            fetches.incrementAndGet();
+            return origin("content", "\"v1\"");
+        }));
+
+        assertEquals("content", first);
+        assertEquals("content", second);
+        assertEquals(1, fetches.get());
+        assertEquals(7, cache.getCurrentSize());
+    }
+
+    @Test
+    @DisplayName("Download Cache: Revalidation Test")
+    void get_RevalidationTest() throws IOException {
+        DownloadCache cache = new DownloadCache(true, directory, 1024, 1024, Duration.ZERO, Duration.ofSeconds(5));
+        read(cache.get("user/file.txt", eTag -> origin("content", "\"v1\"")));
+
+        List<String> sentETags = new ArrayList<>();
+        String unchanged = read(cache.get("user/file.txt", eTag -> {
+            sentETags.add(eTag);
+            return null;
+        }));
+        String changed = read(cache.get("user/file.txt", eTag -> origin("new content", "\"v2\"")));
+
+        assertEquals(List.of("\"v1\""), sentETags);
+        assertEquals("content", unchanged);
+        assertEquals("new content", changed);
+        assertEquals(11, cache.getCurrentSize());
+    }
+
+    @Test
+    @DisplayName("Download Cache: LRU Eviction Test")
+    void get_EvictionTest() throws IOException {
+        DownloadCache cache = new DownloadCache(true, directory, 10, 10, Duration.ofMinutes(1), Duration.ofSeconds(5));
+        read(cache.get("user/a", eTag -> origin("aaaaa", "\"a\"")));
+        read(cache.get("user/b", eTag -> origin("bbbbb", "\"b\"")));
+        read(cache.get("user/a", eTag -> fail("a should be cached")));
+        read(cache.get("user/c", eTag -> origin("ccccc", "\"c\"")));
+
+        assertEquals(10, cache.getCurrentSize());
+        assertEquals("aaaaa", read(cache.get("user/a", eTag -> fail("a should still be cached"))));
+        AtomicInteger fetches = new AtomicInteger();
+        read(cache.get("user/b", eTag -> {
+            fetches.incrementAndGet();
+            return origin("bbbbb", "\"b\"");
+        }));
+        assertEquals(1, fetches.get());
+    }
+
+    @Test
+    @DisplayName("Download Cache: Large Object Bypass Test")
+    void get_LargeObjectBypassTest() throws IOException {
+        DownloadCache cache = new DownloadCache(true, directory, 1024, 4, Duration.ofMinutes(1), Duration.ofSeconds(5));
+        assertEquals("content", read(cache.get("user/file.txt", eTag -> origin("content", "\"v1\""))));
+        assertEquals(0, cache.getCurrentSize());
+    }
+
+    @Test
+    @DisplayName("Download Cache: Invalidate Test")
+    void invalidate_Test() throws IOException {
+        DownloadCache cache = new DownloadCache(true, directory, 1024, 1024, Duration.ofMinutes(1), Duration.ofSeconds(5));
+        read(cache.get("user/file.txt", eTag -> origin("content", "\"v1\"")));
+        cache.invalidate("user/file.txt");
+        assertEquals(0, cache.getCurrentSize());
+        assertEquals("fresh", read(cache.get("user/file.txt", eTag -> origin("fresh", "\"v2\""))));
+    }
+
+    @Test
+    @DisplayName("Download Cache: Origin Error Test")
+    void get_OriginErrorTest() {
+        DownloadCache cache = new DownloadCache(true, directory, 1024, 1024, Duration.ofMinutes(1), Duration.ofSeconds(5));
+        assertThrows(FilesNotFoundException.class, () -> cache.get("user/missing", eTag -> {
+            throw new FilesNotFoundException("Files not found");
+        }));
+    }
+
+    @Test
+    @DisplayName("Download Cache: Concurrent Misses Coalesced Test")
+    void get_CoalescingTest() throws Exception {
+        DownloadCache cache = new DownloadCache(true, directory, 1024, 1024, Duration.ofMinutes(1), Duration.ofSeconds(5));
+        AtomicInteger fetches = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                results.add(executor.submit(() -> read(cache.get("user/file.txt", eTag -> {
+                    fetches.incrementAndGet();
+                    try {
+                        release.await(5, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return origin("content", "\"v1\"");
+                }))));
+            }
+            Thread.sleep(200);
+            release.countDown();
+            for (Future<String> result : results) {
+                assertEquals("content", result.get(5, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(1, fetches.get());
+    }
+
+    @Test
+    @DisplayName("Download Cache: Stalled First Reader Does Not Hold Others Test")
+    void get_StalledReaderTest() throws IOException {
+        DownloadCache cache = new DownloadCache(true, directory, 1024, 1024, Duration.ofMinutes(1), Duration.ofMillis(50));
+        AtomicInteger fetches = new AtomicInteger();
+
+        try (FileDownload stalled = cache.get("user/file.txt", eTag -> {
+            fetches.incrementAndGet();
+            return origin("content", "\"v1\"");
+        })) {
+            long start = System.nanoTime();
+            String other = read(cache.get("user/file.txt", eTag -> {
+                fetches.incrementAndGet();
+                return origin("content", "\"v1\"");
+            }));
+
+            assertEquals("content", other);
+            assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+            assertEquals(2, fetches.get());
+            assertEquals("content", new String(stalled.getContent().readAllBytes()));
+        }
+        assertEquals(7, cache.getCurrentSize());
+    }
+
+    @Test
+    @DisplayName("Download Cache: Partial Read Not Cached Test")
+    void get_PartialReadTest() throws IOException {
+        DownloadCache cache = new DownloadCache(true, directory, 1024, 1024, Duration.ofMinutes(1), Duration.ofSeconds(5));
+        AtomicInteger fetches = new AtomicInteger();
+
+        try (FileDownload download = cache.get("user/file.txt", eTag -> {
+            fetches.incrementAndGet();
+            return origin("content", "\"v1\"");
+        })) {
+            assertEquals("con", new String(download.getContent().readNBytes(3)));
+            assertEquals(0, cache.getCurrentSize());
+        }
+        String second = read(cache.get("user/file.txt", eTag -> {
+            fetches.incrementAndGet();
+            return origin("content", "\"v1\"");
+        }));
+        String third = read(cache.get("user/file.txt", eTag -> {
+            fetches.incrementAndGet();
+            return origin("content", "\"v1\"");
+        }));
+
+        assertEquals("content", second);
+        assertEquals("content", third);
+        assertEquals(2, fetches.get());
+        assertEquals(7, cache.getCurrentSize());
+        try (var files = Files.list(directory.resolve("entries"))) {
+            assertTrue(files.noneMatch(file -> file.toString().endsWith(".part")));
+        }
+    }
+
+    @Test
+    @DisplayName("Download Cache: Only Own Directory Cleaned Test")
+    void resetDirectory_OwnDirectoryTest() throws IOException {
+        Path unrelated = Files.writeString(directory.resolve("unrelated.txt"), "keep");
+        DownloadCache cache = new DownloadCache(true, directory, 1024, 1024, Duration.ofMinutes(1), Duration.ofSeconds(5));
+        read(cache.get("user/file.txt", eTag -> origin("content", "\"v1\"")));
+
+        new DownloadCache(true, directory, 1024, 1024, Duration.ofMinutes(1), Duration.ofSeconds(5));
+        Path foreign = directory.resolve("foreign");
+        Files.createDirectories(foreign.resolve("entries"));
+        Files.writeString(foreign.resolve("entries").resolve("data.txt"), "keep");
+
+        assertEquals("keep", Files.readString(unrelated));
+        try (var files = Files.list(directory.resolve("entries"))) {
+            assertEquals(List.of(".download-cache"), files.map(file -> file.getFileName().toString()).toList());
+        }
+        assertThrows(IllegalStateException.class, () -> new DownloadCache(true, foreign, 1024, 1024, Duration.ofMinutes(1), Duration.ofSeconds(5)));
+        assertEquals("keep", Files.readString(foreign.resolve("entries").resolve("data.txt")));
+    }
+}
@@ -0,0 +1,102 @@
+package com.project.cloudfilestorage.service;
+
+import com.project.cloudfilestorage.service.impl.FileNameIndex;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("File Name Index Unit Test")
+class FileNameIndexUnitTest {
+    private final FileNameIndex fileNameIndex = new FileNameIndex(true, 2, 100, Duration.ofMinutes(5), Duration.ofMinutes(30));
+
+    /*
+    Helper method to run a search and collect the result.
+     */
+    private List<String> search(String userName, String query, String startAfter, List<String> names) {
+        return fileNameIndex.search(userName, query, startAfter, names::stream).orElseThrow().toList();
+    }
+
+    @Test
+    @DisplayName("Index Search: Substring Match Test")
+    void search_SubstringMatchTest() {
+        List<String> names = List.of("b-report.csv", "a-report.csv", "summary.txt", "rep.txt");
+        assertEquals(List.of("a-report.csv", "b-report.csv"), search("user", "report", null, names));
+        assertEquals(List.of("a-report.csv", "b-report.csv", "rep.txt"), search("user", "rep", null, names));
+        assertEquals(List.of("summary.txt"), search("user", "su", null, names));
+        assertEquals(List.of(), search("user", "missing", null, names));
+    }
+
+    @Test
+    @DisplayName("Index Search: Start After Test")
+    void search_StartAfterTest() {
+        List<String> names = List.of("a-report.csv", "b-report.csv", "c-report.csv");
+        assertEquals(List.of("c-report.csv"), search("user", "report", "b-report.csv", names));
+        assertEquals(List.of("b-report.csv", "c-report.csv"), search("user", "report", "a-z", names));
+    }
+
+    @Test
+    @DisplayName("Index Search: UTF-8 Byte Order Like S3 Test")
+    void search_Utf8OrderTest() {
+        // U+1F600 is stored as a surrogate pair, which sorts before U+FF5E in String order but after it in UTF-8.
+        String emoji = "report-\uD83D\uDE00.txt";
+        String fullWidth = "report-\uFF5E.txt";
+        List<String> names = List.of(emoji, fullWidth, "report-a.txt");
+        assertEquals(List.of("report-a.txt", fullWidth, emoji), search("user", "report", null, names));
+        assertEquals(List.of(emoji), search("user", "report", fullWidth, names));
+        fileNameIndex.add("user", "report-\uFFFD.txt");
+        assertEquals(List.of("report-\uFFFD.txt", emoji), search("user", "report", fullWidth, names));
+    }
+
+    @Test
+    @DisplayName("Index Search: Loaded Once Test")
+    void search_LoadedOnceTest() {
+        AtomicInteger loads = new AtomicInteger();
+        for (int i = 0; i < 3; i++) {
+            fileNameIndex.search("user", "file", null, () -> {
+                loads.incrementAndGet();
+                return Stream.of("file.txt");
+            });
+        }
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    @DisplayName("Index Search: Added File Test")
+    void search_AddedFileTest() {
+        List<String> names = List.of("a-report.csv", "c-report.csv");
+        search("user", "report", null, names);
+        fileNameIndex.add("user", "b-report.csv");
+        fileNameIndex.add("user", "a-report.csv");
+        assertEquals(List.of("a-report.csv", "b-report.csv", "c-report.csv"), search("user", "report", null, names));
+        assertEquals(List.of("c-report.csv"), search("user", "report", "b-report.csv", names));
+    }
+
+    @Test
+    @DisplayName("Index Search: Cold User Eviction Test")
+    void search_ColdUserEvictionTest() {
+        search("user-1", "file", null, List.of("file.txt"));
+        search("user-2", "file", null, List.of("file.txt"));
+        search("user-3", "file", null, List.of("file.txt"));
+        assertEquals(2, fileNameIndex.size());
+    }
+
+    @Test
+    @DisplayName("Index Search: Too Many Files Test")
+    void search_TooManyFilesTest() {
+        List<String> names = Stream.iterate(0, i -> i + 1).limit(101).map(i -> "file-" + i).toList();
+        assertTrue(fileNameIndex.search("user", "file", null, names::stream).isEmpty());
+    }
+
+    @Test
+    @DisplayName("Index Search: Disabled Test")
+    void search_DisabledTest() {
+        FileNameIndex disabled = new FileNameIndex(false, 2, 100, Duration.ofMinutes(5), Duration.ofMinutes(30));
+        assertTrue(disabled.search("user", "file", null, Stream::empty).isEmpty());
+    }
+}
@@ -1,31 +1,64 @@
 package com.project.cloudfilestorage.service;
 
+import com.project.cloudfilestorage.dto.FileDownload;
+import com.project.cloudfilestorage.dto.FileMetadata;
+import com.project.cloudfilestorage.dto.PresignedTransfer;
+import com.project.cloudfilestorage.dto.SearchPage;
+import com.project.cloudfilestorage.dto.BatchResult;
 import com.project.cloudfilestorage.exception.BadRequestException;
 import com.project.cloudfilestorage.exception.FileOperationException;
 import com.project.cloudfilestorage.exception.FilesNotFoundException;
+import com.project.cloudfilestorage.service.impl.BatchRunner;
+import com.project.cloudfilestorage.service.impl.ContentCompressor;
+import com.project.cloudfilestorage.service.impl.Deduplicator;
+import com.project.cloudfilestorage.service.impl.DownloadCache;
+import com.project.cloudfilestorage.service.impl.FileNameIndex;
 import com.project.cloudfilestorage.service.impl.FileServiceImpl;
+import com.project.cloudfilestorage.service.impl.IntegrityChecker;
+import com.project.cloudfilestorage.service.impl.MetadataCache;
+import com.project.cloudfilestorage.service.impl.MultipartUploader;
+import com.project.cloudfilestorage.service.impl.ParallelDownloader;
+import com.project.cloudfilestorage.service.impl.S3StorageBackend;
+import com.project.cloudfilestorage.service.impl.UrlPresigner;
+import com.project.cloudfilestorage.service.impl.ZipArchiveWriter;
+import com.project.cloudfilestorage.support.InMemoryS3Client;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.mock.web.MockMultipartFile;
-import org.springframework.test.util.ReflectionTestUtils;
 import org.springframework.web.multipart.MultipartFile;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
 import software.amazon.awssdk.core.ResponseInputStream;
 import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.regions.Region;
 import software.amazon.awssdk.services.s3.S3Client;
 import software.amazon.awssdk.services.s3.model.*;
+import software.amazon.awssdk.services.s3.presigner.S3Presigner;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipInputStream;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -37,10 +70,21 @@ class FileServiceImplUnitTest {
     @InjectMocks
     private FileServiceImpl fileService;
 
+    private final IntegrityChecker integrityChecker = new IntegrityChecker("crc32c", true);
+
     @BeforeEach
     void setUp() {
-        fileService = new FileServiceImpl(s3Client);
-        ReflectionTestUtils.setField(fileService, "bucketName", "test-bucket");
+        MultipartUploader multipartUploader = new MultipartUploader(s3Client, integrityChecker, 8 * 1024 * 1024, 5 * 1024 * 1024, 2, 1, 2, false);
+        S3StorageBackend storageBackend = new S3StorageBackend(s3Client, multipartUploader, integrityChecker, "test-bucket");
+        FileNameIndex fileNameIndex = new FileNameIndex(false, 10, 1000, Duration.ofMinutes(5), Duration.ofMinutes(30));
+        DownloadCache downloadCache = new DownloadCache(false, Path.of("unused"), 0, 0, Duration.ZERO, Duration.ZERO);
+        ZipArchiveWriter zipArchiveWriter = new ZipArchiveWriter(2, 4, 1, 2, false);
+        fileService = new FileServiceImpl(storageBackend, fileNameIndex, downloadCache, zipArchiveWriter,
+                new BatchRunner(2, 2, false), new MetadataCache(false, 10, Duration.ofSeconds(10), Duration.ofSeconds(5)),
+                new ContentCompressor(false, List.of(), List.of(), 0, 6),
+                new Deduplicator(storageBackend, false, ".blobs/", Path.of("unused")),
+                new UrlPresigner(false, Duration.ofMinutes(15), 0, 0, 5 * 1024 * 1024, null, null, "test-bucket"),
+                new ParallelDownloader(false, 0, 1024 * 1024, 2, 1, 2, false), integrityChecker);
     }
 
     @Nested
@@ -55,41 +99,95 @@ class FileServiceImplUnitTest {
                     .build();
             when(s3Client.listObjectsV2(any(ListObjectsV2Request.class))).thenReturn(mockResponse);
             // Act
-            List<String> files = fileService.searchFiles("test-user", "test-file");
+            SearchPage page = fileService.searchFiles("test-user", "test-file", 10, null);
             // Assert
-            assertEquals(1, files.size());
-            assertEquals("test-file.txt", files.get(0));
+            assertEquals(1, page.getFiles().size());
+            assertEquals("test-file.txt", page.getFiles().get(0));
+            assertNull(page.getNextCursor());
         }
 
         @Test
         @DisplayName("Search Files: Username Null Test")
         void searchFiles_UsernameNullTest() {
             // Assert
-            assertThrows(BadRequestException.class, () -> fileService.searchFiles(null, "invalid-file"));
+            assertThrows(BadRequestException.class, () -> fileService.searchFiles(null, "invalid-file", 10, null));
         }
 
         @Test
         @DisplayName("Search Files: File is Null Test")
         void searchFiles_FileIsNullTest(){
-            assertThrows(BadRequestException.class, () -> fileService.searchFiles("invalid-user", null));
+            assertThrows(BadRequestException.class, () -> fileService.searchFiles("invalid-user", null, 10, null));
         }
 
         @Test
         @DisplayName("Search Files: Empty File Test")
         void searchFiles_EmptyFileTest(){
-            assertThrows(BadRequestException.class,()-> fileService.searchFiles("valid-user", ""));
+            assertThrows(BadRequestException.class,()-> fileService.searchFiles("valid-user", "", 10, null));
         }
 
         @Test
         @DisplayName("Search Files: Empty Username Test")
         void searchFiles_EmptyUsernameTest(){
-            assertThrows(BadRequestException.class,()-> fileService.searchFiles("", "valid-file"));
+            assertThrows(BadRequestException.class,()-> fileService.searchFiles("", "valid-file", 10, null));
         }
 
         @Test
         @DisplayName("Search Files: Invalid Username and File Test")
         void searchFiles_InvalidUsernameAndFileTest(){
-            assertThrows(BadRequestException.class,()-> fileService.searchFiles(" ", " "));
+            assertThrows(BadRequestException.class,()-> fileService.searchFiles(" ", " ", 10, null));
+        }
+
+        @Test
+        @DisplayName("Search Files: All Pages Test")
+        void searchFiles_AllPagesTest() {
+            // Arrange
+            ListObjectsV2Response firstPage = ListObjectsV2Response.builder()
+                    .contents(S3Object.builder().key("test-user/other.txt").build())
+                    .isTruncated(true)
+                    .nextContinuationToken("token")
+                    .build();
+            ListObjectsV2Response secondPage = ListObjectsV2Response.builder()
+                    .contents(S3Object.builder().key("test-user/test-file.txt").build())
+                    .build();
+            when(s3Client.listObjectsV2(any(ListObjectsV2Request.class))).thenReturn(firstPage, secondPage);
+            // Act
+            SearchPage page = fileService.searchFiles("test-user", "test-file", 10, null);
+            // Assert
+            assertEquals(List.of("test-file.txt"), page.getFiles());
+            verify(s3Client, times(2)).listObjectsV2(any(ListObjectsV2Request.class));
+        }
+
+        @Test
+        @DisplayName("Search Files: Limit And Cursor Test")
+        void searchFiles_LimitAndCursorTest() {
+            // Arrange
+            ListObjectsV2Response firstPage = ListObjectsV2Response.builder()
+                    .contents(S3Object.builder().key("test-user/test-1.txt").build(),
+                            S3Object.builder().key("test-user/test-2.txt").build(),
+                            S3Object.builder().key("test-user/test-3.txt").build())
+                    .isTruncated(true)
+                    .nextContinuationToken("token")
+                    .build();
+            when(s3Client.listObjectsV2(any(ListObjectsV2Request.class))).thenReturn(firstPage);
+            // Act
+            SearchPage page = fileService.searchFiles("test-user", "test", 2, null);
+            // Assert
+            assertEquals(List.of("test-1.txt", "test-2.txt"), page.getFiles());
+            assertNotNull(page.getNextCursor());
+            verify(s3Client, times(1)).listObjectsV2(any(ListObjectsV2Request.class));
+
+            // Act
+            fileService.searchFiles("test-user", "test", 2, page.getNextCursor());
+            // Assert
+            ArgumentCaptor<ListObjectsV2Request> captor = ArgumentCaptor.forClass(ListObjectsV2Request.class);
+            verify(s3Client, times(2)).listObjectsV2(captor.capture());
+            assertEquals("test-user/test-2.txt", captor.getValue().startAfter());
+        }
+
+        @Test
+        @DisplayName("Search Files: Invalid Limit Test")
+        void searchFiles_InvalidLimitTest() {
+            assertThrows(BadRequestException.class, () -> fileService.searchFiles("test-user", "test-file", 0, null));
         }
 
         @Test
@@ -98,29 +196,99 @@ class FileServiceImplUnitTest {
             ListObjectsV2Response mockResponse = ListObjectsV2Response.builder().contents(List.of()).build();
             when(s3Client.listObjectsV2(any(ListObjectsV2Request.class))).thenReturn(mockResponse);
             // Assert
-            assertThrows(FilesNotFoundException.class, () -> fileService.searchFiles("test-user", "test-file"));
+            assertThrows(FilesNotFoundException.class, () -> fileService.searchFiles("test-user", "test-file", 10, null));
         }
 
     }
 
+    @Nested
+    @DisplayName("Indexed Search Unit Tests")
+    class IndexedSearchUnitTests{
+        private FileServiceImpl indexedFileService;
+
+        @BeforeEach
+        void setUp() {
+            MultipartUploader multipartUploader = new MultipartUploader(s3Client, integrityChecker, 8 * 1024 * 1024, 5 * 1024 * 1024, 2, 1, 2, false);
+            S3StorageBackend storageBackend = new S3StorageBackend(s3Client, multipartUploader, integrityChecker, "test-bucket");
+            FileNameIndex fileNameIndex = new FileNameIndex(true, 10, 1000, Duration.ofMinutes(5), Duration.ofMinutes(30));
+            DownloadCache downloadCache = new DownloadCache(false, Path.of("unused"), 0, 0, Duration.ZERO, Duration.ZERO);
+            ZipArchiveWriter zipArchiveWriter = new ZipArchiveWriter(2, 4, 1, 2, false);
+            indexedFileService = new FileServiceImpl(storageBackend, fileNameIndex, downloadCache, zipArchiveWriter,
+                    new BatchRunner(2, 2, false), new MetadataCache(false, 10, Duration.ofSeconds(10), Duration.ofSeconds(5)),
+                    new ContentCompressor(false, List.of(), List.of(), 0, 6),
+                    new Deduplicator(storageBackend, false, ".blobs/", Path.of("unused")),
+                    new UrlPresigner(false, Duration.ofMinutes(15), 0, 0, 5 * 1024 * 1024, null, null, "test-bucket"),
+                    new ParallelDownloader(false, 0, 1024 * 1024, 2, 1, 2, false), integrityChecker);
+        }
+
+        @Test
+        @DisplayName("Indexed Search: Served From Index Test")
+        void searchFiles_ServedFromIndexTest() {
+            // Arrange
+            ListObjectsV2Response mockResponse = ListObjectsV2Response.builder()
+                    .contents(S3Object.builder().key("test-user/report-2024.csv").build(),
+                            S3Object.builder().key("test-user/notes.txt").build())
+                    .build();
+            when(s3Client.listObjectsV2(any(ListObjectsV2Request.class))).thenReturn(mockResponse);
+            // Act
+            SearchPage first = indexedFileService.searchFiles("test-user", "report", 10, null);
+            SearchPage second = indexedFileService.searchFiles("test-user", "notes", 10, null);
+            // Assert
+            assertEquals(List.of("report-2024.csv"), first.getFiles());
+            assertEquals(List.of("notes.txt"), second.getFiles());
+            verify(s3Client, times(1)).listObjectsV2(any(ListObjectsV2Request.class));
+        }
+
+        @Test
+        @DisplayName("Indexed Search: Uploaded File Found Test")
+        void searchFiles_UploadedFileFoundTest() {
+            // Arrange
+            when(s3Client.listObjectsV2(any(ListObjectsV2Request.class))).thenReturn(ListObjectsV2Response.builder()
+                    .contents(S3Object.builder().key("test-user/notes.txt").build()).build());
+            when(s3Client.putObject(any(PutObjectRequest.class), any(RequestBody.class))).thenReturn(PutObjectResponse.builder().build());
+            indexedFileService.searchFiles("test-user", "notes", 10, null);
+            // Act
+            indexedFileService.uploadFile("test-user", "new-notes.txt", "text/plain", new ByteArrayInputStream("x".getBytes()), 1);
+            SearchPage page = indexedFileService.searchFiles("test-user", "notes", 10, null);
+            // Assert
+            assertEquals(List.of("new-notes.txt", "notes.txt"), page.getFiles());
+            verify(s3Client, times(1)).listObjectsV2(any(ListObjectsV2Request.class));
+        }
+    }
+
     @Nested
     @DisplayName("Download File Unit Tests")
     class DownloadFileUnitTests{
+        @Test
+        @DisplayName("Download File: Traversal Out Of The User Rejected Test")
+        void downloadFile_TraversalTest() {
+            assertThrows(BadRequestException.class, () -> fileService.downloadFile("alice", "../bob/secret.txt"));
+            assertThrows(BadRequestException.class, () -> fileService.downloadFile("alice", "docs/./a.txt"));
+            assertThrows(BadRequestException.class, () -> fileService.moveFile("alice", "../.blobs/hash", "stolen.txt"));
+            assertThrows(BadRequestException.class, () -> fileService.searchFiles("..", "a", 10, null));
+            verifyNoInteractions(s3Client);
+        }
+
         @Test
         @DisplayName("Download File: Success Test")
-        void downloadFile_SuccessTest() {
+        void downloadFile_SuccessTest() throws IOException {
             // Arrange
             byte[] fileContent = "file content".getBytes();
             ByteArrayInputStream inputStream = new ByteArrayInputStream(fileContent);
             ResponseInputStream<GetObjectResponse> response = new ResponseInputStream<>(
-                    GetObjectResponse.builder().build(),
+                    GetObjectResponse.builder().contentLength((long) fileContent.length).contentType("text/plain").build(),
                     inputStream
             );
             when(s3Client.getObject(any(GetObjectRequest.class))).thenReturn(response);
             // Act
-            byte[] downloadedFile = fileService.downloadFile("test-user", "test-file");
+            FileDownload download = fileService.downloadFile("test-user", "test-file");
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            long transferred = download.transferTo(outputStream);
             // Assert
-            assertArrayEquals(fileContent, downloadedFile);
+            assertArrayEquals(fileContent, outputStream.toByteArray());
+            assertEquals(fileContent.length, transferred);
+            assertEquals(fileContent.length, download.getContentLength());
+            assertEquals("text/plain", download.getContentType());
         }
 
         @Test
@@ -170,14 +338,70 @@ class FileServiceImplUnitTest {
         void downloadFile_IOErrorTest() throws IOException {
             // Arrange
             ResponseInputStream<GetObjectResponse> stream = mock(ResponseInputStream.class);
-            when(stream.readAllBytes()).thenThrow(new IOException("IO Error"));
+            when(stream.response()).thenReturn(GetObjectResponse.builder().build());
+            when(stream.read(any(byte[].class))).thenThrow(new IOException("IO Error"));
             when(s3Client.getObject(any(GetObjectRequest.class))).thenReturn(stream);
+            // Act
+            FileDownload download = fileService.downloadFile("test-user", "test-file");
             // Assert
-            assertThrows(FileOperationException.class, () -> fileService.downloadFile("test-user", "test-file"));
+            assertThrows(IOException.class, () -> download.transferTo(new ByteArrayOutputStream()));
         }
     }
 
 
+    @Nested
+    @DisplayName("Ranged Download and Metadata Unit Tests")
+    class RangedDownloadUnitTests{
+        @Test
+        @DisplayName("Ranged Download: Range Header Test")
+        void downloadFileRange_RangeHeaderTest() {
+            // Arrange
+            ResponseInputStream<GetObjectResponse> response = new ResponseInputStream<>(
+                    GetObjectResponse.builder().contentLength(4L).build(),
+                    new ByteArrayInputStream("abcd".getBytes())
+            );
+            when(s3Client.headObject(any(HeadObjectRequest.class))).thenReturn(HeadObjectResponse.builder()
+                    .contentLength(20L).build());
+            when(s3Client.getObject(any(GetObjectRequest.class))).thenReturn(response);
+            // Act
+            FileDownload download = fileService.downloadFile("test-user", "test-file", 10, 13);
+            // Assert
+            ArgumentCaptor<GetObjectRequest> captor = ArgumentCaptor.forClass(GetObjectRequest.class);
+            verify(s3Client).getObject(captor.capture());
+            assertEquals("bytes=10-13", captor.getValue().range());
+            assertEquals("test-user/test-file", captor.getValue().key());
+            assertEquals(4, download.getContentLength());
+        }
+
+        @Test
+        @DisplayName("Ranged Download: Invalid Range Test")
+        void downloadFileRange_InvalidRangeTest() {
+            assertThrows(BadRequestException.class, () -> fileService.downloadFile("test-user", "test-file", 5, 2));
+        }
+
+        @Test
+        @DisplayName("File Metadata: Success Test")
+        void getFileMetadata_SuccessTest() {
+            // Arrange
+            Instant lastModified = Instant.parse("2024-01-01T00:00:00Z");
+            when(s3Client.headObject(any(HeadObjectRequest.class))).thenReturn(HeadObjectResponse.builder()
+                    .contentLength(42L).contentType("text/plain").eTag("\"etag\"").lastModified(lastModified).build());
+            // Act
+            FileMetadata metadata = fileService.getFileMetadata("test-user", "test-file");
+            // Assert
+            assertEquals(42, metadata.getContentLength());
+            assertEquals("\"etag\"", metadata.getETag());
+            assertEquals(lastModified, metadata.getLastModified());
+        }
+
+        @Test
+        @DisplayName("File Metadata: File Not Found Test")
+        void getFileMetadata_FileNotFoundTest() {
+            when(s3Client.headObject(any(HeadObjectRequest.class))).thenThrow(NoSuchKeyException.builder().build());
+            assertThrows(FilesNotFoundException.class, () -> fileService.getFileMetadata("test-user", "test-file"));
+        }
+    }
+
     @Nested
     @DisplayName("Upload File Unit Tests")
     class UploadFileUnitTests{
@@ -202,6 +426,57 @@ class FileServiceImplUnitTest {
             verify(s3Client,times(1)).putObject(any(PutObjectRequest.class),any(RequestBody.class));
         }
 
+        @Test
+        @DisplayName("Upload File: Multipart Above Threshold Test")
+        void uploadFile_MultipartAboveThresholdTest(){
+            // Arrange
+            MockMultipartFile largeFile = new MockMultipartFile("file", "large.bin", "application/octet-stream", new byte[9 * 1024 * 1024]);
+            when(s3Client.createMultipartUpload(any(CreateMultipartUploadRequest.class)))
+                    .thenReturn(CreateMultipartUploadResponse.builder().uploadId("upload-id").build());
+            when(s3Client.uploadPart(any(UploadPartRequest.class), any(RequestBody.class)))
+                    .thenReturn(UploadPartResponse.builder().eTag("part").build());
+            when(s3Client.completeMultipartUpload(any(CompleteMultipartUploadRequest.class)))
+                    .thenReturn(CompleteMultipartUploadResponse.builder().eTag("etag").build());
+            // Act
+            fileService.uploadFile("test-user", largeFile);
+            // Assert
+            verify(s3Client, times(2)).uploadPart(any(UploadPartRequest.class), any(RequestBody.class));
+            verify(s3Client, never()).putObject(any(PutObjectRequest.class), any(RequestBody.class));
+        }
+
+        @Test
+        @DisplayName("Upload File: Stream Of Known Size Test")
+        void uploadFileStream_KnownSizeTest(){
+            // Arrange
+            when(s3Client.putObject(any(PutObjectRequest.class),any(RequestBody.class))).thenReturn(PutObjectResponse.builder().build());
+            // Act
+            fileService.uploadFile("test-user", "file.txt", "text/plain", new ByteArrayInputStream("content".getBytes()), 7);
+            // Assert
+            ArgumentCaptor<PutObjectRequest> captor = ArgumentCaptor.forClass(PutObjectRequest.class);
+            verify(s3Client).putObject(captor.capture(), any(RequestBody.class));
+            assertEquals("test-user/file.txt", captor.getValue().key());
+            verify(s3Client, never()).createMultipartUpload(any(CreateMultipartUploadRequest.class));
+        }
+
+        @Test
+        @DisplayName("Upload File: Small Stream Of Unknown Size Test")
+        void uploadFileStream_UnknownSizeTest(){
+            // Arrange
+            when(s3Client.putObject(any(PutObjectRequest.class),any(RequestBody.class))).thenReturn(PutObjectResponse.builder().build());
+            // Act
+            fileService.uploadFile("test-user", "file.txt", "text/plain", new ByteArrayInputStream("content".getBytes()), -1);
+            // Assert
+            verify(s3Client).putObject(any(PutObjectRequest.class), any(RequestBody.class));
+            verify(s3Client, never()).createMultipartUpload(any(CreateMultipartUploadRequest.class));
+        }
+
+        @Test
+        @DisplayName("Upload File: Stream Without File Name Test")
+        void uploadFileStream_NoFileNameTest(){
+            ByteArrayInputStream content = new ByteArrayInputStream("content".getBytes());
+            assertThrows(BadRequestException.class, () -> fileService.uploadFile("test-user", " ", "text/plain", content, 7));
+        }
+
         @Test
         @DisplayName("Upload File: Invalid Input Test")
         void uploadFile_InvalidInputTest(){
@@ -252,4 +527,524 @@ class FileServiceImplUnitTest {
             assertThrows(FileOperationException.class, () -> fileService.uploadFile("test-user", mockFile));
         }
     }
+    @Nested
+    @DisplayName("Download Files Unit Tests")
+    class DownloadFilesUnitTests{
+        @Test
+        @DisplayName("Download Files: Zip Archive Test")
+        void downloadFiles_ZipArchiveTest() throws IOException {
+            // Arrange
+            stubObject("test-user/a.txt", "first file");
+            stubObject("test-user/b.txt", "second");
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            // Act
+            fileService.downloadFiles("test-user", List.of("a.txt", "b.txt", "a.txt"), outputStream);
+            // Assert
+            try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(outputStream.toByteArray()))) {
+                assertEquals("a.txt", zip.getNextEntry().getName());
+                assertEquals("first file", new String(zip.readAllBytes()));
+                assertEquals("b.txt", zip.getNextEntry().getName());
+                assertEquals("second", new String(zip.readAllBytes()));
+                assertNull(zip.getNextEntry());
+            }
+            verify(s3Client, times(2)).getObject(any(GetObjectRequest.class));
+        }
+
+        @Test
+        @DisplayName("Download Files: Missing File Test")
+        void downloadFiles_MissingFileTest() {
+            // Arrange
+            stubObject("test-user/a.txt", "first file");
+            when(s3Client.getObject(argThat((GetObjectRequest request) -> request != null && request.key().equals("test-user/missing.txt"))))
+                    .thenThrow(NoSuchKeyException.builder().build());
+            // Act & Assert
+            assertThrows(FilesNotFoundException.class,
+                    () -> fileService.downloadFiles("test-user", List.of("a.txt", "missing.txt"), new ByteArrayOutputStream()));
+        }
+
+        @Test
+        @DisplayName("Download Files: Empty List Test")
+        void downloadFiles_EmptyListTest() {
+            // Act & Assert
+            assertThrows(BadRequestException.class,
+                    () -> fileService.downloadFiles("test-user", List.of(), new ByteArrayOutputStream()));
+            verifyNoInteractions(s3Client);
+        }
+
+        private void stubObject(String key, String content) {
+            GetObjectResponse response = GetObjectResponse.builder().contentLength((long) content.length()).build();
+            when(s3Client.getObject(argThat((GetObjectRequest request) -> request != null && request.key().equals(key))))
+                    .thenAnswer(invocation -> new ResponseInputStream<>(response, new ByteArrayInputStream(content.getBytes())));
+        }
+    }
+    @Nested
+    @DisplayName("Bulk Upload Unit Tests")
+    class BulkUploadUnitTests{
+        @Test
+        @DisplayName("Bulk Upload: Per File Results Test")
+        void uploadFiles_PerFileResultsTest() {
+            // Arrange
+            MultipartFile first = new MockMultipartFile("files", "a.txt", "text/plain", "first".getBytes());
+            MultipartFile empty = new MockMultipartFile("files", "empty.txt", "text/plain", new byte[0]);
+            MultipartFile failing = new MockMultipartFile("files", "b.txt", "text/plain", "second".getBytes());
+            when(s3Client.putObject(argThat((PutObjectRequest request) -> request != null && request.key().equals("test-user/a.txt")), any(RequestBody.class)))
+                    .thenReturn(PutObjectResponse.builder().eTag("\"a\"").build());
+            when(s3Client.putObject(argThat((PutObjectRequest request) -> request != null && request.key().equals("test-user/b.txt")), any(RequestBody.class)))
+                    .thenThrow(S3Exception.builder().statusCode(500).build());
+            // Act
+            List<BatchResult> results = fileService.uploadFiles("test-user", List.of(first, empty, failing));
+            // Assert
+            assertEquals(3, results.size());
+            assertTrue(results.get(0).isSuccess());
+            assertEquals("a.txt", results.get(0).getFileName());
+            assertEquals("\"a\"", results.get(0).getETag());
+            assertFalse(results.get(1).isSuccess());
+            assertEquals("Invalid file", results.get(1).getError());
+            assertFalse(results.get(2).isSuccess());
+            assertEquals("Failed to upload file", results.get(2).getError());
+        }
+
+        @Test
+        @DisplayName("Bulk Upload: No Files Test")
+        void uploadFiles_NoFilesTest() {
+            // Act & Assert
+            assertThrows(BadRequestException.class, () -> fileService.uploadFiles("test-user", List.of()));
+            verifyNoInteractions(s3Client);
+        }
+    }
+    @Nested
+    @DisplayName("Metadata Cache Unit Tests")
+    class MetadataCacheUnitTests{
+        private FileServiceImpl cachedFileService;
+
+        @BeforeEach
+        void setUp() {
+            MultipartUploader multipartUploader = new MultipartUploader(s3Client, integrityChecker, 8 * 1024 * 1024, 5 * 1024 * 1024, 2, 1, 2, false);
+            S3StorageBackend storageBackend = new S3StorageBackend(s3Client, multipartUploader, integrityChecker, "test-bucket");
+            FileNameIndex fileNameIndex = new FileNameIndex(false, 10, 1000, Duration.ofMinutes(5), Duration.ofMinutes(30));
+            DownloadCache downloadCache = new DownloadCache(false, Path.of("unused"), 0, 0, Duration.ZERO, Duration.ZERO);
+            cachedFileService = new FileServiceImpl(storageBackend, fileNameIndex, downloadCache,
+                    new ZipArchiveWriter(2, 4, 1, 2, false), new BatchRunner(2, 2, false),
+                    new MetadataCache(true, 10, Duration.ofMinutes(1), Duration.ofMinutes(1)),
+                    new ContentCompressor(false, List.of(), List.of(), 0, 6),
+                    new Deduplicator(storageBackend, false, ".blobs/", Path.of("unused")),
+                    new UrlPresigner(false, Duration.ofMinutes(15), 0, 0, 5 * 1024 * 1024, null, null, "test-bucket"),
+                    new ParallelDownloader(false, 0, 1024 * 1024, 2, 1, 2, false), integrityChecker);
+        }
+
+        @Test
+        @DisplayName("Metadata Cache: Head Served From Cache Test")
+        void getFileMetadata_ServedFromCacheTest() {
+            // Arrange
+            when(s3Client.headObject(any(HeadObjectRequest.class)))
+                    .thenReturn(HeadObjectResponse.builder().contentLength(12L).eTag("\"etag\"").build());
+            // Act
+            cachedFileService.getFileMetadata("test-user", "test-file.txt");
+            FileMetadata metadata = cachedFileService.getFileMetadata("test-user", "test-file.txt");
+            // Assert
+            assertEquals(12, metadata.getContentLength());
+            verify(s3Client, times(1)).headObject(any(HeadObjectRequest.class));
+        }
+
+        @Test
+        @DisplayName("Metadata Cache: Missing File Cached Test")
+        void downloadFile_MissingFileCachedTest() {
+            // Arrange
+            when(s3Client.getObject(any(GetObjectRequest.class))).thenThrow(NoSuchKeyException.builder().build());
+            // Act & Assert
+            assertThrows(FilesNotFoundException.class, () -> cachedFileService.downloadFile("test-user", "missing.txt"));
+            assertThrows(FilesNotFoundException.class, () -> cachedFileService.downloadFile("test-user", "missing.txt"));
+            assertThrows(FilesNotFoundException.class, () -> cachedFileService.getFileMetadata("test-user", "missing.txt"));
+            verify(s3Client, times(1)).getObject(any(GetObjectRequest.class));
+            verify(s3Client, never()).headObject(any(HeadObjectRequest.class));
+        }
+
+        @Test
+        @DisplayName("Metadata Cache: Invalidated On Upload Test")
+        void uploadFile_InvalidatesMetadataTest() {
+            // Arrange
+            when(s3Client.headObject(any(HeadObjectRequest.class)))
+                    .thenThrow(NoSuchKeyException.builder().build())
+                    .thenReturn(HeadObjectResponse.builder().contentLength(4L).build());
+            when(s3Client.putObject(any(PutObjectRequest.class), any(RequestBody.class))).thenReturn(PutObjectResponse.builder().build());
+            assertThrows(FilesNotFoundException.class, () -> cachedFileService.getFileMetadata("test-user", "new.txt"));
+            // Act
+            cachedFileService.uploadFile("test-user", "new.txt", "text/plain", new ByteArrayInputStream("data".getBytes()), 4);
+            FileMetadata metadata = cachedFileService.getFileMetadata("test-user", "new.txt");
+            // Assert
+            assertEquals(4, metadata.getContentLength());
+        }
+    }
+
+    @Nested
+    @DisplayName("Compression Unit Tests")
+    class CompressionUnitTests{
+        private InMemoryS3Client inMemoryS3Client;
+        private FileServiceImpl compressingFileService;
+
+        @BeforeEach
+        void setUp() {
+            inMemoryS3Client = new InMemoryS3Client();
+            MultipartUploader multipartUploader = new MultipartUploader(inMemoryS3Client, integrityChecker, 8 * 1024 * 1024, 5 * 1024 * 1024, 2, 1, 2, false);
+            S3StorageBackend storageBackend = new S3StorageBackend(inMemoryS3Client, multipartUploader, integrityChecker, "test-bucket");
+            FileNameIndex fileNameIndex = new FileNameIndex(false, 10, 1000, Duration.ofMinutes(5), Duration.ofMinutes(30));
+            DownloadCache downloadCache = new DownloadCache(false, Path.of("unused"), 0, 0, Duration.ZERO, Duration.ZERO);
+            compressingFileService = new FileServiceImpl(storageBackend, fileNameIndex, downloadCache,
+                    new ZipArchiveWriter(2, 4, 1, 2, false), new BatchRunner(2, 2, false),
+                    new MetadataCache(false, 10, Duration.ofSeconds(10), Duration.ofSeconds(5)),
+                    new ContentCompressor(true, List.of("text/*"), List.of("log"), 16, 6),
+                    new Deduplicator(storageBackend, false, ".blobs/", Path.of("unused")),
+                    new UrlPresigner(false, Duration.ofMinutes(15), 0, 0, 5 * 1024 * 1024, null, null, "test-bucket"),
+                    new ParallelDownloader(false, 0, 1024 * 1024, 2, 1, 2, false), integrityChecker);
+        }
+
+        @Test
+        @DisplayName("Compression: Text Stored Gzip Encoded Test")
+        void uploadFile_CompressedTest() throws IOException {
+            // Arrange
+            byte[] content = "line of a log file\n".repeat(1000).getBytes();
+            // Act
+            compressingFileService.uploadFile("test-user", "app.log", "application/octet-stream",
+                    new ByteArrayInputStream(content), content.length);
+            // Assert
+            byte[] stored = inMemoryS3Client.content("test-user/app.log");
+            assertTrue(stored.length < content.length / 5);
+            try (GZIPInputStream decoded = new GZIPInputStream(new ByteArrayInputStream(stored))) {
+                assertArrayEquals(content, decoded.readAllBytes());
+            }
+            FileMetadata metadata = compressingFileService.getFileMetadata("test-user", "app.log");
+            assertEquals(ContentCompressor.GZIP, metadata.getContentEncoding());
+            assertEquals(content.length, metadata.getDecodedLength());
+        }
+
+        @Test
+        @DisplayName("Compression: Download Decoded Unless Accepted Test")
+        void downloadFile_DecodedTest() throws IOException {
+            // Arrange
+            byte[] content = "a,b,c\n1,2,3\n".repeat(500).getBytes();
+            compressingFileService.uploadFile("test-user", "data.csv", "text/csv", new ByteArrayInputStream(content), -1);
+            // Act
+            FileDownload decoded = compressingFileService.downloadFile("test-user", "data.csv");
+            FileDownload encoded = compressingFileService.downloadFile("test-user", "data.csv", Set.of("gzip"));
+            ByteArrayOutputStream decodedOut = new ByteArrayOutputStream();
+            ByteArrayOutputStream encodedOut = new ByteArrayOutputStream();
+            try (decoded; encoded) {
+                decoded.transferTo(decodedOut);
+                encoded.transferTo(encodedOut);
+            }
+            // Assert
+            assertNull(decoded.getContentEncoding());
+            assertEquals(-1, decoded.getContentLength());
+            assertArrayEquals(content, decodedOut.toByteArray());
+            assertEquals("gzip", encoded.getContentEncoding());
+            assertArrayEquals(inMemoryS3Client.content("test-user/data.csv"), encodedOut.toByteArray());
+        }
+
+        @Test
+        @DisplayName("Compression: Binary Stored As Uploaded Test")
+        void uploadFile_NotCompressibleTest() {
+            // Arrange
+            byte[] content = new byte[4096];
+            // Act
+            compressingFileService.uploadFile("test-user", "photo.jpg", "image/jpeg", new ByteArrayInputStream(content), content.length);
+            // Assert
+            assertArrayEquals(content, inMemoryS3Client.content("test-user/photo.jpg"));
+            assertNull(compressingFileService.getFileMetadata("test-user", "photo.jpg").getContentEncoding());
+        }
+    }
+
+    @Nested
+    @DisplayName("Deduplication Unit Tests")
+    class DeduplicationUnitTests{
+        @TempDir
+        Path spoolDirectory;
+        private InMemoryS3Client inMemoryS3Client;
+        private FileServiceImpl deduplicatingFileService;
+
+        @BeforeEach
+        void setUp() {
+            inMemoryS3Client = new InMemoryS3Client();
+            MultipartUploader multipartUploader = new MultipartUploader(inMemoryS3Client, integrityChecker, 8 * 1024 * 1024, 5 * 1024 * 1024, 2, 1, 2, false);
+            S3StorageBackend storageBackend = new S3StorageBackend(inMemoryS3Client, multipartUploader, integrityChecker, "test-bucket");
+            FileNameIndex fileNameIndex = new FileNameIndex(false, 10, 1000, Duration.ofMinutes(5), Duration.ofMinutes(30));
+            DownloadCache downloadCache = new DownloadCache(false, Path.of("unused"), 0, 0, Duration.ZERO, Duration.ZERO);
+            deduplicatingFileService = new FileServiceImpl(storageBackend, fileNameIndex, downloadCache,
+                    new ZipArchiveWriter(2, 4, 1, 2, false), new BatchRunner(2, 2, false),
+                    new MetadataCache(true, 10, Duration.ofMinutes(1), Duration.ofMinutes(1)),
+                    new ContentCompressor(false, List.of(), List.of(), 0, 6),
+                    new Deduplicator(storageBackend, true, ".blobs/", spoolDirectory),
+                    new UrlPresigner(false, Duration.ofMinutes(15), 0, 0, 5 * 1024 * 1024, null, null, "test-bucket"),
+                    new ParallelDownloader(false, 0, 1024 * 1024, 2, 1, 2, false), integrityChecker);
+        }
+
+        @Test
+        @DisplayName("Deduplication: Identical Content Stored Once Test")
+        void uploadFile_StoredOnceTest() throws IOException {
+            // Arrange
+            byte[] content = "installer bytes".repeat(100).getBytes();
+            // Act
+            deduplicatingFileService.uploadFile("test-user", "setup.exe", "application/octet-stream",
+                    new ByteArrayInputStream(content), content.length);
+            deduplicatingFileService.uploadFile("other-user", "copy/setup-1.exe", "application/octet-stream",
+                    new ByteArrayInputStream(content), content.length);
+            // Assert
+            assertEquals(3, inMemoryS3Client.size());
+            assertEquals(List.of("copy/setup-1.exe"), deduplicatingFileService.searchFiles("other-user", "setup", 10, null).getFiles());
+            try (FileDownload download = deduplicatingFileService.downloadFile("other-user", "copy/setup-1.exe")) {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                download.transferTo(out);
+                assertEquals(content.length, download.getContentLength());
+                assertArrayEquals(content, out.toByteArray());
+            }
+            try (FileDownload range = deduplicatingFileService.downloadFile("test-user", "setup.exe", 15, 29)) {
+                assertArrayEquals("installer bytes".getBytes(), range.getContent().readAllBytes());
+            }
+            assertEquals(content.length, deduplicatingFileService.getFileMetadata("test-user", "setup.exe").getContentLength());
+        }
+
+        @Test
+        @DisplayName("Deduplication: Blob Directory Reserved Test")
+        void downloadFile_BlobDirectoryReservedTest() {
+            assertThrows(BadRequestException.class, () -> deduplicatingFileService.downloadFile(".blobs", "anything"));
+            assertThrows(BadRequestException.class, () -> deduplicatingFileService.searchFiles(".blobs", "a", 10, null));
+        }
+    }
+
+    @Nested
+    @DisplayName("Presigned URL Unit Tests")
+    class PresignedUrlUnitTests{
+        private S3Presigner presigner;
+        private FileServiceImpl presigningFileService;
+
+        @BeforeEach
+        void setUp() {
+            presigner = S3Presigner.builder()
+                    .region(Region.US_EAST_1)
+                    .credentialsProvider(StaticCredentialsProvider.create(AwsBasicCredentials.create("access", "secret")))
+                    .build();
+            MultipartUploader multipartUploader = new MultipartUploader(s3Client, integrityChecker, 8 * 1024 * 1024, 5 * 1024 * 1024, 2, 1, 2, false);
+            S3StorageBackend storageBackend = new S3StorageBackend(s3Client, multipartUploader, integrityChecker, "test-bucket");
+            FileNameIndex fileNameIndex = new FileNameIndex(false, 10, 1000, Duration.ofMinutes(5), Duration.ofMinutes(30));
+            DownloadCache downloadCache = new DownloadCache(false, Path.of("unused"), 0, 0, Duration.ZERO, Duration.ZERO);
+            presigningFileService = new FileServiceImpl(storageBackend, fileNameIndex, downloadCache,
+                    new ZipArchiveWriter(2, 4, 1, 2, false), new BatchRunner(2, 2, false),
+                    new MetadataCache(false, 10, Duration.ofSeconds(10), Duration.ofSeconds(5)),
+                    new ContentCompressor(false, List.of(), List.of(), 0, 6),
+                    new Deduplicator(storageBackend, false, ".blobs/", Path.of("unused")),
+                    new UrlPresigner(true, Duration.ofMinutes(15), 1024, 8 * 1024 * 1024, 5 * 1024 * 1024, presigner, s3Client, "test-bucket"),
+                    new ParallelDownloader(false, 0, 1024 * 1024, 2, 1, 2, false), integrityChecker);
+        }
+
+        @AfterEach
+        void tearDown() {
+            presigner.close();
+        }
+
+        @Test
+        @DisplayName("Presigned URL: Download Test")
+        void presignDownload_Test() {
+            // Arrange
+            when(s3Client.headObject(any(HeadObjectRequest.class)))
+                    .thenReturn(HeadObjectResponse.builder().contentLength(12L).contentType("text/plain").build());
+            // Act
+            PresignedTransfer transfer = presigningFileService.presignDownload("test-user", "report.txt");
+            // Assert
+            assertEquals("GET", transfer.getMethod());
+            assertEquals(1, transfer.getUrls().size());
+            assertTrue(transfer.getUrls().get(0).contains("test-user/report.txt"));
+            assertTrue(transfer.getUrls().get(0).contains("X-Amz-Signature="));
+            verify(s3Client, never()).getObject(any(GetObjectRequest.class));
+        }
+
+        @Test
+        @DisplayName("Presigned URL: Redirect Above Threshold Test")
+        void downloadRedirect_ThresholdTest() {
+            // Arrange
+            when(s3Client.headObject(any(HeadObjectRequest.class)))
+                    .thenReturn(HeadObjectResponse.builder().contentLength(100L).build())
+                    .thenReturn(HeadObjectResponse.builder().contentLength(4096L).build());
+            // Act & Assert
+            assertTrue(presigningFileService.downloadRedirect("test-user", "small.bin", Set.of()).isEmpty());
+            assertTrue(presigningFileService.downloadRedirect("test-user", "large.bin", Set.of()).isPresent());
+        }
+
+        @Test
+        @DisplayName("Presigned URL: Multipart Upload Test")
+        void presignUpload_MultipartTest() {
+            // Arrange
+            when(s3Client.createMultipartUpload(any(CreateMultipartUploadRequest.class)))
+                    .thenReturn(CreateMultipartUploadResponse.builder().uploadId("upload-id").build());
+            // Act
+            PresignedTransfer transfer = presigningFileService.presignUpload("test-user", "video.mp4", "video/mp4", 12L * 1024 * 1024);
+            // Assert
+            assertEquals("upload-id", transfer.getUploadId());
+            assertEquals(5L * 1024 * 1024, transfer.getPartSize());
+            assertEquals(3, transfer.getUrls().size());
+            assertTrue(transfer.getUrls().get(2).contains("partNumber=3"));
+            verify(s3Client, never()).putObject(any(PutObjectRequest.class), any(RequestBody.class));
+        }
+
+        @Test
+        @DisplayName("Presigned URL: Disabled Test")
+        void presignUpload_DisabledTest() {
+            assertThrows(BadRequestException.class, () -> fileService.presignUpload("test-user", "file.txt", "text/plain", 4));
+        }
+    }
+
+    @Nested
+    @DisplayName("Copy And Move Unit Tests")
+    class CopyAndMoveUnitTests{
+        private InMemoryS3Client inMemoryS3Client;
+        private FileServiceImpl copyingFileService;
+
+        @BeforeEach
+        void setUp() {
+            inMemoryS3Client = new InMemoryS3Client();
+            MultipartUploader multipartUploader = new MultipartUploader(inMemoryS3Client, integrityChecker, 8 * 1024 * 1024, 5 * 1024 * 1024, 2, 1, 2, false);
+            S3StorageBackend storageBackend = new S3StorageBackend(inMemoryS3Client, multipartUploader, integrityChecker, "test-bucket");
+            FileNameIndex fileNameIndex = new FileNameIndex(true, 10, 1000, Duration.ofMinutes(5), Duration.ofMinutes(30));
+            DownloadCache downloadCache = new DownloadCache(false, Path.of("unused"), 0, 0, Duration.ZERO, Duration.ZERO);
+            copyingFileService = new FileServiceImpl(storageBackend, fileNameIndex, downloadCache,
+                    new ZipArchiveWriter(2, 4, 1, 2, false), new BatchRunner(2, 2, false),
+                    new MetadataCache(true, 10, Duration.ofMinutes(1), Duration.ofMinutes(1)),
+                    new ContentCompressor(false, List.of(), List.of(), 0, 6),
+                    new Deduplicator(storageBackend, false, ".blobs/", Path.of("unused")),
+                    new UrlPresigner(false, Duration.ofMinutes(15), 0, 0, 5 * 1024 * 1024, null, null, "test-bucket"),
+                    new ParallelDownloader(false, 0, 1024 * 1024, 2, 1, 2, false), integrityChecker);
+        }
+
+        @Test
+        @DisplayName("Copy And Move: Copy Test")
+        void copyFile_Test() {
+            // Arrange
+            inMemoryS3Client.put("test-user/report.txt", "text/plain", "report".getBytes());
+            // Act
+            copyingFileService.copyFile("test-user", "report.txt", "archive/report.txt");
+            // Assert
+            assertArrayEquals("report".getBytes(), inMemoryS3Client.content("test-user/archive/report.txt"));
+            assertArrayEquals("report".getBytes(), inMemoryS3Client.content("test-user/report.txt"));
+            assertEquals("text/plain", copyingFileService.getFileMetadata("test-user", "archive/report.txt").getContentType());
+        }
+
+        @Test
+        @DisplayName("Copy And Move: Rename Seen By Search And Metadata Test")
+        void moveFile_Test() {
+            // Arrange
+            inMemoryS3Client.put("test-user/draft.txt", "text/plain", "draft".getBytes());
+            copyingFileService.searchFiles("test-user", "draft", 10, null);
+            copyingFileService.getFileMetadata("test-user", "draft.txt");
+            // Act
+            copyingFileService.moveFile("test-user", "draft.txt", "final.txt");
+            // Assert
+            assertEquals(List.of("final.txt"), copyingFileService.searchFiles("test-user", ".txt", 10, null).getFiles());
+            assertThrows(FilesNotFoundException.class, () -> copyingFileService.getFileMetadata("test-user", "draft.txt"));
+            assertEquals(5, copyingFileService.getFileMetadata("test-user", "final.txt").getContentLength());
+        }
+
+        @Test
+        @DisplayName("Copy And Move: Bulk Move Reports Each File Test")
+        void moveFiles_Test() {
+            // Arrange
+            inMemoryS3Client.put("test-user/a.txt", "text/plain", "a".getBytes());
+            inMemoryS3Client.put("test-user/b.txt", "text/plain", "b".getBytes());
+            // Act
+            List<BatchResult> results = copyingFileService.moveFiles("test-user", List.of("a.txt", "missing.txt", "b.txt"),
+                    List.of("moved/a.txt", "moved/missing.txt", "moved/b.txt"));
+            // Assert
+            assertEquals(List.of(true, false, true), results.stream().map(BatchResult::isSuccess).toList());
+            assertEquals("moved/missing.txt", results.get(1).getFileName());
+            assertArrayEquals("b".getBytes(), inMemoryS3Client.content("test-user/moved/b.txt"));
+        }
+
+        @Test
+        @DisplayName("Copy And Move: Same Name Rejected Test")
+        void moveFile_SameNameTest() {
+            assertThrows(BadRequestException.class, () -> copyingFileService.moveFile("test-user", "a.txt", "a.txt"));
+        }
+    }
+
+    @Nested
+    @DisplayName("Integrity Unit Tests")
+    class IntegrityUnitTests{
+        private InMemoryS3Client inMemoryS3Client;
+        private FileServiceImpl checkingFileService;
+
+        @BeforeEach
+        void setUp() {
+            inMemoryS3Client = new InMemoryS3Client();
+            MultipartUploader multipartUploader = new MultipartUploader(inMemoryS3Client, integrityChecker, 8 * 1024 * 1024, 5 * 1024 * 1024, 2, 1, 2, false);
+            S3StorageBackend storageBackend = new S3StorageBackend(inMemoryS3Client, multipartUploader, integrityChecker, "test-bucket");
+            FileNameIndex fileNameIndex = new FileNameIndex(false, 10, 1000, Duration.ofMinutes(5), Duration.ofMinutes(30));
+            DownloadCache downloadCache = new DownloadCache(false, Path.of("unused"), 0, 0, Duration.ZERO, Duration.ZERO);
+            checkingFileService = new FileServiceImpl(storageBackend, fileNameIndex, downloadCache,
+                    new ZipArchiveWriter(2, 4, 1, 2, false), new BatchRunner(2, 2, false),
+                    new MetadataCache(false, 10, Duration.ofSeconds(10), Duration.ofSeconds(5)),
+                    new ContentCompressor(false, List.of(), List.of(), 0, 6),
+                    new Deduplicator(storageBackend, false, ".blobs/", Path.of("unused")),
+                    new UrlPresigner(false, Duration.ofMinutes(15), 0, 0, 5 * 1024 * 1024, null, null, "test-bucket"),
+                    new ParallelDownloader(false, 0, 1024 * 1024, 2, 1, 2, false), integrityChecker);
+        }
+
+        @Test
+        @DisplayName("Integrity: Checksum Stored And Verified Test")
+        void downloadFile_VerifiedTest() throws IOException {
+            // Arrange
+            byte[] content = "checked content".getBytes();
+            checkingFileService.uploadFile("test-user", "file.txt", "text/plain", new ByteArrayInputStream(content), content.length);
+            // Act
+            FileDownload download = checkingFileService.downloadFile("test-user", "file.txt");
+            // Assert
+            assertEquals(IntegrityChecker.CRC32C, download.getChecksumAlgorithm());
+            assertEquals(IntegrityChecker.CRC32C, checkingFileService.getFileMetadata("test-user", "file.txt").getChecksumAlgorithm());
+            try (download) {
+                assertArrayEquals(content, download.getContent().readAllBytes());
+            }
+        }
+
+        @Test
+        @DisplayName("Integrity: Multipart Upload Verified Part By Part Test")
+        void downloadFile_MultipartVerifiedTest() throws IOException {
+            // Arrange
+            byte[] content = new byte[12 * 1024 * 1024 + 7];
+            new Random(7).nextBytes(content);
+            checkingFileService.uploadFile("test-user", "large.bin", "application/octet-stream", new ByteArrayInputStream(content), content.length);
+            // Act
+            FileDownload download = checkingFileService.downloadFile("test-user", "large.bin");
+            // Assert
+            assertTrue(download.getChecksum().endsWith("-3"));
+            assertEquals(Long.toString(5 * 1024 * 1024), download.getUserMetadata().get(FileMetadata.CHECKSUM_PART_SIZE));
+            try (download) {
+                assertArrayEquals(content, download.getContent().readAllBytes());
+            }
+        }
+
+        @Test
+        @DisplayName("Integrity: Corrupted Content Fails The Download Test")
+        void downloadFile_CorruptedTest() throws IOException {
+            // Arrange
+            byte[] content = "checked content".getBytes();
+            checkingFileService.uploadFile("test-user", "file.txt", "text/plain", new ByteArrayInputStream(content), content.length);
+            inMemoryS3Client.corrupt("test-user/file.txt");
+            // Act
+            FileDownload download = checkingFileService.downloadFile("test-user", "file.txt");
+            // Assert
+            try (download) {
+                assertThrows(IOException.class, () -> download.transferTo(new ByteArrayOutputStream()));
+            }
+        }
+
+        @Test
+        @DisplayName("Integrity: File Without Checksum Served Unchecked Test")
+        void downloadFile_NoChecksumTest() throws IOException {
+            // Arrange
+            inMemoryS3Client.put("test-user/old.txt", "text/plain", "old".getBytes());
+            // Act
+            FileDownload download = checkingFileService.downloadFile("test-user", "old.txt");
+            // Assert
+            assertNull(download.getChecksum());
+            try (download) {
+                assertArrayEquals("old".getBytes(), download.getContent().readAllBytes());
+            }
+        }
+    }
 }
@@ -0,0 +1,156 @@
+package com.project.cloudfilestorage.service;
+
+import com.project.cloudfilestorage.dto.FileDownload;
+import com.project.cloudfilestorage.dto.FileMetadata;
+import com.project.cloudfilestorage.service.impl.IntegrityChecker;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("Integrity Checker Unit Test")
+class IntegrityCheckerUnitTest {
+    private final IntegrityChecker checker = new IntegrityChecker("crc32c", true);
+
+    @Test
+    @DisplayName("Integrity: Known CRC32C Value Test")
+    void checksum_Crc32cTest() {
+        // CRC32C of "123456789" is 0xE3069283.
+        assertEquals(Base64.getEncoder().encodeToString(new byte[]{(byte) 0xE3, 0x06, (byte) 0x92, (byte) 0x83}),
+                checker.checksum("123456789".getBytes()));
+    }
+
+    @Test
+    @DisplayName("Integrity: Matching Content Read Test")
+    void verify_MatchTest() throws IOException {
+        // Arrange
+        byte[] content = content(10_000);
+        FileDownload download = download(content, IntegrityChecker.CRC32C, checker.checksum(content), Map.of());
+        // Act
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (FileDownload verified = checker.verify(download)) {
+            verified.transferTo(out);
+        }
+        // Assert
+        assertArrayEquals(content, out.toByteArray());
+    }
+
+    @Test
+    @DisplayName("Integrity: Mismatch Fails At The End Test")
+    void verify_MismatchTest() {
+        // Arrange
+        byte[] content = content(10_000);
+        String checksum = checker.checksum(content);
+        content[5000] ^= 0x01;
+        FileDownload verified = checker.verify(download(content, IntegrityChecker.CRC32C, checksum, Map.of()));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        // Assert
+        assertThrows(IOException.class, () -> verified.transferTo(out));
+        assertEquals(0, out.size());
+    }
+
+    @Test
+    @DisplayName("Integrity: Last Chunk Held Back On Mismatch Test")
+    void verify_MismatchHoldsBackLastChunkTest() throws IOException {
+        // Arrange
+        byte[] content = content(3 * FileDownload.BUFFER_SIZE + 100);
+        String checksum = checker.checksum(content);
+        content[10] ^= 0x01;
+        FileDownload verified = checker.verify(download(content, IntegrityChecker.CRC32C, checksum, Map.of()));
+        byte[] buffer = new byte[FileDownload.BUFFER_SIZE];
+        long handedOut = 0;
+        // Act
+        IOException exception = null;
+        try {
+            int read;
+            while ((read = verified.getContent().read(buffer)) != -1) {
+                handedOut += read;
+            }
+        } catch (IOException e) {
+            exception = e;
+        }
+        // Assert
+        assertNotNull(exception);
+        assertEquals(3 * FileDownload.BUFFER_SIZE, handedOut);
+    }
+
+    @Test
+    @DisplayName("Integrity: Multipart Checksum Verified By Part Test")
+    void verify_CompositeTest() throws IOException {
+        // Arrange
+        byte[] content = content(2500);
+        ByteArrayOutputStream partChecksums = new ByteArrayOutputStream();
+        for (int start = 0; start < content.length; start += 1000) {
+            byte[] part = Arrays.copyOfRange(content, start, Math.min(start + 1000, content.length));
+            partChecksums.writeBytes(Base64.getDecoder().decode(checker.checksum(part)));
+        }
+        String checksum = checker.checksum(partChecksums.toByteArray()) + "-3";
+        FileDownload download = download(content, IntegrityChecker.CRC32C, checksum,
+                Map.of(FileMetadata.CHECKSUM_PART_SIZE, "1000"));
+        // Act
+        byte[] read;
+        try (FileDownload verified = checker.verify(download)) {
+            read = verified.getContent().readAllBytes();
+        }
+        // Assert
+        assertArrayEquals(content, read);
+    }
+
+    @Test
+    @DisplayName("Integrity: SHA-256 Test")
+    void verify_Sha256Test() throws IOException {
+        // Arrange
+        IntegrityChecker sha256 = new IntegrityChecker("sha256", true);
+        byte[] content = content(3000);
+        FileDownload download = download(content, IntegrityChecker.SHA256, sha256.checksum(content), Map.of());
+        // Act
+        byte[] read;
+        try (FileDownload verified = checker.verify(download)) {
+            read = verified.getContent().readAllBytes();
+        }
+        // Assert
+        assertArrayEquals(content, read);
+        assertEquals(44, sha256.checksum(content).length());
+    }
+
+    @Test
+    @DisplayName("Integrity: Unknown Part Size Left Unchecked Test")
+    void verify_UnknownLayoutTest() {
+        // Arrange
+        FileDownload download = download(content(100), IntegrityChecker.CRC32C, "AAAAAA==-2", Map.of());
+        // Assert
+        assertSame(download, checker.verify(download));
+    }
+
+    @Test
+    @DisplayName("Integrity: Disabled Test")
+    void disabledTest() {
+        IntegrityChecker disabled = new IntegrityChecker("none", false);
+        FileDownload download = download(content(100), IntegrityChecker.CRC32C, "AAAAAA==", Map.of());
+        assertFalse(disabled.isEnabled());
+        assertNull(disabled.s3Algorithm());
+        assertNull(disabled.checksum(new byte[1]));
+        assertSame(download, disabled.verify(download));
+        assertThrows(IllegalArgumentException.class, () -> new IntegrityChecker("md5", true));
+    }
+
+    private static byte[] content(int size) {
+        byte[] content = new byte[size];
+        new Random(7).nextBytes(content);
+        return content;
+    }
+
+    private static FileDownload download(byte[] content, String algorithm, String checksum, Map<String, String> userMetadata) {
+        return new FileDownload(new FileMetadata("file.bin", "application/octet-stream", content.length, "\"etag\"",
+                Instant.now(), null, userMetadata, algorithm, checksum), new ByteArrayInputStream(content));
+    }
+}
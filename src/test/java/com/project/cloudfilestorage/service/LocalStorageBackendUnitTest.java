@@ -0,0 +1,183 @@
+package com.project.cloudfilestorage.service;
+
+import com.project.cloudfilestorage.dto.FileDownload;
+import com.project.cloudfilestorage.dto.FileMetadata;
+import com.project.cloudfilestorage.exception.BadRequestException;
+import com.project.cloudfilestorage.exception.FileOperationException;
+import com.project.cloudfilestorage.exception.FilesNotFoundException;
+import com.project.cloudfilestorage.service.impl.LocalStorageBackend;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("Local Storage Backend Unit Test")
+class LocalStorageBackendUnitTest {
+    @TempDir
+    Path directory;
+
+    private LocalStorageBackend storageBackend;
+
+    @BeforeEach
+    void setUp() {
+        storageBackend = new LocalStorageBackend(directory, false);
+    }
+
+    /*
+    Helper methods to store a file and read a download fully.
+     */
+    private String put(String key, String content) {
+        byte[] bytes = content.getBytes();
+        return storageBackend.put(key, "text/plain", null, Map.of(), new ByteArrayInputStream(bytes), bytes.length);
+    }
+
+    private String read(FileDownload download) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (download) {
+            download.transferTo(out);
+        }
+        return out.toString();
+    }
+
+    @Test
+    @DisplayName("Local Storage: Put And Get Test")
+    void putAndGet_Test() throws IOException {
+        // Act
+        String eTag = put("test-user/docs/file.txt", "file content");
+        FileDownload download = storageBackend.get("test-user/docs/file.txt", "docs/file.txt", null);
+        // Assert
+        assertEquals(eTag, download.getETag());
+        assertEquals(12, download.getContentLength());
+        assertEquals("file content", read(download));
+        try (Stream<Path> files = Files.list(directory.resolve(".staging"))) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    @Test
+    @DisplayName("Local Storage: Overwrite Changes ETag Test")
+    void put_OverwriteTest() throws IOException {
+        // Arrange
+        String first = put("test-user/file.txt", "first");
+        // Act
+        String second = put("test-user/file.txt", "second content");
+        // Assert
+        assertNotEquals(first, second);
+        assertNull(storageBackend.get("test-user/file.txt", "file.txt", second));
+        assertEquals("second content", read(storageBackend.get("test-user/file.txt", "file.txt", first)));
+    }
+
+    @Test
+    @DisplayName("Local Storage: Length Mismatch Is Not Published Test")
+    void put_LengthMismatchTest() {
+        // Act
+        assertThrows(FileOperationException.class, () -> storageBackend.put("test-user/file.txt", "text/plain", null,
+                Map.of(), new ByteArrayInputStream("short".getBytes()), 100));
+        // Assert
+        assertThrows(FilesNotFoundException.class, () -> storageBackend.head("test-user/file.txt", "file.txt"));
+    }
+
+    @Test
+    @DisplayName("Local Storage: Range Test")
+    void getRange_Test() throws IOException {
+        // Arrange
+        put("test-user/file.txt", "0123456789");
+        // Act
+        FileDownload download = storageBackend.get("test-user/file.txt", "file.txt", 2, 100);
+        // Assert
+        assertEquals(8, download.getContentLength());
+        assertEquals("23456789", read(download));
+        assertThrows(BadRequestException.class, () -> storageBackend.get("test-user/file.txt", "file.txt", 10, 12));
+    }
+
+    @Test
+    @DisplayName("Local Storage: List Prefix In Key Order Test")
+    void list_Test() {
+        // Arrange
+        put("test-user/b.txt", "b");
+        put("test-user/a/c.txt", "c");
+        put("test-user/a-d.txt", "d");
+        put("other-user/e.txt", "e");
+        // Act
+        List<String> keys = storageBackend.list("test-user/", null).toList();
+        List<String> afterKeys = storageBackend.list("test-user/", "test-user/a-d.txt").toList();
+        // Assert
+        assertEquals(List.of("test-user/a-d.txt", "test-user/a/c.txt", "test-user/b.txt"), keys);
+        assertEquals(List.of("test-user/a/c.txt", "test-user/b.txt"), afterKeys);
+        assertEquals(0, storageBackend.list("missing-user/", null).count());
+    }
+
+    @Test
+    @DisplayName("Local Storage: Head Test")
+    void head_Test() {
+        // Arrange
+        String eTag = put("test-user/file.txt", "file content");
+        // Act
+        FileMetadata metadata = storageBackend.head("test-user/file.txt", "file.txt");
+        // Assert
+        assertEquals(12, metadata.getContentLength());
+        assertEquals(eTag, metadata.getETag());
+        assertThrows(FilesNotFoundException.class, () -> storageBackend.head("test-user/missing.txt", "missing.txt"));
+    }
+
+    @Test
+    @DisplayName("Local Storage: Encoding And User Metadata Kept Test")
+    void put_AttributesTest() {
+        // Act
+        storageBackend.put("test-user/app.log", "text/plain", "gzip", Map.of("decoded-length", "42"),
+                new ByteArrayInputStream(new byte[8]), 8);
+        FileMetadata metadata = storageBackend.head("test-user/app.log", "app.log");
+        // Assert
+        assertEquals("text/plain", metadata.getContentType());
+        assertEquals("gzip", metadata.getContentEncoding());
+        assertEquals(42, metadata.getDecodedLength());
+    }
+
+    @Test
+    @DisplayName("Local Storage: Path Traversal Rejected Test")
+    void resolve_PathTraversalTest() {
+        assertThrows(BadRequestException.class, () -> put("test-user/../../outside.txt", "x"));
+        assertThrows(BadRequestException.class, () -> storageBackend.get(".staging/file", "file", null));
+    }
+
+    @Test
+    @DisplayName("Local Storage: Other User Unreachable Test")
+    void resolve_CrossUserTraversalTest() {
+        // Arrange
+        put("bob/secret.txt", "secret");
+        // Assert
+        assertThrows(BadRequestException.class, () -> storageBackend.get("alice/../bob/secret.txt", "secret.txt", null));
+        assertThrows(BadRequestException.class, () -> put("alice/../bob/secret.txt", "overwritten"));
+        assertThrows(BadRequestException.class, () -> storageBackend.delete("alice/../bob/secret.txt"));
+        assertThrows(BadRequestException.class, () -> storageBackend.move("alice/../bob/secret.txt", "alice/stolen.txt"));
+        assertThrows(BadRequestException.class, () -> storageBackend.head("alice/../.blobs/hash", "hash"));
+        assertThrows(BadRequestException.class, () -> storageBackend.head("../test-user/file", "file"));
+    }
+
+    @Test
+    @DisplayName("Local Storage: Copy And Move Test")
+    void copyAndMove_Test() throws IOException {
+        // Arrange
+        put("test-user/a.txt", "file content");
+        // Act
+        storageBackend.copy("test-user/a.txt", "test-user/copies/b.txt");
+        storageBackend.move("test-user/a.txt", "test-user/c.txt");
+        // Assert
+        assertEquals("file content", read(storageBackend.get("test-user/copies/b.txt", "copies/b.txt", null)));
+        assertEquals("file content", read(storageBackend.get("test-user/c.txt", "c.txt", null)));
+        assertEquals("text/plain", storageBackend.head("test-user/c.txt", "c.txt").getContentType());
+        assertThrows(FilesNotFoundException.class, () -> storageBackend.head("test-user/a.txt", "a.txt"));
+        assertThrows(FilesNotFoundException.class, () -> storageBackend.move("test-user/a.txt", "test-user/d.txt"));
+    }
+}
@@ -0,0 +1,77 @@
+package com.project.cloudfilestorage.service;
+
+import com.project.cloudfilestorage.dto.FileMetadata;
+import com.project.cloudfilestorage.exception.FilesNotFoundException;
+import com.project.cloudfilestorage.service.impl.MetadataCache;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("Metadata Cache Unit Test")
+class MetadataCacheUnitTest {
+    private static final FileMetadata METADATA = new FileMetadata("file.txt", "text/plain", 4, "\"etag\"", null);
+
+    @Test
+    @DisplayName("Metadata Cache: Hit Test")
+    void get_HitTest() {
+        MetadataCache cache = new MetadataCache(true, 10, Duration.ofMinutes(1), Duration.ofMinutes(1));
+        AtomicInteger loads = new AtomicInteger();
+        Supplier<FileMetadata> loader = () -> {
+            loads.incrementAndGet();
+            return METADATA;
+        };
+        assertSame(METADATA, cache.get("user/file.txt", loader));
+        assertSame(METADATA, cache.get("user/file.txt", loader));
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    @DisplayName("Metadata Cache: Negative Entry Test")
+    void get_NegativeEntryTest() {
+        MetadataCache cache = new MetadataCache(true, 10, Duration.ofMinutes(1), Duration.ofMinutes(1));
+        AtomicInteger loads = new AtomicInteger();
+        Supplier<FileMetadata> loader = () -> {
+            loads.incrementAndGet();
+            throw new FilesNotFoundException("Files not found");
+        };
+        assertThrows(FilesNotFoundException.class, () -> cache.get("user/missing.txt", loader));
+        assertThrows(FilesNotFoundException.class, () -> cache.get("user/missing.txt", loader));
+        assertTrue(cache.isKnownMissing("user/missing.txt"));
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    @DisplayName("Metadata Cache: Expiry Test")
+    void get_ExpiryTest() {
+        MetadataCache cache = new MetadataCache(true, 10, Duration.ofMinutes(1), Duration.ZERO);
+        cache.putMissing("user/file.txt");
+        assertFalse(cache.isKnownMissing("user/file.txt"));
+        assertSame(METADATA, cache.get("user/file.txt", () -> METADATA));
+    }
+
+    @Test
+    @DisplayName("Metadata Cache: Bounded Size Test")
+    void put_BoundedSizeTest() {
+        MetadataCache cache = new MetadataCache(true, 2, Duration.ofMinutes(1), Duration.ofMinutes(1));
+        cache.put("user/a", METADATA);
+        cache.put("user/b", METADATA);
+        cache.get("user/a", () -> fail("Entry should be cached"));
+        cache.put("user/c", METADATA);
+        assertEquals(2, cache.size());
+        assertSame(METADATA, cache.get("user/a", () -> fail("Entry should be cached")));
+    }
+
+    @Test
+    @DisplayName("Metadata Cache: Invalidate Test")
+    void invalidate_Test() {
+        MetadataCache cache = new MetadataCache(true, 10, Duration.ofMinutes(1), Duration.ofMinutes(1));
+        cache.putMissing("user/file.txt");
+        cache.invalidate("user/file.txt");
+        assertFalse(cache.isKnownMissing("user/file.txt"));
+    }
+}
@@ -0,0 +1,177 @@
+package com.project.cloudfilestorage.service;
+
+import com.project.cloudfilestorage.dto.FileMetadata;
+import com.project.cloudfilestorage.exception.FileOperationException;
+import com.project.cloudfilestorage.service.impl.IntegrityChecker;
+import com.project.cloudfilestorage.service.impl.MultipartUploader;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.*;
+
+import java.io.ByteArrayInputStream;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("Multipart Uploader Unit Test")
+class MultipartUploaderUnitTest {
+    private static final int PART_SIZE = 5 * 1024 * 1024;
+
+    @Mock
+    private S3Client s3Client;
+
+    private MultipartUploader multipartUploader;
+
+    private final IntegrityChecker integrityChecker = new IntegrityChecker("crc32c", true);
+
+    @BeforeEach
+    void setUp() {
+        multipartUploader = new MultipartUploader(s3Client, integrityChecker, PART_SIZE, PART_SIZE, 2, 2, 2, false);
+    }
+
+    /*
+    Helper method to stub the creation of the multipart upload.
+     */
+    private void stubCreateMultipartUpload() {
+        when(s3Client.createMultipartUpload(any(CreateMultipartUploadRequest.class)))
+                .thenReturn(CreateMultipartUploadResponse.builder().uploadId("upload-id").build());
+    }
+
+    @AfterEach
+    void tearDown() {
+        multipartUploader.destroy();
+    }
+
+    @Test
+    @DisplayName("Multipart Upload: Success Test")
+    void upload_SuccessTest() {
+        // Arrange
+        stubCreateMultipartUpload();
+        when(s3Client.uploadPart(any(UploadPartRequest.class), any(RequestBody.class)))
+                .thenAnswer(invocation -> UploadPartResponse.builder()
+                        .eTag("etag-" + invocation.getArgument(0, UploadPartRequest.class).partNumber()).build());
+        when(s3Client.completeMultipartUpload(any(CompleteMultipartUploadRequest.class)))
+                .thenReturn(CompleteMultipartUploadResponse.builder().eTag("final-etag").build());
+        byte[] content = new byte[2 * PART_SIZE + 10];
+        // Act
+        String eTag = multipartUploader.upload("bucket", "user/file", "application/octet-stream", new ByteArrayInputStream(content), content.length);
+        // Assert
+        assertEquals("final-etag", eTag);
+        ArgumentCaptor<CompleteMultipartUploadRequest> captor = ArgumentCaptor.forClass(CompleteMultipartUploadRequest.class);
+        verify(s3Client).completeMultipartUpload(captor.capture());
+        List<CompletedPart> parts = captor.getValue().multipartUpload().parts();
+        assertEquals(3, parts.size());
+        assertEquals(List.of(1, 2, 3), parts.stream().map(CompletedPart::partNumber).toList());
+        assertEquals("etag-3", parts.get(2).eTag());
+    }
+
+    @Test
+    @DisplayName("Multipart Upload: Part Checksums Test")
+    void upload_PartChecksumsTest() {
+        // Arrange
+        stubCreateMultipartUpload();
+        when(s3Client.uploadPart(any(UploadPartRequest.class), any(RequestBody.class)))
+                .thenReturn(UploadPartResponse.builder().eTag("etag").build());
+        when(s3Client.completeMultipartUpload(any(CompleteMultipartUploadRequest.class)))
+                .thenReturn(CompleteMultipartUploadResponse.builder().eTag("final-etag").build());
+        byte[] content = new byte[PART_SIZE + 10];
+        content[PART_SIZE + 1] = 1;
+        // Act
+        multipartUploader.upload("bucket", "user/file", "text/plain", new ByteArrayInputStream(content), content.length);
+        // Assert
+        ArgumentCaptor<CreateMultipartUploadRequest> create = ArgumentCaptor.forClass(CreateMultipartUploadRequest.class);
+        verify(s3Client).createMultipartUpload(create.capture());
+        assertEquals(ChecksumAlgorithm.CRC32_C, create.getValue().checksumAlgorithm());
+        assertEquals(Integer.toString(PART_SIZE), create.getValue().metadata().get(FileMetadata.CHECKSUM_PART_SIZE));
+        ArgumentCaptor<CompleteMultipartUploadRequest> complete = ArgumentCaptor.forClass(CompleteMultipartUploadRequest.class);
+        verify(s3Client).completeMultipartUpload(complete.capture());
+        List<CompletedPart> parts = complete.getValue().multipartUpload().parts();
+        assertEquals(integrityChecker.checksum(new byte[PART_SIZE]), parts.get(0).checksumCRC32C());
+        assertEquals(integrityChecker.checksum(new byte[]{0, 1, 0, 0, 0, 0, 0, 0, 0, 0}), parts.get(1).checksumCRC32C());
+    }
+
+    @Test
+    @DisplayName("Multipart Upload: Retry Failed Part Test")
+    void upload_RetryFailedPartTest() {
+        // Arrange
+        stubCreateMultipartUpload();
+        when(s3Client.uploadPart(any(UploadPartRequest.class), any(RequestBody.class)))
+                .thenThrow(S3Exception.builder().statusCode(503).build())
+                .thenReturn(UploadPartResponse.builder().eTag("etag").build());
+        when(s3Client.completeMultipartUpload(any(CompleteMultipartUploadRequest.class)))
+                .thenReturn(CompleteMultipartUploadResponse.builder().eTag("final-etag").build());
+        // Act
+        multipartUploader.upload("bucket", "user/file", "text/plain", new ByteArrayInputStream(new byte[PART_SIZE + 1]), PART_SIZE + 1);
+        // Assert
+        verify(s3Client, times(3)).uploadPart(any(UploadPartRequest.class), any(RequestBody.class));
+        verify(s3Client, never()).abortMultipartUpload(any(AbortMultipartUploadRequest.class));
+    }
+
+    @Test
+    @DisplayName("Multipart Upload: Abort On Failure Test")
+    void upload_AbortOnFailureTest() {
+        // Arrange
+        stubCreateMultipartUpload();
+        when(s3Client.uploadPart(any(UploadPartRequest.class), any(RequestBody.class)))
+                .thenThrow(S3Exception.builder().statusCode(403).build());
+        ByteArrayInputStream input = new ByteArrayInputStream(new byte[PART_SIZE + 1]);
+        // Assert
+        assertThrows(FileOperationException.class,
+                () -> multipartUploader.upload("bucket", "user/file", "text/plain", input, PART_SIZE + 1));
+        verify(s3Client).abortMultipartUpload(any(AbortMultipartUploadRequest.class));
+        verify(s3Client, never()).completeMultipartUpload(any(CompleteMultipartUploadRequest.class));
+    }
+
+    @Test
+    @DisplayName("Multipart Upload: Stream Shorter Than One Part Test")
+    void upload_ShortStreamTest() {
+        // Arrange
+        when(s3Client.putObject(any(PutObjectRequest.class), any(RequestBody.class)))
+                .thenReturn(PutObjectResponse.builder().eTag("etag").build());
+        // Act
+        String eTag = multipartUploader.upload("bucket", "user/file", "text/plain", new ByteArrayInputStream(new byte[100]), -1);
+        // Assert
+        assertEquals("etag", eTag);
+        verify(s3Client, never()).createMultipartUpload(any(CreateMultipartUploadRequest.class));
+    }
+
+    @Test
+    @DisplayName("Multipart Upload: Part Size Too Small Test")
+    void constructor_PartSizeTooSmallTest() {
+        assertThrows(IllegalArgumentException.class, () -> new MultipartUploader(s3Client, integrityChecker, 1024, 1024, 2, 2, 2, false));
+    }
+
+    @Test
+    @DisplayName("Multipart Copy: Parts Copied By Range Test")
+    void copy_PartsCopiedTest() {
+        // Arrange
+        stubCreateMultipartUpload();
+        when(s3Client.uploadPartCopy(any(UploadPartCopyRequest.class))).thenAnswer(invocation -> UploadPartCopyResponse.builder()
+                .copyPartResult(CopyPartResult.builder().eTag("\"part-" + invocation.<UploadPartCopyRequest>getArgument(0).partNumber() + "\"").build())
+                .build());
+        when(s3Client.completeMultipartUpload(any(CompleteMultipartUploadRequest.class)))
+                .thenReturn(CompleteMultipartUploadResponse.builder().eTag("\"copy\"").build());
+        long size = 6L * 1024 * 1024 * 1024;
+        // Act
+        String eTag = multipartUploader.copy("bucket", "user/source.bin", "user/target.bin", size, "video/mp4", null, Map.of());
+        // Assert
+        assertEquals("\"copy\"", eTag);
+        ArgumentCaptor<UploadPartCopyRequest> parts = ArgumentCaptor.forClass(UploadPartCopyRequest.class);
+        verify(s3Client, times(12)).uploadPartCopy(parts.capture());
+        assertTrue(parts.getAllValues().stream().anyMatch(part -> part.partNumber() == 12
+                && part.copySourceRange().equals("bytes=" + (11L * 512 * 1024 * 1024) + "-" + (size - 1))));
+        verify(s3Client, never()).getObject(any(GetObjectRequest.class));
+    }
+}
@@ -0,0 +1,99 @@
+package com.project.cloudfilestorage.service;
+
+import com.project.cloudfilestorage.dto.FileDownload;
+import com.project.cloudfilestorage.dto.FileMetadata;
+import com.project.cloudfilestorage.service.impl.ParallelDownloader;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("Parallel Downloader Unit Test")
+class ParallelDownloaderUnitTest {
+    private final ParallelDownloader downloader = new ParallelDownloader(true, 4096, 1024, 3, 2, 4, false);
+
+    @AfterEach
+    void tearDown() {
+        downloader.destroy();
+    }
+
+    @Test
+    @DisplayName("Parallel Download: Threshold Test")
+    void isParallel_Test() {
+        assertTrue(downloader.isParallel(4096));
+        assertFalse(downloader.isParallel(4095));
+        assertFalse(new ParallelDownloader(false, 4096, 1024, 3, 2, 4, false).isParallel(1 << 20));
+    }
+
+    @Test
+    @DisplayName("Parallel Download: Ranges Reassembled In Order Test")
+    void open_ReassembledTest() throws IOException {
+        // Arrange
+        byte[] content = new byte[10_000];
+        new Random(7).nextBytes(content);
+        AtomicInteger requests = new AtomicInteger();
+        // Act
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (FileDownload download = downloader.open(metadata(content.length), (start, end) -> {
+            requests.incrementAndGet();
+            return range(content, start, end, "\"etag\"");
+        })) {
+            download.transferTo(out);
+        }
+        // Assert
+        assertArrayEquals(content, out.toByteArray());
+        assertEquals(10, requests.get());
+    }
+
+    @Test
+    @DisplayName("Parallel Download: Failed Range Retried Test")
+    void open_RangeRetriedTest() throws IOException {
+        // Arrange
+        byte[] content = new byte[5000];
+        new Random(11).nextBytes(content);
+        AtomicInteger attempts = new AtomicInteger();
+        // Act
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (FileDownload download = downloader.open(metadata(content.length), (start, end) -> {
+            if (start == 2048 && attempts.getAndIncrement() < 2) {
+                throw new IllegalStateException("Connection reset");
+            }
+            return range(content, start, end, "\"etag\"");
+        })) {
+            download.transferTo(out);
+        }
+        // Assert
+        assertArrayEquals(content, out.toByteArray());
+        assertEquals(3, attempts.get());
+    }
+
+    @Test
+    @DisplayName("Parallel Download: Changed File Fails Test")
+    void open_ChangedFileTest() {
+        // Arrange
+        byte[] content = new byte[5000];
+        FileDownload download = downloader.open(metadata(content.length),
+                (start, end) -> range(content, start, end, start == 0 ? "\"etag\"" : "\"other\""));
+        // Act & Assert
+        assertThrows(IOException.class, () -> download.transferTo(new ByteArrayOutputStream()));
+    }
+
+    private FileMetadata metadata(long length) {
+        return new FileMetadata("large.bin", "application/octet-stream", length, "\"etag\"", Instant.now());
+    }
+
+    private FileDownload range(byte[] content, long start, long end, String eTag) {
+        int from = (int) start;
+        int to = (int) Math.min(end, content.length - 1);
+        return new FileDownload("large.bin", "application/octet-stream", to - from + 1, eTag, Instant.now(),
+                new ByteArrayInputStream(content, from, to - from + 1));
+    }
+}
@@ -0,0 +1,304 @@
+package com.project.cloudfilestorage.service;
+
+import com.project.cloudfilestorage.dto.FileDownload;
+import com.project.cloudfilestorage.exception.BadRequestException;
+import com.project.cloudfilestorage.exception.FileOperationException;
+import com.project.cloudfilestorage.exception.FilesNotFoundException;
+import com.project.cloudfilestorage.service.impl.BatchRunner;
+import com.project.cloudfilestorage.service.impl.ContentCompressor;
+import com.project.cloudfilestorage.service.impl.Deduplicator;
+import com.project.cloudfilestorage.service.impl.DownloadCache;
+import com.project.cloudfilestorage.service.impl.FileNameIndex;
+import com.project.cloudfilestorage.service.impl.FileServiceImpl;
+import com.project.cloudfilestorage.service.impl.IntegrityChecker;
+import com.project.cloudfilestorage.service.impl.MetadataCache;
+import com.project.cloudfilestorage.service.impl.MultipartUploader;
+import com.project.cloudfilestorage.service.impl.ParallelDownloader;
+import com.project.cloudfilestorage.service.impl.S3StorageBackend;
+import com.project.cloudfilestorage.service.impl.ShardedStorageBackend;
+import com.project.cloudfilestorage.service.impl.UrlPresigner;
+import com.project.cloudfilestorage.service.impl.ZipArchiveWriter;
+import com.project.cloudfilestorage.support.InMemoryS3Client;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.spy;
+
+@DisplayName("Sharded Storage Backend Unit Test")
+class ShardedStorageBackendUnitTest {
+    private InMemoryS3Client inMemoryS3Client;
+    private S3StorageBackend flatBackend;
+    private ShardedStorageBackend shardedBackend;
+
+    @BeforeEach
+    void setUp() {
+        inMemoryS3Client = new InMemoryS3Client();
+        IntegrityChecker integrityChecker = new IntegrityChecker("crc32c", true);
+        MultipartUploader multipartUploader = new MultipartUploader(inMemoryS3Client, integrityChecker, 8 * 1024 * 1024, 5 * 1024 * 1024, 2, 1, 2, false);
+        flatBackend = new S3StorageBackend(inMemoryS3Client, multipartUploader, integrityChecker, "test-bucket");
+        shardedBackend = new ShardedStorageBackend(flatBackend, 8, true, 3, 2, 4, false);
+    }
+
+    @AfterEach
+    void tearDown() {
+        shardedBackend.destroy();
+    }
+
+    @Test
+    @DisplayName("Sharded: Keys Spread Over Shards Test")
+    void put_SpreadTest() throws IOException {
+        // Act
+        for (int i = 0; i < 40; i++) {
+            put("test-user/file-" + i + ".txt", "content " + i);
+        }
+        // Assert
+        Set<String> shards = new HashSet<>();
+        try (Stream<String> keys = flatBackend.list("", null)) {
+            keys.forEach(key -> {
+                assertTrue(key.startsWith(".shards/"));
+                shards.add(key.substring(0, ".shards/00/".length()));
+            });
+        }
+        assertTrue(shards.size() > 1);
+        try (FileDownload download = shardedBackend.get("test-user/file-7.txt", "file-7.txt", null)) {
+            assertEquals("content 7", new String(download.getContent().readAllBytes()));
+        }
+        assertEquals(9, shardedBackend.head("test-user/file-7.txt", "file-7.txt").getContentLength());
+    }
+
+    @Test
+    @DisplayName("Sharded: Listing Merged In Key Order Test")
+    void list_MergedTest() {
+        // Arrange
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 25; i++) {
+            String key = String.format("test-user/file-%02d.txt", i);
+            put(key, "content");
+            expected.add(key);
+        }
+        put("other-user/file.txt", "content");
+        // Act
+        List<String> listed;
+        try (Stream<String> keys = shardedBackend.list("test-user/", null)) {
+            listed = keys.toList();
+        }
+        List<String> resumed;
+        try (Stream<String> keys = shardedBackend.list("test-user/", "test-user/file-19.txt")) {
+            resumed = keys.toList();
+        }
+        // Assert
+        assertEquals(expected, listed);
+        assertEquals(expected.subList(20, 25), resumed);
+    }
+
+    @Test
+    @DisplayName("Sharded: Legacy Keys Read And Migrated Online Test")
+    void migrate_LegacyTest() throws IOException {
+        // Arrange
+        List<String> keys = IntStream.range(0, 10).mapToObj(i -> "test-user/old-" + i + ".txt").toList();
+        keys.forEach(key -> inMemoryS3Client.put(key, "text/plain", "old".getBytes()));
+        put("test-user/new.txt", "new");
+        List<String> migrated = new ArrayList<>();
+        // Act
+        List<String> before;
+        try (Stream<String> listed = shardedBackend.list("test-user/", null)) {
+            before = listed.toList();
+        }
+        try (FileDownload download = shardedBackend.get("test-user/old-3.txt", "old-3.txt", null)) {
+            assertEquals("old", new String(download.getContent().readAllBytes()));
+        }
+        long count = shardedBackend.migrate("test-user/", key -> {
+            synchronized (migrated) {
+                migrated.add(key);
+            }
+        });
+        // Assert
+        assertEquals(11, before.size());
+        assertEquals(10, count);
+        assertEquals(10, migrated.size());
+        for (String key : keys) {
+            assertNull(inMemoryS3Client.content(key));
+            assertArrayEquals("old".getBytes(), inMemoryS3Client.content(shardedBackend.shardedKey(key)));
+        }
+        try (Stream<String> listed = shardedBackend.list("test-user/", null)) {
+            assertEquals(before, listed.toList());
+        }
+        assertEquals(3, shardedBackend.head("test-user/old-3.txt", "old-3.txt").getContentLength());
+    }
+
+    @Test
+    @DisplayName("Sharded: Migration Fails Instead Of Hanging On A Shut Down Pool Test")
+    void migrate_ShutDownPoolTest() throws Exception {
+        // Arrange
+        for (int i = 0; i < 5; i++) {
+            inMemoryS3Client.put("test-user/old-" + i + ".txt", "text/plain", "old".getBytes());
+        }
+        shardedBackend.destroy();
+        // Act
+        CompletableFuture<Long> migration = CompletableFuture.supplyAsync(() -> shardedBackend.migrate("", key -> { }));
+        // Assert
+        ExecutionException exception = assertThrows(ExecutionException.class, () -> migration.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(FileOperationException.class, exception.getCause());
+    }
+
+    @Test
+    @DisplayName("Sharded: Newer Sharded Copy Wins Migration Test")
+    void migrate_NewerShardTest() {
+        // Arrange
+        inMemoryS3Client.put("test-user/file.txt", "text/plain", "old".getBytes());
+        put("test-user/file.txt", "newer");
+        // Act
+        long count = shardedBackend.migrate("", key -> { });
+        // Assert
+        assertEquals(1, count);
+        assertNull(inMemoryS3Client.content("test-user/file.txt"));
+        assertArrayEquals("newer".getBytes(), inMemoryS3Client.content(shardedBackend.shardedKey("test-user/file.txt")));
+    }
+
+    @Test
+    @DisplayName("Sharded: Move And Delete Drop Legacy Copies Test")
+    void move_LegacyTest() {
+        // Arrange
+        inMemoryS3Client.put("test-user/a.txt", "text/plain", "old".getBytes());
+        inMemoryS3Client.put("test-user/c.txt", "text/plain", "old".getBytes());
+        // Act
+        shardedBackend.move("test-user/a.txt", "test-user/b.txt");
+        shardedBackend.delete("test-user/c.txt");
+        // Assert
+        assertNull(inMemoryS3Client.content("test-user/a.txt"));
+        assertNull(inMemoryS3Client.content("test-user/c.txt"));
+        assertArrayEquals("old".getBytes(), inMemoryS3Client.content(shardedBackend.shardedKey("test-user/b.txt")));
+        assertThrows(FilesNotFoundException.class, () -> shardedBackend.head("test-user/a.txt", "a.txt"));
+        assertEquals(shardedBackend.shardedKey("test-user/missing.txt"), shardedBackend.locate("test-user/missing.txt"));
+    }
+
+    @Test
+    @DisplayName("Sharded: Service Migration And Reserved Directory Test")
+    void fileService_MigrateLayoutTest() {
+        // Arrange
+        inMemoryS3Client.put("test-user/file.txt", "text/plain", "old".getBytes());
+        FileServiceImpl fileService = fileService(shardedBackend);
+        FileServiceImpl flatFileService = fileService(flatBackend);
+        // Act
+        long count = fileService.migrateLayout("test-user");
+        // Assert
+        assertEquals(1, count);
+        assertEquals(List.of("file.txt"), fileService.searchFiles("test-user", "file", 10, null).getFiles());
+        assertThrows(BadRequestException.class, () -> fileService.searchFiles(".shards", "file", 10, null));
+        assertThrows(BadRequestException.class, () -> flatFileService.migrateLayout(null));
+    }
+
+    @Test
+    @DisplayName("Sharded: Write During Migration Of Its Key Not Lost Test")
+    void migrate_ConcurrentWriteTest() throws Exception {
+        // Arrange
+        inMemoryS3Client.put("test-user/file.txt", "text/plain", "old".getBytes());
+        S3StorageBackend delegate = spy(flatBackend);
+        CountDownLatch checking = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            checking.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return invocation.callRealMethod();
+        }).when(delegate).head(shardedBackend.shardedKey("test-user/file.txt"), "test-user/file.txt");
+        ShardedStorageBackend migrating = new ShardedStorageBackend(delegate, 8, true, 3, 2, 4, false);
+        ExecutorService writer = Executors.newSingleThreadExecutor();
+        try {
+            // Act
+            CompletableFuture<Long> migration = CompletableFuture.supplyAsync(() -> migrating.migrate("", key -> { }));
+            assertTrue(checking.await(5, TimeUnit.SECONDS));
+            Future<?> write = writer.submit(() -> {
+                byte[] bytes = "newer".getBytes();
+                migrating.put("test-user/file.txt", "text/plain", null, Map.of(), new ByteArrayInputStream(bytes), bytes.length);
+            });
+            Thread.sleep(100);
+            boolean writtenDuringMigration = write.isDone();
+            release.countDown();
+            migration.get(5, TimeUnit.SECONDS);
+            write.get(5, TimeUnit.SECONDS);
+            // Assert
+            assertFalse(writtenDuringMigration);
+            assertNull(inMemoryS3Client.content("test-user/file.txt"));
+            assertArrayEquals("newer".getBytes(), inMemoryS3Client.content(shardedBackend.shardedKey("test-user/file.txt")));
+        } finally {
+            writer.shutdownNow();
+            migrating.destroy();
+        }
+    }
+
+    @Test
+    @DisplayName("Sharded: Listing Streams Closed After Early Close Test")
+    void list_EarlyCloseTest() throws Exception {
+        // Arrange
+        for (int i = 0; i < 40; i++) {
+            put(String.format("test-user/file-%02d.txt", i), "content");
+        }
+        S3StorageBackend delegate = spy(flatBackend);
+        AtomicInteger opened = new AtomicInteger();
+        AtomicInteger closed = new AtomicInteger();
+        doAnswer(invocation -> {
+            opened.incrementAndGet();
+            Stream<String> keys = flatBackend.list(invocation.getArgument(0), invocation.getArgument(1));
+            return keys.onClose(closed::incrementAndGet);
+        }).when(delegate).list(anyString(), any());
+        ShardedStorageBackend listing = new ShardedStorageBackend(delegate, 8, true, 1, 2, 4, false);
+        try {
+            // Act
+            List<String> first;
+            try (Stream<String> keys = listing.list("test-user/", null)) {
+                first = keys.limit(3).toList();
+            }
+            // Assert
+            assertEquals(3, first.size());
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (closed.get() < opened.get() && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(opened.get(), closed.get());
+        } finally {
+            listing.destroy();
+        }
+    }
+
+    private void put(String key, String content) {
+        byte[] bytes = content.getBytes();
+        shardedBackend.put(key, "text/plain", null, Map.of(), new ByteArrayInputStream(bytes), bytes.length);
+    }
+
+    private static FileServiceImpl fileService(StorageBackend storageBackend) {
+        IntegrityChecker integrityChecker = new IntegrityChecker("crc32c", true);
+        return new FileServiceImpl(storageBackend, new FileNameIndex(false, 10, 1000, Duration.ofMinutes(5), Duration.ofMinutes(30)),
+                new DownloadCache(false, Path.of("unused"), 0, 0, Duration.ZERO, Duration.ZERO), new ZipArchiveWriter(2, 4, 1, 2, false),
+                new BatchRunner(2, 2, false), new MetadataCache(false, 10, Duration.ofSeconds(10), Duration.ofSeconds(5)),
+                new ContentCompressor(false, List.of(), List.of(), 0, 6),
+                new Deduplicator(storageBackend, false, ".blobs/", Path.of("unused")),
+                new UrlPresigner(false, Duration.ofMinutes(15), 0, 0, 5 * 1024 * 1024, null, null, "test-bucket"),
+                new ParallelDownloader(false, 0, 1024 * 1024, 2, 1, 2, false), integrityChecker);
+    }
+}
@@ -0,0 +1,139 @@
+package com.project.cloudfilestorage.service;
+
+import com.project.cloudfilestorage.exception.TransferRejectedException;
+import com.project.cloudfilestorage.service.impl.TransferScheduler;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("Transfer Scheduler Unit Test")
+class TransferSchedulerUnitTest {
+
+    @Test
+    @DisplayName("Admission: User Limit Rejected With 429 Test")
+    void admit_UserLimitTest() {
+        // Arrange
+        TransferScheduler scheduler = new TransferScheduler(true, 10, 2, 10, Duration.ofMillis(50), Duration.ofSeconds(1), 0, 0);
+        // Act
+        TransferScheduler.Permit first = scheduler.admit("busy-user");
+        TransferScheduler.Permit second = scheduler.admit("busy-user");
+        TransferRejectedException exception = assertThrows(TransferRejectedException.class, () -> scheduler.admit("busy-user"));
+        // Assert
+        assertTrue(exception.isUserLimit());
+        assertEquals(Duration.ofSeconds(1), exception.getRetryAfter());
+        scheduler.admit("other-user").close();
+        first.close();
+        first.close();
+        scheduler.admit("busy-user").close();
+        second.close();
+    }
+
+    @Test
+    @DisplayName("Admission: Global Limit Rejected With 503 Test")
+    void admit_GlobalLimitTest() {
+        // Arrange
+        TransferScheduler scheduler = new TransferScheduler(true, 2, 2, 10, Duration.ofMillis(50), Duration.ofSeconds(1), 0, 0);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        scheduler.bindTo(registry);
+        // Act
+        TransferScheduler.Permit first = scheduler.admit("user-a");
+        TransferScheduler.Permit second = scheduler.admit("user-b");
+        TransferRejectedException exception = assertThrows(TransferRejectedException.class, () -> scheduler.admit("user-c"));
+        // Assert
+        assertFalse(exception.isUserLimit());
+        assertEquals(2, registry.get("transfer.active").gauge().value());
+        assertEquals(1, registry.get("transfer.rejected").tag("reason", "global").functionCounter().count());
+        assertEquals(2, registry.get("transfer.queue.wait").tag("result", "admitted").functionTimer().count());
+        first.close();
+        second.close();
+        assertEquals(0, registry.get("transfer.active").gauge().value());
+    }
+
+    @Test
+    @DisplayName("Admission: Queued Transfer Admitted When A Slot Frees Test")
+    void admit_QueuedTest() throws Exception {
+        // Arrange
+        TransferScheduler scheduler = new TransferScheduler(true, 1, 1, 10, Duration.ofSeconds(5), Duration.ofSeconds(1), 0, 0);
+        TransferScheduler.Permit first = scheduler.admit("test-user");
+        CountDownLatch started = new CountDownLatch(1);
+        // Act
+        CompletableFuture<TransferScheduler.Permit> queued = CompletableFuture.supplyAsync(() -> {
+            started.countDown();
+            return scheduler.admit("test-user");
+        });
+        started.await();
+        Thread.sleep(50);
+        first.close();
+        // Assert
+        queued.get(5, TimeUnit.SECONDS).close();
+    }
+
+    @Test
+    @DisplayName("Bandwidth: User Bytes Paced By Token Bucket Test")
+    void throttle_PacedTest() throws IOException {
+        // Arrange
+        TransferScheduler scheduler = new TransferScheduler(true, 10, 2, 10, Duration.ofSeconds(1), Duration.ofSeconds(1), 0, 100_000);
+        byte[] content = new byte[150_000];
+        ByteArrayOutputStream target = new ByteArrayOutputStream();
+        // Act
+        long start = System.nanoTime();
+        try (TransferScheduler.Permit permit = scheduler.admit("test-user");
+             InputStream paced = permit.throttle(new ByteArrayInputStream(content))) {
+            paced.transferTo(target);
+        }
+        long elapsed = System.nanoTime() - start;
+        // Assert
+        assertEquals(content.length, target.size());
+        assertTrue(elapsed >= TimeUnit.MILLISECONDS.toNanos(400), "paced for " + elapsed + "ns");
+    }
+
+    @Test
+    @DisplayName("Admission: Idle Users Swept Once Their Bucket Refilled Test")
+    void sweep_IdleUsersTest() throws Exception {
+        // Arrange
+        TransferScheduler scheduler = new TransferScheduler(true, 10, 2, 10, Duration.ofSeconds(1), Duration.ofSeconds(1), 0, 100_000);
+        try (TransferScheduler.Permit permit = scheduler.admit("paced-user");
+             InputStream paced = permit.throttle(new ByteArrayInputStream(new byte[10_000]))) {
+            paced.transferTo(new ByteArrayOutputStream());
+        }
+        scheduler.admit("unpaced-user").close();
+        // Act
+        scheduler.sweep();
+        int beforeRefill = scheduler.trackedUsers();
+        Thread.sleep(200);
+        scheduler.sweep();
+        // Assert
+        assertEquals(1, beforeRefill);
+        assertEquals(0, scheduler.trackedUsers());
+    }
+
+    @Test
+    @DisplayName("Admission: Disabled Test")
+    void disabledTest() {
+        // Arrange
+        TransferScheduler scheduler = new TransferScheduler(false, 1, 1, 0, Duration.ZERO, Duration.ofSeconds(1), 1, 1);
+        OutputStream target = new ByteArrayOutputStream();
+        // Act
+        TransferScheduler.Permit first = scheduler.admit("test-user");
+        TransferScheduler.Permit second = scheduler.admit("test-user");
+        // Assert
+        assertFalse(scheduler.isEnabled());
+        assertSame(target, first.throttle(target));
+        first.close();
+        second.close();
+        assertThrows(IllegalArgumentException.class,
+                () -> new TransferScheduler(true, 0, 1, 0, Duration.ZERO, Duration.ZERO, 0, 0));
+    }
+}
@@ -0,0 +1,395 @@
+package com.project.cloudfilestorage.support;
+
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.core.sync.ResponseTransformer;
+import software.amazon.awssdk.http.AbortableInputStream;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32C;
+
+/*
+In-process S3 fake for benchmarks and load tests. Keeps the objects of a single bucket in memory and implements the
+calls the service makes (listing with pagination, ranged and conditional reads, HEAD, single and multipart writes,
+copy and delete) with the status codes and exceptions of the real service, so the service code runs unchanged without
+network latency. CRC32C and SHA-256 additional checksums are checked on writes and returned on whole-object reads,
+with the checksum of the part checksums for multipart objects. Bucket names are ignored.
+ */
+public class InMemoryS3Client implements S3Client {
+    private static final int MAX_KEYS = 1000;
+
+    private final ConcurrentSkipListMap<String, StoredObject> objects = new ConcurrentSkipListMap<>();
+    private final Map<String, MultipartState> uploads = new ConcurrentHashMap<>();
+    private final AtomicLong versions = new AtomicLong();
+
+    /*
+    Store an object directly, used to seed the fake.
+     */
+    public void put(String key, String contentType, byte[] content) {
+        put(key, contentType, content, Map.of());
+    }
+
+    public void put(String key, String contentType, byte[] content, Map<String, String> metadata) {
+        put(key, contentType, null, content, metadata);
+    }
+
+    public void put(String key, String contentType, String contentEncoding, byte[] content, Map<String, String> metadata) {
+        put(key, contentType, contentEncoding, content, metadata, null, null);
+    }
+
+    private void put(String key, String contentType, String contentEncoding, byte[] content, Map<String, String> metadata,
+                     ChecksumAlgorithm checksumAlgorithm, String checksum) {
+        objects.put(key, new StoredObject(content, contentType, contentEncoding,
+                "\"" + Long.toHexString(versions.incrementAndGet()) + "\"", Instant.now(), Map.copyOf(metadata),
+                checksumAlgorithm, checksum));
+    }
+
+    /*
+    Flip the first byte of a stored object without changing its checksum or ETag, as silent corruption would.
+     */
+    public void corrupt(String key) {
+        find(key).content[0] ^= 0x01;
+    }
+
+    public byte[] content(String key) {
+        StoredObject object = objects.get(key);
+        return object != null ? object.content : null;
+    }
+
+    public int size() {
+        return objects.size();
+    }
+
+    @Override
+    public String serviceName() {
+        return "s3";
+    }
+
+    @Override
+    public void close() {
+    }
+
+    @Override
+    public ListObjectsV2Response listObjectsV2(ListObjectsV2Request request) {
+        String prefix = request.prefix() != null ? request.prefix() : "";
+        String from = request.continuationToken() != null ? request.continuationToken() : request.startAfter();
+        int maxKeys = request.maxKeys() != null ? Math.min(request.maxKeys(), MAX_KEYS) : MAX_KEYS;
+        NavigableMap<String, StoredObject> tail = from != null && from.compareTo(prefix) >= 0
+                ? objects.tailMap(from, false)
+                : objects.tailMap(prefix, true);
+
+        List<S3Object> contents = new ArrayList<>();
+        String lastKey = null;
+        boolean truncated = false;
+        for (Map.Entry<String, StoredObject> entry : tail.entrySet()) {
+            if (!entry.getKey().startsWith(prefix)) {
+                break;
+            }
+            if (contents.size() == maxKeys) {
+                truncated = true;
+                break;
+            }
+            StoredObject object = entry.getValue();
+            contents.add(S3Object.builder()
+                    .key(entry.getKey())
+                    .size((long) object.content.length)
+                    .eTag(object.eTag)
+                    .lastModified(object.lastModified)
+                    .build());
+            lastKey = entry.getKey();
+        }
+        return ListObjectsV2Response.builder()
+                .contents(contents)
+                .keyCount(contents.size())
+                .isTruncated(truncated)
+                .nextContinuationToken(truncated ? lastKey : null)
+                .build();
+    }
+
+    @Override
+    public <ReturnT> ReturnT getObject(GetObjectRequest request, ResponseTransformer<GetObjectResponse, ReturnT> transformer) {
+        StoredObject object = find(request.key());
+        if (request.ifNoneMatch() != null && request.ifNoneMatch().equals(object.eTag)) {
+            throw (S3Exception) S3Exception.builder().statusCode(304).message("Not Modified").build();
+        }
+        int start = 0;
+        int end = object.content.length - 1;
+        String contentRange = null;
+        if (request.range() != null) {
+            String[] bounds = request.range().substring("bytes=".length()).split("-", 2);
+            start = Integer.parseInt(bounds[0]);
+            end = bounds[1].isEmpty() ? end : Math.min(Integer.parseInt(bounds[1]), end);
+            if (start > end) {
+                throw (S3Exception) S3Exception.builder().statusCode(416).message("Requested Range Not Satisfiable").build();
+            }
+            contentRange = "bytes " + start + "-" + end + "/" + object.content.length;
+        }
+        GetObjectResponse response = GetObjectResponse.builder()
+                .contentType(object.contentType)
+                .contentEncoding(object.contentEncoding)
+                .contentLength((long) (end - start + 1))
+                .contentRange(contentRange)
+                .eTag(object.eTag)
+                .lastModified(object.lastModified)
+                .metadata(object.metadata)
+                .checksumCRC32C(checksum(object, ChecksumAlgorithm.CRC32_C, request.checksumMode(), request.range()))
+                .checksumSHA256(checksum(object, ChecksumAlgorithm.SHA256, request.checksumMode(), request.range()))
+                .build();
+        InputStream content = new ByteArrayInputStream(object.content, start, end - start + 1);
+        try {
+            return transformer.transform(response, AbortableInputStream.create(content));
+        } catch (Exception e) {
+            throw new IllegalStateException("Failed to transform response", e);
+        }
+    }
+
+    @Override
+    public HeadObjectResponse headObject(HeadObjectRequest request) {
+        StoredObject object = objects.get(request.key());
+        if (object == null) {
+            throw (S3Exception) S3Exception.builder().statusCode(404).message("Not Found").build();
+        }
+        return HeadObjectResponse.builder()
+                .contentType(object.contentType)
+                .contentEncoding(object.contentEncoding)
+                .contentLength((long) object.content.length)
+                .eTag(object.eTag)
+                .lastModified(object.lastModified)
+                .metadata(object.metadata)
+                .checksumCRC32C(checksum(object, ChecksumAlgorithm.CRC32_C, request.checksumMode(), null))
+                .checksumSHA256(checksum(object, ChecksumAlgorithm.SHA256, request.checksumMode(), null))
+                .build();
+    }
+
+    @Override
+    public PutObjectResponse putObject(PutObjectRequest request, RequestBody requestBody) {
+        Map<String, String> metadata = request.metadata() != null ? request.metadata() : Map.of();
+        byte[] content = read(requestBody);
+        String checksum = checkChecksum(request.checksumAlgorithm(), request.checksumCRC32C(), request.checksumSHA256(), content);
+        put(request.key(), request.contentType(), request.contentEncoding(), content, metadata,
+                request.checksumAlgorithm(), checksum);
+        return PutObjectResponse.builder()
+                .eTag(objects.get(request.key()).eTag)
+                .checksumCRC32C(request.checksumAlgorithm() == ChecksumAlgorithm.CRC32_C ? checksum : null)
+                .checksumSHA256(request.checksumAlgorithm() == ChecksumAlgorithm.SHA256 ? checksum : null)
+                .build();
+    }
+
+    @Override
+    public CreateMultipartUploadResponse createMultipartUpload(CreateMultipartUploadRequest request) {
+        String uploadId = UUID.randomUUID().toString();
+        Map<String, String> metadata = request.metadata() != null ? request.metadata() : Map.of();
+        uploads.put(uploadId, new MultipartState(request.key(), request.contentType(), request.contentEncoding(), metadata,
+                request.checksumAlgorithm()));
+        return CreateMultipartUploadResponse.builder().uploadId(uploadId).key(request.key()).build();
+    }
+
+    @Override
+    public UploadPartResponse uploadPart(UploadPartRequest request, RequestBody requestBody) {
+        MultipartState upload = findUpload(request.uploadId());
+        byte[] content = read(requestBody);
+        String checksum = checkChecksum(upload.checksumAlgorithm, request.checksumCRC32C(), request.checksumSHA256(), content);
+        upload.parts.put(request.partNumber(), content);
+        if (checksum != null) {
+            upload.checksums.put(request.partNumber(), checksum);
+        }
+        return UploadPartResponse.builder()
+                .eTag("\"part-" + request.partNumber() + "\"")
+                .checksumCRC32C(upload.checksumAlgorithm == ChecksumAlgorithm.CRC32_C ? checksum : null)
+                .checksumSHA256(upload.checksumAlgorithm == ChecksumAlgorithm.SHA256 ? checksum : null)
+                .build();
+    }
+
+    @Override
+    public UploadPartCopyResponse uploadPartCopy(UploadPartCopyRequest request) {
+        MultipartState upload = findUpload(request.uploadId());
+        byte[] source = find(request.sourceKey()).content;
+        int start = 0;
+        int end = source.length - 1;
+        if (request.copySourceRange() != null) {
+            String[] bounds = request.copySourceRange().substring("bytes=".length()).split("-", 2);
+            start = Integer.parseInt(bounds[0]);
+            end = Integer.parseInt(bounds[1]);
+        }
+        byte[] part = Arrays.copyOfRange(source, start, end + 1);
+        String checksum = checkChecksum(upload.checksumAlgorithm, null, null, part);
+        upload.parts.put(request.partNumber(), part);
+        if (checksum != null) {
+            upload.checksums.put(request.partNumber(), checksum);
+        }
+        return UploadPartCopyResponse.builder()
+                .copyPartResult(CopyPartResult.builder()
+                        .eTag("\"part-" + request.partNumber() + "\"")
+                        .checksumCRC32C(upload.checksumAlgorithm == ChecksumAlgorithm.CRC32_C ? checksum : null)
+                        .checksumSHA256(upload.checksumAlgorithm == ChecksumAlgorithm.SHA256 ? checksum : null)
+                        .build())
+                .build();
+    }
+
+    @Override
+    public CompleteMultipartUploadResponse completeMultipartUpload(CompleteMultipartUploadRequest request) {
+        MultipartState upload = uploads.remove(request.uploadId());
+        if (upload == null) {
+            throw (S3Exception) NoSuchUploadException.builder().statusCode(404).message("No Such Upload").build();
+        }
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        ByteArrayOutputStream partChecksums = new ByteArrayOutputStream();
+        for (CompletedPart part : request.multipartUpload().parts()) {
+            content.writeBytes(upload.parts.get(part.partNumber()));
+            if (upload.checksumAlgorithm != null) {
+                String checksum = upload.checksumAlgorithm == ChecksumAlgorithm.SHA256 ? part.checksumSHA256() : part.checksumCRC32C();
+                if (!upload.checksums.get(part.partNumber()).equals(checksum)) {
+                    throw (S3Exception) S3Exception.builder().statusCode(400).message("Invalid Part").build();
+                }
+                partChecksums.writeBytes(Base64.getDecoder().decode(checksum));
+            }
+        }
+        String checksum = upload.checksumAlgorithm != null
+                ? checksum(upload.checksumAlgorithm, partChecksums.toByteArray()) + "-" + request.multipartUpload().parts().size()
+                : null;
+        put(upload.key, upload.contentType, upload.contentEncoding, content.toByteArray(), upload.metadata,
+                upload.checksumAlgorithm, checksum);
+        return CompleteMultipartUploadResponse.builder().key(upload.key).eTag(objects.get(upload.key).eTag).build();
+    }
+
+    @Override
+    public AbortMultipartUploadResponse abortMultipartUpload(AbortMultipartUploadRequest request) {
+        uploads.remove(request.uploadId());
+        return AbortMultipartUploadResponse.builder().build();
+    }
+
+    @Override
+    public CopyObjectResponse copyObject(CopyObjectRequest request) {
+        StoredObject source = find(request.sourceKey());
+        Map<String, String> metadata = request.metadataDirective() == MetadataDirective.REPLACE && request.metadata() != null
+                ? request.metadata()
+                : source.metadata;
+        String contentType = request.metadataDirective() == MetadataDirective.REPLACE ? request.contentType() : source.contentType;
+        String contentEncoding = request.metadataDirective() == MetadataDirective.REPLACE
+                ? request.contentEncoding()
+                : source.contentEncoding;
+        if (request.checksumAlgorithm() != null) {
+            put(request.destinationKey(), contentType, contentEncoding, source.content.clone(), metadata,
+                    request.checksumAlgorithm(), checksum(request.checksumAlgorithm(), source.content));
+        } else {
+            put(request.destinationKey(), contentType, contentEncoding, source.content.clone(), metadata,
+                    source.checksumAlgorithm, source.checksum);
+        }
+        return CopyObjectResponse.builder()
+                .copyObjectResult(CopyObjectResult.builder().eTag(objects.get(request.destinationKey()).eTag).build())
+                .build();
+    }
+
+    @Override
+    public DeleteObjectResponse deleteObject(DeleteObjectRequest request) {
+        objects.remove(request.key());
+        return DeleteObjectResponse.builder().build();
+    }
+
+    @Override
+    public DeleteObjectsResponse deleteObjects(DeleteObjectsRequest request) {
+        List<DeletedObject> deleted = new ArrayList<>();
+        for (ObjectIdentifier identifier : request.delete().objects()) {
+            objects.remove(identifier.key());
+            deleted.add(DeletedObject.builder().key(identifier.key()).build());
+        }
+        return DeleteObjectsResponse.builder().deleted(deleted).build();
+    }
+
+    private StoredObject find(String key) {
+        StoredObject object = objects.get(key);
+        if (object == null) {
+            throw (S3Exception) NoSuchKeyException.builder().statusCode(404).message("The specified key does not exist.").build();
+        }
+        return object;
+    }
+
+    private MultipartState findUpload(String uploadId) {
+        MultipartState upload = uploads.get(uploadId);
+        if (upload == null) {
+            throw (S3Exception) NoSuchUploadException.builder().statusCode(404).message("No Such Upload").build();
+        }
+        return upload;
+    }
+
+    /*
+    Helper method to compute the checksum of a write and reject it when it differs from the one sent by the client.
+     */
+    private static String checkChecksum(ChecksumAlgorithm algorithm, String crc32c, String sha256, byte[] content) {
+        if (algorithm == null) {
+            return null;
+        }
+        String checksum = checksum(algorithm, content);
+        String sent = algorithm == ChecksumAlgorithm.SHA256 ? sha256 : crc32c;
+        if (sent != null && !sent.equals(checksum)) {
+            throw (S3Exception) S3Exception.builder().statusCode(400).message("Bad Digest").build();
+        }
+        return checksum;
+    }
+
+    private static String checksum(StoredObject object, ChecksumAlgorithm algorithm, ChecksumMode mode, String range) {
+        return mode == ChecksumMode.ENABLED && range == null && object.checksumAlgorithm == algorithm ? object.checksum : null;
+    }
+
+    private static String checksum(ChecksumAlgorithm algorithm, byte[] content) {
+        if (algorithm == ChecksumAlgorithm.SHA256) {
+            try {
+                return Base64.getEncoder().encodeToString(MessageDigest.getInstance("SHA-256").digest(content));
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        if (algorithm != ChecksumAlgorithm.CRC32_C) {
+            throw new UnsupportedOperationException("Unsupported checksum algorithm " + algorithm);
+        }
+        CRC32C crc = new CRC32C();
+        crc.update(content);
+        int value = (int) crc.getValue();
+        return Base64.getEncoder().encodeToString(
+                new byte[]{(byte) (value >>> 24), (byte) (value >>> 16), (byte) (value >>> 8), (byte) value});
+    }
+
+    private static byte[] read(RequestBody requestBody) {
+        try (InputStream input = requestBody.contentStreamProvider().newStream()) {
+            return input.readAllBytes();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private record StoredObject(byte[] content, String contentType, String contentEncoding, String eTag,
+                                Instant lastModified, Map<String, String> metadata, ChecksumAlgorithm checksumAlgorithm,
+                                String checksum) {
+    }
+
+    private static final class MultipartState {
+        private final String key;
+        private final String contentType;
+        private final String contentEncoding;
+        private final Map<String, String> metadata;
+        private final ChecksumAlgorithm checksumAlgorithm;
+        private final Map<Integer, byte[]> parts = new ConcurrentHashMap<>();
+        private final Map<Integer, String> checksums = new ConcurrentHashMap<>();
+
+        private MultipartState(String key, String contentType, String contentEncoding, Map<String, String> metadata,
+                               ChecksumAlgorithm checksumAlgorithm) {
+            this.key = key;
+            this.contentType = contentType;
+            this.contentEncoding = contentEncoding;
+            this.metadata = metadata;
+            this.checksumAlgorithm = checksumAlgorithm;
+        }
+    }
+}